@@ -0,0 +1,165 @@
+package com.test.app.widget.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Area query of H2 storage by spatial index and bounding box columns, compared with the former query
+ * by expressions over coordinates and sizes. Queries are run by JDBC on table of data.sql, so rows are inserted
+ * without application, and boards are bigger than {@link StorageBenchmark} ones.
+ * Both queries are checked to find the same widgets before measuring.
+ * <p>
+ * Run by "benchmark" Maven profile, see pom.xml, e.g. -Djmh.args="H2AreaQueryBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H2AreaQueryBenchmark {
+    private static final String LOAD_BY_SELECTED_AREA_BY_EXPRESSIONS =
+            "SELECT * " +
+            "FROM WIDGETS " +
+            "WHERE TRUE AND " +
+            "    (COORDINATE_X + WIDTH / 2) <= ? AND " +
+            "    (COORDINATE_X - WIDTH / 2) >= ? AND " +
+            "    (COORDINATE_Y + HEIGHT / 2) <= ? AND " +
+            "    (COORDINATE_Y - HEIGHT / 2) >= ?";
+    private static final String LOAD_BY_SELECTED_AREA_BY_BOUNDS =
+            "SELECT * " +
+            "FROM WIDGETS " +
+            "WHERE BOUNDS && CAST(? AS GEOMETRY) AND " +
+            "      MIN_X >= ? AND " +
+            "      MAX_X <= ? AND " +
+            "      MIN_Y >= ? AND " +
+            "      MAX_Y <= ?";
+    private static final String INSERT =
+            "INSERT INTO WIDGETS (ID, COORDINATE_X, COORDINATE_Y, ORDER_KEY, Z_BASE, WIDTH, HEIGHT, MIN_X, MAX_X, MIN_Y, MAX_Y, BOUNDS) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS GEOMETRY))";
+    private static final int PLANE_SIZE = 100_000;
+    private static final int AREA_SIZE = 2_000;
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void fillTable() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:areaBenchmark" + UUID.randomUUID());
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("data.sql"));
+        fill(rows);
+
+        final Random rand = new Random(1);
+        for (int i = 0; i < 5; i++) {
+            final int leftX = rand.nextInt(PLANE_SIZE - AREA_SIZE);
+            final int leftY = rand.nextInt(PLANE_SIZE - AREA_SIZE);
+            if (queryByBounds(leftX, leftY) != queryByExpressions(leftX, leftY)) {
+                throw new IllegalStateException("Error: area queries by bounds and by expressions found different widgets");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeConnection() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int byExpressions() throws SQLException {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        return queryByExpressions(rand.nextInt(PLANE_SIZE - AREA_SIZE), rand.nextInt(PLANE_SIZE - AREA_SIZE));
+    }
+
+    @Benchmark
+    public int byBounds() throws SQLException {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        return queryByBounds(rand.nextInt(PLANE_SIZE - AREA_SIZE), rand.nextInt(PLANE_SIZE - AREA_SIZE));
+    }
+
+    private int queryByExpressions(final int leftX, final int leftY) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(LOAD_BY_SELECTED_AREA_BY_EXPRESSIONS)) {
+            statement.setInt(1, leftX + AREA_SIZE);
+            statement.setInt(2, leftX);
+            statement.setInt(3, leftY + AREA_SIZE);
+            statement.setInt(4, leftY);
+            return count(statement);
+        }
+    }
+
+    private int queryByBounds(final int leftX, final int leftY) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(LOAD_BY_SELECTED_AREA_BY_BOUNDS)) {
+            statement.setString(1, toPolygonWkt(leftX, leftY, leftX + AREA_SIZE, leftY + AREA_SIZE));
+            statement.setInt(2, leftX);
+            statement.setInt(3, leftX + AREA_SIZE);
+            statement.setInt(4, leftY);
+            statement.setInt(5, leftY + AREA_SIZE);
+            return count(statement);
+        }
+    }
+
+    private static int count(final PreparedStatement statement) throws SQLException {
+        int result = 0;
+        try (final ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private void fill(final int rows) throws SQLException {
+        final Random rand = new Random(0);
+        connection.setAutoCommit(false);
+        try (final PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            for (int i = 0; i < rows; i++) {
+                final int x = rand.nextInt(PLANE_SIZE);
+                final int y = rand.nextInt(PLANE_SIZE);
+                final int width = 1 + rand.nextInt(200);
+                final int height = 1 + rand.nextInt(200);
+                statement.setObject(1, UUID.randomUUID());
+                statement.setInt(2, x);
+                statement.setInt(3, y);
+                statement.setLong(4, i);
+                statement.setLong(5, i);
+                statement.setInt(6, width);
+                statement.setInt(7, height);
+                statement.setInt(8, x - width / 2);
+                statement.setInt(9, x + width / 2);
+                statement.setInt(10, y - height / 2);
+                statement.setInt(11, y + height / 2);
+                statement.setString(12, toPolygonWkt(x - width / 2, y - height / 2, x + width / 2, y + height / 2));
+                statement.addBatch();
+                if (i % 10_000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (final Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static String toPolygonWkt(final int minX, final int minY, final int maxX, final int maxY) {
+        return String.format(
+                "POLYGON ((%1$d %2$d, %3$d %2$d, %3$d %4$d, %1$d %4$d, %1$d %2$d))",
+                minX, minY, maxX, maxY
+        );
+    }
+}
@@ -0,0 +1,214 @@
+package com.test.app.widget.benchmark;
+
+import com.test.app.widget.WidgetApplication;
+import com.test.app.widget.rest.inputs.InputBatch;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of storage backends, called through {@link WidgetService} which dispatches them
+ * into SimpleMemStorageService, H2StorageService or ColumnarStorageService.
+ * Every trial gets new application context with board of given size: widget i has Z-index i,
+ * widgets are spread over {@link #PLANE_SIZE} x {@link #PLANE_SIZE} plane.
+ * Widgets created by iteration are deleted after it, so every iteration starts from board of given size.
+ * <p>
+ * Run by "benchmark" Maven profile, see pom.xml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int PLANE_SIZE = 10_000;
+    private static final int AREA_SIZE = 1_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"mem", "h2", "columnar"})
+    private String storage;
+    @Param({"1000", "100000"})
+    private int boardSize;
+
+    private ConfigurableApplicationContext context;
+    private WidgetService widgetService;
+    private Widget[] board;
+    /**
+     * Offset paging arguments of the last page: H2 reads rows by numbers from page to size,
+     * memory storages read size rows from position page - 1
+     */
+    private int deepPage;
+    private int deepPageSize;
+    /**
+     * Widgets created by iteration, they are added by all benchmark threads
+     */
+    private final Queue<UUID> inserted = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        // MVC configuration needs servlet context, so web server is started on random port.
+        // Properties are passed as arguments, default properties of builder are overridden by application.yaml
+        context = new SpringApplicationBuilder(WidgetApplication.class).run(
+                "--server.port=0",
+                "--widget.config.h2storage.enabled=" + "h2".equals(storage),
+                "--widget.config.columnarStorage.enabled=" + "columnar".equals(storage),
+                "--spring.datasource.url=jdbc:h2:mem:benchmark" + UUID.randomUUID(),
+                // H2 offset page is limited by the last row number, so deep page needs big limit
+                "--widget.config.pagingConfig.widgetLimitForLoadingPerQuery=" + Math.max(500, boardSize),
+                "--logging.level.root=WARN"
+        );
+        widgetService = context.getBean(WidgetService.class);
+
+        final Random rand = new Random(0);
+        final List<Widget> created = new ArrayList<>(boardSize);
+        for (int from = 0; from < boardSize; from += BATCH_SIZE) {
+            final List<InputWidget> inputs = new ArrayList<>(BATCH_SIZE);
+            for (int indexZ = from; indexZ < Math.min(from + BATCH_SIZE, boardSize); indexZ++) {
+                inputs.add(randomInputWidget(rand, indexZ));
+            }
+            created.addAll(widgetService.applyBatch(
+                    new InputBatch(inputs, Collections.emptyList(), Collections.emptyList())
+            ).getCreated());
+        }
+        board = created.toArray(new Widget[0]);
+
+        deepPage = boardSize - PAGE_SIZE + 1;
+        deepPageSize = "h2".equals(storage) ? boardSize : PAGE_SIZE;
+        if (widgetService.loadPaging(deepPage, deepPageSize).size() != Math.min(PAGE_SIZE, boardSize)) {
+            throw new IllegalStateException("Error: deep page of paging benchmark isn't full");
+        }
+    }
+
+    /**
+     * Delete widgets created by iteration, Z-indexes of shifted widgets stay shifted
+     */
+    @TearDown(Level.Iteration)
+    public void deleteInserted() {
+        while (!inserted.isEmpty()) {
+            final List<UUID> delete = new ArrayList<>(BATCH_SIZE);
+            while (delete.size() < BATCH_SIZE && !inserted.isEmpty()) {
+                delete.add(inserted.poll());
+            }
+            widgetService.applyBatch(new InputBatch(Collections.emptyList(), Collections.emptyList(), delete));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    /**
+     * New widget into foreground
+     */
+    @Benchmark
+    public Widget createForeground() {
+        return insert(widgetService.create(randomInputWidget(ThreadLocalRandom.current(), null)));
+    }
+
+    /**
+     * New widget on occupied Z-index, all upper widgets are shifted
+     */
+    @Benchmark
+    public Widget createWithShift() {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        return insert(widgetService.create(randomInputWidget(rand, rand.nextInt(boardSize))));
+    }
+
+    /**
+     * Move widget, Z-index is kept
+     */
+    @Benchmark
+    public Widget update() {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        final Widget widget = board[rand.nextInt(board.length)];
+        return widgetService.update(new Widget(
+                widget.getId(),
+                rand.nextInt(PLANE_SIZE),
+                rand.nextInt(PLANE_SIZE),
+                widget.getIndexZ(),
+                widget.getWidth(),
+                widget.getHeight(),
+                widget.getLastModificationDateTime()
+        ));
+    }
+
+    @Benchmark
+    public Widget loadById() {
+        return widgetService.loadById(board[ThreadLocalRandom.current().nextInt(board.length)].getId());
+    }
+
+    /**
+     * The last page of Z-order, on H2 it's served by page cache after the first loading
+     */
+    @Benchmark
+    public List<Widget> loadPagingDeep() {
+        return widgetService.loadPaging(deepPage, deepPageSize);
+    }
+
+    /**
+     * The same deep page by Z-index cursor
+     */
+    @Benchmark
+    public List<Widget> loadPagingAfterIndexZDeep() {
+        return widgetService.loadPagingAfterIndexZ(boardSize - PAGE_SIZE - 1, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void loadBySelectedArea(final Blackhole blackhole) {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        final int leftX = rand.nextInt(PLANE_SIZE - AREA_SIZE);
+        final int leftY = rand.nextInt(PLANE_SIZE - AREA_SIZE);
+        blackhole.consume(widgetService.loadBySelectedArea(leftX, leftY, leftX + AREA_SIZE, leftY + AREA_SIZE));
+    }
+
+    /**
+     * The highest page of widgets inside large area
+     */
+    @Benchmark
+    public List<Widget> loadBySelectedAreaTopPage() {
+        final ThreadLocalRandom rand = ThreadLocalRandom.current();
+        final int leftX = rand.nextInt(PLANE_SIZE / 2);
+        final int leftY = rand.nextInt(PLANE_SIZE / 2);
+        return widgetService.loadBySelectedArea(
+                leftX,
+                leftY,
+                leftX + PLANE_SIZE / 2,
+                leftY + PLANE_SIZE / 2,
+                "z_desc",
+                null,
+                PAGE_SIZE
+        );
+    }
+
+    private Widget insert(final Widget widget) {
+        inserted.add(widget.getId());
+        return widget;
+    }
+
+    private static InputWidget randomInputWidget(final Random rand, final Integer indexZ) {
+        return new InputWidget(
+                rand.nextInt(PLANE_SIZE),
+                rand.nextInt(PLANE_SIZE),
+                indexZ,
+                1 + rand.nextInt(200),
+                1 + rand.nextInt(200)
+        );
+    }
+}
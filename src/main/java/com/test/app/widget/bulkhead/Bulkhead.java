@@ -0,0 +1,177 @@
+package com.test.app.widget.bulkhead;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.SnapshotVersionHeader;
+import com.test.app.widget.service.SnapshotReadVersion;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor of storage operations for asynchronous requests.
+ * Operation is rejected at once if queue is full, and request gets HTTP 503 if operation isn't started in time.
+ * Running operation is neither interrupted, because JDBC connections don't survive it, nor rejected by timeout,
+ * because its modification may be already committed, so it's answered when it's done.
+ * Streamed responses have no timeout, their writing is stopped when request is completed
+ */
+public class Bulkhead {
+    public static final String REJECTED_BY_FULL_QUEUE = "full";
+    public static final String REJECTED_BY_TIMEOUT = "timeout";
+    /**
+     * Timeout of asynchronous request which is disabled by servlet container, timeouts of operations are kept by bulkhead
+     */
+    private static final long NO_TIMEOUT = 0;
+
+    private final String name;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor timeouts;
+    private final WidgetMetrics widgetMetrics;
+
+    public Bulkhead(final String name, final ConfigProperties.BulkheadConfig config, final WidgetMetrics widgetMetrics) {
+        this.name = name;
+        this.timeoutMillis = config.getTimeout().toMillis();
+        this.widgetMetrics = widgetMetrics;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final BlockingQueue<Runnable> queue = config.getQueueCapacity() > 0
+                                              ? new ArrayBlockingQueue<>(config.getQueueCapacity())
+                                              : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(
+                config.getThreads(),
+                config.getThreads(),
+                0,
+                TimeUnit.MILLISECONDS,
+                queue,
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "widget-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.timeouts = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "widget-" + name + "-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Timeouts of done operations are cancelled, so they don't stay in queue for the whole timeout
+        this.timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Execute operation by executor of bulkhead, attributes of current request are available for operation
+     *
+     * @return result which is set by operation, or by HTTP 503 response if operation is rejected
+     */
+    public <T> DeferredResult<T> submit(final Supplier<T> operation) {
+        final DeferredResult<T> result = new DeferredResult<>(NO_TIMEOUT);
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final Future<?> future = execute(result, claimed, operation);
+        if (future != null) {
+            final Future<?> timeout = timeouts.schedule(
+                    () -> {
+                        // Future is cancellable while operation runs, so operation is claimed either by its start or by timeout
+                        if (claimed.compareAndSet(false, true)) {
+                            future.cancel(false);
+                            reject(result, REJECTED_BY_TIMEOUT);
+                        }
+                    },
+                    timeoutMillis,
+                    TimeUnit.MILLISECONDS
+            );
+            result.onCompletion(() -> timeout.cancel(false));
+        }
+        return result;
+    }
+
+    /**
+     * Execute writing of streamed response by executor of bulkhead. Response is committed by the first written bytes,
+     * so HTTP 503 can't be sent after it, and there is no timeout. Writing is stopped when request is completed
+     * otherwise, e.g. by disconnected client, and it's cancelled if it isn't started yet
+     *
+     * @param writing writing of response, it must stop writing when given supplier returns true
+     * @return result which is set when writing is done, or by HTTP 503 response if writing is rejected
+     */
+    public DeferredResult<Void> submitStreaming(final Consumer<BooleanSupplier> writing) {
+        final DeferredResult<Void> result = new DeferredResult<>(NO_TIMEOUT);
+        final AtomicBoolean completed = new AtomicBoolean();
+        final Future<?> future = execute(result, new AtomicBoolean(), () -> {
+            writing.accept(completed::get);
+            return null;
+        });
+        if (future != null) {
+            result.onError(error -> completed.set(true));
+            result.onCompletion(() -> {
+                completed.set(true);
+                future.cancel(false);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * @param claimed flag of operation which is set by its start, operation isn't started if it's already set
+     * @return future of operation, or Null if operation is rejected
+     */
+    @Nullable
+    private <T> Future<?> execute(
+            final DeferredResult<T> result,
+            final AtomicBoolean claimed,
+            final Supplier<T> operation
+    ) {
+        final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        try {
+            return executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                try {
+                    final T value = operation.get();
+                    // Result is dispatched into another thread
+                    SnapshotVersionHeader.keepForDispatch(requestAttributes);
+                    result.setResult(value);
+                } catch (Throwable e) {
+                    // Streamed request has no timeout, so it would wait forever for result of failed operation
+                    result.setErrorResult(e);
+                } finally {
+                    // Version of failed snapshot read mustn't get into response of the next request of this thread
+                    SnapshotReadVersion.take();
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reject(result, REJECTED_BY_FULL_QUEUE);
+            return null;
+        }
+    }
+
+    void stop() {
+        executor.shutdown();
+        timeouts.shutdownNow();
+    }
+
+    private void reject(final DeferredResult<?> result, final String reason) {
+        widgetMetrics.recordBulkheadRejection(name, reason);
+        result.setErrorResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                            .body(String.format("Error: %s storage operations are overloaded", name)));
+    }
+}
@@ -0,0 +1,31 @@
+package com.test.app.widget.bulkhead;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Separate executors for scans and point operations, so slow scans can't occupy threads of cheap operations.
+ * Threads are started on the first operation, so nothing is started while asynchronous API is disabled
+ */
+@Getter
+@Component
+public class StorageBulkheads {
+    private final Bulkhead scans;
+    private final Bulkhead points;
+
+    public StorageBulkheads(final ConfigProperties configProperties, final WidgetMetrics widgetMetrics) {
+        final ConfigProperties.AsyncConfig config = configProperties.getAsync();
+        this.scans = new Bulkhead("scans", config.getScans(), widgetMetrics);
+        this.points = new Bulkhead("points", config.getPoints(), widgetMetrics);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scans.stop();
+        points.stop();
+    }
+}
@@ -1,11 +1,15 @@
 package com.test.app.widget.configs;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Setter
 @Getter
@@ -14,13 +18,209 @@ import java.time.LocalDateTime;
 public class ConfigProperties {
 
     private StorageH2 h2storage;
+    private StorageMem memStorage = new StorageMem();
+    private StorageColumnar columnarStorage = new StorageColumnar();
+    private StorageTiered tieredStorage = new StorageTiered();
     private PagingConfig pagingConfig;
+    private BatchConfig batchConfig = new BatchConfig();
     private RateLimiting rateLimiting;
+    private AsyncConfig async = new AsyncConfig();
+    private ChangeLog changeLog = new ChangeLog();
+    private Subscriptions subscriptions = new Subscriptions();
+    private BoardCache boardCache = new BoardCache();
+    private Density density = new Density();
 
     @Getter
     @Setter
     public static class StorageH2 {
         private boolean enabled;
+        private Cache cache = new Cache();
+        private IndexZOrder indexZOrder = new IndexZOrder();
+    }
+
+    @Getter
+    @Setter
+    public static class IndexZOrder {
+        /**
+         * Gap between ordering keys of neighbour widgets appended to Z-order or rebalanced
+         */
+        private long keyGap = 1L << 32;
+        /**
+         * Count of pending Z-index shifts, after which they are applied to widget rows in background
+         */
+        private int maxPendingShifts = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        /**
+         * Cache widgets by id and ordered pages in front of H2 storage
+         */
+        private boolean enabled = true;
+        private long maxWidgets = 10_000;
+        /**
+         * Max total count of widgets into all cached pages
+         */
+        private long maxPageWidgets = 100_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class StorageMem {
+        /**
+         * Serve reads from immutable versioned snapshots instead of live structures
+         */
+        private boolean snapshotReads;
+        private Persistence persistence = new Persistence();
+        /**
+         * Size of ring buffer of mutations waiting for single writer, it must be a power of two
+         */
+        private int writeBufferSize = 1024;
+        /**
+         * Max count of mutations which are made by writer as one storage modification
+         */
+        private int maxWriteBatch = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Persistence {
+        /**
+         * Keep memory storage by write-ahead log and snapshots, and recover it on start
+         */
+        private boolean enabled;
+        private String directory = "data/widgets";
+        /**
+         * Period of taking snapshot, log before the last snapshot is removed
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class StorageColumnar {
+        /**
+         * Keep widgets into primitive columns instead of widget objects, it's ignored when H2 storage is enabled
+         */
+        private boolean enabled;
+    }
+
+    @Getter
+    @Setter
+    public static class StorageTiered {
+        /**
+         * Serve reads by memory storage and persist its modifications into H2 by write-behind,
+         * it's ignored when H2 or columnar storage is enabled
+         */
+        private boolean enabled;
+        /**
+         * Max count of modified widgets waiting for writing into H2, memory storage writer waits while it's exceeded
+         */
+        private int maxPendingWidgets = 10_000;
+        /**
+         * Max count of rows into one JDBC batch
+         */
+        private int flushBatchSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        /**
+         * Count of parallel queries of bulk loading from H2 on start
+         */
+        private int loadThreads = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class ChangeLog {
+        /**
+         * Max count of widget changes kept into memory for change feed
+         */
+        private int maxChanges = 10_000;
+        /**
+         * Max count of widget changes evicted from memory into H2 table, it's used only by H2 storage
+         */
+        private int maxArchivedChanges = 1_000_000;
+        /**
+         * Max count of archived widget changes loaded by one change feed request, resync is required for more changes
+         */
+        private int maxLoadedArchivedChanges = 100_000;
+        /**
+         * Max count of Z-index shifted widgets returned by change feed, resync is required for more shifted widgets
+         */
+        private int maxShiftedWidgets = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Subscriptions {
+        private int maxSubscriptions = 10_000;
+        /**
+         * Side of cell of grid index of subscribed viewports
+         */
+        private int cellSize = 1000;
+        /**
+         * Viewports and widgets covering more cells are checked without grid
+         */
+        private int maxCells = 64;
+        /**
+         * Max count of events waiting for sending to one client, client is told to resync when it's exceeded
+         */
+        private int bufferSize = 256;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+        /**
+         * Threads sending events to all clients
+         */
+        private int senderThreads = 4;
+        private Duration timeout = Duration.ofMinutes(30);
+
+        public enum OverflowPolicy {
+            /**
+             * Events are buffered one by one
+             */
+            DROP,
+            /**
+             * Buffered event of widget is replaced by the next one of the same widget, Z-index shifts are merged
+             */
+            COALESCE
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class BoardCache {
+        /**
+         * Serve reading of all widgets by serialized response of the last storage version
+         */
+        private boolean enabled = true;
+        /**
+         * Keep gzip-compressed copy of response for clients accepting it
+         */
+        private boolean gzip = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Density {
+        /**
+         * Keep counters of widgets by tiles, previous widgets are loaded by every updating and removing then,
+         * so it's disabled by default
+         */
+        private boolean enabled = false;
+        /**
+         * Side of tiles of the finest level, every next level has tiles twice bigger
+         */
+        private int tileSize = 64;
+        private int levels = 12;
+        /**
+         * Max count of tiles covering requested area
+         */
+        private int maxTiles = 65_536;
+        /**
+         * Max count of tiles of level which area of widget is spread over, bigger widgets cover only their center tile.
+         * Every write of widget changes up to levels * maxSpreadTiles counters
+         */
+        private int maxSpreadTiles = 64;
     }
 
     @Getter
@@ -30,15 +230,87 @@ public class ConfigProperties {
         private int defaultPagingResultSize;
     }
 
+    @Getter
+    @Setter
+    public static class BatchConfig {
+        /**
+         * Max count of creating, updating and removing into one batch
+         */
+        private int maxModificationsPerBatch = 1000;
+    }
+
     @Getter
     @Setter
     public static class RateLimiting {
+        private boolean enabled = true;
+        /**
+         * Requests count available per period, it's also the max burst
+         */
         private int limit;
-        private LocalDateTime nextResetDateTime = LocalDateTime.now();
-        private int availableRequests;
+        private Duration period = Duration.ofMinutes(1);
+        /**
+         * What is the owner of token bucket
+         */
+        private ClientKey clientKey = ClientKey.GLOBAL;
+        /**
+         * Header with client identifier, for {@link ClientKey#HEADER}
+         */
+        private String clientKeyHeader = "X-Client-Id";
+        /**
+         * Max count of client buckets, least recently used buckets are evicted
+         */
+        private int maxClients = 10_000;
+        /**
+         * Count of tokens for one request by endpoint path, default weight is 1, weights are capped by limit
+         */
+        private Map<String, Integer> endpointWeights = new HashMap<>();
 
-        public void decrementAvailableRequests() {
-            this.availableRequests -= 1;
+        public enum ClientKey {
+            /**
+             * One bucket for all requests
+             */
+            GLOBAL,
+            /**
+             * Bucket per value of {@link #clientKeyHeader}, remote address is used if header is absent
+             */
+            HEADER,
+            /**
+             * Bucket per remote address
+             */
+            REMOTE_ADDRESS
         }
     }
+
+    @Getter
+    @Setter
+    public static class AsyncConfig {
+        /**
+         * Serve widget API asynchronously: storage work is done by bounded executors, servlet thread is released
+         */
+        private boolean enabled;
+        /**
+         * Operations whose cost grows with count of widgets: reading of all widgets, offset paging, area, batch
+         */
+        private BulkheadConfig scans = new BulkheadConfig(4, 64, Duration.ofSeconds(30));
+        /**
+         * Operations of single widget and cursor paging
+         */
+        private BulkheadConfig points = new BulkheadConfig(16, 1000, Duration.ofSeconds(5));
+    }
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BulkheadConfig {
+        private int threads;
+        /**
+         * Max count of waiting operations, request is rejected with HTTP 503 when queue is full
+         */
+        private int queueCapacity;
+        /**
+         * Max time of waiting and execution, request gets HTTP 503 after it
+         */
+        private Duration timeout;
+    }
 }
@@ -1,7 +1,14 @@
 package com.test.app.widget.configs;
 
+import com.test.app.widget.rest.SnapshotVersionHeader;
+import com.test.app.widget.rest.WidgetBoardInterceptor;
+import com.test.app.widget.rest.WidgetColumnsHttpMessageConverter;
+import com.test.app.widget.rest.WidgetETagInterceptor;
+import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 import springfox.documentation.builders.ApiInfoBuilder;
@@ -12,11 +19,19 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.util.List;
+
 import static springfox.documentation.builders.PathSelectors.regex;
 
+@AllArgsConstructor
 @Configuration
 @EnableSwagger2
 public class SwaggerConfig extends WebMvcConfigurationSupport {
+    private final WidgetETagInterceptor widgetETagInterceptor;
+    private final WidgetBoardInterceptor widgetBoardInterceptor;
+    private final SnapshotVersionHeader snapshotVersionHeader;
+    private final WidgetColumnsHttpMessageConverter widgetColumnsHttpMessageConverter;
+
     @Bean
     public Docket productApi() {
         return new Docket(DocumentationType.SWAGGER_2)
@@ -44,4 +59,25 @@ public class SwaggerConfig extends WebMvcConfigurationSupport {
         registry.addResourceHandler("/webjars/**")
                 .addResourceLocations("classpath:/META-INF/resources/webjars/");
     }
+
+    /**
+     * This configuration replaces MVC auto-configuration, so interceptors are registered here
+     */
+    @Override
+    protected void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(widgetETagInterceptor)
+                .addPathPatterns("/widget/**");
+        registry.addInterceptor(widgetBoardInterceptor)
+                .addPathPatterns("/widget/**");
+        registry.addInterceptor(snapshotVersionHeader)
+                .addPathPatterns("/widget/**");
+    }
+
+    /**
+     * Binary columns are added after default converters, so JSON stays default representation
+     */
+    @Override
+    protected void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(widgetColumnsHttpMessageConverter);
+    }
 }
@@ -0,0 +1,228 @@
+package com.test.app.widget.density;
+
+import com.test.app.widget.service.Widget;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Counters of widgets by tiles of several levels: tiles of level 0 have base size, and every next level
+ * has tiles twice bigger. Widget is counted by tile containing its center at every level, and its area is spread
+ * over tiles it overlaps. Widget overlapping more than max spread tiles of level covers only its center tile there,
+ * so widget is added or removed in O(levels * max spread tiles) counter changes under write lock,
+ * e.g. up to 12 * 64 for default config, and tiles are read without visiting widgets.
+ * Overlapping widgets and big widgets put on center tile can sum to more than tile area, so coverage is clamped to 1.
+ * Only tiles with widgets are kept.
+ * <p>
+ * Pyramid is guarded by read/write lock: reads are running in parallel, modifications are exclusive
+ */
+class TilePyramid {
+    private final int baseTileSize;
+    private final int maxSpreadTiles;
+    /**
+     * Counters by levels, tile key is column and row of tile packed into long
+     */
+    private final List<Map<Long, Counter>> levels;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    TilePyramid(final int baseTileSize, final int levelsCount, final int maxSpreadTiles) {
+        if (baseTileSize < 1 || levelsCount < 1 || levelsCount > 31 ||
+            ((long) baseTileSize << (levelsCount - 1)) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Error: %s levels of tiles from size %s can't be counted",
+                    levelsCount,
+                    baseTileSize
+            ));
+        }
+        this.baseTileSize = baseTileSize;
+        this.maxSpreadTiles = maxSpreadTiles;
+        this.levels = new ArrayList<>(levelsCount);
+        for (int level = 0; level < levelsCount; level++) {
+            levels.add(new HashMap<>());
+        }
+    }
+
+    void add(final Widget widget) {
+        change(widget, 1);
+    }
+
+    void remove(final Widget widget) {
+        change(widget, -1);
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            levels.forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the smallest size of tiles not smaller than requested one, or the biggest size of tiles
+     */
+    int chooseTileSize(final int requestedTileSize) {
+        int tileSize = baseTileSize;
+        for (int level = 1; level < levels.size() && tileSize < requestedTileSize; level++) {
+            tileSize <<= 1;
+        }
+        return tileSize;
+    }
+
+    /**
+     * Tiles with widgets intersecting selected area ordered by rows
+     *
+     * @param tileSize size of counted tiles, it's chosen by {@link #chooseTileSize}
+     * @param maxTiles max count of tiles covering area, including empty ones
+     */
+    List<WidgetTile> loadTiles(
+            final int tileSize,
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final int maxTiles
+    ) {
+        final long firstColumn = Math.floorDiv(leftX, tileSize);
+        final long lastColumn = Math.floorDiv(rightX, tileSize);
+        final long firstRow = Math.floorDiv(leftY, tileSize);
+        final long lastRow = Math.floorDiv(rightY, tileSize);
+        final long tilesCount = (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+        if (tilesCount > maxTiles) {
+            throw new IllegalArgumentException(String.format(
+                    "Error: can't load more then %s tiles, tile size must be bigger",
+                    maxTiles
+            ));
+        }
+        final double tileArea = (double) tileSize * tileSize;
+        final List<WidgetTile> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            final Map<Long, Counter> tiles = levels.get(Integer.numberOfTrailingZeros(tileSize / baseTileSize));
+            if (tilesCount <= tiles.size()) {
+                // Area is smaller than count of tiles with widgets, so its tiles are looked up one by one
+                for (long row = firstRow; row <= lastRow; row++) {
+                    for (long column = firstColumn; column <= lastColumn; column++) {
+                        final Counter counter = tiles.get(toKey((int) column, (int) row));
+                        if (counter != null) {
+                            result.add(toTile((int) column, (int) row, tileSize, tileArea, counter));
+                        }
+                    }
+                }
+                return result;
+            }
+            tiles.forEach((key, counter) -> {
+                final int column = (int) (key >> 32);
+                final int row = (int) (long) key;
+                if (column >= firstColumn && column <= lastColumn && row >= firstRow && row <= lastRow) {
+                    result.add(toTile(column, row, tileSize, tileArea, counter));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingInt(WidgetTile::getLeftY).thenComparingInt(WidgetTile::getLeftX));
+        return result;
+    }
+
+    private void change(final Widget widget, final int increment) {
+        // Bounds are doubled, so halves of odd sides are integer and areas are counted exactly in quarters
+        final long minX = 2L * widget.getCoordinateX() - widget.getWidth();
+        final long maxX = 2L * widget.getCoordinateX() + widget.getWidth();
+        final long minY = 2L * widget.getCoordinateY() - widget.getHeight();
+        final long maxY = 2L * widget.getCoordinateY() + widget.getHeight();
+        lock.writeLock().lock();
+        try {
+            int tileSize = baseTileSize;
+            for (final Map<Long, Counter> tiles : levels) {
+                final long centerKey = toKey(
+                        Math.floorDiv(widget.getCoordinateX(), tileSize),
+                        Math.floorDiv(widget.getCoordinateY(), tileSize)
+                );
+                change(tiles, centerKey, increment, 0);
+                if (minX < maxX && minY < maxY) {
+                    cover(tiles, centerKey, minX, minY, maxX, maxY, 2L * tileSize, increment);
+                }
+                tileSize <<= 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Spread area of doubled bounds over overlapped tiles of doubled side, or put it on center tile
+     * if there are too many overlapped tiles
+     */
+    private void cover(
+            final Map<Long, Counter> tiles,
+            final long centerKey,
+            final long minX,
+            final long minY,
+            final long maxX,
+            final long maxY,
+            final long side,
+            final int increment
+    ) {
+        final long firstColumn = Math.floorDiv(minX, side);
+        final long firstRow = Math.floorDiv(minY, side);
+        final long columns = Math.floorDiv(maxX - 1, side) - firstColumn + 1;
+        final long rows = Math.floorDiv(maxY - 1, side) - firstRow + 1;
+        if (columns > maxSpreadTiles || rows > maxSpreadTiles || columns * rows > maxSpreadTiles) {
+            change(tiles, centerKey, 0, increment * (maxX - minX) * (maxY - minY));
+            return;
+        }
+        for (long row = firstRow; row < firstRow + rows; row++) {
+            final long height = Math.min(maxY, (row + 1) * side) - Math.max(minY, row * side);
+            for (long column = firstColumn; column < firstColumn + columns; column++) {
+                final long width = Math.min(maxX, (column + 1) * side) - Math.max(minX, column * side);
+                change(tiles, toKey((int) column, (int) row), 0, increment * width * height);
+            }
+        }
+    }
+
+    private static void change(final Map<Long, Counter> tiles, final long key, final int count, final long area) {
+        final Counter counter = tiles.computeIfAbsent(key, tileKey -> new Counter());
+        counter.count += count;
+        counter.area += area;
+        if (counter.count <= 0 && counter.area <= 0) {
+            tiles.remove(key);
+        }
+    }
+
+    private static WidgetTile toTile(
+            final int column,
+            final int row,
+            final int tileSize,
+            final double tileArea,
+            final Counter counter
+    ) {
+        return new WidgetTile(
+                column * tileSize,
+                row * tileSize,
+                counter.count,
+                Math.min(1, counter.area / (4 * tileArea))
+        );
+    }
+
+    private static long toKey(final int column, final int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static class Counter {
+        /**
+         * Count of widgets with center inside tile
+         */
+        private int count;
+        /**
+         * Area of widgets inside tile counted in quarters
+         */
+        private long area;
+    }
+}
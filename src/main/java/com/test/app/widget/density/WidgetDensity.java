@@ -0,0 +1,94 @@
+package com.test.app.widget.density;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetEvent;
+import com.test.app.widget.service.WidgetEventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Density of widgets for zoomed-out views, counters of {@link TilePyramid} are changed by committed widget events.
+ * Updating of counters is cheap, so it's made at once by publisher of events, in version order.
+ * Previous widgets are loaded by storages while density is enabled, so updated widget is moved from its previous tile.
+ * It costs a read on every write, so density is opt-in
+ */
+@Component
+public class WidgetDensity implements WidgetEventListener {
+    private final ConfigProperties.Density config;
+    private final TilePyramid pyramid;
+
+    public WidgetDensity(final ConfigProperties configProperties) {
+        this.config = configProperties.getDensity();
+        this.pyramid = new TilePyramid(config.getTileSize(), config.getLevels(), config.getMaxSpreadTiles());
+    }
+
+    /**
+     * Count all widgets again, storage mustn't be modified meanwhile
+     *
+     * @param widgets visitor of all stored widgets
+     */
+    public void load(final Consumer<Consumer<Widget>> widgets) {
+        pyramid.clear();
+        widgets.accept(pyramid::add);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public WidgetHeatmap loadHeatmap(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final int tileSize
+    ) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Error: density of widgets is disabled");
+        }
+        if (leftX > rightX || leftY > rightY) {
+            throw new IllegalArgumentException("Error: left corner of area must be lower than right one");
+        }
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Error: size of tiles must be positive");
+        }
+        final int countedTileSize = pyramid.chooseTileSize(tileSize);
+        return new WidgetHeatmap(
+                countedTileSize,
+                pyramid.loadTiles(countedTileSize, leftX, leftY, rightX, rightY, config.getMaxTiles())
+        );
+    }
+
+    @Override
+    public boolean isListening() {
+        return isEnabled();
+    }
+
+    @Override
+    public void modified(final List<WidgetEvent> events) {
+        for (final WidgetEvent event : events) {
+            switch (event.getType()) {
+                case CREATED:
+                    pyramid.add(event.getWidget());
+                    break;
+                case UPDATED:
+                    if (event.getPrevious() != null) {
+                        pyramid.remove(event.getPrevious());
+                    }
+                    pyramid.add(event.getWidget());
+                    break;
+                case DELETED:
+                    if (event.getPrevious() != null) {
+                        pyramid.remove(event.getPrevious());
+                    }
+                    break;
+                default:
+                    // Z-index shifts don't move widgets
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.test.app.widget.density;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@ApiModel("Density of widgets by tiles of area")
+@Getter
+@AllArgsConstructor
+public class WidgetHeatmap {
+    @ApiModelProperty("Side of tiles: the smallest counted size not smaller than requested one, or the biggest counted size")
+    private final int tileSize;
+    @ApiModelProperty("Tiles with widgets ordered by rows, empty tiles are skipped")
+    private final List<WidgetTile> tiles;
+}
@@ -0,0 +1,21 @@
+package com.test.app.widget.density;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@ApiModel("Widgets aggregated by tile, widget is counted by tile containing its center and covers tiles it overlaps")
+@Getter
+@AllArgsConstructor
+public class WidgetTile {
+    @ApiModelProperty("Left bottom corner of tile")
+    private final int leftX;
+    @ApiModelProperty("Left bottom corner of tile")
+    private final int leftY;
+    @ApiModelProperty("Count of widgets with center inside tile, it's zero for tiles only overlapped by widgets")
+    private final int count;
+    @ApiModelProperty("Area of widgets inside tile divided by area of tile, at most 1 for overlapped widgets. " +
+                      "Widgets overlapping too many tiles of this size cover only their center tile")
+    private final double coverage;
+}
@@ -0,0 +1,183 @@
+package com.test.app.widget.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Widget service instrumentation, exposed by Actuator metrics and Prometheus endpoints
+ */
+@Component
+public class WidgetMetrics {
+    public static final String BACKEND_MEM = "mem";
+    public static final String BACKEND_H2 = "h2";
+    public static final String BACKEND_COLUMNAR = "columnar";
+    public static final String BACKEND_TIERED = "tiered";
+
+    private static final String OPERATION_TIMER = "widget.service.operation";
+    private static final String SHIFTED_WIDGETS = "widget.indexz.shifted";
+    private static final String RESULT_SIZE = "widget.query.result.size";
+    private static final String RATE_LIMIT_REJECTIONS = "widget.rate.limit.rejections";
+    private static final String WIDGET_COUNT = "widget.count";
+    private static final String INDEX_Z_SPAN = "widget.indexz.span";
+    private static final String BULKHEAD_REJECTIONS = "widget.bulkhead.rejections";
+    private static final String WRITE_BEHIND_PENDING = "widget.tiered.pending";
+    private static final String SUBSCRIPTIONS = "widget.subscriptions";
+    private static final String SUBSCRIPTION_OVERFLOWS = "widget.subscription.overflows";
+    private static final String BOARD_CACHE_REQUESTS = "widget.board.cache.requests";
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rateLimitRejections;
+    private final Counter subscriptionOverflows;
+    /**
+     * Meters by tags, for avoiding registry lookup on every call
+     */
+    private final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> shiftedWidgets = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> resultSizes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> bulkheadRejections = new ConcurrentHashMap<>();
+    private final Map<String, Counter> boardCacheRequests = new ConcurrentHashMap<>();
+
+    public WidgetMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.rateLimitRejections = Counter.builder(RATE_LIMIT_REJECTIONS)
+                                          .description("Requests rejected by rate limiting")
+                                          .register(meterRegistry);
+        this.subscriptionOverflows = Counter.builder(SUBSCRIPTION_OVERFLOWS)
+                                            .description("Buffers of slow subscribers dropped by overflow")
+                                            .register(meterRegistry);
+    }
+
+    /**
+     * Measure latency of service operation, histogram buckets are published for percentiles calculation
+     */
+    public <T> T recordOperation(final String operation, final String backend, final Supplier<T> call) {
+        return operationTimers.computeIfAbsent(
+                operation + '/' + backend,
+                key -> Timer.builder(OPERATION_TIMER)
+                            .description("Latency of widget service operations")
+                            .tag("operation", operation)
+                            .tag("backend", backend)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry)
+        ).record(call);
+    }
+
+    /**
+     * Count of widgets whose Z-index was shifted by one write.
+     * Single writes of H2 storage shift Z-indexes by one pending shift, shifted widgets are counted without rewriting
+     */
+    public void recordShiftedWidgets(final String backend, final int shifted) {
+        shiftedWidgets.computeIfAbsent(
+                backend,
+                key -> DistributionSummary.builder(SHIFTED_WIDGETS)
+                                          .description("Widgets shifted by Z-index recount of one write")
+                                          .tag("backend", backend)
+                                          .register(meterRegistry)
+        ).record(shifted);
+    }
+
+    public void recordResultSize(final String query, final String backend, final int size) {
+        resultSizes.computeIfAbsent(
+                query + '/' + backend,
+                key -> DistributionSummary.builder(RESULT_SIZE)
+                                          .description("Count of widgets returned by query")
+                                          .tag("query", query)
+                                          .tag("backend", backend)
+                                          .register(meterRegistry)
+        ).record(size);
+    }
+
+    /**
+     * Hits, misses, evictions and size of cache, cache must record statistics
+     */
+    public void registerCache(final String name, final Cache<?, ?> cache) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    public void recordRateLimitRejection() {
+        rateLimitRejections.increment();
+    }
+
+    /**
+     * Request rejected by bulkhead of storage executor
+     *
+     * @param reason "full" if queue was full, "timeout" if operation wasn't done in time
+     */
+    public void recordBulkheadRejection(final String bulkhead, final String reason) {
+        bulkheadRejections.computeIfAbsent(
+                bulkhead + '/' + reason,
+                key -> Counter.builder(BULKHEAD_REJECTIONS)
+                              .description("Requests rejected by bulkheads of storage executors")
+                              .tag("bulkhead", bulkhead)
+                              .tag("reason", reason)
+                              .register(meterRegistry)
+        ).increment();
+    }
+
+    /**
+     * Register gauges of storage state, they are calculated on every metrics reading
+     */
+    public <T> void registerStorageGauges(
+            final String backend,
+            final T storage,
+            final ToDoubleFunction<T> widgetCount,
+            final ToDoubleFunction<T> indexZSpan
+    ) {
+        Gauge.builder(WIDGET_COUNT, storage, widgetCount)
+             .description("Count of widgets into storage")
+             .tag("backend", backend)
+             .register(meterRegistry);
+        Gauge.builder(INDEX_Z_SPAN, storage, indexZSpan)
+             .description("Difference between max and min Z-index")
+             .tag("backend", backend)
+             .register(meterRegistry);
+    }
+
+    /**
+     * Count of modified widgets waiting for write-behind into H2
+     */
+    public <T> void registerWriteBehindGauge(final T writeBehind, final ToDoubleFunction<T> pendingWidgets) {
+        Gauge.builder(WRITE_BEHIND_PENDING, writeBehind, pendingWidgets)
+             .description("Modified widgets waiting for writing into H2 by tiered storage")
+             .register(meterRegistry);
+    }
+
+    /**
+     * Count of open viewport subscriptions
+     */
+    public <T> void registerSubscriptionsGauge(final T subscriptions, final ToDoubleFunction<T> count) {
+        Gauge.builder(SUBSCRIPTIONS, subscriptions, count)
+             .description("Open viewport subscriptions to widget events")
+             .register(meterRegistry);
+    }
+
+    public void recordSubscriptionOverflow() {
+        subscriptionOverflows.increment();
+    }
+
+    /**
+     * Reading of all widgets served by board cache
+     *
+     * @param result "hit" if widgets of current version were cached, "miss" if they were loaded
+     */
+    public void recordBoardCacheRequest(final String result) {
+        boardCacheRequests.computeIfAbsent(
+                result,
+                key -> Counter.builder(BOARD_CACHE_REQUESTS)
+                              .description("Readings of all widgets served by board cache")
+                              .tag("result", result)
+                              .register(meterRegistry)
+        ).increment();
+    }
+}
@@ -0,0 +1,112 @@
+package com.test.app.widget.rate_limiting;
+
+import com.test.app.widget.configs.ConfigProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limiter with token bucket per client.
+ * <p>
+ * Buckets table is bounded: it's split into stripes, each stripe is LRU map with own lock,
+ * so requests of different clients don't contend on one lock, and least recently used buckets are evicted.
+ * Lock is held only for bucket lookup, tokens are taken from bucket without locking.
+ * Global limit has the only bucket, it's kept out of the table
+ */
+@Component
+public class RateLimiter {
+    private static final int STRIPES_COUNT = 16;
+
+    private final ConfigProperties.RateLimiting config;
+    private final LongSupplier nanoClock;
+    private final long periodNanos;
+    /**
+     * Weights of endpoints capped by limit, heavier request could never pass, but would get finite Retry-After
+     */
+    private final Map<String, Integer> endpointWeights;
+    private final BucketsStripe[] stripes;
+    /**
+     * The only bucket of global limit, Null when buckets are per client
+     */
+    private final TokenBucket globalBucket;
+
+    @Autowired
+    public RateLimiter(final ConfigProperties configProperties) {
+        this(configProperties.getRateLimiting(), System::nanoTime);
+    }
+
+    RateLimiter(final ConfigProperties.RateLimiting config, final LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.periodNanos = config.getPeriod().toNanos();
+        this.endpointWeights = new HashMap<>();
+        config.getEndpointWeights().forEach((endpoint, weight) -> endpointWeights.put(
+                endpoint,
+                Math.min(weight, config.getLimit())
+        ));
+        this.stripes = new BucketsStripe[STRIPES_COUNT];
+        final int stripeCapacity = Math.max(config.getMaxClients() / STRIPES_COUNT, 1);
+        for (int i = 0; i < STRIPES_COUNT; i++) {
+            stripes[i] = new BucketsStripe(stripeCapacity);
+        }
+        this.globalBucket = config.getClientKey() == ConfigProperties.RateLimiting.ClientKey.GLOBAL
+                            ? new TokenBucket(config.getLimit(), periodNanos, nanoClock.getAsLong())
+                            : null;
+    }
+
+    /**
+     * Try to take tokens of request from client bucket
+     *
+     * @param clientKey client identifier, ignored for global bucket
+     * @param endpoint  path of requested endpoint, for request weight
+     * @return 0 if request is allowed, otherwise nanoseconds to wait before retry
+     */
+    public long tryAcquire(final String clientKey, final String endpoint) {
+        if (!config.isEnabled()) {
+            return 0;
+        }
+        final long now = nanoClock.getAsLong();
+        final int weight = endpointWeights.getOrDefault(endpoint, 1);
+        final TokenBucket bucket = globalBucket != null ? globalBucket : getBucket(clientKey, now);
+        return bucket.tryAcquire(weight, now);
+    }
+
+    /**
+     * @return seconds for Retry-After header, at least 1
+     */
+    public static long toRetryAfterSeconds(final long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private TokenBucket getBucket(final String bucketKey, final long now) {
+        final int hash = bucketKey.hashCode();
+        final BucketsStripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES_COUNT - 1)];
+        synchronized (stripe) {
+            TokenBucket bucket = stripe.get(bucketKey);
+            if (bucket == null) {
+                bucket = new TokenBucket(config.getLimit(), periodNanos, now);
+                stripe.put(bucketKey, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    private static class BucketsStripe extends LinkedHashMap<String, TokenBucket> {
+        private final int capacity;
+
+        BucketsStripe(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, TokenBucket> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.test.app.widget.rate_limiting;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Check rate limit for widget API requests.
+ * Rejected request gets HTTP 429 with Retry-After header
+ */
+@AllArgsConstructor
+@Component
+public class RateLimitingFilter extends OncePerRequestFilter {
+    private static final String WIDGET_API_PATH = "/widget";
+
+    private final RateLimiter rateLimiter;
+    private final ConfigProperties configProperties;
+    private final WidgetMetrics widgetMetrics;
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        final String endpoint = getEndpoint(request);
+        return !endpoint.equals(WIDGET_API_PATH) && !endpoint.startsWith(WIDGET_API_PATH + "/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final FilterChain filterChain
+    ) throws ServletException, IOException {
+        final long waitNanos = rateLimiter.tryAcquire(getClientKey(request), getEndpoint(request));
+        if (waitNanos > 0) {
+            widgetMetrics.recordRateLimitRejection();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.toRetryAfterSeconds(waitNanos)));
+            response.getWriter().write("Error: Rate limit is reached");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private String getClientKey(final HttpServletRequest request) {
+        final ConfigProperties.RateLimiting rateLimiting = configProperties.getRateLimiting();
+        if (rateLimiting.getClientKey() == ConfigProperties.RateLimiting.ClientKey.HEADER) {
+            final String headerValue = request.getHeader(rateLimiting.getClientKeyHeader());
+            if (headerValue != null && !headerValue.isEmpty()) {
+                return headerValue;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private String getEndpoint(final HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,50 @@
+package com.test.app.widget.rate_limiting;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket in GCRA form (generic cell rate algorithm).
+ * <p>
+ * Instead of tokens count and last refill time, bucket keeps only "theoretical arrival time":
+ * the moment when bucket will be full again. Request with weight w moves it forward for w emission intervals,
+ * and it's rejected if this moment goes further than one period from now.
+ * So state is a single long, updated by CAS, and time is taken from monotonic clock (nanoseconds)
+ */
+class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrivalTimeNanos;
+
+    /**
+     * @param limit        tokens count available per period, it's also the bucket capacity
+     * @param periodNanos  period of full bucket refilling
+     * @param nowNanos     current time of monotonic clock
+     */
+    TokenBucket(final int limit, final long periodNanos, final long nowNanos) {
+        this.emissionIntervalNanos = Math.max(periodNanos / Math.max(limit, 1), 1);
+        this.burstToleranceNanos = emissionIntervalNanos * limit;
+        this.theoreticalArrivalTimeNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Try to take tokens from bucket
+     *
+     * @param weight   tokens count for taking
+     * @param nowNanos current time of monotonic clock
+     * @return 0 if tokens are taken, otherwise nanoseconds to wait before retry
+     */
+    long tryAcquire(final int weight, final long nowNanos) {
+        final long increment = emissionIntervalNanos * weight;
+        while (true) {
+            final long current = theoreticalArrivalTimeNanos.get();
+            final long next = Math.max(current, nowNanos) + increment;
+            final long waitNanos = next - nowNanos - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrivalTimeNanos.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
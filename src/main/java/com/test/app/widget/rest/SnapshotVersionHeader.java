@@ -0,0 +1,76 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.service.SnapshotReadVersion;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Response header with version of storage snapshot which was used for reading.
+ * Version is taken before body is written by the thread which has read it, or from request attribute
+ * if result of asynchronous request is dispatched into another thread.
+ * Responses which are written without body advice don't get the header, version is forgotten after them
+ */
+@ControllerAdvice
+public class SnapshotVersionHeader implements ResponseBodyAdvice<Object>, HandlerInterceptor {
+    public static final String NAME = "X-Widget-Snapshot-Version";
+    private static final String VERSION_ATTRIBUTE = SnapshotVersionHeader.class.getName() + ".version";
+
+    /**
+     * Keep version read by current thread into request, for writing of body by another thread
+     */
+    public static void keepForDispatch(@Nullable final RequestAttributes requestAttributes) {
+        final Long version = SnapshotReadVersion.take();
+        if (version != null && requestAttributes != null) {
+            requestAttributes.setAttribute(VERSION_ATTRIBUTE, version, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    @Override
+    public boolean supports(
+            final MethodParameter returnType,
+            final Class<? extends HttpMessageConverter<?>> converterType
+    ) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(
+            final Object body,
+            final MethodParameter returnType,
+            final MediaType selectedContentType,
+            final Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            final ServerHttpRequest request,
+            final ServerHttpResponse response
+    ) {
+        Long version = SnapshotReadVersion.take();
+        if (version == null && request instanceof ServletServerHttpRequest) {
+            version = (Long) ((ServletServerHttpRequest) request).getServletRequest().getAttribute(VERSION_ATTRIBUTE);
+        }
+        if (version != null) {
+            response.getHeaders().set(NAME, String.valueOf(version));
+        }
+        return body;
+    }
+
+    @Override
+    public void afterCompletion(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final Object handler,
+            final Exception ex
+    ) {
+        SnapshotReadVersion.take();
+    }
+}
@@ -0,0 +1,41 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.service.WidgetEvent;
+import com.test.app.widget.subscriptions.ViewportSubscription;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Events of viewport subscription by Server-Sent Events: name is event type and id is version of storage,
+ * so client which lost connection can continue by change feed from the last id
+ */
+@AllArgsConstructor
+public class SseViewportSink implements ViewportSubscription.Sink {
+    public static final String RESYNC_EVENT = "RESYNC";
+
+    private final SseEmitter emitter;
+
+    @Override
+    public void send(final WidgetEvent event) throws IOException {
+        emitter.send(SseEmitter.event()
+                               .id(Long.toString(event.getVersion()))
+                               .name(event.getType().name())
+                               .data(event, MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void resync(final long version) throws IOException {
+        emitter.send(SseEmitter.event()
+                               .id(Long.toString(version))
+                               .name(RESYNC_EVENT)
+                               .data(version));
+    }
+
+    @Override
+    public void close() {
+        emitter.complete();
+    }
+}
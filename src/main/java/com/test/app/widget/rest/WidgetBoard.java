@@ -0,0 +1,14 @@
+package com.test.app.widget.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Endpoint returns all widgets ordered by Z-index, its response is served by {@link WidgetBoardInterceptor}
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WidgetBoard {
+}
@@ -0,0 +1,161 @@
+package com.test.app.widget.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetService;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * All widgets ordered by Z-index with their serialized responses, they are kept for the last storage version.
+ * Widgets are loaded by the first reading after modification, every format is serialized by the first reading of it,
+ * the next readings only copy bytes. Version is taken before widgets are loaded, so board is never older than its version
+ */
+@Component
+public class WidgetBoardCache {
+    private final ConfigProperties configProperties;
+    private final WidgetService widgetService;
+    private final WidgetColumnsHttpMessageConverter widgetColumnsHttpMessageConverter;
+    private final WidgetMetrics widgetMetrics;
+    /**
+     * Mapper is built like mapper of default MVC message converter, so cached response looks like usual one
+     */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private volatile Board board;
+
+    public WidgetBoardCache(
+            final ConfigProperties configProperties,
+            final WidgetService widgetService,
+            final WidgetColumnsHttpMessageConverter widgetColumnsHttpMessageConverter,
+            final WidgetMetrics widgetMetrics
+    ) {
+        this.configProperties = configProperties;
+        this.widgetService = widgetService;
+        this.widgetColumnsHttpMessageConverter = widgetColumnsHttpMessageConverter;
+        this.widgetMetrics = widgetMetrics;
+    }
+
+    /**
+     * Board of current storage version, widgets are loaded if storage was modified after the last loading
+     */
+    public Board load() {
+        final long version = widgetService.getVersions().getVersion();
+        final Board current = getCurrent(version);
+        if (current != null) {
+            return current;
+        }
+        // Concurrent readers of the same modification wait for one loading instead of loading it again
+        synchronized (this) {
+            final Board loaded = getCurrent(version);
+            if (loaded != null) {
+                return loaded;
+            }
+            final Board result = new Board(version, widgetService.loadAllOrderedByIndexZ());
+            board = result;
+            widgetMetrics.recordBoardCacheRequest("miss");
+            return result;
+        }
+    }
+
+    /**
+     * @return Null if storage was modified after the last loading
+     */
+    @Nullable
+    public Board peek() {
+        return getCurrent(widgetService.getVersions().getVersion());
+    }
+
+    /**
+     * Widgets of current storage version, they are loaded directly if cache is disabled
+     */
+    public List<Widget> loadWidgets() {
+        if (!configProperties.getBoardCache().isEnabled()) {
+            return widgetService.loadAllOrderedByIndexZ();
+        }
+        return load().getWidgets();
+    }
+
+    @Nullable
+    private Board getCurrent(final long version) {
+        final Board current = board;
+        if (current == null || current.version < version) {
+            return null;
+        }
+        widgetMetrics.recordBoardCacheRequest("hit");
+        return current;
+    }
+
+    @Getter
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON),
+        COLUMNS(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS);
+
+        private final MediaType mediaType;
+
+        Format(final MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+    }
+
+    /**
+     * Widgets of storage version, responses are serialized and compressed by the first client requesting them
+     */
+    public class Board {
+        @Getter
+        private final long version;
+        @Getter
+        private final List<Widget> widgets;
+        private final Map<Format, byte[]> responses = new EnumMap<>(Format.class);
+        private final Map<Format, byte[]> gzippedResponses = new EnumMap<>(Format.class);
+
+        private Board(final long version, final List<Widget> widgets) {
+            this.version = version;
+            this.widgets = Collections.unmodifiableList(widgets);
+        }
+
+        public synchronized byte[] getBytes(final Format format) throws IOException {
+            byte[] result = responses.get(format);
+            if (result == null) {
+                result = serialize(format);
+                responses.put(format, result);
+            }
+            return result;
+        }
+
+        public synchronized byte[] getGzipped(final Format format) throws IOException {
+            byte[] result = gzippedResponses.get(format);
+            if (result == null) {
+                final byte[] bytes = getBytes(format);
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 64);
+                try (final GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                    gzip.write(bytes);
+                }
+                result = output.toByteArray();
+                gzippedResponses.put(format, result);
+            }
+            return result;
+        }
+
+        private byte[] serialize(final Format format) throws IOException {
+            if (format == Format.JSON) {
+                return objectMapper.writeValueAsBytes(widgets);
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            widgetColumnsHttpMessageConverter.write(widgets, output);
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.configs.ConfigProperties;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Endpoints marked by {@link WidgetBoard} are answered by cached response from {@link WidgetBoardCache},
+ * handler isn't called. It's registered after {@link WidgetETagInterceptor}, so not modified response is sent before.
+ * Asynchronous API is answered here only if board of current version is already loaded, otherwise handler loads it.
+ * Requests accepting neither JSON nor binary columns are left to handler, it rejects them as usual
+ */
+@AllArgsConstructor
+@Component
+public class WidgetBoardInterceptor implements HandlerInterceptor {
+    private static final String GZIP = "gzip";
+
+    private final ConfigProperties configProperties;
+    private final WidgetBoardCache widgetBoardCache;
+
+    @Override
+    public boolean preHandle(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final Object handler
+    ) throws IOException {
+        final ConfigProperties.BoardCache config = configProperties.getBoardCache();
+        if (!config.isEnabled() ||
+            !(handler instanceof HandlerMethod) ||
+            request.getDispatcherType() == DispatcherType.ASYNC ||
+            !((HandlerMethod) handler).hasMethodAnnotation(WidgetBoard.class)) {
+            return true;
+        }
+        final WidgetBoardCache.Format format = negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        if (format == null) {
+            return true;
+        }
+        // Asynchronous handler loads widgets by storage executor, so only already loaded board is served here
+        final WidgetBoardCache.Board board = configProperties.getAsync().isEnabled() ?
+                                             widgetBoardCache.peek() :
+                                             widgetBoardCache.load();
+        if (board == null) {
+            return true;
+        }
+        final byte[] body;
+        if (config.isGzip()) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (config.isGzip() && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            body = board.getGzipped(format);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        } else {
+            body = board.getBytes(format);
+        }
+        response.setContentType(format.getMediaType().toString());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        return false;
+    }
+
+    /**
+     * The most preferred format by Accept header, JSON is default
+     *
+     * @return Null if neither format is acceptable or header is wrong
+     */
+    @Nullable
+    private static WidgetBoardCache.Format negotiate(@Nullable final String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return WidgetBoardCache.Format.JSON;
+        }
+        final List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (final MediaType mediaType : mediaTypes) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (final WidgetBoardCache.Format format : WidgetBoardCache.Format.values()) {
+                if (mediaType.isCompatibleWith(format.getMediaType())) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean acceptsGzip(@Nullable final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String coding : StringUtils.commaDelimitedListToStringArray(acceptEncoding)) {
+            final String[] parts = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,193 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.service.Widget;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lists of widgets as fixed-width binary columns, they are chosen by Accept header, JSON stays default representation.
+ * <p>
+ * Layout is big-endian: int count of widgets, then column by column with count values into each one:
+ * id as two longs (most and least significant bits), coordinateX, coordinateY, indexZ, width, height as ints,
+ * and last modification time as long of epoch millis. Absent Z-index is Integer.MIN_VALUE,
+ * absent time is Long.MIN_VALUE
+ * <p>
+ * No endpoint takes widget lists in request body, so HTTP reading isn't supported,
+ * {@link #read(Type, Class, HttpInputMessage)} is left for clients and tests of the format
+ */
+@Component
+public class WidgetColumnsHttpMessageConverter extends AbstractGenericHttpMessageConverter<List<Widget>> {
+    public static final String APPLICATION_WIDGET_COLUMNS_VALUE = "application/x-widget-columns";
+    public static final MediaType APPLICATION_WIDGET_COLUMNS = MediaType.valueOf(APPLICATION_WIDGET_COLUMNS_VALUE);
+
+    private static final int HEADER_BYTES = Integer.BYTES;
+    private static final int WIDGET_BYTES = 2 * Long.BYTES + 5 * Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int ABSENT_INDEX_Z = Integer.MIN_VALUE;
+    private static final long ABSENT_TIME = Long.MIN_VALUE;
+
+    public WidgetColumnsHttpMessageConverter() {
+        super(APPLICATION_WIDGET_COLUMNS);
+    }
+
+    @Override
+    protected boolean supports(final Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(final Class<?> clazz, @Nullable final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(final Type type, @Nullable final Class<?> contextClass, @Nullable final MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(@Nullable final Type type, final Class<?> clazz, @Nullable final MediaType mediaType) {
+        return (type == null ? supports(clazz) : isWidgetList(type)) && canWrite(mediaType);
+    }
+
+    /**
+     * Size is known before writing, so response isn't chunked
+     */
+    @Override
+    protected Long getContentLength(final List<Widget> widgets, @Nullable final MediaType contentType) {
+        return HEADER_BYTES + (long) WIDGET_BYTES * widgets.size();
+    }
+
+    @Override
+    protected void writeInternal(
+            final List<Widget> widgets,
+            @Nullable final Type type,
+            final HttpOutputMessage outputMessage
+    ) throws IOException {
+        write(widgets, outputMessage.getBody());
+    }
+
+    /**
+     * Write widgets by columns layout into stream, stream isn't closed
+     */
+    public void write(final List<Widget> widgets, final OutputStream stream) throws IOException {
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        output.writeInt(widgets.size());
+        for (final Widget widget : widgets) {
+            output.writeLong(widget.getId().getMostSignificantBits());
+        }
+        for (final Widget widget : widgets) {
+            output.writeLong(widget.getId().getLeastSignificantBits());
+        }
+        for (final Widget widget : widgets) {
+            output.writeInt(widget.getCoordinateX());
+        }
+        for (final Widget widget : widgets) {
+            output.writeInt(widget.getCoordinateY());
+        }
+        for (final Widget widget : widgets) {
+            output.writeInt(widget.getIndexZ() == null ? ABSENT_INDEX_Z : widget.getIndexZ());
+        }
+        for (final Widget widget : widgets) {
+            output.writeInt(widget.getWidth());
+        }
+        for (final Widget widget : widgets) {
+            output.writeInt(widget.getHeight());
+        }
+        for (final Widget widget : widgets) {
+            final LocalDateTime time = widget.getLastModificationDateTime();
+            output.writeLong(time == null ? ABSENT_TIME : time.toInstant(Widget.MODIFICATION_TIME_ZONE).toEpochMilli());
+        }
+        output.flush();
+    }
+
+    @Override
+    public List<Widget> read(
+            final Type type,
+            @Nullable final Class<?> contextClass,
+            final HttpInputMessage inputMessage
+    ) throws IOException {
+        return readInternal(null, inputMessage);
+    }
+
+    /**
+     * Count of widgets is checked against Content-Length, so wrong count can't allocate more than the body holds
+     */
+    @Override
+    protected List<Widget> readInternal(
+            @Nullable final Class<? extends List<Widget>> clazz,
+            final HttpInputMessage inputMessage
+    ) throws IOException {
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(inputMessage.getBody(), BUFFER_SIZE));
+        final int count = input.readInt();
+        final long contentLength = inputMessage.getHeaders().getContentLength();
+        if (count < 0 || HEADER_BYTES + (long) WIDGET_BYTES * count != contentLength) {
+            throw new HttpMessageNotReadableException(
+                    String.format("Error: wrong count of widgets %s for content length %s", count, contentLength),
+                    inputMessage
+            );
+        }
+        final long[] mostBits = readLongs(input, count);
+        final long[] leastBits = readLongs(input, count);
+        final int[] coordinateX = readInts(input, count);
+        final int[] coordinateY = readInts(input, count);
+        final int[] indexZ = readInts(input, count);
+        final int[] width = readInts(input, count);
+        final int[] height = readInts(input, count);
+        final long[] time = readLongs(input, count);
+        final List<Widget> widgets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            widgets.add(new Widget(
+                    new UUID(mostBits[i], leastBits[i]),
+                    coordinateX[i],
+                    coordinateY[i],
+                    indexZ[i] == ABSENT_INDEX_Z ? null : indexZ[i],
+                    width[i],
+                    height[i],
+                    time[i] == ABSENT_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(time[i]), Widget.MODIFICATION_TIME_ZONE)
+            ));
+        }
+        return widgets;
+    }
+
+    private static boolean isWidgetList(final Type type) {
+        final ResolvableType resolvableType = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolvableType.toClass()) &&
+               resolvableType.getGeneric(0).toClass() == Widget.class;
+    }
+
+    private static long[] readLongs(final DataInputStream input, final int count) throws IOException {
+        final long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readLong();
+        }
+        return values;
+    }
+
+    private static int[] readInts(final DataInputStream input, final int count) throws IOException {
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,27 @@
+package com.test.app.widget.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Response of endpoint is validated by ETag of storage version, see {@link WidgetETagInterceptor}
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WidgetETag {
+
+    Scope value();
+
+    enum Scope {
+        /**
+         * Response depends on all widgets, ETag is global version
+         */
+        STORAGE,
+        /**
+         * Response is widget from "id" parameter, ETag is version of this widget
+         */
+        WIDGET
+    }
+}
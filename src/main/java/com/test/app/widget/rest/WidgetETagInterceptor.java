@@ -0,0 +1,72 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.service.WidgetService;
+import com.test.app.widget.service.WidgetVersions;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.UUID;
+
+/**
+ * Conditional GET for endpoints marked by {@link WidgetETag}.
+ * ETag is taken from storage versions before handler loads widgets, so it's never newer than response.
+ * Request with matching If-None-Match gets HTTP 304 at once, handler isn't called and storage isn't touched
+ */
+@AllArgsConstructor
+@Component
+public class WidgetETagInterceptor implements HandlerInterceptor {
+    private static final String WIDGET_ID_PARAMETER = "id";
+
+    private final WidgetService widgetService;
+
+    @Override
+    public boolean preHandle(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final Object handler
+    ) {
+        // Asynchronous result is dispatched again, ETag was already set by the first dispatch
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        final WidgetETag widgetETag = ((HandlerMethod) handler).getMethodAnnotation(WidgetETag.class);
+        if (widgetETag == null) {
+            return true;
+        }
+        // Lists of widgets are represented by JSON or binary columns, they are cached separately
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        final WidgetVersions versions = widgetService.getVersions();
+        final long version;
+        if (widgetETag.value() == WidgetETag.Scope.WIDGET) {
+            final UUID id = parseId(request.getParameter(WIDGET_ID_PARAMETER));
+            if (id == null) {
+                // Handler rejects wrong request
+                return true;
+            }
+            version = versions.getWidgetVersion(id);
+        } else {
+            version = versions.getVersion();
+        }
+        return !new ServletWebRequest(request, response).checkNotModified(
+                String.format("\"%s-%s\"", versions.getEpoch(), version)
+        );
+    }
+
+    private static UUID parseId(final String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
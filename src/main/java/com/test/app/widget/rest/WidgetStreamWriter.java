@@ -0,0 +1,86 @@
+package com.test.app.widget.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.test.app.widget.service.Widget;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Write widgets into response while they are read from storage, without building the whole list.
+ * Response buffer is flushed when it's full, so memory usage doesn't depend on count of widgets
+ */
+@Component
+public class WidgetStreamWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Mapper is built like mapper of default MVC message converter, so streamed widgets look like usual responses.
+     * Flushing after every widget is disabled, response is flushed by full buffer
+     */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                                                                         .featuresToDisable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                                                         .build();
+
+    /**
+     * Write widgets as one JSON array
+     *
+     * @param source visitor of widgets, it gives every widget to consumer
+     */
+    public void writeJsonArray(
+            final HttpServletResponse response,
+            final Consumer<Consumer<Widget>> source
+    ) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (final JsonGenerator generator = createGenerator(response)) {
+            generator.writeStartArray();
+            source.accept(widget -> write(generator, widget));
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Write widgets as newline delimited JSON: one widget per line
+     *
+     * @param source visitor of widgets, it gives every widget to consumer
+     */
+    public void writeNdjson(
+            final HttpServletResponse response,
+            final Consumer<Consumer<Widget>> source
+    ) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (final JsonGenerator generator = createGenerator(response)) {
+            // Widgets are separated by new line only
+            generator.setRootValueSeparator(null);
+            source.accept(widget -> {
+                write(generator, widget);
+                try {
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private JsonGenerator createGenerator(final HttpServletResponse response) throws IOException {
+        return objectMapper.getFactory()
+                           .createGenerator(response.getOutputStream())
+                           .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    }
+
+    private void write(final JsonGenerator generator, final Widget widget) {
+        try {
+            objectMapper.writeValue(generator, widget);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
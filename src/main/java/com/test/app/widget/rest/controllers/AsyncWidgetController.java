@@ -0,0 +1,212 @@
+package com.test.app.widget.rest.controllers;
+
+
+import com.test.app.widget.bulkhead.StorageBulkheads;
+import com.test.app.widget.rest.WidgetBoard;
+import com.test.app.widget.rest.WidgetBoardCache;
+import com.test.app.widget.rest.WidgetETag;
+import com.test.app.widget.rest.WidgetStreamWriter;
+import com.test.app.widget.rest.inputs.InputBatch;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
+import com.test.app.widget.service.WidgetChanges;
+import com.test.app.widget.service.WidgetService;
+import io.swagger.annotations.ApiOperation;
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * The same API as {@link WidgetController}, but storage work is done by bounded executors of bulkheads,
+ * so servlet thread is released while it's in flight
+ */
+@ConditionalOnProperty(prefix = "widget.config.async", name = "enabled", havingValue = "true")
+@RequestMapping("/widget")
+@RestController
+public class AsyncWidgetController {
+
+    private final WidgetService widgetService;
+    private final WidgetStreamWriter widgetStreamWriter;
+    private final StorageBulkheads storageBulkheads;
+    private final TransactionTemplate transactionTemplate;
+    private final WidgetBoardCache widgetBoardCache;
+
+    public AsyncWidgetController(
+            final WidgetService widgetService,
+            final WidgetStreamWriter widgetStreamWriter,
+            final StorageBulkheads storageBulkheads,
+            final PlatformTransactionManager transactionManager,
+            final WidgetBoardCache widgetBoardCache
+    ) {
+        this.widgetService = widgetService;
+        this.widgetStreamWriter = widgetStreamWriter;
+        this.storageBulkheads = storageBulkheads;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.widgetBoardCache = widgetBoardCache;
+    }
+
+
+    @ApiOperation(value = "Create new widget")
+    @PostMapping("/create")
+    public DeferredResult<Widget> create(@RequestBody final InputWidget widgetInput) {
+        return storageBulkheads.getPoints().submit(() -> transactionTemplate.execute(status -> widgetService.create(widgetInput)));
+    }
+
+    @ApiOperation(value = "Updating widget existed into current storage")
+    @PutMapping("/update")
+    public DeferredResult<Widget> update(@RequestBody final Widget widget) {
+        return storageBulkheads.getPoints().submit(() -> transactionTemplate.execute(status -> widgetService.update(widget)));
+    }
+
+    @ApiOperation(value = "Remove widget by id from current storage")
+    @DeleteMapping("/deleteById")
+    public DeferredResult<Void> deleteById(@RequestParam(name = "id") final @NonNull UUID id) {
+        return storageBulkheads.getPoints().submit(() -> transactionTemplate.execute(status -> {
+            widgetService.deleteById(id);
+            return null;
+        }));
+    }
+
+    @ApiOperation(value = "Apply batch of creating, updating and removing atomically, with single Z-index recount")
+    @PostMapping("/batch")
+    public DeferredResult<WidgetBatchResult> batch(@RequestBody final InputBatch inputBatch) {
+        return storageBulkheads.getScans().submit(() -> transactionTemplate.execute(status -> widgetService.applyBatch(inputBatch)));
+    }
+
+    @ApiOperation(value = "Hello page")
+    @GetMapping
+    public String mainPageMapping() {
+        return "Hello i'm working =)";
+    }
+
+    @ApiOperation(value = "Getting widget by id")
+    @WidgetETag(WidgetETag.Scope.WIDGET)
+    @GetMapping("/getById")
+    public DeferredResult<Widget> getById(@RequestParam(name = "id") final @NonNull UUID id) {
+        return storageBulkheads.getPoints().submit(() -> widgetService.loadById(id));
+    }
+
+    @ApiOperation(value = "Getting all widgets into current storage ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @WidgetBoard
+    @GetMapping("/getAll")
+    public DeferredResult<List<Widget>> getAll() {
+        return storageBulkheads.getScans().submit(widgetBoardCache::loadWidgets);
+    }
+
+    @ApiOperation(value = "Streaming all widgets ordered by Z-Index as JSON array, widgets are written while they are read")
+    @GetMapping(value = "/getAll", params = "stream=true")
+    public DeferredResult<Void> getAllStreaming(final HttpServletResponse response) {
+        return storageBulkheads.getScans().submitStreaming(completed -> {
+            try {
+                widgetStreamWriter.writeJsonArray(response, until(completed, widgetService::forEachOrderedByIndexZ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @ApiOperation(value = "Streaming all widgets ordered by Z-Index as newline delimited JSON")
+    @GetMapping(value = "/getAll", produces = WidgetStreamWriter.APPLICATION_NDJSON_VALUE)
+    public DeferredResult<Void> getAllNdjson(final HttpServletResponse response) {
+        return storageBulkheads.getScans().submitStreaming(completed -> {
+            try {
+                widgetStreamWriter.writeNdjson(response, until(completed, widgetService::forEachOrderedByIndexZ));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @ApiOperation(value = "Getting paging widgets into current storage ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @GetMapping("/getPaging")
+    public DeferredResult<List<Widget>> getPaging(
+            @RequestParam("page") @Nullable final Integer page,
+            @RequestParam("size") @Nullable final Integer size
+    ) {
+        return storageBulkheads.getScans().submit(() -> widgetService.loadPaging(page, size));
+    }
+
+    @ApiOperation(value = "Getting next page of widgets after Z-index (cursor) ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @GetMapping(value = "/getPaging", params = "afterIndexZ")
+    public DeferredResult<List<Widget>> getPagingAfterIndexZ(
+            @RequestParam("afterIndexZ") final int afterIndexZ,
+            @RequestParam("size") @Nullable final Integer size
+    ) {
+        return storageBulkheads.getPoints().submit(() -> widgetService.loadPagingAfterIndexZ(afterIndexZ, size));
+    }
+
+    @ApiOperation(value = "Getting widgets modified after version, or resync flag if they aren't kept any more")
+    @GetMapping("/changes")
+    public DeferredResult<WidgetChanges> getChanges(
+            @RequestParam("since") final long since,
+            @RequestParam(value = "epoch", required = false) @Nullable final Long epoch
+    ) {
+        return storageBulkheads.getScans().submit(() -> widgetService.loadChanges(since, epoch));
+    }
+
+    @ApiOperation(value = "Getting widgets filtered by selected area, ordered by Z-Index (z_desc or z_asc) " +
+                          "from cursor if order, cursor or limit is given")
+    @GetMapping("/getBySelectedArea")
+    public DeferredResult<List<Widget>> getBySelectedArea(
+            @RequestParam("leftX") @Nullable final int leftX,
+            @RequestParam("leftY") @Nullable final int leftY,
+            @RequestParam("rightX") @Nullable final int rightX,
+            @RequestParam("rightY") @Nullable final int rightY,
+            @RequestParam(value = "order", required = false) @Nullable final String order,
+            @RequestParam(value = "afterIndexZ", required = false) @Nullable final Integer afterIndexZ,
+            @RequestParam(value = "limit", required = false) @Nullable final Integer limit
+    ) {
+        return storageBulkheads.getScans().submit(() -> widgetService.loadBySelectedArea(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                order,
+                afterIndexZ,
+                limit
+        ));
+    }
+
+    @ApiOperation(value = "Hit test: getting the topmost widgets covering point, the highest Z-Index first")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @GetMapping("/hitTest")
+    public DeferredResult<List<Widget>> hitTest(
+            @RequestParam("x") final int x,
+            @RequestParam("y") final int y,
+            @RequestParam(value = "limit", required = false) @Nullable final Integer limit
+    ) {
+        return storageBulkheads.getPoints().submit(() -> widgetService.loadTopAtPoint(x, y, limit));
+    }
+
+    /**
+     * Visiting of widgets is stopped when request is completed, e.g. by disconnected client
+     */
+    private static Consumer<Consumer<Widget>> until(
+            final BooleanSupplier completed,
+            final Consumer<Consumer<Widget>> source
+    ) {
+        return consumer -> source.accept(widget -> {
+            if (completed.getAsBoolean()) {
+                throw new CancellationException("Error: request is completed while widgets are streamed");
+            }
+            consumer.accept(widget);
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package com.test.app.widget.rest.controllers;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.rest.SseViewportSink;
+import com.test.app.widget.subscriptions.ViewportSubscription;
+import com.test.app.widget.subscriptions.ViewportSubscriptions;
+import io.swagger.annotations.ApiOperation;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Push channel of widget events for viewport of client, instead of polling widgets by selected area
+ */
+@AllArgsConstructor
+@RequestMapping("/widget")
+@RestController
+public class ViewportSubscriptionController {
+
+    private final ViewportSubscriptions viewportSubscriptions;
+    private final ConfigProperties configProperties;
+
+    @ApiOperation(value = "Subscribe to events of widgets intersecting viewport by Server-Sent Events")
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(
+            @RequestParam("leftX") final int leftX,
+            @RequestParam("leftY") final int leftY,
+            @RequestParam("rightX") final int rightX,
+            @RequestParam("rightY") final int rightY
+    ) {
+        final SseEmitter emitter = new SseEmitter(configProperties.getSubscriptions().getTimeout().toMillis());
+        final ViewportSubscription subscription = viewportSubscriptions.subscribe(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                new SseViewportSink(emitter)
+        );
+        if (subscription == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        emitter.onCompletion(() -> viewportSubscriptions.unsubscribe(subscription));
+        emitter.onTimeout(() -> viewportSubscriptions.unsubscribe(subscription));
+        emitter.onError(e -> viewportSubscriptions.unsubscribe(subscription));
+        return ResponseEntity.ok(emitter);
+    }
+}
@@ -1,25 +1,39 @@
 package com.test.app.widget.rest.controllers;
 
 
+import com.test.app.widget.rest.WidgetBoard;
+import com.test.app.widget.rest.WidgetETag;
+import com.test.app.widget.rest.WidgetStreamWriter;
+import com.test.app.widget.rest.inputs.InputBatch;
 import com.test.app.widget.rest.inputs.InputWidget;
 import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
+import com.test.app.widget.service.WidgetChanges;
 import com.test.app.widget.service.WidgetService;
 import io.swagger.annotations.ApiOperation;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.lang.Nullable;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Widget API served by servlet threads, {@link AsyncWidgetController} replaces it when asynchronous API is enabled
+ */
 @AllArgsConstructor
+@ConditionalOnProperty(prefix = "widget.config.async", name = "enabled", havingValue = "false", matchIfMissing = true)
 @RequestMapping("/widget")
 @RestController
 public class WidgetController {
 
     private final WidgetService widgetService;
+    private final WidgetStreamWriter widgetStreamWriter;
 
 
     @ApiOperation(value = "Create new widget")
@@ -43,6 +57,13 @@ public class WidgetController {
         widgetService.deleteById(id);
     }
 
+    @ApiOperation(value = "Apply batch of creating, updating and removing atomically, with single Z-index recount")
+    @Transactional
+    @PostMapping("/batch")
+    public WidgetBatchResult batch(@RequestBody final InputBatch inputBatch) {
+        return widgetService.applyBatch(inputBatch);
+    }
+
     @ApiOperation(value = "Hello page")
     @GetMapping
     public String mainPageMapping() {
@@ -50,18 +71,34 @@ public class WidgetController {
     }
 
     @ApiOperation(value = "Getting widget by id")
+    @WidgetETag(WidgetETag.Scope.WIDGET)
     @GetMapping("/getById")
     public Widget getById(@RequestParam(name = "id") final @NonNull UUID id) {
         return widgetService.loadById(id);
     }
 
     @ApiOperation(value = "Getting all widgets into current storage ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @WidgetBoard
     @GetMapping("/getAll")
     public List<Widget> getAll() {
         return widgetService.loadAllOrderedByIndexZ();
     }
 
+    @ApiOperation(value = "Streaming all widgets ordered by Z-Index as JSON array, widgets are written while they are read")
+    @GetMapping(value = "/getAll", params = "stream=true")
+    public void getAllStreaming(final HttpServletResponse response) throws IOException {
+        widgetStreamWriter.writeJsonArray(response, widgetService::forEachOrderedByIndexZ);
+    }
+
+    @ApiOperation(value = "Streaming all widgets ordered by Z-Index as newline delimited JSON")
+    @GetMapping(value = "/getAll", produces = WidgetStreamWriter.APPLICATION_NDJSON_VALUE)
+    public void getAllNdjson(final HttpServletResponse response) throws IOException {
+        widgetStreamWriter.writeNdjson(response, widgetService::forEachOrderedByIndexZ);
+    }
+
     @ApiOperation(value = "Getting paging widgets into current storage ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
     @GetMapping("/getPaging")
     public List<Widget> getPaging(
             @RequestParam("page") @Nullable final Integer page,
@@ -70,14 +107,48 @@ public class WidgetController {
         return widgetService.loadPaging(page, size);
     }
 
-    @ApiOperation(value = "Getting widgets filtered by selected area")
+    @ApiOperation(value = "Getting next page of widgets after Z-index (cursor) ordered by Z-Index")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @GetMapping(value = "/getPaging", params = "afterIndexZ")
+    public List<Widget> getPagingAfterIndexZ(
+            @RequestParam("afterIndexZ") final int afterIndexZ,
+            @RequestParam("size") @Nullable final Integer size
+    ) {
+        return widgetService.loadPagingAfterIndexZ(afterIndexZ, size);
+    }
+
+    @ApiOperation(value = "Getting widgets modified after version, or resync flag if they aren't kept any more")
+    @GetMapping("/changes")
+    public WidgetChanges getChanges(
+            @RequestParam("since") final long since,
+            @RequestParam(value = "epoch", required = false) @Nullable final Long epoch
+    ) {
+        return widgetService.loadChanges(since, epoch);
+    }
+
+    @ApiOperation(value = "Getting widgets filtered by selected area, ordered by Z-Index (z_desc or z_asc) " +
+                          "from cursor if order, cursor or limit is given")
     @GetMapping("/getBySelectedArea")
     public List<Widget> getBySelectedArea(
             @RequestParam("leftX") @Nullable final int leftX,
             @RequestParam("leftY") @Nullable final int leftY,
             @RequestParam("rightX") @Nullable final int rightX,
-            @RequestParam("rightY") @Nullable final int rightY
+            @RequestParam("rightY") @Nullable final int rightY,
+            @RequestParam(value = "order", required = false) @Nullable final String order,
+            @RequestParam(value = "afterIndexZ", required = false) @Nullable final Integer afterIndexZ,
+            @RequestParam(value = "limit", required = false) @Nullable final Integer limit
+    ) {
+        return widgetService.loadBySelectedArea(leftX, leftY, rightX, rightY, order, afterIndexZ, limit);
+    }
+
+    @ApiOperation(value = "Hit test: getting the topmost widgets covering point, the highest Z-Index first")
+    @WidgetETag(WidgetETag.Scope.STORAGE)
+    @GetMapping("/hitTest")
+    public List<Widget> hitTest(
+            @RequestParam("x") final int x,
+            @RequestParam("y") final int y,
+            @RequestParam(value = "limit", required = false) @Nullable final Integer limit
     ) {
-        return widgetService.loadBySelectedArea(leftX, leftY, rightX, rightY);
+        return widgetService.loadTopAtPoint(x, y, limit);
     }
 }
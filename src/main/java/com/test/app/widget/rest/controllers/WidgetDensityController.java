@@ -0,0 +1,35 @@
+package com.test.app.widget.rest.controllers;
+
+import com.test.app.widget.density.WidgetHeatmap;
+import com.test.app.widget.service.WidgetService;
+import io.swagger.annotations.ApiOperation;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Aggregated widgets for zoomed-out views, it doesn't touch storage, so it's served by servlet threads
+ * for both synchronous and asynchronous API. Counters are changed just after storage version,
+ * so responses aren't validated by storage version
+ */
+@AllArgsConstructor
+@RequestMapping("/widget")
+@RestController
+public class WidgetDensityController {
+
+    private final WidgetService widgetService;
+
+    @ApiOperation(value = "Getting count and coverage of widgets by tiles of selected area")
+    @GetMapping("/density")
+    public WidgetHeatmap getDensity(
+            @RequestParam("leftX") final int leftX,
+            @RequestParam("leftY") final int leftY,
+            @RequestParam("rightX") final int rightX,
+            @RequestParam("rightY") final int rightY,
+            @RequestParam("tileSize") final int tileSize
+    ) {
+        return widgetService.loadHeatmap(leftX, leftY, rightX, rightY, tileSize);
+    }
+}
@@ -0,0 +1,28 @@
+package com.test.app.widget.rest.inputs;
+
+import com.test.app.widget.service.Widget;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Input for applying batch of modifications
+ */
+@ApiModel("Batch of widget modifications, applied atomically")
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputBatch {
+    @ApiModelProperty("Widgets for creating")
+    private List<InputWidget> create = new ArrayList<>();
+    @ApiModelProperty("Widgets for updating")
+    private List<Widget> update = new ArrayList<>();
+    @ApiModelProperty("Ids of widgets for removing")
+    private List<UUID> delete = new ArrayList<>();
+}
@@ -0,0 +1,126 @@
+package com.test.app.widget.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Resolve Z-index collisions of whole batch by one merged pass over stored Z-order.
+ * <p>
+ * Batch widgets with Z-index are placed in ascending Z-index order (equal values keep batch order):
+ * each of them takes requested Z-index, or the next free one if another batch widget has requested the same value.
+ * Colliding batch widget shifts all stored widgets from its Z-index, the same as single creating or updating,
+ * so stored widget gets one increment per collision below or on it. Collisions are merged into ranges
+ * between collision points, one shift per distinct point. Batch widgets without Z-index are put into foreground.
+ * <p>
+ * Storage must not contain batch widgets while planning, they are removed from Z-order before
+ */
+public final class IndexZBatchPlanner {
+    private static final int PAGE_SIZE = 500;
+
+    private IndexZBatchPlanner() {
+    }
+
+    /**
+     * Set final Z-index for every batch widget and plan shifts of stored widgets
+     *
+     * @param widgets          batch widgets, Z-index is set into them
+     * @param loadAfterIndexZ  keyset paging over stored widgets: (afterIndexZ, size) -> widgets ordered by Z-index
+     * @param storedMaxIndexZ  max Z-index into storage
+     * @return shifts in order of applying: from upper range to lower one, so shifted widgets never overlap others
+     */
+    public static List<IndexZShift> plan(
+            final List<Widget> widgets,
+            final BiFunction<Integer, Integer, List<Widget>> loadAfterIndexZ,
+            final int storedMaxIndexZ
+    ) {
+        final List<Widget> placed = widgets.stream()
+                                           .filter(widget -> widget.getIndexZ() != null)
+                                           .sorted(Comparator.comparing(Widget::getIndexZ))
+                                           .collect(Collectors.toList());
+        // Stored Z-indexes where collisions are, and count of collisions on them, in ascending order
+        final List<Integer> collisionIndexes = new ArrayList<>();
+        final List<Integer> collisionCounts = new ArrayList<>();
+        int collisions = 0;
+        long topIndexZ = Long.MIN_VALUE;
+
+        final StoredCursor stored = new StoredCursor(loadAfterIndexZ);
+        for (final Widget widget : placed) {
+            final int indexZ = (int) Math.max(widget.getIndexZ(), topIndexZ + 1);
+            // All stored widgets from the last collision are shifted by count of collisions,
+            // so stored Z-index on this place is lower by it. Looked up values are never decreasing
+            final int storedIndexZ = indexZ - collisions;
+            if (stored.contains(storedIndexZ)) {
+                final int last = collisionIndexes.size() - 1;
+                if (last >= 0 && collisionIndexes.get(last) == storedIndexZ) {
+                    collisionCounts.set(last, collisionCounts.get(last) + 1);
+                } else {
+                    collisionIndexes.add(storedIndexZ);
+                    collisionCounts.add(1);
+                }
+                collisions++;
+            }
+            widget.setIndexZ(indexZ);
+            topIndexZ = indexZ;
+        }
+
+        final List<IndexZShift> shifts = new ArrayList<>(collisionIndexes.size());
+        int increment = 0;
+        for (int i = 0; i < collisionIndexes.size(); i++) {
+            increment += collisionCounts.get(i);
+            final int toIndexZ = i + 1 < collisionIndexes.size() ? collisionIndexes.get(i + 1) - 1 : storedMaxIndexZ;
+            shifts.add(new IndexZShift(collisionIndexes.get(i), toIndexZ, increment));
+        }
+
+        // Foreground widgets
+        int foregroundIndexZ = (int) Math.max((long) storedMaxIndexZ + collisions, topIndexZ);
+        for (final Widget widget : widgets) {
+            if (widget.getIndexZ() == null) {
+                widget.setIndexZ(++foregroundIndexZ);
+            }
+        }
+
+        Collections.reverse(shifts);
+        return shifts;
+    }
+
+    /**
+     * Iterator over stored Z-order, loaded by pages
+     */
+    private static class StoredCursor {
+        private final BiFunction<Integer, Integer, List<Widget>> loadAfterIndexZ;
+        private List<Widget> page;
+        private int position;
+        private boolean exhausted;
+
+        StoredCursor(final BiFunction<Integer, Integer, List<Widget>> loadAfterIndexZ) {
+            this.loadAfterIndexZ = loadAfterIndexZ;
+        }
+
+        /**
+         * Check stored Z-index, checked values must not decrease.
+         * Close values are reached by moving over the page, far ones by new page query
+         */
+        boolean contains(final int indexZ) {
+            if (page == null || (!page.isEmpty() && page.get(page.size() - 1).getIndexZ() < indexZ && !exhausted)) {
+                seek(indexZ - 1);
+            }
+            while (position < page.size() && page.get(position).getIndexZ() < indexZ) {
+                position++;
+            }
+            return position < page.size() && page.get(position).getIndexZ() == indexZ;
+        }
+
+        /**
+         * Move cursor on the first widget with Z-index bigger than given one
+         */
+        private void seek(final int afterIndexZ) {
+            page = loadAfterIndexZ.apply(afterIndexZ, PAGE_SIZE);
+            position = 0;
+            exhausted = page.size() < PAGE_SIZE;
+        }
+    }
+}
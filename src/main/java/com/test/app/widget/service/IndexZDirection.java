@@ -0,0 +1,47 @@
+package com.test.app.widget.service;
+
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.Comparator;
+
+/**
+ * Order of widgets by Z-index for limited queries, cursor of next page is Z-index of the last widget of current page
+ */
+@Getter
+public enum IndexZDirection {
+    ASCENDING("z_asc"),
+    DESCENDING("z_desc");
+
+    private final String value;
+
+    IndexZDirection(final String value) {
+        this.value = value;
+    }
+
+    public static IndexZDirection of(final String value) {
+        for (final IndexZDirection direction : values()) {
+            if (direction.value.equalsIgnoreCase(value)) {
+                return direction;
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                "Error: unknown order %s of widgets, %s or %s is expected",
+                value,
+                ASCENDING.value,
+                DESCENDING.value
+        ));
+    }
+
+    /**
+     * Check that widget with given Z-index goes after cursor into this order, any widget goes after absent cursor
+     */
+    public boolean isAfter(final int indexZ, @Nullable final Integer afterIndexZ) {
+        return afterIndexZ == null || (this == ASCENDING ? indexZ > afterIndexZ : indexZ < afterIndexZ);
+    }
+
+    public Comparator<Widget> comparator() {
+        final Comparator<Widget> ascending = Comparator.comparing(Widget::getIndexZ);
+        return this == ASCENDING ? ascending : ascending.reversed();
+    }
+}
@@ -0,0 +1,15 @@
+package com.test.app.widget.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Shift of stored widgets whose Z-indexes are into [fromIndexZ, toIndexZ] range by offset
+ */
+@Getter
+@AllArgsConstructor
+public class IndexZShift {
+    private final int fromIndexZ;
+    private final int toIndexZ;
+    private final int incrementValue;
+}
@@ -0,0 +1,25 @@
+package com.test.app.widget.service;
+
+/**
+ * Version of storage snapshot which was used for reading by current thread.
+ * Storage keeps it, rest layer takes it for response
+ */
+public final class SnapshotReadVersion {
+    private static final ThreadLocal<Long> VERSION = new ThreadLocal<>();
+
+    private SnapshotReadVersion() {
+    }
+
+    public static void set(final long version) {
+        VERSION.set(version);
+    }
+
+    /**
+     * @return version of the last snapshot read of current thread and forget it, or Null if there was no snapshot read
+     */
+    public static Long take() {
+        final Long version = VERSION.get();
+        VERSION.remove();
+        return version;
+    }
+}
@@ -4,7 +4,6 @@ import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Table;
@@ -21,16 +20,20 @@ import java.util.UUID;
 @ApiModel("Widget")
 @Table("WIDGETS")
 @Getter
-@NoArgsConstructor
 @AllArgsConstructor
 @Component
 public class Widget {
+    /**
+     * Zone of last modification Date/Time, local Date/Time of all widgets is taken in it
+     */
+    public static final ZoneOffset MODIFICATION_TIME_ZONE = ZoneOffset.UTC;
+
     /**
      * Widget identifier
      */
     @ApiModelProperty("Widget identifier")
     @Id
-    private UUID id = UUID.randomUUID();
+    private UUID id;
     /**
      * X coordinate on plane
      */
@@ -68,7 +71,16 @@ public class Widget {
      */
     @Setter
     @ApiModelProperty("Widget last modification Date/Time in UTC format")
-    private LocalDateTime lastModificationDateTime = OffsetDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+    private LocalDateTime lastModificationDateTime;
+
+    /**
+     * New widget with generated id. Id and Date/Time are not initialized by field initializers,
+     * so copying by all args constructor doesn't generate id and read clock for nothing
+     */
+    public Widget() {
+        this.id = UUID.randomUUID();
+        this.lastModificationDateTime = OffsetDateTime.now(MODIFICATION_TIME_ZONE).toLocalDateTime();
+    }
 
     public Widget(
             final int coordinateX,
@@ -77,6 +89,7 @@ public class Widget {
             final int width,
             final int height
     ) {
+        this();
         this.coordinateX = coordinateX;
         this.coordinateY = coordinateY;
         this.indexZ = indexZ;
@@ -0,0 +1,21 @@
+package com.test.app.widget.service;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@ApiModel("Result of batch modifications")
+@Getter
+@AllArgsConstructor
+public class WidgetBatchResult {
+    @ApiModelProperty("Created widgets with resolved Z-indexes")
+    private final List<Widget> created;
+    @ApiModelProperty("Updated widgets with resolved Z-indexes")
+    private final List<Widget> updated;
+    @ApiModelProperty("Ids of removed widgets")
+    private final List<UUID> deleted;
+}
@@ -0,0 +1,50 @@
+package com.test.app.widget.service;
+
+/**
+ * Bounding box calculation for widget on the plane.
+ * Widget coordinate is the widget center, so bounding box is
+ * [x - width/2, x + width/2] x [y - height/2, y + height/2]
+ */
+public final class WidgetBounds {
+
+    private WidgetBounds() {
+    }
+
+    public static int minX(final Widget widget) {
+        return widget.getCoordinateX() - widget.getWidth() / 2;
+    }
+
+    public static int maxX(final Widget widget) {
+        return widget.getCoordinateX() + widget.getWidth() / 2;
+    }
+
+    public static int minY(final Widget widget) {
+        return widget.getCoordinateY() - widget.getHeight() / 2;
+    }
+
+    public static int maxY(final Widget widget) {
+        return widget.getCoordinateY() + widget.getHeight() / 2;
+    }
+
+    /**
+     * Check that widget is fully inside selected area
+     */
+    public static boolean isInside(
+            final Widget widget,
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        return minX(widget) >= leftX && maxX(widget) <= rightX &&
+               minY(widget) >= leftY && maxY(widget) <= rightY;
+    }
+
+    /**
+     * Check that point is inside widget, border of widget is inside too
+     */
+    public static boolean contains(final Widget widget, final int x, final int y) {
+        return minX(widget) <= x && maxX(widget) >= x &&
+               minY(widget) <= y && maxY(widget) >= y;
+    }
+}
@@ -0,0 +1,22 @@
+package com.test.app.widget.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Logged modification of storage: widget was created, updated or removed,
+ * or Z-indexes of widgets from the given one were shifted, then there is no widget id
+ */
+@Getter
+@AllArgsConstructor
+public class WidgetChange {
+    private final long version;
+    @Nullable
+    private final UUID widgetId;
+    private final boolean removed;
+    @Nullable
+    private final Integer shiftedFromIndexZ;
+}
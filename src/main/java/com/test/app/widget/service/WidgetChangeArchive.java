@@ -0,0 +1,27 @@
+package com.test.app.widget.service;
+
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * Keeper of changes evicted from in-memory change log of {@link WidgetVersions}
+ */
+public interface WidgetChangeArchive {
+
+    boolean isEnabled();
+
+    /**
+     * Keep changes ordered by version, they are older than all changes left into memory.
+     * Versions are counted from zero on every start, so changes are kept by epoch of versions.
+     * It's called after commit of modification and outside of lock of change log, so batches may come out of order
+     */
+    void append(long epoch, List<WidgetChange> changes);
+
+    /**
+     * Changes after version up to another one ordered by version, or Null if some of them were already removed
+     * from archive, or there are too many of them for one request
+     */
+    @Nullable
+    List<WidgetChange> loadAfter(long epoch, long version, long upToVersion);
+}
@@ -0,0 +1,30 @@
+package com.test.app.widget.service;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+@ApiModel("Widgets modified after version")
+@Getter
+@AllArgsConstructor
+public class WidgetChanges {
+    @ApiModelProperty("Versions are counted from zero on every start, changes are requested with the same epoch")
+    private final long epoch;
+    @ApiModelProperty("Version of storage which changes are up to, it's used as 'since' of the next request")
+    private final long version;
+    @ApiModelProperty("Changes after requested version aren't kept or too many widgets are shifted, all widgets must be loaded again")
+    private final boolean resyncRequired;
+    @ApiModelProperty("Created, updated and Z-index shifted widgets ordered by Z-index")
+    private final List<Widget> changed;
+    @ApiModelProperty("Ids of removed widgets")
+    private final List<UUID> deleted;
+
+    static WidgetChanges resync(final long epoch, final long version) {
+        return new WidgetChanges(epoch, version, true, Collections.emptyList(), Collections.emptyList());
+    }
+}
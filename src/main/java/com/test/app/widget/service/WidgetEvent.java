@@ -0,0 +1,41 @@
+package com.test.app.widget.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.UUID;
+
+@ApiModel("Committed modification of widget")
+@Getter
+@AllArgsConstructor
+public class WidgetEvent {
+    private final Type type;
+    @ApiModelProperty("Version of storage after modification")
+    private final long version;
+    @ApiModelProperty("Id of modified widget, it's absent for Z-index shift")
+    @Nullable
+    private final UUID id;
+    @ApiModelProperty("Created or updated widget")
+    @Nullable
+    private final Widget widget;
+    /**
+     * Widget before updating or removing, it's absent if it wasn't loaded because nobody was listening
+     */
+    @JsonIgnore
+    @Nullable
+    private final Widget previous;
+    @ApiModelProperty("Z-indexes from this one were shifted up")
+    @Nullable
+    private final Integer shiftedFromIndexZ;
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        SHIFTED
+    }
+}
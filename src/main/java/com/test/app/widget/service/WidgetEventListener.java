@@ -0,0 +1,20 @@
+package com.test.app.widget.service;
+
+import java.util.List;
+
+/**
+ * Receiver of committed modifications from {@link WidgetVersions}
+ */
+public interface WidgetEventListener {
+
+    /**
+     * Events are made and previous widgets are loaded by storages only while somebody is listening
+     */
+    boolean isListening();
+
+    /**
+     * Events of one modification, they are received in version order by one modifying thread at a time,
+     * so they must be handed over to other threads at once
+     */
+    void modified(List<WidgetEvent> events);
+}
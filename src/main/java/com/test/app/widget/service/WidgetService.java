@@ -1,96 +1,161 @@
 package com.test.app.widget.service;
 
 import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.density.WidgetDensity;
+import com.test.app.widget.density.WidgetHeatmap;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.inputs.InputBatch;
 import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.columnar_storage.ColumnarStorageService;
 import com.test.app.widget.service.h2_storage.H2StorageService;
 import com.test.app.widget.service.simple_mem_storage.SimpleMemStorageService;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @AllArgsConstructor
 @Service
-public class WidgetService {
+public class WidgetService implements SmartInitializingSingleton {
     private final SimpleMemStorageService simpleMemStorageService;
     private final H2StorageService h2StorageService;
+    private final ColumnarStorageService columnarStorageService;
     private ConfigProperties configProperties;
+    private final WidgetMetrics widgetMetrics;
+    private final WidgetVersions widgetVersions;
+    private final WidgetDensity widgetDensity;
 
-    public Widget create(final InputWidget widgetInput) {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.create(widgetInput);
-        } else {
-            return simpleMemStorageService.create(widgetInput);
-        }
+    @PostConstruct
+    public void registerStorageGauges() {
+        widgetMetrics.registerStorageGauges(
+                getBackend(),
+                this,
+                WidgetService::countWidgets,
+                WidgetService::getIndexZSpan
+        );
     }
 
-    public Widget update(final Widget widget) {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.update(widget);
-        } else {
-            return simpleMemStorageService.update(widget);
+    /**
+     * Widgets are counted by density after all beans are ready, so recovered widgets are counted too.
+     * Requests aren't served yet, so storage isn't modified meanwhile
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (widgetDensity.isEnabled()) {
+            widgetDensity.load(getStorage()::forEachOrderedByIndexZ);
         }
+    }
+
+    public Widget create(final InputWidget widgetInput) {
+        return widgetMetrics.recordOperation("create", getBackend(), () -> getStorage().create(widgetInput));
+    }
 
+    public Widget update(final Widget widget) {
+        return widgetMetrics.recordOperation("update", getBackend(), () -> getStorage().update(widget));
     }
 
     public UUID deleteById(final @NonNull UUID id) {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.deleteById(id);
-        } else {
-            return simpleMemStorageService.deleteById(id);
+        return widgetMetrics.recordOperation("deleteById", getBackend(), () -> getStorage().deleteById(id));
+    }
+
+    /**
+     * Apply batch of creating, updating and removing as one modification
+     * with single Z-index recount for all batch widgets
+     */
+    public WidgetBatchResult applyBatch(final InputBatch inputBatch) {
+        final List<InputWidget> create = inputBatch.getCreate() == null ? Collections.emptyList() : inputBatch.getCreate();
+        final List<Widget> update = inputBatch.getUpdate() == null ? Collections.emptyList() : inputBatch.getUpdate();
+        final List<UUID> delete = inputBatch.getDelete() == null ? Collections.emptyList() : inputBatch.getDelete();
+
+        final int maxModifications = configProperties.getBatchConfig().getMaxModificationsPerBatch();
+        if (create.size() + update.size() + delete.size() > maxModifications) {
+            throw new IllegalArgumentException(
+                    String.format("Error: can't apply more then %s modifications by batch", maxModifications)
+            );
         }
+        final Set<UUID> ids = new HashSet<>();
+        update.forEach(widget -> checkUniqueBatchId(ids, widget.getId()));
+        delete.forEach(id -> checkUniqueBatchId(ids, id));
+
+        return widgetMetrics.recordOperation(
+                "applyBatch",
+                getBackend(),
+                () -> getStorage().applyBatch(create, update, delete)
+        );
     }
 
     public Widget loadById(final @NonNull UUID id) {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.loadById(id);
-        } else {
-            return simpleMemStorageService.loadById(id);
-        }
+        return widgetMetrics.recordOperation("loadById", getBackend(), () -> getStorage().loadById(id));
     }
 
     public List<Widget> loadAllOrderedByIndexZ() {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.loadAllOrderedByIndexZ();
-        } else {
-            return simpleMemStorageService.loadAllOrderedByIndexZ();
-        }
+        return widgetMetrics.recordOperation(
+                "loadAllOrderedByIndexZ",
+                getBackend(),
+                () -> getStorage().loadAllOrderedByIndexZ()
+        );
+    }
+
+    /**
+     * Visit all widgets in Z-index order, without loading all of them into memory
+     */
+    public void forEachOrderedByIndexZ(final Consumer<Widget> consumer) {
+        widgetMetrics.recordOperation("forEachOrderedByIndexZ", getBackend(), () -> {
+            getStorage().forEachOrderedByIndexZ(consumer);
+            return null;
+        });
     }
 
     public List<Widget> loadPaging(
             @Nullable Integer page,
             @Nullable Integer size
     ) {
-        checkRateLimit();
         /*
         Check if is it necessary to get default paging params
          */
-        page = page == null ? 0 : page;
-        size = (size == null) ? configProperties.getPagingConfig().getDefaultPagingResultSize() : size;
-        //Check about paging limit
-        if (size > configProperties.getPagingConfig().getWidgetLimitForLoadingPerQuery()) {
-            throw new IllegalArgumentException(
-                    String.format(
-                            "Error: can't load more then %s widgets by paging query",
-                            configProperties.getPagingConfig().getWidgetLimitForLoadingPerQuery()
-                    )
-            );
-        }
+        final int checkedPage = page == null ? 0 : page;
+        final int checkedSize = getCheckedPagingSize(size);
 
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.loadPaging(page, size);
-        } else {
-            return simpleMemStorageService.loadPaging(page, size);
-        }
+        final List<Widget> result = widgetMetrics.recordOperation(
+                "loadPaging",
+                getBackend(),
+                () -> getStorage().loadPaging(checkedPage, checkedSize)
+        );
+        widgetMetrics.recordResultSize("paging", getBackend(), result.size());
+        return result;
+    }
+
+    /**
+     * Keyset (cursor) paging: next widgets after given Z-index in ascending Z-index order.
+     * Cursor for next page is Z-index of the last widget of current page
+     */
+    public List<Widget> loadPagingAfterIndexZ(
+            final int afterIndexZ,
+            @Nullable Integer size
+    ) {
+        final int checkedSize = getCheckedPositivePagingSize(size);
+
+        final List<Widget> result = widgetMetrics.recordOperation(
+                "loadPagingAfterIndexZ",
+                getBackend(),
+                () -> getStorage().loadPagingAfterIndexZ(afterIndexZ, checkedSize)
+        );
+        widgetMetrics.recordResultSize("pagingAfterIndexZ", getBackend(), result.size());
+        return result;
     }
 
     public List<Widget> loadBySelectedArea(
@@ -99,26 +164,224 @@ public class WidgetService {
             final int rightX,
             final int rightY
     ) {
-        checkRateLimit();
-        if (configProperties.getH2storage().isEnabled()) {
-            return h2StorageService.loadBySelectedArea(leftX, leftY, rightX, rightY);
-        } else {
-            return simpleMemStorageService.loadBySelectedArea(leftX, leftY, rightX, rightY);
+        final List<Widget> result = widgetMetrics.recordOperation(
+                "loadBySelectedArea",
+                getBackend(),
+                () -> getStorage().loadBySelectedArea(leftX, leftY, rightX, rightY)
+        );
+        widgetMetrics.recordResultSize("area", getBackend(), result.size());
+        return result;
+    }
+
+    /**
+     * Widgets inside selected area ordered by Z-index, the highest first by default.
+     * Without order, cursor and limit all widgets inside area are loaded in any order
+     *
+     * @param order       z_desc or z_asc
+     * @param afterIndexZ cursor: Z-index of the last widget of previous page
+     * @param limit       count of widgets, default paging size by default
+     */
+    public List<Widget> loadBySelectedArea(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            @Nullable final String order,
+            @Nullable final Integer afterIndexZ,
+            @Nullable final Integer limit
+    ) {
+        if (order == null && afterIndexZ == null && limit == null) {
+            return loadBySelectedArea(leftX, leftY, rightX, rightY);
         }
+        final IndexZDirection direction = order == null ? IndexZDirection.DESCENDING : IndexZDirection.of(order);
+        final int checkedLimit = getCheckedPositivePagingSize(limit);
+        final List<Widget> result = widgetMetrics.recordOperation(
+                "loadBySelectedAreaOrderedByIndexZ",
+                getBackend(),
+                () -> getStorage().loadBySelectedAreaOrderedByIndexZ(
+                        leftX,
+                        leftY,
+                        rightX,
+                        rightY,
+                        direction,
+                        afterIndexZ,
+                        checkedLimit
+                )
+        );
+        widgetMetrics.recordResultSize("areaOrderedByIndexZ", getBackend(), result.size());
+        return result;
+    }
+
+    /**
+     * Hit test: widgets covering point, the highest Z-index first
+     *
+     * @param limit count of the highest widgets, only the topmost one by default
+     */
+    public List<Widget> loadTopAtPoint(
+            final int x,
+            final int y,
+            @Nullable final Integer limit
+    ) {
+        final int checkedLimit = limit == null ? 1 : getCheckedPositivePagingSize(limit);
+        final List<Widget> result = widgetMetrics.recordOperation(
+                "loadTopAtPoint",
+                getBackend(),
+                () -> getStorage().loadTopAtPoint(x, y, checkedLimit)
+        );
+        widgetMetrics.recordResultSize("hitTest", getBackend(), result.size());
+        return result;
     }
 
-    private void checkRateLimit() {
-        final ConfigProperties.RateLimiting rateLimiting = configProperties.getRateLimiting();
+    /**
+     * Density of widgets by tiles of selected area, it's read from counters without loading of widgets
+     *
+     * @param tileSize requested side of tiles, it's rounded up to size of counted tiles
+     */
+    public WidgetHeatmap loadHeatmap(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final int tileSize
+    ) {
+        final WidgetHeatmap result = widgetMetrics.recordOperation(
+                "loadHeatmap",
+                getBackend(),
+                () -> widgetDensity.loadHeatmap(leftX, leftY, rightX, rightY, tileSize)
+        );
+        widgetMetrics.recordResultSize("heatmap", getBackend(), result.getTiles().size());
+        return result;
+    }
 
-        if (rateLimiting.getNextResetDateTime().isAfter(LocalDateTime.now())) {
-            if (rateLimiting.getAvailableRequests() == 0) {
-                throw new RuntimeException("Error: Rate limit is reached");
-            } else {
-                rateLimiting.decrementAvailableRequests();
+    /**
+     * Widgets modified after version: created, updated and Z-index shifted widgets ordered by Z-index,
+     * and ids of removed widgets. Shifted widgets aren't logged one by one, they are loaded from the lowest shifted Z-index.
+     * Resync is required if changes after version aren't kept any more, version is from another epoch,
+     * or more widgets are shifted than change feed returns, so big shifts are loaded by client from board
+     */
+    public WidgetChanges loadChanges(final long sinceVersion, @Nullable final Long epoch) {
+        final WidgetChanges result = widgetMetrics.recordOperation("loadChanges", getBackend(), () -> {
+            final Map.Entry<Long, List<WidgetChange>> changes = epoch == null || epoch == widgetVersions.getEpoch()
+                                                                ? widgetVersions.loadChangesAfter(sinceVersion)
+                                                                : null;
+            if (changes == null) {
+                return WidgetChanges.resync(widgetVersions.getEpoch(), widgetVersions.getVersion());
+            }
+            final Set<UUID> changedIds = new HashSet<>();
+            final Set<UUID> removedIds = new LinkedHashSet<>();
+            Integer shiftedFromIndexZ = null;
+            for (final WidgetChange change : changes.getValue()) {
+                if (change.getWidgetId() == null) {
+                    shiftedFromIndexZ = shiftedFromIndexZ == null
+                                        ? change.getShiftedFromIndexZ()
+                                        : Math.min(shiftedFromIndexZ, change.getShiftedFromIndexZ());
+                } else if (change.isRemoved()) {
+                    changedIds.remove(change.getWidgetId());
+                    removedIds.add(change.getWidgetId());
+                } else {
+                    changedIds.add(change.getWidgetId());
+                }
+            }
+            final Map<UUID, Widget> changed = new HashMap<>();
+            getStorage().loadByIds(changedIds).forEach(widget -> changed.put(widget.getId(), widget));
+            if (shiftedFromIndexZ != null) {
+                final int maxShiftedWidgets = configProperties.getChangeLog().getMaxShiftedWidgets();
+                final List<Widget> shifted = getStorage().loadPagingAfterIndexZ(
+                        Math.max(shiftedFromIndexZ, Integer.MIN_VALUE + 1) - 1,
+                        maxShiftedWidgets + 1
+                );
+                if (shifted.size() > maxShiftedWidgets) {
+                    return WidgetChanges.resync(widgetVersions.getEpoch(), widgetVersions.getVersion());
+                }
+                shifted.forEach(widget -> changed.put(widget.getId(), widget));
             }
+            removedIds.forEach(changed::remove);
+            final List<Widget> ordered = new ArrayList<>(changed.values());
+            ordered.sort(Comparator.comparing(Widget::getIndexZ));
+            return new WidgetChanges(widgetVersions.getEpoch(), changes.getKey(), false, ordered, new ArrayList<>(removedIds));
+        });
+        widgetMetrics.recordResultSize("changes", getBackend(), result.getChanged().size() + result.getDeleted().size());
+        return result;
+    }
+
+    private void checkUniqueBatchId(final Set<UUID> ids, @Nullable final UUID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Error: widget id is necessary for updating and removing by batch");
+        }
+        if (!ids.add(id)) {
+            throw new IllegalArgumentException(
+                    String.format("Error: widget id=%s is modified more then once by batch", id)
+            );
+        }
+    }
+
+    /**
+     * Versions of storage, they are read without touching storage
+     */
+    public WidgetVersions getVersions() {
+        return widgetVersions;
+    }
+
+    private int countWidgets() {
+        return getStorage().count();
+    }
+
+    private int getIndexZSpan() {
+        return getStorage().getIndexZSpan();
+    }
+
+    /**
+     * Storage chosen by configuration: H2 storage has priority over columnar one, simple memory storage is default.
+     * Tiered storage is simple memory storage with write-behind into H2
+     */
+    private WidgetStorage getStorage() {
+        if (configProperties.getH2storage().isEnabled()) {
+            return h2StorageService;
+        } else if (configProperties.getColumnarStorage().isEnabled()) {
+            return columnarStorageService;
         } else {
-            rateLimiting.setNextResetDateTime(LocalDateTime.now().plusMinutes(1));
-            rateLimiting.setAvailableRequests(rateLimiting.getLimit());
+            return simpleMemStorageService;
+        }
+    }
+
+    private String getBackend() {
+        if (configProperties.getH2storage().isEnabled()) {
+            return WidgetMetrics.BACKEND_H2;
+        } else if (configProperties.getColumnarStorage().isEnabled()) {
+            return WidgetMetrics.BACKEND_COLUMNAR;
+        } else if (configProperties.getTieredStorage().isEnabled()) {
+            return WidgetMetrics.BACKEND_TIERED;
+        } else {
+            return WidgetMetrics.BACKEND_MEM;
+        }
+    }
+
+    /**
+     * Get default paging size if it's necessary and check it about paging limit, as offset paging always did
+     */
+    private int getCheckedPagingSize(@Nullable final Integer size) {
+        final int checkedSize = (size == null) ? configProperties.getPagingConfig().getDefaultPagingResultSize() : size;
+        //Check about paging limit
+        if (checkedSize > configProperties.getPagingConfig().getWidgetLimitForLoadingPerQuery()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Error: can't load more then %s widgets by paging query",
+                            configProperties.getPagingConfig().getWidgetLimitForLoadingPerQuery()
+                    )
+            );
+        }
+        return checkedSize;
+    }
+
+    /**
+     * Checked paging size of cursor queries, non-positive size is rejected, because H2 takes negative limit
+     * as unlimited one
+     */
+    private int getCheckedPositivePagingSize(@Nullable final Integer size) {
+        final int checkedSize = getCheckedPagingSize(size);
+        if (checkedSize < 1) {
+            throw new IllegalArgumentException("Error: count of widgets for paging query must be positive");
         }
+        return checkedSize;
     }
 }
@@ -0,0 +1,71 @@
+package com.test.app.widget.service;
+
+import com.test.app.widget.rest.inputs.InputWidget;
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend of widgets, {@link WidgetService} dispatches operations into backend chosen by configuration
+ */
+public interface WidgetStorage {
+
+    Widget create(InputWidget widgetInput);
+
+    Widget update(Widget widget);
+
+    UUID deleteById(@NonNull UUID id);
+
+    WidgetBatchResult applyBatch(List<InputWidget> create, List<Widget> update, List<UUID> delete);
+
+    Widget loadById(@NonNull UUID id);
+
+    /**
+     * Widgets by ids in any order, absent widgets are skipped
+     */
+    List<Widget> loadByIds(Collection<UUID> ids);
+
+    List<Widget> loadAllOrderedByIndexZ();
+
+    void forEachOrderedByIndexZ(Consumer<Widget> consumer);
+
+    List<Widget> loadPaging(int page, int size);
+
+    List<Widget> loadPagingAfterIndexZ(int afterIndexZ, int size);
+
+    List<Widget> loadBySelectedArea(int leftX, int leftY, int rightX, int rightY);
+
+    /**
+     * Widgets fully inside selected area ordered by Z-index, only the first ones after cursor are taken
+     *
+     * @param afterIndexZ Z-index of the last widget of previous page, or Null for the first page
+     * @param limit       max count of widgets
+     */
+    List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            int leftX,
+            int leftY,
+            int rightX,
+            int rightY,
+            IndexZDirection direction,
+            @Nullable Integer afterIndexZ,
+            int limit
+    );
+
+    /**
+     * Widgets whose bounds contain point, the highest Z-index first
+     *
+     * @param limit max count of widgets
+     */
+    List<Widget> loadTopAtPoint(int x, int y, int limit);
+
+    int count();
+
+    /**
+     * Difference between max and min Z-index, or 0 if storage is empty
+     */
+    int getIndexZSpan();
+}
@@ -0,0 +1,409 @@
+package com.test.app.widget.service;
+
+import com.test.app.widget.configs.ConfigProperties;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monotonic versions of storage for conditional requests and change feed, they are kept in memory,
+ * so checking doesn't touch storage. Only one storage is used at runtime, so all of them share versions.
+ * <p>
+ * Global version is changed by every modification. Version of widget is changed by its modification,
+ * and by any Z-index shift, because shift changes Z-index of widgets without tracking them one by one.
+ * Removed widgets keep their version while their change is kept by change log, so widget cached before removing
+ * isn't confirmed after it. Evicted removed widgets get floor version of removing, it's newer than any cached version of them.
+ * <p>
+ * Modifications are kept by bounded change log, evicted changes are moved into {@link WidgetChangeArchive} if it's enabled.
+ * Events of modifications are passed to listening {@link WidgetEventListener} ones in version order,
+ * after lock of change log is released.
+ * <p>
+ * Versions are changed after modification is committed, so version read before loading is never newer than loaded data
+ */
+@Slf4j
+@Component
+public class WidgetVersions {
+    /**
+     * Versions start from zero on every start, so validators of previous start mustn't be confirmed
+     */
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    private final Map<UUID, Long> widgetVersions = new ConcurrentHashMap<>();
+    private volatile long shiftVersion;
+    /**
+     * Version of the last removing evicted from change log, versions of evicted removed widgets are forgotten,
+     * so widgets without version have this one
+     */
+    private volatile long removedFloorVersion;
+    /**
+     * Modifications of this thread are committed by storage itself, so versions are changed at once
+     */
+    private final ThreadLocal<Boolean> committedByStorage = ThreadLocal.withInitial(() -> false);
+
+    private final int maxChanges;
+    private final WidgetChangeArchive widgetChangeArchive;
+    private final List<WidgetEventListener> widgetEventListeners;
+    /**
+     * Changes ordered by version, they are modified together with version under lock of log
+     */
+    private final Deque<WidgetChange> changes = new ArrayDeque<>();
+    /**
+     * Changes after this version are kept into memory
+     */
+    private long evictedVersion;
+    /**
+     * Changes up to this version were lost by failed archiving
+     */
+    private long archiveLostVersion;
+    /**
+     * Evicted batches which are being written into archive outside of lock of log, by the first version of batch.
+     * They are still read from memory, because archive may not have them yet
+     */
+    private final TreeMap<Long, List<WidgetChange>> archivingChanges = new TreeMap<>();
+    /**
+     * Events are queued under lock of log, so queue is ordered by version
+     */
+    private final Queue<List<WidgetEvent>> pendingEvents = new ConcurrentLinkedQueue<>();
+    /**
+     * Events are published by one modifying thread at a time, others leave their events to it
+     */
+    private final ReentrantLock publishing = new ReentrantLock();
+
+    public WidgetVersions(
+            final ConfigProperties configProperties,
+            final WidgetChangeArchive widgetChangeArchive,
+            final List<WidgetEventListener> widgetEventListeners
+    ) {
+        this.maxChanges = configProperties.getChangeLog().getMaxChanges();
+        this.widgetChangeArchive = widgetChangeArchive;
+        this.widgetEventListeners = widgetEventListeners;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Version of widget, widgets which weren't modified after start have version of the last shift or evicted removing
+     */
+    public long getWidgetVersion(final @NonNull UUID id) {
+        return Math.max(widgetVersions.getOrDefault(id, removedFloorVersion), shiftVersion);
+    }
+
+    /**
+     * Count of widgets with their own version, versions of removed widgets are forgotten with their changes
+     */
+    int getWidgetVersionsCount() {
+        return widgetVersions.size();
+    }
+
+    /**
+     * Previous widgets are necessary for events, so storages load them before modification only while it's true
+     */
+    public boolean isListened() {
+        return widgetEventListeners.stream().anyMatch(WidgetEventListener::isListening);
+    }
+
+    /**
+     * Change versions by modifications at once, even into transaction. It's used by storages which aren't committed
+     * by transactions, so versions are changed in their own commit order, not in order of transaction completion
+     */
+    public void changeAtOnce(final Runnable versionChanges) {
+        final boolean outer = committedByStorage.get();
+        committedByStorage.set(true);
+        try {
+            versionChanges.run();
+        } finally {
+            committedByStorage.set(outer);
+        }
+    }
+
+    /**
+     * Widget was created, and Z-indexes of upper widgets were shifted from its Z-index if flag is set
+     */
+    public void created(final Widget widget, final boolean shifted) {
+        modified(
+                Collections.singletonList(widget),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                Collections.emptyList(),
+                shifted ? widget.getIndexZ() : null
+        );
+    }
+
+    public void updated(@Nullable final Widget previous, final Widget widget, final boolean shifted) {
+        modified(
+                Collections.emptyList(),
+                Collections.singletonList(widget),
+                Collections.emptyList(),
+                previous == null ? Collections.emptyList() : Collections.singletonList(previous),
+                shifted ? widget.getIndexZ() : null
+        );
+    }
+
+    public void removed(final @NonNull UUID id, @Nullable final Widget previous) {
+        modified(
+                Collections.emptyList(),
+                Collections.emptyList(),
+                Collections.singletonList(id),
+                previous == null ? Collections.emptyList() : Collections.singletonList(previous),
+                null
+        );
+    }
+
+    /**
+     * Shifts of batch are started from Z-indexes of colliding batch widgets, so they are above the lowest batch widget
+     *
+     * @param previous updated and removed widgets before batch
+     */
+    public void modified(final WidgetBatchResult batch, final List<Widget> previous, final boolean shifted) {
+        Integer shiftedFromIndexZ = null;
+        if (shifted) {
+            for (final List<Widget> placed : Arrays.asList(batch.getCreated(), batch.getUpdated())) {
+                for (final Widget widget : placed) {
+                    if (shiftedFromIndexZ == null || widget.getIndexZ() < shiftedFromIndexZ) {
+                        shiftedFromIndexZ = widget.getIndexZ();
+                    }
+                }
+            }
+        }
+        modified(batch.getCreated(), batch.getUpdated(), batch.getDeleted(), previous, shiftedFromIndexZ);
+    }
+
+    /**
+     * Changes after version ordered by version, together with version which they are up to.
+     * State of log is copied under its lock, and archive is read outside of it, so modifications don't wait for archive
+     *
+     * @return Null if changes after version aren't kept any more, or version wasn't reached yet
+     */
+    @Nullable
+    public Map.Entry<Long, List<WidgetChange>> loadChangesAfter(final long sinceVersion) {
+        final long currentVersion;
+        final long archivedUpToVersion;
+        final TreeMap<Long, List<WidgetChange>> archiving;
+        final List<WidgetChange> kept = new ArrayList<>();
+        synchronized (changes) {
+            currentVersion = version.get();
+            if (sinceVersion < 0 || sinceVersion > currentVersion) {
+                return null;
+            }
+            archivedUpToVersion = evictedVersion;
+            if (sinceVersion < archivedUpToVersion &&
+                (!widgetChangeArchive.isEnabled() || sinceVersion < archiveLostVersion)) {
+                return null;
+            }
+            // Evicted batches aren't changed, so they are copied by reference
+            archiving = new TreeMap<>(archivingChanges);
+            changes.stream()
+                   .filter(change -> change.getVersion() > sinceVersion)
+                   .forEach(kept::add);
+        }
+        if (sinceVersion >= archivedUpToVersion) {
+            return new AbstractMap.SimpleImmutableEntry<>(currentVersion, kept);
+        }
+        // Changes evicted after copying are already copied from memory, so archive is read up to copied eviction
+        final List<WidgetChange> archived = widgetChangeArchive.loadAfter(epoch, sinceVersion, archivedUpToVersion);
+        if (archived == null) {
+            return null;
+        }
+        // Batches being archived are taken from memory, whether they are already written or not
+        final List<WidgetChange> result = new ArrayList<>();
+        archived.stream()
+                .filter(change -> !isArchiving(archiving, change.getVersion()))
+                .forEach(result::add);
+        archiving.values().forEach(batch -> batch.stream()
+                                                 .filter(change -> change.getVersion() > sinceVersion)
+                                                 .forEach(result::add));
+        result.sort(Comparator.comparingLong(WidgetChange::getVersion));
+        result.addAll(kept);
+        return new AbstractMap.SimpleImmutableEntry<>(currentVersion, result);
+    }
+
+    /**
+     * Widgets were created, updated or removed, and Z-indexes of other widgets were shifted from Z-index if it's set.
+     * Versions are changed when modification is committed, or at once if there is no transaction
+     * or modification is committed by storage
+     */
+    private void modified(
+            final List<Widget> created,
+            final List<Widget> updated,
+            final List<UUID> removedIds,
+            final List<Widget> previous,
+            @Nullable final Integer shiftedFromIndexZ
+    ) {
+        final Runnable versionChange = () -> {
+            final List<WidgetChange> evicted;
+            synchronized (changes) {
+                final long modificationVersion = version.incrementAndGet();
+                for (final List<Widget> changed : Arrays.asList(created, updated)) {
+                    changed.forEach(widget -> {
+                        widgetVersions.put(widget.getId(), modificationVersion);
+                        changes.addLast(new WidgetChange(modificationVersion, widget.getId(), false, null));
+                    });
+                }
+                removedIds.forEach(id -> {
+                    widgetVersions.put(id, modificationVersion);
+                    changes.addLast(new WidgetChange(modificationVersion, id, true, null));
+                });
+                if (shiftedFromIndexZ != null) {
+                    shiftVersion = modificationVersion;
+                    changes.addLast(new WidgetChange(modificationVersion, null, false, shiftedFromIndexZ));
+                }
+                if (isListened()) {
+                    pendingEvents.add(
+                            toEvents(modificationVersion, created, updated, removedIds, previous, shiftedFromIndexZ)
+                    );
+                }
+                evicted = evictChanges();
+            }
+            publishEvents();
+            archive(evicted);
+        };
+        if (!committedByStorage.get() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versionChange.run();
+                }
+            });
+        } else {
+            versionChange.run();
+        }
+    }
+
+    /**
+     * Queue is checked again after publishing, so events queued while lock of publishing was released aren't left
+     */
+    private void publishEvents() {
+        while (!pendingEvents.isEmpty() && publishing.tryLock()) {
+            try {
+                List<WidgetEvent> events;
+                while ((events = pendingEvents.poll()) != null) {
+                    for (final WidgetEventListener widgetEventListener : widgetEventListeners) {
+                        if (widgetEventListener.isListening()) {
+                            widgetEventListener.modified(events);
+                        }
+                    }
+                }
+            } finally {
+                publishing.unlock();
+            }
+        }
+    }
+
+    private static List<WidgetEvent> toEvents(
+            final long modificationVersion,
+            final List<Widget> created,
+            final List<Widget> updated,
+            final List<UUID> removedIds,
+            final List<Widget> previous,
+            @Nullable final Integer shiftedFromIndexZ
+    ) {
+        final Map<UUID, Widget> previousById = new HashMap<>();
+        previous.forEach(widget -> previousById.put(widget.getId(), widget));
+        final List<WidgetEvent> events = new ArrayList<>();
+        created.forEach(widget -> events.add(
+                new WidgetEvent(WidgetEvent.Type.CREATED, modificationVersion, widget.getId(), widget, null, null)
+        ));
+        updated.forEach(widget -> events.add(new WidgetEvent(
+                WidgetEvent.Type.UPDATED,
+                modificationVersion,
+                widget.getId(),
+                widget,
+                previousById.get(widget.getId()),
+                null
+        )));
+        removedIds.forEach(id -> events.add(
+                new WidgetEvent(WidgetEvent.Type.DELETED, modificationVersion, id, null, previousById.get(id), null)
+        ));
+        if (shiftedFromIndexZ != null) {
+            events.add(new WidgetEvent(WidgetEvent.Type.SHIFTED, modificationVersion, null, null, null, shiftedFromIndexZ));
+        }
+        return events;
+    }
+
+    /**
+     * Quarter of log is evicted at once, so archive is written by batches.
+     * Changes of one version are evicted together
+     *
+     * @return evicted changes, which are kept as archiving until they are written
+     */
+    private List<WidgetChange> evictChanges() {
+        if (changes.size() <= maxChanges) {
+            return Collections.emptyList();
+        }
+        final List<WidgetChange> evicted = new ArrayList<>();
+        while (!changes.isEmpty() &&
+               (changes.size() > maxChanges - maxChanges / 4 || changes.peekFirst().getVersion() == evictedVersion)) {
+            final WidgetChange change = changes.pollFirst();
+            evictedVersion = change.getVersion();
+            evicted.add(change);
+            if (change.isRemoved()) {
+                // Floor is raised before version is forgotten, so removed widget is never confirmed meanwhile
+                removedFloorVersion = change.getVersion();
+                widgetVersions.remove(change.getWidgetId(), change.getVersion());
+            }
+        }
+        if (widgetChangeArchive.isEnabled()) {
+            archivingChanges.put(evicted.get(0).getVersion(), evicted);
+        }
+        return evicted;
+    }
+
+    /**
+     * Archive is written outside of lock of log, so modifications and readers of log don't wait for storage
+     */
+    private void archive(final List<WidgetChange> evicted) {
+        if (evicted.isEmpty() || !widgetChangeArchive.isEnabled()) {
+            return;
+        }
+        final long fromVersion = evicted.get(0).getVersion();
+        final long upToVersion = evicted.get(evicted.size() - 1).getVersion();
+        try {
+            widgetChangeArchive.append(epoch, evicted);
+        } catch (RuntimeException e) {
+            // Modification is already committed, clients behind evicted changes will resync
+            log.warn("Can't archive {} widget changes up to version {}", evicted.size(), upToVersion, e);
+            synchronized (changes) {
+                archiveLostVersion = Math.max(archiveLostVersion, upToVersion);
+            }
+        } finally {
+            synchronized (changes) {
+                archivingChanges.remove(fromVersion);
+            }
+        }
+    }
+
+    /**
+     * Batches have consecutive versions, so version is archiving if it's into range of the nearest lower batch
+     */
+    private static boolean isArchiving(final TreeMap<Long, List<WidgetChange>> archiving, final long changeVersion) {
+        final Map.Entry<Long, List<WidgetChange>> batch = archiving.floorEntry(changeVersion);
+        return batch != null && changeVersion <= batch.getValue().get(batch.getValue().size() - 1).getVersion();
+    }
+}
@@ -0,0 +1,345 @@
+package com.test.app.widget.service.columnar_storage;
+
+import com.test.app.widget.service.IndexZBatchPlanner;
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.IndexZShift;
+import com.test.app.widget.service.Widget;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Widgets and their Z-order are kept by primitive columns of {@link WidgetColumns}, so scans take Z-index
+ * of found slot from column, and paging walks Z-order column by positions.
+ * Widget objects are created only for returned rows.
+ * <p>
+ * Columns are guarded by read/write lock: reads are running in parallel, modifications are exclusive
+ */
+@AllArgsConstructor
+@Component
+public class ColumnarStorageRepository {
+    private static final int ITERATION_CHUNK_SIZE = 1000;
+
+    private final WidgetColumns widgetColumns = new WidgetColumns();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Actions of current modification, they are run when outer modification is finished
+     */
+    private final List<Runnable> committedActions = new ArrayList<>();
+
+    Widget create(final Widget newWidget) {
+        return write(() -> {
+            if (widgetColumns.slotOfIndexZ(newWidget.getIndexZ()) >= 0) {
+                // Z-indexes was not recounted before update
+                throw new RuntimeException(String.format(
+                        "Can't create new widget id=%s with duplicate Z-index value=%s",
+                        newWidget.getId(),
+                        newWidget.getIndexZ()
+                ));
+            }
+            setWidgetLastModificationTimeAsNow(newWidget);
+            widgetColumns.put(newWidget);
+            return newWidget;
+        });
+    }
+
+    Widget update(final Widget newWidget) {
+        return write(() -> {
+            final int slot = widgetColumns.slotOf(newWidget.getId());
+            if (slot < 0) {
+                throw new RuntimeException(String.format("Can't find widget id=%s", newWidget.getId()));
+            }
+            final int occupantSlot = widgetColumns.slotOfIndexZ(newWidget.getIndexZ());
+            if (occupantSlot >= 0 && occupantSlot != slot) {
+                // Z-indexes was not recounted before update
+                throw new RuntimeException(String.format(
+                        "Can't update widget id=%s with duplicate Z-index value=%s",
+                        newWidget.getId(),
+                        newWidget.getIndexZ()
+                ));
+            }
+            setWidgetLastModificationTimeAsNow(newWidget);
+            widgetColumns.put(newWidget);
+            return newWidget;
+        });
+    }
+
+    UUID removeById(final @NonNull UUID id) {
+        return write(() -> {
+            if (!widgetColumns.remove(id)) {
+                throw new RuntimeException(String.format("Can't find widget id=%s", id));
+            }
+            return id;
+        });
+    }
+
+    /**
+     * Increment Z-index of all widgets with Z-index bigger or equals given one
+     *
+     * @return number of shifted widgets
+     */
+    int incrementAllWidgetsZIndexesBiggerOrEqualsThis(final int indexZ, final int incrementValue) {
+        return write(() -> widgetColumns.incrementIndexZ(indexZ, Integer.MAX_VALUE, incrementValue));
+    }
+
+    /**
+     * Apply batch of modifications as one storage modification, see {@link IndexZBatchPlanner}
+     *
+     * @param created widgets for creating, Z-index can be Null
+     * @param updated widgets for updating, Z-index can be Null
+     * @param deleted ids of widgets for removing
+     * @return number of shifted widgets
+     */
+    int applyBatch(
+            final List<Widget> created,
+            final List<Widget> updated,
+            final List<UUID> deleted
+    ) {
+        return write(() -> {
+            // Check before any modification, for keeping batch atomic
+            updated.forEach(widget -> loadById(widget.getId()));
+            deleted.forEach(this::loadById);
+
+            deleted.forEach(widgetColumns::remove);
+            // Updated widgets leave Z-order for planning, they are put back as new ones
+            updated.forEach(widget -> widgetColumns.remove(widget.getId()));
+
+            final List<Widget> placed = new ArrayList<>(updated);
+            placed.addAll(created);
+            int shifted = 0;
+            for (final IndexZShift shift : IndexZBatchPlanner.plan(placed, this::loadPagingAfterIndexZ, getMaxZIndexValue())) {
+                shifted += widgetColumns.incrementIndexZ(shift.getFromIndexZ(), shift.getToIndexZ(), shift.getIncrementValue());
+            }
+            placed.forEach(widget -> {
+                setWidgetLastModificationTimeAsNow(widget);
+                widgetColumns.put(widget);
+            });
+            return shifted;
+        });
+    }
+
+    @NonNull Widget loadById(final @NonNull UUID id) {
+        return findById(id).orElseThrow(RuntimeException::new);
+    }
+
+    Optional<Widget> findById(final @NonNull UUID id) {
+        return read(() -> {
+            final int slot = widgetColumns.slotOf(id);
+            return slot < 0 ? Optional.empty() : Optional.of(widgetColumns.toWidget(slot));
+        });
+    }
+
+    List<Widget> loadPaging(final int page, final int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Error: page value can't be < 0");
+        }
+        final int startPaging = Math.max(page - 1, 0);
+        return read(() -> loadAscendingFromPosition(startPaging, size));
+    }
+
+    /**
+     * Keyset paging: widgets with Z-index bigger than given one, read directly from Z-order
+     */
+    List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        return read(() -> loadAscendingFromPosition(
+                afterIndexZ == Integer.MAX_VALUE ? widgetColumns.size() : widgetColumns.positionOf(afterIndexZ + 1),
+                size
+        ));
+    }
+
+    List<Widget> loadAllSortedByIndexZ() {
+        return read(() -> loadAscendingFromPosition(0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Visit all widgets in Z-index order. Widgets are materialized by chunks, and lock isn't held
+     * while consumer works, so concurrent modifications can be seen partially
+     */
+    void forEachSortedByIndexZ(final Consumer<Widget> consumer) {
+        List<Widget> chunk = loadPaging(0, ITERATION_CHUNK_SIZE);
+        while (!chunk.isEmpty()) {
+            chunk.forEach(consumer);
+            if (chunk.size() < ITERATION_CHUNK_SIZE) {
+                return;
+            }
+            chunk = loadPagingAfterIndexZ(chunk.get(chunk.size() - 1).getIndexZ(), ITERATION_CHUNK_SIZE);
+        }
+    }
+
+    Optional<Widget> findByIndexZValue(final int widgetIndexZ) {
+        return read(() -> {
+            final int slot = widgetColumns.slotOfIndexZ(widgetIndexZ);
+            return slot < 0 ? Optional.empty() : Optional.of(widgetColumns.toWidget(slot));
+        });
+    }
+
+    /**
+     * Find max Z-index value into storage or 0 if storage is empty
+     *
+     * @return max Z-index value into storage or 0 if storage is empty
+     */
+    int getMaxZIndexValue() {
+        return read(() -> widgetColumns.size() == 0
+                          ? 0
+                          : widgetColumns.indexZAt(widgetColumns.slotAtPosition(widgetColumns.size() - 1)));
+    }
+
+    int count() {
+        return read(widgetColumns::size);
+    }
+
+    /**
+     * Difference between max and min Z-index, or 0 if storage is empty
+     */
+    int getIndexZSpan() {
+        return read(() -> widgetColumns.size() == 0
+                          ? 0
+                          : widgetColumns.indexZAt(widgetColumns.slotAtPosition(widgetColumns.size() - 1)) -
+                            widgetColumns.indexZAt(widgetColumns.slotAtPosition(0)));
+    }
+
+    /**
+     * Load widgets which are fully inside selected area.
+     * Bounds columns are scanned without creating any object, widgets are created for found slots only
+     */
+    List<Widget> loadBySelectedArea(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        return read(() -> {
+            final int[] slots = widgetColumns.searchContained(leftX, leftY, rightX, rightY);
+            final List<Widget> result = new ArrayList<>(slots.length);
+            for (final int slot : slots) {
+                result.add(widgetColumns.toWidget(slot));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Load widgets which are fully inside selected area by Z-order, only the first limit widgets after cursor.
+     * Z-index and slot of found widgets are packed into primitive longs and sorted, so found widgets aren't created,
+     * widgets are created for taken slots only
+     */
+    List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return read(() -> {
+            final int[] slots = widgetColumns.searchContained(leftX, leftY, rightX, rightY);
+            final long[] packed = new long[slots.length];
+            int found = 0;
+            for (final int slot : slots) {
+                final int indexZ = widgetColumns.indexZAt(slot);
+                if (direction.isAfter(indexZ, afterIndexZ)) {
+                    // Z-indexes are unique, so packed values are ordered by Z-index
+                    packed[found++] = (long) indexZ << 32 | slot;
+                }
+            }
+            Arrays.sort(packed, 0, found);
+            final int taken = Math.min(found, limit);
+            final List<Widget> result = new ArrayList<>(taken);
+            for (int i = 0; i < taken; i++) {
+                final long value = direction == IndexZDirection.ASCENDING ? packed[i] : packed[found - 1 - i];
+                result.add(widgetColumns.toWidget((int) value));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Load widgets whose bounds contain point, the highest Z-index first.
+     * There is no spatial index, so bounds columns are scanned and only found widgets are ordered by Z-index
+     */
+    List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return read(() -> {
+            final int[] slots = widgetColumns.searchContaining(x, y);
+            final List<Widget> result = new ArrayList<>(slots.length);
+            for (final int slot : slots) {
+                result.add(widgetColumns.toWidget(slot));
+            }
+            result.sort(Comparator.comparing(Widget::getIndexZ).reversed());
+            return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+        });
+    }
+
+    private <T> T read(final Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run action after current modification, by the same thread before write lock is released,
+     * so actions follow order of modifications. Action is run at once out of modification
+     */
+    void afterCommit(final Runnable action) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            committedActions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Make modification exclusively, lock is reentrant, so modifications made inside are the part of it
+     */
+    <T> T write(final Supplier<T> modification) {
+        lock.writeLock().lock();
+        try {
+            return modification.get();
+        } finally {
+            try {
+                // Actions are run by the outer modification only
+                if (lock.getWriteHoldCount() == 1 && !committedActions.isEmpty()) {
+                    final List<Runnable> actions = new ArrayList<>(committedActions);
+                    committedActions.clear();
+                    actions.forEach(Runnable::run);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Load widgets in ascending Z-index order, starting from position (zero based) into Z-order
+     */
+    private List<Widget> loadAscendingFromPosition(final int position, final int limit) {
+        final int end = (int) Math.min(widgetColumns.size(), (long) position + limit);
+        final List<Widget> result = new ArrayList<>(Math.max(end - position, 0));
+        for (int i = position; i < end; i++) {
+            result.add(widgetColumns.toWidget(widgetColumns.slotAtPosition(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Set last modification Date/Time as now in UTC format
+     */
+    private void setWidgetLastModificationTimeAsNow(final Widget widget) {
+        widget.setLastModificationDateTime(OffsetDateTime.now(Widget.MODIFICATION_TIME_ZONE).toLocalDateTime());
+    }
+}
@@ -0,0 +1,202 @@
+package com.test.app.widget.service.columnar_storage;
+
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
+import com.test.app.widget.service.WidgetStorage;
+import com.test.app.widget.service.WidgetVersions;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Service
+@AllArgsConstructor
+public class ColumnarStorageService implements WidgetStorage {
+    private final ColumnarStorageRepository columnarStorageRepository;
+    private final WidgetMetrics widgetMetrics;
+    private final WidgetVersions widgetVersions;
+
+    /**
+     * Z-index recount and creating are one modification under write lock, so concurrent writes can't get the same Z-index
+     */
+    public Widget create(final InputWidget widget) {
+        final Widget widgetForCreating = new Widget(
+                widget.getCoordinateX(),
+                widget.getCoordinateY(),
+                widget.getIndexZ(),
+                widget.getWidth(),
+                widget.getHeight()
+        );
+        return columnarStorageRepository.write(() -> {
+            final int shifted = recountIndexZ(widgetForCreating);
+            widgetMetrics.recordShiftedWidgets(WidgetMetrics.BACKEND_COLUMNAR, shifted);
+            final Widget created = columnarStorageRepository.create(widgetForCreating);
+            afterCommit(() -> widgetVersions.created(created, shifted > 0));
+            return created;
+        });
+    }
+
+    public Widget update(final Widget widget) {
+        return columnarStorageRepository.write(() -> {
+            final Widget previous = loadPrevious(widget.getId());
+            final int shifted = recountIndexZ(widget);
+            widgetMetrics.recordShiftedWidgets(WidgetMetrics.BACKEND_COLUMNAR, shifted);
+            final Widget updated = columnarStorageRepository.update(widget);
+            afterCommit(() -> widgetVersions.updated(previous, updated, shifted > 0));
+            return updated;
+        });
+    }
+
+    public UUID deleteById(final @NonNull UUID id) {
+        return columnarStorageRepository.write(() -> {
+            final Widget previous = loadPrevious(id);
+            final UUID removedId = columnarStorageRepository.removeById(id);
+            afterCommit(() -> widgetVersions.removed(removedId, previous));
+            return removedId;
+        });
+    }
+
+    public WidgetBatchResult applyBatch(
+            final List<InputWidget> create,
+            final List<Widget> update,
+            final List<UUID> delete
+    ) {
+        final List<Widget> created = create.stream()
+                                           .map(widget -> new Widget(
+                                                   widget.getCoordinateX(),
+                                                   widget.getCoordinateY(),
+                                                   widget.getIndexZ(),
+                                                   widget.getWidth(),
+                                                   widget.getHeight()
+                                           ))
+                                           .collect(Collectors.toList());
+        return columnarStorageRepository.write(() -> {
+            final List<Widget> previous = new ArrayList<>();
+            update.forEach(widget -> previous.add(loadPrevious(widget.getId())));
+            delete.forEach(id -> previous.add(loadPrevious(id)));
+            previous.removeIf(Objects::isNull);
+            final int shifted = columnarStorageRepository.applyBatch(created, update, delete);
+            widgetMetrics.recordShiftedWidgets(WidgetMetrics.BACKEND_COLUMNAR, shifted);
+            final WidgetBatchResult result = new WidgetBatchResult(created, update, delete);
+            afterCommit(() -> widgetVersions.modified(result, previous, shifted > 0));
+            return result;
+        });
+    }
+
+    public Widget loadById(final @NonNull UUID id) {
+        return columnarStorageRepository.loadById(id);
+    }
+
+    public List<Widget> loadByIds(final Collection<UUID> ids) {
+        return ids.stream()
+                  .map(columnarStorageRepository::findById)
+                  .filter(Optional::isPresent)
+                  .map(Optional::get)
+                  .collect(Collectors.toList());
+    }
+
+    public List<Widget> loadAllOrderedByIndexZ() {
+        return columnarStorageRepository.loadAllSortedByIndexZ();
+    }
+
+    public void forEachOrderedByIndexZ(final Consumer<Widget> consumer) {
+        columnarStorageRepository.forEachSortedByIndexZ(consumer);
+    }
+
+    public List<Widget> loadPaging(final int page, final int size) {
+        return columnarStorageRepository.loadPaging(page, size);
+    }
+
+    public List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        return columnarStorageRepository.loadPagingAfterIndexZ(afterIndexZ, size);
+    }
+
+    public List<Widget> loadBySelectedArea(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        return columnarStorageRepository.loadBySelectedArea(leftX, leftY, rightX, rightY);
+    }
+
+    public List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return columnarStorageRepository.loadBySelectedAreaOrderedByIndexZ(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                direction,
+                afterIndexZ,
+                limit
+        );
+    }
+
+    public List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return columnarStorageRepository.loadTopAtPoint(x, y, limit);
+    }
+
+    public int count() {
+        return columnarStorageRepository.count();
+    }
+
+    public int getIndexZSpan() {
+        return columnarStorageRepository.getIndexZSpan();
+    }
+
+    /**
+     * Versions are changed after modification in order of modifications, columns aren't committed by transactions,
+     * so versions don't wait for completion of caller transaction
+     */
+    private void afterCommit(final Runnable versionChange) {
+        columnarStorageRepository.afterCommit(() -> widgetVersions.changeAtOnce(versionChange));
+    }
+
+    /**
+     * Widget before modification for events, it isn't loaded while nobody is listening
+     */
+    @Nullable
+    private Widget loadPrevious(final UUID id) {
+        return widgetVersions.isListened() ? columnarStorageRepository.findById(id).orElse(null) : null;
+    }
+
+    /**
+     * Recount all widgets Z-index values if it's necessary
+     *
+     * @param widget widget whose Z-index must be checked, for recounting other widget Z-indexes
+     *               if widget#indexZ is Null, it will be update for existed maxIndexZValue+1
+     *               for making this widget like foreground
+     * @return number of shifted widgets
+     */
+    private int recountIndexZ(final Widget widget) {
+        if (widget.getIndexZ() == null) {
+            widget.setIndexZ(columnarStorageRepository.getMaxZIndexValue() + 1);
+            return 0;
+        }
+        final Optional<Widget> optWidget = columnarStorageRepository.findByIndexZValue(widget.getIndexZ());
+        if (optWidget.isPresent() && !optWidget.get().getId().equals(widget.getId())) {
+            return columnarStorageRepository.incrementAllWidgetsZIndexesBiggerOrEqualsThis(widget.getIndexZ(), 1);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,285 @@
+package com.test.app.widget.service.columnar_storage;
+
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Widgets as struct of arrays: every field is a primitive column, and widget is a slot (row) into all columns.
+ * Bounding box is kept by own columns, so area scan is a loop over four int arrays without any object access.
+ * Removed slot is filled by the last one, so rows are always dense into [0, size).
+ * Slots are found by id through {@link WidgetSlotTable}, so there are no objects per widget at all.
+ * <p>
+ * Z-order is a column too: slots sorted by Z-index, it's searched by binary search over Z-index column.
+ * Shift of Z-index range keeps order, so it only increments Z-index of slots of that range into order.
+ * Inserting and removing move the tail of order by one array copy, it's O(n) but without any allocation.
+ * Columns are not thread safe, they are guarded by {@link ColumnarStorageRepository}
+ */
+class WidgetColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final WidgetSlotTable slotsById = new WidgetSlotTable();
+    private long[] idMostBits = new long[INITIAL_CAPACITY];
+    private long[] idLeastBits = new long[INITIAL_CAPACITY];
+    private int[] coordinateX = new int[INITIAL_CAPACITY];
+    private int[] coordinateY = new int[INITIAL_CAPACITY];
+    private int[] width = new int[INITIAL_CAPACITY];
+    private int[] height = new int[INITIAL_CAPACITY];
+    private int[] indexZ = new int[INITIAL_CAPACITY];
+    /**
+     * Slots ordered by Z-index, position of slot into it is position of widget into Z-order
+     */
+    private int[] slotsByIndexZ = new int[INITIAL_CAPACITY];
+    private int[] minX = new int[INITIAL_CAPACITY];
+    private int[] minY = new int[INITIAL_CAPACITY];
+    private int[] maxX = new int[INITIAL_CAPACITY];
+    private int[] maxY = new int[INITIAL_CAPACITY];
+    /**
+     * Last modification Date/Time in UTC as epoch seconds and nanos of second
+     */
+    private long[] modificationSeconds = new long[INITIAL_CAPACITY];
+    private int[] modificationNanos = new int[INITIAL_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return slot of widget or -1 if widget is absent
+     */
+    int slotOf(final UUID widgetId) {
+        return slotsById.get(widgetId.getMostSignificantBits(), widgetId.getLeastSignificantBits());
+    }
+
+    /**
+     * Insert widget into new slot or overwrite slot of existed widget.
+     * Z-index must not be occupied by another widget
+     */
+    void put(final Widget widget) {
+        int slot = slotOf(widget.getId());
+        if (slot < 0) {
+            if (size == idMostBits.length) {
+                grow();
+            }
+            slot = size++;
+            slotsById.put(widget.getId().getMostSignificantBits(), widget.getId().getLeastSignificantBits(), slot);
+            idMostBits[slot] = widget.getId().getMostSignificantBits();
+            idLeastBits[slot] = widget.getId().getLeastSignificantBits();
+            indexZ[slot] = widget.getIndexZ();
+            insertIntoOrder(slot, size - 1);
+        } else if (indexZ[slot] != widget.getIndexZ()) {
+            removeFromOrder(positionOf(indexZ[slot]), size);
+            indexZ[slot] = widget.getIndexZ();
+            insertIntoOrder(slot, size - 1);
+        }
+        coordinateX[slot] = widget.getCoordinateX();
+        coordinateY[slot] = widget.getCoordinateY();
+        width[slot] = widget.getWidth();
+        height[slot] = widget.getHeight();
+        minX[slot] = WidgetBounds.minX(widget);
+        minY[slot] = WidgetBounds.minY(widget);
+        maxX[slot] = WidgetBounds.maxX(widget);
+        maxY[slot] = WidgetBounds.maxY(widget);
+        modificationSeconds[slot] = widget.getLastModificationDateTime().toEpochSecond(Widget.MODIFICATION_TIME_ZONE);
+        modificationNanos[slot] = widget.getLastModificationDateTime().getNano();
+    }
+
+    /**
+     * @return false if widget is absent
+     */
+    boolean remove(final UUID widgetId) {
+        final int slot = slotsById.remove(widgetId.getMostSignificantBits(), widgetId.getLeastSignificantBits());
+        if (slot == WidgetSlotTable.ABSENT) {
+            return false;
+        }
+        removeFromOrder(positionOf(indexZ[slot]), size);
+        final int last = --size;
+        if (slot != last) {
+            // Order keeps the last slot by its Z-index, it's found before Z-index is moved
+            slotsByIndexZ[positionOf(indexZ[last])] = slot;
+            moveSlot(last, slot);
+            slotsById.put(idMostBits[slot], idLeastBits[slot], slot);
+        }
+        return true;
+    }
+
+    UUID idAt(final int slot) {
+        return new UUID(idMostBits[slot], idLeastBits[slot]);
+    }
+
+    int indexZAt(final int slot) {
+        return indexZ[slot];
+    }
+
+    /**
+     * @return slot of widget with given Z-index or -1 if Z-index is free
+     */
+    int slotOfIndexZ(final int widgetIndexZ) {
+        final int position = positionOf(widgetIndexZ);
+        return position < size && indexZ[slotsByIndexZ[position]] == widgetIndexZ ? slotsByIndexZ[position] : -1;
+    }
+
+    /**
+     * @return slot at position (zero based) into Z-order
+     */
+    int slotAtPosition(final int position) {
+        return slotsByIndexZ[position];
+    }
+
+    /**
+     * @return count of widgets with Z-index lower than given one, it's position of Z-index into Z-order
+     */
+    int positionOf(final int widgetIndexZ) {
+        return positionOf(widgetIndexZ, size);
+    }
+
+    /**
+     * Binary search of Z-index into the first given count of slots of Z-order
+     */
+    private int positionOf(final int widgetIndexZ, final int orderSize) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (indexZ[slotsByIndexZ[middle]] < widgetIndexZ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Increment Z-index of all widgets with Z-index into [fromIndexZ, toIndexZ].
+     * Shifted range must not jump over other Z-indexes, for keeping Z-order
+     *
+     * @param incrementValue offset, must be positive
+     * @return number of shifted widgets
+     */
+    int incrementIndexZ(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+        if (incrementValue <= 0) {
+            throw new IllegalArgumentException("Error: Z-index increment value must be positive");
+        }
+        final int from = positionOf(fromIndexZ);
+        final int to = toIndexZ == Integer.MAX_VALUE ? size : positionOf(toIndexZ + 1);
+        for (int position = from; position < to; position++) {
+            indexZ[slotsByIndexZ[position]] += incrementValue;
+        }
+        return to - from;
+    }
+
+    /**
+     * Materialize widget from slot
+     */
+    Widget toWidget(final int slot) {
+        return new Widget(
+                idAt(slot),
+                coordinateX[slot],
+                coordinateY[slot],
+                indexZ[slot],
+                width[slot],
+                height[slot],
+                LocalDateTime.ofEpochSecond(
+                        modificationSeconds[slot],
+                        modificationNanos[slot],
+                        Widget.MODIFICATION_TIME_ZONE
+                )
+        );
+    }
+
+    /**
+     * Find widgets whose bounds are fully inside selected area by scanning bounds columns
+     *
+     * @return slots of found widgets
+     */
+    int[] searchContained(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        int[] result = new int[16];
+        int found = 0;
+        for (int slot = 0; slot < size; slot++) {
+            // Non short-circuit operators: all four checks are evaluated without branches between them
+            if (minX[slot] >= leftX & maxX[slot] <= rightX & minY[slot] >= leftY & maxY[slot] <= rightY) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, found * 2);
+                }
+                result[found++] = slot;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Find widgets whose bounds contain point by scanning bounds columns
+     *
+     * @return slots of found widgets
+     */
+    int[] searchContaining(final int x, final int y) {
+        int[] result = new int[16];
+        int found = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (minX[slot] <= x & maxX[slot] >= x & minY[slot] <= y & maxY[slot] >= y) {
+                if (found == result.length) {
+                    result = Arrays.copyOf(result, found * 2);
+                }
+                result[found++] = slot;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    /**
+     * Insert slot with already set Z-index into order of given count of slots
+     */
+    private void insertIntoOrder(final int slot, final int orderSize) {
+        final int position = positionOf(indexZ[slot], orderSize);
+        System.arraycopy(slotsByIndexZ, position, slotsByIndexZ, position + 1, orderSize - position);
+        slotsByIndexZ[position] = slot;
+    }
+
+    private void removeFromOrder(final int position, final int orderSize) {
+        System.arraycopy(slotsByIndexZ, position + 1, slotsByIndexZ, position, orderSize - position - 1);
+    }
+
+    private void moveSlot(final int from, final int to) {
+        idMostBits[to] = idMostBits[from];
+        idLeastBits[to] = idLeastBits[from];
+        coordinateX[to] = coordinateX[from];
+        coordinateY[to] = coordinateY[from];
+        width[to] = width[from];
+        height[to] = height[from];
+        indexZ[to] = indexZ[from];
+        minX[to] = minX[from];
+        minY[to] = minY[from];
+        maxX[to] = maxX[from];
+        maxY[to] = maxY[from];
+        modificationSeconds[to] = modificationSeconds[from];
+        modificationNanos[to] = modificationNanos[from];
+    }
+
+    private void grow() {
+        final int capacity = idMostBits.length * 2;
+        idMostBits = Arrays.copyOf(idMostBits, capacity);
+        idLeastBits = Arrays.copyOf(idLeastBits, capacity);
+        coordinateX = Arrays.copyOf(coordinateX, capacity);
+        coordinateY = Arrays.copyOf(coordinateY, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        indexZ = Arrays.copyOf(indexZ, capacity);
+        slotsByIndexZ = Arrays.copyOf(slotsByIndexZ, capacity);
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        modificationSeconds = Arrays.copyOf(modificationSeconds, capacity);
+        modificationNanos = Arrays.copyOf(modificationNanos, capacity);
+    }
+}
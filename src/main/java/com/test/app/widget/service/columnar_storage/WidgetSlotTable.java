@@ -0,0 +1,125 @@
+package com.test.app.widget.service.columnar_storage;
+
+import java.util.Arrays;
+
+/**
+ * Slots of widgets by id: open addressing table with linear probing, where key is a pair of longs of UUID.
+ * Keys and slots are kept by primitive arrays, so there is neither entry nor boxed slot per widget.
+ * Table is at most half full, and removing shifts next entries of probe back instead of leaving tombstones,
+ * so probes stay short after any count of removings.
+ * Table is not thread safe, it's guarded by {@link ColumnarStorageRepository}
+ */
+class WidgetSlotTable {
+    static final int ABSENT = -1;
+    private static final int INITIAL_CAPACITY = 2048;
+
+    private long[] keyMostBits = new long[INITIAL_CAPACITY];
+    private long[] keyLeastBits = new long[INITIAL_CAPACITY];
+    /**
+     * Slot by table index, {@link #ABSENT} for free index
+     */
+    private int[] slots = newSlots(INITIAL_CAPACITY);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return slot of key or {@link #ABSENT}
+     */
+    int get(final long mostBits, final long leastBits) {
+        final int mask = slots.length - 1;
+        for (int index = hash(mostBits, leastBits) & mask; ; index = (index + 1) & mask) {
+            if (slots[index] == ABSENT) {
+                return ABSENT;
+            }
+            if (keyMostBits[index] == mostBits && keyLeastBits[index] == leastBits) {
+                return slots[index];
+            }
+        }
+    }
+
+    /**
+     * Insert key or overwrite slot of existed key
+     */
+    void put(final long mostBits, final long leastBits, final int slot) {
+        if (2 * (size + 1) > slots.length) {
+            grow();
+        }
+        final int mask = slots.length - 1;
+        int index = hash(mostBits, leastBits) & mask;
+        while (slots[index] != ABSENT) {
+            if (keyMostBits[index] == mostBits && keyLeastBits[index] == leastBits) {
+                slots[index] = slot;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keyMostBits[index] = mostBits;
+        keyLeastBits[index] = leastBits;
+        slots[index] = slot;
+        size++;
+    }
+
+    /**
+     * @return removed slot or {@link #ABSENT} if key is absent
+     */
+    int remove(final long mostBits, final long leastBits) {
+        final int mask = slots.length - 1;
+        int hole = hash(mostBits, leastBits) & mask;
+        while (slots[hole] != ABSENT) {
+            if (keyMostBits[hole] == mostBits && keyLeastBits[hole] == leastBits) {
+                break;
+            }
+            hole = (hole + 1) & mask;
+        }
+        final int removed = slots[hole];
+        if (removed == ABSENT) {
+            return ABSENT;
+        }
+        // Entries after hole are moved back if hole is between their hash index and their index
+        for (int index = (hole + 1) & mask; slots[index] != ABSENT; index = (index + 1) & mask) {
+            final int home = hash(keyMostBits[index], keyLeastBits[index]) & mask;
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                keyMostBits[hole] = keyMostBits[index];
+                keyLeastBits[hole] = keyLeastBits[index];
+                slots[hole] = slots[index];
+                hole = index;
+            }
+        }
+        slots[hole] = ABSENT;
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        final long[] oldMostBits = keyMostBits;
+        final long[] oldLeastBits = keyLeastBits;
+        final int[] oldSlots = slots;
+        final int capacity = oldSlots.length * 2;
+        keyMostBits = new long[capacity];
+        keyLeastBits = new long[capacity];
+        slots = newSlots(capacity);
+        size = 0;
+        for (int index = 0; index < oldSlots.length; index++) {
+            if (oldSlots[index] != ABSENT) {
+                put(oldMostBits[index], oldLeastBits[index], oldSlots[index]);
+            }
+        }
+    }
+
+    private static int[] newSlots(final int capacity) {
+        final int[] slots = new int[capacity];
+        Arrays.fill(slots, ABSENT);
+        return slots;
+    }
+
+    /**
+     * Bits of both halves are mixed, so ids differing by any half get different indexes
+     */
+    private static int hash(final long mostBits, final long leastBits) {
+        final long mixed = (mostBits ^ Long.rotateLeft(leastBits, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,129 @@
+package com.test.app.widget.service.h2_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.WidgetChange;
+import com.test.app.widget.service.WidgetChangeArchive;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Change log of H2 storage is continued by WIDGET_CHANGES table, so clients which are far behind
+ * in-memory change log don't need to load all widgets again. The oldest quarter of table is removed when it's full.
+ * <p>
+ * Changes are appended after modification is committed, so they are written by their own transaction
+ */
+@Repository
+public class H2ChangeArchive implements WidgetChangeArchive {
+    private static final String INSERT = "INSERT INTO WIDGET_CHANGES (EPOCH, VERSION, WIDGET_ID, REMOVED, SHIFTED_FROM_Z) " +
+                                         "VALUES (:epoch, :version, :widgetId, :removed, :shiftedFromIndexZ)";
+    private static final String LOAD_AFTER = "SELECT VERSION, WIDGET_ID, REMOVED, SHIFTED_FROM_Z FROM WIDGET_CHANGES " +
+                                             "WHERE EPOCH = :epoch AND VERSION > :version AND VERSION <= :upToVersion " +
+                                             "ORDER BY VERSION " +
+                                             "LIMIT :limit";
+    private static final String LOAD_VERSION_AT = "SELECT VERSION FROM WIDGET_CHANGES " +
+                                                  "WHERE EPOCH = :epoch " +
+                                                  "ORDER BY VERSION " +
+                                                  "LIMIT 1 OFFSET :offset";
+    private static final String DELETE_UP_TO = "DELETE FROM WIDGET_CHANGES " +
+                                               "WHERE EPOCH = :epoch AND VERSION <= :version";
+
+    private final ConfigProperties configProperties;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private int archivedChanges;
+    /**
+     * Changes up to this version were removed from table, it's read without lock of appending
+     */
+    private volatile long removedVersion;
+
+    public H2ChangeArchive(
+            final ConfigProperties configProperties,
+            final NamedParameterJdbcTemplate jdbcTemplate,
+            final PlatformTransactionManager transactionManager
+    ) {
+        this.configProperties = configProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return configProperties.getH2storage().isEnabled();
+    }
+
+    @Override
+    public synchronized void append(final long epoch, final List<WidgetChange> changes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(
+                    INSERT,
+                    changes.stream()
+                           .map(change -> new MapSqlParameterSource()
+                                   .addValue("epoch", epoch)
+                                   .addValue("version", change.getVersion())
+                                   .addValue("widgetId", change.getWidgetId())
+                                   .addValue("removed", change.isRemoved())
+                                   .addValue("shiftedFromIndexZ", change.getShiftedFromIndexZ()))
+                           .toArray(SqlParameterSource[]::new)
+            );
+            // Counters are changed only if the whole append is written
+            int archived = archivedChanges + changes.size();
+            final int maxArchivedChanges = configProperties.getChangeLog().getMaxArchivedChanges();
+            if (archived > maxArchivedChanges) {
+                final Long version = jdbcTemplate.queryForObject(
+                        LOAD_VERSION_AT,
+                        new MapSqlParameterSource().addValue("epoch", epoch)
+                                                   .addValue("offset", archived - maxArchivedChanges + maxArchivedChanges / 4),
+                        Long.class
+                );
+                archived -= jdbcTemplate.update(
+                        DELETE_UP_TO,
+                        new MapSqlParameterSource().addValue("epoch", epoch).addValue("version", version)
+                );
+                removedVersion = version;
+            }
+            archivedChanges = archived;
+        });
+    }
+
+    @Nullable
+    @Override
+    public List<WidgetChange> loadAfter(final long epoch, final long version, final long upToVersion) {
+        if (version < removedVersion) {
+            return null;
+        }
+        final int maxLoaded = configProperties.getChangeLog().getMaxLoadedArchivedChanges();
+        final List<WidgetChange> changes = jdbcTemplate.query(
+                LOAD_AFTER,
+                new MapSqlParameterSource().addValue("epoch", epoch)
+                                           .addValue("version", version)
+                                           .addValue("upToVersion", upToVersion)
+                                           .addValue("limit", maxLoaded + 1),
+                (rs, rowNum) -> {
+                    final String widgetId = rs.getString("WIDGET_ID");
+                    final int shiftedFromIndexZ = rs.getInt("SHIFTED_FROM_Z");
+                    final boolean shifted = !rs.wasNull();
+                    return new WidgetChange(
+                            rs.getLong("VERSION"),
+                            widgetId == null ? null : UUID.fromString(widgetId),
+                            rs.getBoolean("REMOVED"),
+                            shifted ? shiftedFromIndexZ : null
+                    );
+                }
+        );
+        // Reading doesn't wait for appending, so rows removed meanwhile are found by removed version after reading
+        if (changes.size() > maxLoaded || version < removedVersion) {
+            return null;
+        }
+        return changes;
+    }
+}
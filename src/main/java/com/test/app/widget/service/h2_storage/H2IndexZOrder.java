@@ -0,0 +1,557 @@
+package com.test.app.widget.service.h2_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.IndexZShift;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Z-order of H2 storage by sparse ordering keys.
+ * <p>
+ * Widgets are ordered by ORDER_KEY, and keys of neighbours have gaps between them,
+ * so widget is placed between neighbours by writing of its own row only.
+ * Z-index of widget is Z_BASE plus pending shifts from Z_SHIFTS: shift of all upper widgets
+ * is one inserted shift instead of rewriting of all upper rows.
+ * <p>
+ * Renormalization doesn't change Z-indexes, it's done in background: pending shifts are applied to widget rows
+ * when there are too many of them, and keys of region are spread again when gaps between them become small.
+ * If gap is exhausted, region is spread at once by writer.
+ * <p>
+ * Modifications of Z-order and renormalization are serialized by lock which is held until transaction completion
+ */
+@Slf4j
+@Repository
+public class H2IndexZOrder {
+    private static final UUID NO_WIDGET = new UUID(0, 0);
+    /**
+     * Count of widgets on each side of exhausted gap which are spread at first, it's multiplied while it's not enough
+     */
+    private static final int RESPACING_WINDOW = 32;
+    /**
+     * Gap is small when it's less than key gap shifted by this, region is spread in background then
+     */
+    private static final int SMALL_GAP_SHIFT = 16;
+    /**
+     * Region is spread when gaps not less than key gap shifted by this can be made into it
+     */
+    private static final int RESPACED_GAP_SHIFT = 4;
+
+    private static final String LOAD_SHIFTS = "SELECT " + IndexZShifts.COLUMNS;
+    private static final String COUNT_SHIFTS = "SELECT COUNT(*) FROM Z_SHIFTS";
+    private static final String INSERT_SHIFT = "INSERT INTO Z_SHIFTS (FROM_KEY, INCREMENT_VALUE) " +
+                                               "VALUES (:fromKey, :incrementValue)";
+    private static final String DELETE_SHIFTS = "DELETE FROM Z_SHIFTS";
+    private static final String LOAD_SHIFTS_INTO_KEY_RANGE = "SELECT ID, FROM_KEY FROM Z_SHIFTS " +
+                                                             "WHERE FROM_KEY > :fromKey AND FROM_KEY < :toKey";
+    private static final String UPDATE_SHIFT_KEY = "UPDATE Z_SHIFTS SET FROM_KEY = :fromKey WHERE ID = :id";
+    /**
+     * Z-index is base plus constant into segment of pending shifts, so base is ordered as keys there.
+     * Search is bounded by base of the last widget of segment, so index isn't scanned behind the segment
+     */
+    private static final String FIND_CEILING_INTO_SEGMENT =
+            "SELECT ID, ORDER_KEY, Z_BASE " +
+            "FROM WIDGETS USE INDEX (I_rectangular_widgets_ON_z_base) " +
+            "WHERE Z_BASE BETWEEN :zBase AND :toZBase AND " +
+            "      ORDER_KEY BETWEEN :fromKey AND :toKey AND " +
+            "      ID <> :excludedId " +
+            "ORDER BY Z_BASE " +
+            "LIMIT 1";
+    private static final String FIND_LAST_TO_KEY = "SELECT ID, ORDER_KEY, Z_BASE " +
+                                                   "FROM WIDGETS " +
+                                                   "WHERE ORDER_KEY <= :toKey AND ID <> :excludedId " +
+                                                   "ORDER BY ORDER_KEY DESC " +
+                                                   "LIMIT 1";
+    private static final String INCREMENT_KEY_RANGE = "UPDATE WIDGETS " +
+                                                      "SET Z_BASE = Z_BASE + :incrementValue " +
+                                                      "WHERE ORDER_KEY BETWEEN :fromKey AND :toKey";
+    private static final String LOAD_KEYS_DOWN_FROM = "SELECT ORDER_KEY FROM WIDGETS " +
+                                                      "WHERE ORDER_KEY <= :orderKey " +
+                                                      "ORDER BY ORDER_KEY DESC " +
+                                                      "LIMIT :size";
+    private static final String LOAD_KEYS_UP_FROM = "SELECT ORDER_KEY FROM WIDGETS " +
+                                                    "WHERE ORDER_KEY >= :orderKey " +
+                                                    "ORDER BY ORDER_KEY " +
+                                                    "LIMIT :size";
+    private static final String UPDATE_KEY = "UPDATE WIDGETS SET ORDER_KEY = :newKey WHERE ORDER_KEY = :oldKey";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long keyGap;
+    private final int maxPendingShifts;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final ExecutorService renormalizer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "widget-z-renormalizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean shiftsApplyingRequested = new AtomicBoolean();
+    private final Set<Long> respacingRequested = ConcurrentHashMap.newKeySet();
+
+    public H2IndexZOrder(
+            final NamedParameterJdbcTemplate jdbcTemplate,
+            final PlatformTransactionManager transactionManager,
+            final ConfigProperties configProperties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        final ConfigProperties.IndexZOrder config = configProperties.getH2storage().getIndexZOrder();
+        this.keyGap = config.getKeyGap();
+        this.maxPendingShifts = config.getMaxPendingShifts();
+    }
+
+    @PreDestroy
+    public void stop() {
+        renormalizer.shutdownNow();
+    }
+
+    /**
+     * Lock Z-order for modifications of current transaction, it's unlocked on transaction completion
+     */
+    void lock() {
+        if (lock.isHeldByCurrentThread()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Error: Z-order can be modified into transaction only");
+        }
+        lock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Read while Z-order is locked, so neither writes nor renormalization can change it meanwhile.
+     * It's the fallback of optimistic reads which were repeated too many times
+     */
+    <T> T readLocked(final Supplier<T> read) {
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> read.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    IndexZShifts loadShifts() {
+        return jdbcTemplate.getJdbcTemplate().queryForObject(LOAD_SHIFTS, (rs, rowNum) -> IndexZShifts.read(rs));
+    }
+
+    /**
+     * @return the first widget in Z-order whose Z-index is bigger or equals given one
+     */
+    Optional<Entry> findCeiling(final IndexZShifts shifts, final long indexZ, final UUID excludedId) {
+        // Z-indexes are ordered as keys, so segment of ceiling is the first one whose last widget isn't lower
+        int low = 0;
+        int high = shifts.segments();
+        Entry segmentLast = null;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final Optional<Entry> last = findLast(shifts, shifts.segmentToKey(middle), excludedId);
+            if (last.isPresent() && last.get().getIndexZ() >= indexZ) {
+                high = middle;
+                segmentLast = last.get();
+            } else {
+                low = middle + 1;
+            }
+        }
+        if (segmentLast == null) {
+            return Optional.empty();
+        }
+        final long increment = shifts.segmentIncrement(low);
+        final Optional<Entry> found = jdbcTemplate.query(
+                FIND_CEILING_INTO_SEGMENT,
+                new MapSqlParameterSource()
+                        .addValue("zBase", indexZ - increment)
+                        .addValue("toZBase", segmentLast.getIndexZ() - increment)
+                        .addValue("fromKey", shifts.segmentFromKey(low))
+                        .addValue("toKey", shifts.segmentToKey(low))
+                        .addValue("excludedId", excludedId == null ? NO_WIDGET : excludedId),
+                (rs, rowNum) -> new Entry(
+                        UUID.fromString(rs.getString("ID")),
+                        rs.getLong("ORDER_KEY"),
+                        rs.getLong("Z_BASE") + increment
+                )
+        ).stream().findFirst();
+        return Optional.of(found.orElse(segmentLast));
+    }
+
+    /**
+     * @return the last widget in Z-order whose Z-index is less than given one
+     */
+    Optional<Entry> findLower(final IndexZShifts shifts, final long indexZ, final UUID excludedId) {
+        return findBefore(shifts, findCeiling(shifts, indexZ, excludedId), excludedId);
+    }
+
+    Optional<Entry> findByIndexZ(final int indexZ) {
+        return findCeiling(loadShifts(), indexZ, null).filter(entry -> entry.getIndexZ() == indexZ);
+    }
+
+    /**
+     * @return max Z-index or 0 if there are no widgets
+     */
+    int getMaxIndexZ() {
+        return findLast(loadShifts(), Long.MAX_VALUE, null).map(entry -> (int) entry.getIndexZ()).orElse(0);
+    }
+
+    /**
+     * Shift Z-index of given widget and all upper ones, without rewriting of their rows.
+     * Shifted widgets aren't counted by rows, their number is taken from Z-index span up to the highest widget:
+     * it's exact for dense Z-indexes and upper bound otherwise
+     *
+     * @return number of shifted widgets
+     */
+    int shiftFrom(final Entry entry, final int incrementValue) {
+        final int shifted = getMaxIndexZ() - (int) entry.getIndexZ() + 1;
+        jdbcTemplate.update(
+                INSERT_SHIFT,
+                new MapSqlParameterSource()
+                        .addValue("fromKey", entry.getOrderKey())
+                        .addValue("incrementValue", incrementValue)
+        );
+        final int pending = jdbcTemplate.getJdbcTemplate().queryForObject(COUNT_SHIFTS, Integer.class);
+        if (pending >= maxPendingShifts * 4) {
+            // Renormalizer is far behind, every read would pay for pending shifts
+            applyShifts();
+        } else if (pending >= maxPendingShifts) {
+            requestShiftsApplying();
+        }
+        return shifted;
+    }
+
+    /**
+     * Apply Z-index shifts to rows of ranges, shifted widgets must not overlap other ones
+     *
+     * @return number of shifted widgets
+     */
+    int shiftRanges(final List<IndexZShift> ranges) {
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+        final IndexZShifts shifts = loadShifts();
+        final SqlParameterSource[] parameters = new SqlParameterSource[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            final IndexZShift range = ranges.get(i);
+            parameters[i] = new MapSqlParameterSource()
+                    .addValue("fromKey", findCeiling(shifts, range.getFromIndexZ(), null).map(Entry::getOrderKey).orElse(Long.MAX_VALUE))
+                    .addValue("toKey", findLower(shifts, range.getToIndexZ() + 1L, null).map(Entry::getOrderKey).orElse(Long.MIN_VALUE))
+                    .addValue("incrementValue", range.getIncrementValue());
+        }
+        return Arrays.stream(jdbcTemplate.batchUpdate(INCREMENT_KEY_RANGE, parameters)).sum();
+    }
+
+    /**
+     * Find places of new Z-indexes into Z-order
+     *
+     * @param indexesZ   ascending Z-indexes, which are not used by other widgets
+     * @param excludedId widget which is moved, or Null
+     * @return positions for given Z-indexes
+     */
+    List<Position> place(final List<Integer> indexesZ, final UUID excludedId) {
+        List<Position> positions = tryPlace(indexesZ, excludedId);
+        while (positions == null) {
+            positions = tryPlace(indexesZ, excludedId);
+        }
+        return positions;
+    }
+
+    Position place(final int indexZ, final UUID excludedId) {
+        return place(Collections.singletonList(indexZ), excludedId).get(0);
+    }
+
+    /**
+     * @return positions, or Null if region was spread because of exhausted gap
+     */
+    private List<Position> tryPlace(final List<Integer> indexesZ, final UUID excludedId) {
+        final IndexZShifts shifts = loadShifts();
+        final List<Position> positions = new ArrayList<>(indexesZ.size());
+        int next = 0;
+        while (next < indexesZ.size()) {
+            final int indexZ = indexesZ.get(next);
+            final Optional<Entry> upper = findCeiling(shifts, indexZ, excludedId);
+            final Long lowerKey = findBefore(shifts, upper, excludedId).map(Entry::getOrderKey).orElse(null);
+            // All Z-indexes between the same neighbours share their gap
+            int count = 1;
+            while (next + count < indexesZ.size() &&
+                   (!upper.isPresent() || indexesZ.get(next + count) < upper.get().getIndexZ())) {
+                count++;
+            }
+            final Long upperKey = upper.map(Entry::getOrderKey).orElse(null);
+            final long[] keys = allocateKeys(lowerKey, upperKey, count);
+            if (keys == null) {
+                respace(lowerKey, upperKey, count);
+                return null;
+            }
+            for (int i = 0; i < count; i++) {
+                positions.add(new Position(keys[i], indexesZ.get(next + i) - shifts.getIncrement(keys[i])));
+            }
+            next += count;
+        }
+        return positions;
+    }
+
+    /**
+     * @return keys between given ones, by key gap if there is enough room, or evenly.
+     * Null if gap is exhausted
+     */
+    private long[] allocateKeys(final Long lowerKey, final Long upperKey, final int count) {
+        final long span = keyGap * (count + 1);
+        final long first;
+        final long step;
+        if (lowerKey == null && upperKey == null) {
+            first = 0;
+            step = keyGap;
+        } else if (upperKey == null && Long.compareUnsigned(Long.MAX_VALUE - lowerKey, span) > 0) {
+            first = lowerKey + keyGap;
+            step = keyGap;
+        } else if (lowerKey == null && Long.compareUnsigned(upperKey - Long.MIN_VALUE, span) > 0) {
+            first = upperKey - keyGap * count;
+            step = keyGap;
+        } else {
+            final long from = lowerKey == null ? Long.MIN_VALUE : lowerKey;
+            final long to = upperKey == null ? Long.MAX_VALUE : upperKey;
+            step = Long.divideUnsigned(to - from, count + 1);
+            first = from + step;
+        }
+        if (step == 0) {
+            return null;
+        }
+        if (step < keyGap >>> SMALL_GAP_SHIFT) {
+            requestRespacing(first);
+        }
+        final long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = first + step * i;
+        }
+        return keys;
+    }
+
+    /**
+     * Apply all pending shifts to widget rows
+     */
+    private void applyShifts() {
+        // Increment is constant into segment, so every row is rewritten once by range update
+        final IndexZShifts shifts = loadShifts();
+        final List<SqlParameterSource> parameters = new ArrayList<>();
+        for (int segment = 1; segment < shifts.segments(); segment++) {
+            if (shifts.segmentIncrement(segment) != 0 && shifts.segmentFromKey(segment) <= shifts.segmentToKey(segment)) {
+                parameters.add(new MapSqlParameterSource()
+                                       .addValue("fromKey", shifts.segmentFromKey(segment))
+                                       .addValue("toKey", shifts.segmentToKey(segment))
+                                       .addValue("incrementValue", shifts.segmentIncrement(segment)));
+            }
+        }
+        final int applied = Arrays.stream(jdbcTemplate.batchUpdate(INCREMENT_KEY_RANGE, parameters.toArray(new SqlParameterSource[0]))).sum();
+        jdbcTemplate.getJdbcTemplate().update(DELETE_SHIFTS);
+        log.debug("Pending Z-index shifts are applied to {} widgets", applied);
+    }
+
+    /**
+     * Spread region around given key if gaps of its neighbours are small
+     */
+    private void respaceAround(final long orderKey) {
+        final List<Long> lower = loadKeys(LOAD_KEYS_DOWN_FROM, orderKey, 1);
+        final List<Long> upper = loadKeys(LOAD_KEYS_UP_FROM, orderKey + 1, 2);
+        final long smallGap = keyGap >>> SMALL_GAP_SHIFT;
+        if (lower.isEmpty() || upper.isEmpty()) {
+            return;
+        }
+        if (Long.compareUnsigned(upper.get(0) - lower.get(0), smallGap) < 0 ||
+            (upper.size() > 1 && Long.compareUnsigned(upper.get(1) - upper.get(0), smallGap) < 0)) {
+            respace(lower.get(0), upper.get(0), 0);
+        }
+    }
+
+    /**
+     * Spread keys of region around the gap between given keys evenly, with room for given count of keys into the gap.
+     * Region is extended while its keys can't be spread by enough gap
+     */
+    private void respace(final Long lowerKey, final Long upperKey, final int count) {
+        final long targetGap = Math.max(1, keyGap >>> RESPACED_GAP_SHIFT);
+        int window = RESPACING_WINDOW;
+        while (true) {
+            final List<Long> below = lowerKey == null ? new ArrayList<>() : loadKeys(LOAD_KEYS_DOWN_FROM, lowerKey, window + 1);
+            final List<Long> above = upperKey == null ? new ArrayList<>() : loadKeys(LOAD_KEYS_UP_FROM, upperKey, window + 1);
+            // Bounds are not moved, they are keys of the nearest widgets out of region or limits of key space
+            final long fromBound = below.size() > window ? below.remove(window) : Long.MIN_VALUE;
+            final long toBound = above.size() > window ? above.remove(window) : Long.MAX_VALUE;
+            final long gap = Long.divideUnsigned(toBound - fromBound, below.size() + count + above.size() + 1);
+            if (gap >= targetGap || (fromBound == Long.MIN_VALUE && toBound == Long.MAX_VALUE)) {
+                if (gap == 0) {
+                    throw new IllegalStateException("Error: ordering keys of Z-order are exhausted");
+                }
+                Collections.reverse(below);
+                final List<Long> oldKeys = new ArrayList<>(below);
+                oldKeys.addAll(above);
+                final long[] newKeys = new long[oldKeys.size()];
+                for (int i = 0; i < oldKeys.size(); i++) {
+                    newKeys[i] = fromBound + gap * (i < below.size() ? i + 1 : i + 1 + count);
+                }
+                moveKeys(oldKeys, newKeys, fromBound, toBound);
+                log.debug("Z-order region of {} widgets is spread by gap {}", oldKeys.size(), gap);
+                return;
+            }
+            window *= 4;
+        }
+    }
+
+    /**
+     * Move ascending keys of region into new ascending ones, pending shifts keep starting at the same widgets
+     */
+    private void moveKeys(final List<Long> oldKeys, final long[] newKeys, final long fromBound, final long toBound) {
+        final List<SqlParameterSource> shiftMoves = new ArrayList<>();
+        jdbcTemplate.query(
+                LOAD_SHIFTS_INTO_KEY_RANGE,
+                new MapSqlParameterSource()
+                        .addValue("fromKey", fromBound)
+                        .addValue("toKey", toBound),
+                rs -> {
+                    final long fromKey = rs.getLong("FROM_KEY");
+                    int widget = 0;
+                    while (widget < oldKeys.size() && oldKeys.get(widget) < fromKey) {
+                        widget++;
+                    }
+                    shiftMoves.add(new MapSqlParameterSource()
+                                           .addValue("id", rs.getLong("ID"))
+                                           .addValue("fromKey", widget < oldKeys.size() ? newKeys[widget] : toBound));
+                }
+        );
+        // Keys are unique at every step: decreased keys are moved from the lowest one, increased from the highest one
+        final List<SqlParameterSource> keyMoves = new ArrayList<>();
+        for (int i = 0; i < oldKeys.size(); i++) {
+            if (newKeys[i] < oldKeys.get(i)) {
+                keyMoves.add(keyMove(oldKeys.get(i), newKeys[i]));
+            }
+        }
+        for (int i = oldKeys.size() - 1; i >= 0; i--) {
+            if (newKeys[i] > oldKeys.get(i)) {
+                keyMoves.add(keyMove(oldKeys.get(i), newKeys[i]));
+            }
+        }
+        jdbcTemplate.batchUpdate(UPDATE_KEY, keyMoves.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.batchUpdate(UPDATE_SHIFT_KEY, shiftMoves.toArray(new SqlParameterSource[0]));
+    }
+
+    private static SqlParameterSource keyMove(final long oldKey, final long newKey) {
+        return new MapSqlParameterSource()
+                .addValue("oldKey", oldKey)
+                .addValue("newKey", newKey);
+    }
+
+    private List<Long> loadKeys(final String query, final long orderKey, final int size) {
+        return jdbcTemplate.queryForList(
+                query,
+                new MapSqlParameterSource()
+                        .addValue("orderKey", orderKey)
+                        .addValue("size", size),
+                Long.class
+        );
+    }
+
+    /**
+     * @return the last widget in Z-order whose key is less or equals given one
+     */
+    private Optional<Entry> findLast(final IndexZShifts shifts, final long toKey, final UUID excludedId) {
+        return jdbcTemplate.query(
+                FIND_LAST_TO_KEY,
+                new MapSqlParameterSource()
+                        .addValue("toKey", toKey)
+                        .addValue("excludedId", excludedId == null ? NO_WIDGET : excludedId),
+                (rs, rowNum) -> new Entry(
+                        UUID.fromString(rs.getString("ID")),
+                        rs.getLong("ORDER_KEY"),
+                        rs.getLong("Z_BASE") + shifts.getIncrement(rs.getLong("ORDER_KEY"))
+                )
+        ).stream().findFirst();
+    }
+
+    /**
+     * @return the widget right before given one in Z-order, or the last widget if given one is absent
+     */
+    private Optional<Entry> findBefore(final IndexZShifts shifts, final Optional<Entry> entry, final UUID excludedId) {
+        if (entry.isPresent() && entry.get().getOrderKey() == Long.MIN_VALUE) {
+            return Optional.empty();
+        }
+        return findLast(shifts, entry.map(found -> found.getOrderKey() - 1).orElse(Long.MAX_VALUE), excludedId);
+    }
+
+    private void requestShiftsApplying() {
+        if (shiftsApplyingRequested.compareAndSet(false, true)) {
+            renormalizeInBackground(() -> {
+                shiftsApplyingRequested.set(false);
+                applyShifts();
+            });
+        }
+    }
+
+    private void requestRespacing(final long orderKey) {
+        if (respacingRequested.add(orderKey)) {
+            renormalizeInBackground(() -> {
+                respacingRequested.remove(orderKey);
+                respaceAround(orderKey);
+            });
+        }
+    }
+
+    private void renormalizeInBackground(final Runnable renormalization) {
+        renormalizer.execute(() -> {
+            lock.lock();
+            try {
+                transactionTemplate.executeWithoutResult(status -> renormalization.run());
+            } catch (Exception e) {
+                // Z-order is still correct, renormalization is requested again by next writes
+                log.error("Can't renormalize Z-order", e);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Widget into Z-order
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Entry {
+        private final UUID id;
+        private final long orderKey;
+        private final long indexZ;
+    }
+
+    /**
+     * Place of widget into Z-order, its Z-index is base plus pending shifts
+     */
+    @Getter
+    @AllArgsConstructor
+    static class Position {
+        private final long orderKey;
+        private final long zBase;
+    }
+}
@@ -1,89 +1,176 @@
 package com.test.app.widget.service.h2_storage;
 
+import com.test.app.widget.service.IndexZDirection;
 import com.test.app.widget.service.Widget;
-import org.springframework.jdbc.IncorrectResultSetColumnCountException;
+import com.test.app.widget.service.WidgetBounds;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 @Repository
 public class H2StorageRepository {
+    private static final int STREAMING_FETCH_SIZE = 500;
+    private static final int MAX_OPTIMISTIC_READS = 3;
 
     private static final String UPDATE = "UPDATE WIDGETS " +
                                          "SET COORDINATE_X = :coordinateX, " +
                                          "    COORDINATE_Y = :coordinateY, " +
-                                         "    INDEX_Z = :indexZ, " +
+                                         "    ORDER_KEY = :orderKey, " +
+                                         "    Z_BASE = :zBase, " +
                                          "    WIDTH = :width, " +
                                          "    HEIGHT = :height, " +
+                                         "    MIN_X = :minX, " +
+                                         "    MAX_X = :maxX, " +
+                                         "    MIN_Y = :minY, " +
+                                         "    MAX_Y = :maxY, " +
+                                         "    BOUNDS = CAST(:bounds AS GEOMETRY), " +
                                          "    LAST_MODIFICATION_DATE_TIME = now() AT TIME ZONE 'UTC' " +
                                          "WHERE ID = :id";
+    private static final String INSERT = "INSERT INTO WIDGETS (" +
+                                         "    ID, COORDINATE_X, COORDINATE_Y, ORDER_KEY, Z_BASE, WIDTH, HEIGHT, " +
+                                         "    MIN_X, MAX_X, MIN_Y, MAX_Y, BOUNDS, LAST_MODIFICATION_DATE_TIME" +
+                                         ") VALUES (" +
+                                         "    :id, :coordinateX, :coordinateY, :orderKey, :zBase, :width, :height, " +
+                                         "    :minX, :maxX, :minY, :maxY, CAST(:bounds AS GEOMETRY), :lastModificationDateTime" +
+                                         ")";
     private static final String DELETE_BY_ID = "DELETE FROM WIDGETS " +
                                                "WHERE ID = :id";
-    private static final String LOAD_BY_ID = "SELECT * FROM WIDGETS " +
+    private static final String LOAD_BY_ID = "SELECT " + WidgetMapper.COLUMNS + " FROM WIDGETS " +
                                              "WHERE ID = :id";
-    private static final String LOAD_ALL_ORDERED_BY_INDEX_Z = "SELECT * FROM  WIDGETS " +
-                                                              "ORDER BY index_z";
-    private static final String INCREMENT_ALL_WIDGETS_Z_INDEXES_BIGGER_OR_EQUALS_THIS =
-            "UPDATE WIDGETS " +
-            "SET INDEX_Z = INDEX_Z + :incrementValue " +
-            "WHERE INDEX_Z >= :indexZ";
-    private static final String GET_MAX_Z_INDEX_VALUE =
-            "SELECT coalesce(MAX(INDEX_Z), 0) " +
-            "FROM WIDGETS ";
-    private static final String FIND_BY_INDEX_Z_VALUE =
-            "SELECT * " +
-            "FROM WIDGETS  " +
-            "WHERE INDEX_Z = :indexZ";
+    private static final String LOAD_BY_IDS = "SELECT " + WidgetMapper.COLUMNS + " FROM WIDGETS " +
+                                              "WHERE ID IN (:ids)";
+    private static final String LOAD_ALL_ORDERED_BY_INDEX_Z = "SELECT " + WidgetMapper.COLUMNS + " FROM  WIDGETS " +
+                                                              "ORDER BY ORDER_KEY";
+    private static final String COUNT = "SELECT COUNT(*) FROM WIDGETS";
+    /**
+     * The lowest and the highest widgets by one statement
+     */
+    private static final String LOAD_FIRST_AND_LAST =
+            "(SELECT " + WidgetMapper.COLUMNS + " FROM WIDGETS ORDER BY ORDER_KEY LIMIT 1) " +
+            "UNION ALL " +
+            "(SELECT " + WidgetMapper.COLUMNS + " FROM WIDGETS ORDER BY ORDER_KEY DESC LIMIT 1)";
     private static final String LOAD_PAGING =
-            "SELECT  * " +
-            "FROM    ( SELECT    ROW_NUMBER() OVER ( ORDER BY INDEX_Z ) AS row_number, * " +
+            "SELECT  rcr.* " +
+            "FROM    ( SELECT    ROW_NUMBER() OVER ( ORDER BY ORDER_KEY ) AS row_number, " + WidgetMapper.COLUMNS + " " +
             "          FROM      WIDGETS " +
             "        ) AS rcr " +
             "WHERE   rcr.row_number >= :page" +
             "    AND rcr.row_number <= :size " +
             "ORDER BY rcr.row_number";
+    /**
+     * Keyset paging, served by unique index on ORDER_KEY without numbering of previous rows
+     */
+    private static final String LOAD_PAGING_FROM_ORDER_KEY =
+            "SELECT " + WidgetMapper.COLUMNS + " " +
+            "FROM WIDGETS " +
+            "WHERE ORDER_KEY >= :fromOrderKey " +
+            "ORDER BY ORDER_KEY " +
+            "LIMIT :size";
+    /**
+     * Candidates are found by spatial index over widget bounds (intersection with area),
+     * then precomputed bounding box columns are checked for full containment
+     */
     private static final String LOAD_BY_SELECTED_AREA =
-            "SELECT * " +
+            "SELECT " + WidgetMapper.COLUMNS + " " +
+            "FROM WIDGETS " +
+            "WHERE BOUNDS && CAST(:area AS GEOMETRY) AND " +
+            "      MIN_X >= :leftX AND " +
+            "      MAX_X <= :rightX AND " +
+            "      MIN_Y >= :leftY AND " +
+            "      MAX_Y <= :rightY";
+    /**
+     * Widgets inside area by Z-order from cursor. Planner chooses between spatial index and index on ordering key,
+     * the last one reads rows already ordered by Z-index and stops after limit found widgets
+     */
+    private static final String LOAD_BY_SELECTED_AREA_ASCENDING =
+            "SELECT " + WidgetMapper.COLUMNS + " " +
+            "FROM WIDGETS " +
+            "WHERE BOUNDS && CAST(:area AS GEOMETRY) AND " +
+            "      ORDER_KEY >= :fromOrderKey AND " +
+            "      MIN_X >= :leftX AND " +
+            "      MAX_X <= :rightX AND " +
+            "      MIN_Y >= :leftY AND " +
+            "      MAX_Y <= :rightY " +
+            "ORDER BY ORDER_KEY " +
+            "LIMIT :limit";
+    private static final String LOAD_BY_SELECTED_AREA_DESCENDING =
+            "SELECT " + WidgetMapper.COLUMNS + " " +
             "FROM WIDGETS " +
-            "WHERE TRUE AND " +
-            "    (COORDINATE_X + WIDTH / 2) <= :rightX AND " +
-            "    (COORDINATE_X - WIDTH / 2) >= :leftX AND " +
-            "    (COORDINATE_Y + HEIGHT / 2) <= :rightY AND " +
-            "    (COORDINATE_Y - HEIGHT / 2) >= :leftY";
+            "WHERE BOUNDS && CAST(:area AS GEOMETRY) AND " +
+            "      ORDER_KEY <= :fromOrderKey AND " +
+            "      MIN_X >= :leftX AND " +
+            "      MAX_X <= :rightX AND " +
+            "      MIN_Y >= :leftY AND " +
+            "      MAX_Y <= :rightY " +
+            "ORDER BY ORDER_KEY DESC " +
+            "LIMIT :limit";
+    /**
+     * Widgets under point are found by spatial index, the highest ones are taken by ordering key,
+     * which follows Z-order regardless of pending shifts
+     */
+    private static final String LOAD_TOP_AT_POINT =
+            "SELECT " + WidgetMapper.COLUMNS + " " +
+            "FROM WIDGETS " +
+            "WHERE BOUNDS && CAST(:point AS GEOMETRY) AND " +
+            "      MIN_X <= :x AND " +
+            "      MAX_X >= :x AND " +
+            "      MIN_Y <= :y AND " +
+            "      MAX_Y >= :y " +
+            "ORDER BY ORDER_KEY DESC " +
+            "LIMIT :limit";
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
-    private final SimpleJdbcInsert simpleJdbcInsert;
     private final WidgetMapper widgetMapper;
+    private final H2IndexZOrder h2IndexZOrder;
 
     public H2StorageRepository(
             final NamedParameterJdbcTemplate jdbcTemplate,
-            final WidgetMapper widgetMapper
+            final WidgetMapper widgetMapper,
+            final H2IndexZOrder h2IndexZOrder
     ) {
         this.jdbcTemplate = jdbcTemplate;
-        this.simpleJdbcInsert = new SimpleJdbcInsert(jdbcTemplate.getJdbcTemplate())
-                .withTableName("WIDGETS");
         this.widgetMapper = widgetMapper;
+        this.h2IndexZOrder = h2IndexZOrder;
     }
 
     Widget create(
-            final Widget widget
+            final Widget widget,
+            final H2IndexZOrder.Position position
     ) {
-        simpleJdbcInsert.execute(doMapping(widget));
+        jdbcTemplate.update(
+                INSERT,
+                doMapping(widget, position)
+        );
         return widget;
     }
 
     Widget update(
-            final Widget widget
+            final Widget widget,
+            final H2IndexZOrder.Position position
     ) {
         jdbcTemplate.update(
                 UPDATE,
-                doMapping(widget)
+                doMapping(widget, position)
         );
         return widget;
     }
@@ -96,6 +183,41 @@ public class H2StorageRepository {
         return id;
     }
 
+    /**
+     * Insert widgets by one statement batch
+     *
+     * @param positions positions of widgets into Z-order, in the same order
+     */
+    void createAll(final List<Widget> widgets, final List<H2IndexZOrder.Position> positions) {
+        final SqlParameterSource[] parameters = new SqlParameterSource[widgets.size()];
+        for (int i = 0; i < widgets.size(); i++) {
+            parameters[i] = doMapping(widgets.get(i), positions.get(i));
+        }
+        jdbcTemplate.batchUpdate(INSERT, parameters);
+    }
+
+    /**
+     * Remove widgets by one statement batch
+     *
+     * @throws EmptyResultDataAccessException if some of widgets is absent
+     */
+    void deleteByIds(final List<UUID> ids) {
+        final int[] counts = jdbcTemplate.batchUpdate(
+                DELETE_BY_ID,
+                ids.stream()
+                   .map(id -> new MapSqlParameterSource().addValue("id", id))
+                   .toArray(SqlParameterSource[]::new)
+        );
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new EmptyResultDataAccessException(
+                        String.format("Can't find widget id=%s", ids.get(i)),
+                        1
+                );
+            }
+        }
+    }
+
     Widget loadById(final UUID id) {
         return jdbcTemplate.queryForObject(
                 LOAD_BY_ID,
@@ -104,47 +226,56 @@ public class H2StorageRepository {
         );
     }
 
+    List<Widget> loadByIds(final Collection<UUID> ids) {
+        return jdbcTemplate.query(
+                LOAD_BY_IDS,
+                new MapSqlParameterSource().addValue("ids", ids),
+                widgetMapper.forStatement()
+        );
+    }
+
     List<Widget> loadAllOrderedByIndexZ() {
         return jdbcTemplate.query(
                 LOAD_ALL_ORDERED_BY_INDEX_Z,
-                widgetMapper
+                widgetMapper.forStatement()
         );
     }
 
-    void incrementAllWidgetsZIndexesBiggerOrEqualsThis(
-            final int indexZ,
-            final int incrementValue
-    ) {
-        jdbcTemplate.update(
-                INCREMENT_ALL_WIDGETS_Z_INDEXES_BIGGER_OR_EQUALS_THIS,
-                new MapSqlParameterSource()
-                        .addValue("indexZ", indexZ)
-                        .addValue("incrementValue", incrementValue)
-        );
+    /**
+     * Visit all widgets in Z-index order by forward-only result set, rows are fetched by chunks.
+     * H2 materializes whole result before returning it by default, so lazy execution is switched on
+     * for this query: rows are read by index on ORDER_KEY while consumer works
+     */
+    void forEachOrderedByIndexZ(final Consumer<Widget> consumer) {
+        jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Void>) connection -> {
+            setLazyQueryExecution(connection, true);
+            try (final PreparedStatement statement = connection.prepareStatement(
+                    LOAD_ALL_ORDERED_BY_INDEX_Z,
+                    ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY
+            )) {
+                statement.setFetchSize(STREAMING_FETCH_SIZE);
+                try (final ResultSet resultSet = statement.executeQuery()) {
+                    final RowMapper<Widget> mapper = widgetMapper.forStatement();
+                    int rowNum = 0;
+                    while (resultSet.next()) {
+                        consumer.accept(mapper.mapRow(resultSet, rowNum++));
+                    }
+                }
+            } finally {
+                setLazyQueryExecution(connection, false);
+            }
+            return null;
+        });
     }
 
-    int getMaxZIndexValue() {
-        return jdbcTemplate.queryForObject(
-                GET_MAX_Z_INDEX_VALUE,
-                new MapSqlParameterSource(),
-                Integer.class
-        );
+    int count() {
+        return jdbcTemplate.queryForObject(COUNT, new MapSqlParameterSource(), Integer.class);
     }
 
-    Optional<Widget> findByIndexZValue(final int indexZ) {
-        final List<Widget> result = jdbcTemplate.query(
-                FIND_BY_INDEX_Z_VALUE,
-                new MapSqlParameterSource().addValue("indexZ", indexZ),
-                widgetMapper
-        );
-        if (result.size() == 1) {
-            return Optional.of(result.get(0));
-        } else {
-            if (result.size() > 1) {
-                throw new IncorrectResultSetColumnCountException(1, result.size());
-            }
-            return Optional.empty();
-        }
+    int getIndexZSpan() {
+        final List<Widget> firstAndLast = jdbcTemplate.query(LOAD_FIRST_AND_LAST, widgetMapper);
+        return firstAndLast.isEmpty() ? 0 : firstAndLast.get(firstAndLast.size() - 1).getIndexZ() - firstAndLast.get(0).getIndexZ();
     }
 
     List<Widget> loadPaging(final int page, final int size) {
@@ -153,8 +284,41 @@ public class H2StorageRepository {
                 new MapSqlParameterSource()
                         .addValue("page", page)
                         .addValue("size", size),
-                widgetMapper
+                widgetMapper.forStatement()
+        );
+    }
+
+    /**
+     * Page is loaded from ordering key of the last widget with Z-index not bigger than cursor, which is loaded too.
+     * Z-order can be renormalized between finding of key and loading, so page is checked by Z-indexes
+     * of the same statement, and it's loaded again if key was found by renormalized Z-order
+     */
+    List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        return readOptimistically(() -> tryLoadPagingAfterIndexZ(afterIndexZ, size));
+    }
+
+    /**
+     * @return page, or Null if key was found by renormalized Z-order
+     */
+    @Nullable
+    private List<Widget> tryLoadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        final Optional<H2IndexZOrder.Entry> lower = h2IndexZOrder.findLower(
+                h2IndexZOrder.loadShifts(),
+                afterIndexZ + 1L,
+                null
+        );
+        final List<Widget> widgets = jdbcTemplate.query(
+                LOAD_PAGING_FROM_ORDER_KEY,
+                new MapSqlParameterSource()
+                        .addValue("fromOrderKey", lower.map(H2IndexZOrder.Entry::getOrderKey).orElse(Long.MIN_VALUE))
+                        .addValue("size", lower.isPresent() ? size + 1 : size),
+                widgetMapper.forStatement()
         );
+        // Widgets are ordered by Z-index into one statement, so skipped ones are the first
+        final int skipped = (int) widgets.stream()
+                                         .filter(widget -> widget.getIndexZ() <= afterIndexZ)
+                                         .count();
+        return skipped == (lower.isPresent() ? 1 : 0) ? widgets.subList(skipped, widgets.size()) : null;
     }
 
     List<Widget> loadBySelectedArea(
@@ -169,19 +333,152 @@ public class H2StorageRepository {
                         .addValue("leftX", leftX)
                         .addValue("leftY", leftY)
                         .addValue("rightX", rightX)
-                        .addValue("rightY", rightY),
-                widgetMapper
+                        .addValue("rightY", rightY)
+                        .addValue("area", toPolygonWkt(leftX, leftY, rightX, rightY)),
+                widgetMapper.forStatement()
+        );
+    }
+
+    /**
+     * Cursor is translated into ordering key of its Z-order neighbour. Neighbour can be shifted concurrently
+     * between translation and reading, then widgets before cursor are read and reading is repeated
+     */
+    List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return readOptimistically(() -> tryLoadBySelectedAreaOrderedByIndexZ(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                direction,
+                afterIndexZ,
+                limit
+        ));
+    }
+
+    /**
+     * @return widgets, or Null if neighbour of cursor was shifted while reading
+     */
+    @Nullable
+    private List<Widget> tryLoadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        final boolean ascending = direction == IndexZDirection.ASCENDING;
+        long fromOrderKey = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+        if (afterIndexZ != null) {
+            final IndexZShifts shifts = h2IndexZOrder.loadShifts();
+            // The last widget at or before cursor for ascending order, the first one at or after it for descending
+            final Optional<H2IndexZOrder.Entry> neighbour = ascending
+                                                            ? h2IndexZOrder.findLower(shifts, afterIndexZ + 1L, null)
+                                                            : h2IndexZOrder.findCeiling(shifts, afterIndexZ, null);
+            if (neighbour.isPresent()) {
+                final long orderKey = neighbour.get().getOrderKey();
+                if (orderKey == (ascending ? Long.MAX_VALUE : Long.MIN_VALUE)) {
+                    return Collections.emptyList();
+                }
+                fromOrderKey = ascending ? orderKey + 1 : orderKey - 1;
+            }
+        }
+        final List<Widget> widgets = jdbcTemplate.query(
+                ascending ? LOAD_BY_SELECTED_AREA_ASCENDING : LOAD_BY_SELECTED_AREA_DESCENDING,
+                new MapSqlParameterSource()
+                        .addValue("fromOrderKey", fromOrderKey)
+                        .addValue("leftX", leftX)
+                        .addValue("leftY", leftY)
+                        .addValue("rightX", rightX)
+                        .addValue("rightY", rightY)
+                        .addValue("area", toPolygonWkt(leftX, leftY, rightX, rightY))
+                        .addValue("limit", limit),
+                widgetMapper.forStatement()
         );
+        return widgets.stream().allMatch(widget -> direction.isAfter(widget.getIndexZ(), afterIndexZ)) ? widgets : null;
+    }
+
+    /**
+     * Read without locking a few times, and then while Z-order is locked, so reading can't be repeated endlessly
+     * by intensive writes
+     *
+     * @param read reading which returns Null if Z-order was changed meanwhile
+     */
+    private <T> T readOptimistically(final Supplier<T> read) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; attempt++) {
+            final T result = read.get();
+            if (result != null) {
+                return result;
+            }
+        }
+        final T result = h2IndexZOrder.readLocked(read);
+        if (result == null) {
+            throw new IllegalStateException("Error: Z-order is changed while it's locked");
+        }
+        return result;
     }
 
-    private MapSqlParameterSource doMapping(final Widget widget) {
+    List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return jdbcTemplate.query(
+                LOAD_TOP_AT_POINT,
+                new MapSqlParameterSource()
+                        .addValue("x", x)
+                        .addValue("y", y)
+                        .addValue("point", String.format("POINT (%d %d)", x, y))
+                        .addValue("limit", limit),
+                widgetMapper.forStatement()
+        );
+    }
+
+    private static void setLazyQueryExecution(final Connection connection, final boolean enabled) throws SQLException {
+        try (final Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + enabled);
+        }
+    }
+
+    private MapSqlParameterSource doMapping(final Widget widget, final H2IndexZOrder.Position position) {
         return new MapSqlParameterSource()
                 .addValue("id", widget.getId())
                 .addValue("coordinateX", widget.getCoordinateX())
                 .addValue("coordinateY", widget.getCoordinateY())
-                .addValue("indexZ", widget.getIndexZ())
+                .addValue("orderKey", position.getOrderKey())
+                .addValue("zBase", position.getZBase())
                 .addValue("width", widget.getWidth())
                 .addValue("height", widget.getHeight())
+                .addValue("minX", WidgetBounds.minX(widget))
+                .addValue("maxX", WidgetBounds.maxX(widget))
+                .addValue("minY", WidgetBounds.minY(widget))
+                .addValue("maxY", WidgetBounds.maxY(widget))
+                .addValue("bounds", toPolygonWkt(
+                        WidgetBounds.minX(widget),
+                        WidgetBounds.minY(widget),
+                        WidgetBounds.maxX(widget),
+                        WidgetBounds.maxY(widget)
+                ), Types.VARCHAR)
                 .addValue("lastModificationDateTime", widget.getLastModificationDateTime());
     }
+
+    /**
+     * Rectangle in WKT format, for geometry columns and spatial conditions
+     */
+    private static String toPolygonWkt(
+            final int minX,
+            final int minY,
+            final int maxX,
+            final int maxY
+    ) {
+        return String.format(
+                "POLYGON ((%1$d %2$d, %3$d %2$d, %3$d %4$d, %1$d %4$d, %1$d %2$d))",
+                minX, minY, maxX, maxY
+        );
+    }
 }
@@ -1,20 +1,46 @@
 package com.test.app.widget.service.h2_storage;
 
+import com.test.app.widget.metrics.WidgetMetrics;
 import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.IndexZBatchPlanner;
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.IndexZShift;
 import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
+import com.test.app.widget.service.WidgetStorage;
+import com.test.app.widget.service.WidgetVersions;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Modifications are done into transaction with locked Z-order, see {@link H2IndexZOrder}
+ */
 @AllArgsConstructor
 @Service
-public class H2StorageService {
+public class H2StorageService implements WidgetStorage {
     private final H2StorageRepository h2StorageRepository;
+    private final H2IndexZOrder h2IndexZOrder;
+    private final WidgetMetrics widgetMetrics;
+    private final H2WidgetCache h2WidgetCache;
+    private final WidgetVersions widgetVersions;
 
+    @Transactional
     public Widget create(final InputWidget widgetInput) {
         final Widget createWidget = new Widget(
                 widgetInput.getCoordinateX(),
@@ -23,29 +49,132 @@ public class H2StorageService {
                 widgetInput.getWidth(),
                 widgetInput.getHeight()
         );
-        recountIndexZ(createWidget);
-        return h2StorageRepository.create(createWidget);
+        h2IndexZOrder.lock();
+        final boolean shifted = recountIndexZ(createWidget);
+        final Widget created = h2StorageRepository.create(
+                createWidget,
+                h2IndexZOrder.place(createWidget.getIndexZ(), null)
+        );
+        h2WidgetCache.invalidatePages();
+        widgetVersions.created(created, shifted);
+        return created;
     }
 
+    @Transactional
     public Widget update(final Widget widget) {
-        recountIndexZ(widget);
-        return h2StorageRepository.update(widget);
+        h2IndexZOrder.lock();
+        final List<Widget> previous = loadPrevious(Collections.singletonList(widget.getId()));
+        final boolean shifted = recountIndexZ(widget);
+        final Widget updated = h2StorageRepository.update(
+                widget,
+                h2IndexZOrder.place(widget.getIndexZ(), widget.getId())
+        );
+        h2WidgetCache.invalidate(widget.getId());
+        widgetVersions.updated(previous.isEmpty() ? null : previous.get(0), widget, shifted);
+        return updated;
     }
 
+    @Transactional
     public UUID deleteById(final @NonNull UUID id) {
-        return h2StorageRepository.deleteById(id);
+        h2IndexZOrder.lock();
+        final List<Widget> previous = loadPrevious(Collections.singletonList(id));
+        final UUID deletedId = h2StorageRepository.deleteById(id);
+        h2WidgetCache.invalidate(id);
+        widgetVersions.removed(id, previous.isEmpty() ? null : previous.get(0));
+        return deletedId;
+    }
+
+    /**
+     * Batch is applied by statement batches: removing of deleted and updated rows,
+     * shifts of colliding Z-index ranges, inserting of created and updated rows.
+     * Updated rows are re-inserted, so Z-index of other rows can be shifted without conflicts with them
+     */
+    @Transactional
+    public WidgetBatchResult applyBatch(
+            final List<InputWidget> create,
+            final List<Widget> update,
+            final List<UUID> delete
+    ) {
+        final List<Widget> created = create.stream()
+                                           .map(widget -> new Widget(
+                                                   widget.getCoordinateX(),
+                                                   widget.getCoordinateY(),
+                                                   widget.getIndexZ(),
+                                                   widget.getWidth(),
+                                                   widget.getHeight()
+                                           ))
+                                           .collect(Collectors.toList());
+        h2IndexZOrder.lock();
+        final List<UUID> removedIds = new ArrayList<>(delete);
+        update.forEach(widget -> removedIds.add(widget.getId()));
+        final List<Widget> previous = loadPrevious(removedIds);
+        h2StorageRepository.deleteByIds(removedIds);
+        h2WidgetCache.invalidateAll(removedIds);
+
+        final List<Widget> placed = new ArrayList<>(update);
+        placed.addAll(created);
+        final List<IndexZShift> shifts = IndexZBatchPlanner.plan(
+                placed,
+                h2StorageRepository::loadPagingAfterIndexZ,
+                h2IndexZOrder.getMaxIndexZ()
+        );
+        final int shifted = h2IndexZOrder.shiftRanges(shifts);
+        shifts.forEach(shift -> h2WidgetCache.invalidateIndexZRange(shift.getFromIndexZ(), shift.getToIndexZ()));
+        widgetMetrics.recordShiftedWidgets(WidgetMetrics.BACKEND_H2, shifted);
+        final LocalDateTime now = OffsetDateTime.now(Widget.MODIFICATION_TIME_ZONE).toLocalDateTime();
+        placed.forEach(widget -> widget.setLastModificationDateTime(now));
+        placed.sort(Comparator.comparing(Widget::getIndexZ));
+        h2StorageRepository.createAll(
+                placed,
+                h2IndexZOrder.place(placed.stream().map(Widget::getIndexZ).collect(Collectors.toList()), null)
+        );
+        final WidgetBatchResult result = new WidgetBatchResult(created, update, delete);
+        widgetVersions.modified(result, previous, shifted > 0);
+        return result;
     }
 
     public Widget loadById(final @NonNull UUID id) {
-        return h2StorageRepository.loadById(id);
+        return h2WidgetCache.loadById(id, () -> h2StorageRepository.loadById(id));
+    }
+
+    public List<Widget> loadByIds(final Collection<UUID> ids) {
+        return ids.isEmpty() ? Collections.emptyList() : h2StorageRepository.loadByIds(ids);
     }
 
     public List<Widget> loadAllOrderedByIndexZ() {
-        return h2StorageRepository.loadAllOrderedByIndexZ();
+        return h2WidgetCache.loadPage(
+                "all",
+                Collections.emptyList(),
+                h2StorageRepository::loadAllOrderedByIndexZ
+        );
+    }
+
+    public void forEachOrderedByIndexZ(final Consumer<Widget> consumer) {
+        h2StorageRepository.forEachOrderedByIndexZ(consumer);
     }
 
     public List<Widget> loadPaging(final int page, final int size) {
-        return h2StorageRepository.loadPaging(page, size);
+        return h2WidgetCache.loadPage(
+                "paging",
+                Arrays.asList(page, size),
+                () -> h2StorageRepository.loadPaging(page, size)
+        );
+    }
+
+    public List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        return h2WidgetCache.loadPage(
+                "pagingAfterIndexZ",
+                Arrays.asList(afterIndexZ, size),
+                () -> h2StorageRepository.loadPagingAfterIndexZ(afterIndexZ, size)
+        );
+    }
+
+    public int count() {
+        return h2StorageRepository.count();
+    }
+
+    public int getIndexZSpan() {
+        return h2StorageRepository.getIndexZSpan();
     }
 
     public List<Widget> loadBySelectedArea(
@@ -57,30 +186,76 @@ public class H2StorageService {
         return h2StorageRepository.loadBySelectedArea(leftX, leftY, rightX, rightY);
     }
 
+    public List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return h2StorageRepository.loadBySelectedAreaOrderedByIndexZ(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                direction,
+                afterIndexZ,
+                limit
+        );
+    }
+
+    public List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return h2StorageRepository.loadTopAtPoint(x, y, limit);
+    }
+
+    /**
+     * Widgets before modification for events, they aren't loaded while nobody is listening
+     */
+    private List<Widget> loadPrevious(final List<UUID> ids) {
+        return widgetVersions.isListened() ? loadByIds(ids) : Collections.emptyList();
+    }
+
     /**
      * Recount all widgets Z-index values if it's necessary
      *
      * @param widget widget whose Z-index must be checked, for recounting other widget Z-indexes
      *               if widget#indexZ is Null, it will be update for existed maxIndexZValue+1
      *               for making this widget like foreground
+     * @return true if upper widgets were shifted
+     */
+    private boolean recountIndexZ(final Widget widget) {
+        final int shifted = shiftForIndexZ(widget);
+        widgetMetrics.recordShiftedWidgets(WidgetMetrics.BACKEND_H2, shifted);
+        return shifted > 0;
+    }
+
+    /**
+     * @return number of shifted widgets
      */
-    private void recountIndexZ(final Widget widget) {
+    private int shiftForIndexZ(final Widget widget) {
         if (widget.getIndexZ() == null) {
             /*
             Z-index is Null, it means it's foreground widget
             */
-            final int foregroundZIndex = h2StorageRepository.getMaxZIndexValue() + 1;
+            final int foregroundZIndex = h2IndexZOrder.getMaxIndexZ() + 1;
             widget.setIndexZ(foregroundZIndex);
+            return 0;
         } else {
-            final Optional<Widget> optWidget = h2StorageRepository.findByIndexZValue(widget.getIndexZ());
+            final Optional<H2IndexZOrder.Entry> optWidget = h2IndexZOrder.findByIndexZ(widget.getIndexZ());
             /**
              Need to recount only if same Z-index is present into storage
              AND
              if it's not Z-index of this{@link widget} widget
              */
             if (optWidget.isPresent() && !optWidget.get().getId().equals(widget.getId())) {
-                h2StorageRepository.incrementAllWidgetsZIndexesBiggerOrEqualsThis(widget.getIndexZ(), 1);
+                // Upper widgets are shifted lazily, their rows are not rewritten
+                final int shifted = h2IndexZOrder.shiftFrom(optWidget.get(), 1);
+                h2WidgetCache.invalidateIndexZFrom(widget.getIndexZ());
+                return shifted;
             }
+            return 0;
         }
     }
 }
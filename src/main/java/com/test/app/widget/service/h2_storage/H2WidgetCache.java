@@ -0,0 +1,205 @@
+package com.test.app.widget.service.h2_storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.Widget;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache in front of H2 storage, Caffeine caches with W-TinyLFU eviction.
+ * <p>
+ * Widgets are cached by id, and they are invalidated by id on updating and removing. Shifts don't visit cached widgets:
+ * shifted ranges are appended into short log of shift generations, and cached widget is checked by shifts made
+ * after it was cached on reading. Widget older than the log is reloaded.
+ * Ordered pages are cached by data version, which is changed by every modification,
+ * so pages of older versions are never read again.
+ * <p>
+ * Invalidation is done after modification is committed. Loaded value is put into cache only if data version
+ * wasn't changed while loading, so value read before concurrent modification can't stay into cache
+ */
+@Component
+public class H2WidgetCache {
+    private static final int SHIFT_LOG_SIZE = 256;
+
+    private final boolean enabled;
+    private final Cache<UUID, CachedWidget> widgetsById;
+    private final Cache<PageKey, List<Widget>> pages;
+    private final AtomicLong dataVersion = new AtomicLong();
+    /**
+     * Shifted ranges by generations, range of generation is kept by index generation % size
+     * as from and to Z-indexes packed into long
+     */
+    private final AtomicLongArray shiftLog = new AtomicLongArray(SHIFT_LOG_SIZE);
+    /**
+     * Generation of the last shift, it's changed after its range is put into log
+     */
+    private volatile long shiftGeneration;
+
+    public H2WidgetCache(final ConfigProperties configProperties, final WidgetMetrics widgetMetrics) {
+        final ConfigProperties.Cache config = configProperties.getH2storage().getCache();
+        this.enabled = config.isEnabled();
+        this.widgetsById = Caffeine.newBuilder()
+                                   .maximumSize(config.getMaxWidgets())
+                                   .expireAfterWrite(config.getExpireAfterWrite())
+                                   .recordStats()
+                                   .build();
+        this.pages = Caffeine.newBuilder()
+                             .maximumWeight(config.getMaxPageWidgets())
+                             .<PageKey, List<Widget>>weigher((key, page) -> page.size())
+                             .expireAfterWrite(config.getExpireAfterWrite())
+                             .recordStats()
+                             .build();
+        widgetMetrics.registerCache("widget.h2.byId", widgetsById);
+        widgetMetrics.registerCache("widget.h2.pages", pages);
+    }
+
+    Widget loadById(final @NonNull UUID id, final Supplier<Widget> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        final CachedWidget cached = widgetsById.getIfPresent(id);
+        if (cached != null) {
+            if (!isShifted(cached)) {
+                return cached.widget;
+            }
+            widgetsById.asMap().remove(id, cached);
+        }
+        final long version = dataVersion.get();
+        final CachedWidget loaded = new CachedWidget(loader.get(), shiftGeneration);
+        // Compute is atomic with invalidation of the same id
+        widgetsById.asMap().compute(id, (key, current) -> dataVersion.get() == version ? loaded : current);
+        return loaded.widget;
+    }
+
+    /**
+     * @param query      name of query
+     * @param parameters parameters of query
+     */
+    List<Widget> loadPage(final String query, final List<Integer> parameters, final Supplier<List<Widget>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        final PageKey key = new PageKey(dataVersion.get(), query, parameters);
+        final List<Widget> cached = pages.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        final List<Widget> loaded = Collections.unmodifiableList(loader.get());
+        pages.put(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Widget was updated or removed
+     */
+    void invalidate(final UUID id) {
+        afterModification(() -> widgetsById.invalidate(id));
+    }
+
+    void invalidateAll(final List<UUID> ids) {
+        afterModification(() -> widgetsById.invalidateAll(ids));
+    }
+
+    /**
+     * Widgets with Z-index bigger or equals given one were shifted
+     */
+    void invalidateIndexZFrom(final int fromIndexZ) {
+        invalidateIndexZRange(fromIndexZ, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Widgets with Z-index from range were shifted
+     */
+    void invalidateIndexZRange(final int fromIndexZ, final int toIndexZ) {
+        afterModification(() -> {
+            synchronized (shiftLog) {
+                final long generation = shiftGeneration + 1;
+                shiftLog.set((int) (generation % SHIFT_LOG_SIZE), ((long) fromIndexZ << 32) | (toIndexZ & 0xFFFFFFFFL));
+                shiftGeneration = generation;
+            }
+        });
+    }
+
+    /**
+     * Check cached widget by shifts made after it was cached
+     */
+    private boolean isShifted(final CachedWidget cached) {
+        final long lastGeneration = shiftGeneration;
+        if (lastGeneration - cached.shiftGeneration >= SHIFT_LOG_SIZE) {
+            return true;
+        }
+        final int indexZ = cached.widget.getIndexZ();
+        for (long generation = cached.shiftGeneration + 1; generation <= lastGeneration; generation++) {
+            final long range = shiftLog.get((int) (generation % SHIFT_LOG_SIZE));
+            if (indexZ >= (int) (range >> 32) && indexZ <= (int) range) {
+                return true;
+            }
+        }
+        // Log could be overwritten while checking, if it was rounded
+        return shiftGeneration - cached.shiftGeneration >= SHIFT_LOG_SIZE;
+    }
+
+    /**
+     * New widget was created, it changes pages only
+     */
+    void invalidatePages() {
+        afterModification(() -> {
+        });
+    }
+
+    /**
+     * Change data version and run invalidation when modification is committed,
+     * or at once if there is no transaction
+     */
+    private void afterModification(final Runnable invalidation) {
+        if (!enabled) {
+            return;
+        }
+        final Runnable versionChange = () -> {
+            dataVersion.incrementAndGet();
+            pages.invalidateAll();
+            invalidation.run();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(final int status) {
+                    versionChange.run();
+                }
+            });
+        } else {
+            versionChange.run();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class CachedWidget {
+        private final Widget widget;
+        /**
+         * The last shift generation before widget was loaded
+         */
+        private final long shiftGeneration;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class PageKey {
+        private final long dataVersion;
+        private final String query;
+        private final List<Integer> parameters;
+    }
+}
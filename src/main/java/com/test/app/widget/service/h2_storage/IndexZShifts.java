@@ -0,0 +1,93 @@
+package com.test.app.widget.service.h2_storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Pending shifts of Z-order which are not applied to widget rows yet.
+ * <p>
+ * Z-index of widget is its base plus increments of all shifts starting at or before its ordering key.
+ * Shifts split key space into segments, Z-index is base plus constant inside of segment,
+ * so widgets of segment can be searched by index on base
+ */
+final class IndexZShifts {
+    /**
+     * Columns which are read by {@link #read(ResultSet)}, they are evaluated once per statement,
+     * so shifts are consistent with widget rows of the same statement
+     */
+    static final String COLUMNS = "(SELECT ARRAY_AGG(FROM_KEY ORDER BY FROM_KEY, ID) FROM Z_SHIFTS) AS SHIFT_KEYS, " +
+                                  "(SELECT ARRAY_AGG(INCREMENT_VALUE ORDER BY FROM_KEY, ID) FROM Z_SHIFTS) AS SHIFT_INCREMENTS";
+
+    private static final IndexZShifts EMPTY = new IndexZShifts(new long[0], new long[0]);
+
+    private final long[] fromKeys;
+    /**
+     * Sum of increments of shifts up to the same position
+     */
+    private final long[] increments;
+
+    private IndexZShifts(final long[] fromKeys, final long[] increments) {
+        this.fromKeys = fromKeys;
+        this.increments = increments;
+    }
+
+    static IndexZShifts read(final ResultSet rs) throws SQLException {
+        final Object[] keys = (Object[]) rs.getObject("SHIFT_KEYS");
+        if (keys == null) {
+            return EMPTY;
+        }
+        final Object[] values = (Object[]) rs.getObject("SHIFT_INCREMENTS");
+        final long[] fromKeys = new long[keys.length];
+        final long[] increments = new long[keys.length];
+        long increment = 0;
+        for (int i = 0; i < keys.length; i++) {
+            fromKeys[i] = ((Number) keys[i]).longValue();
+            increment += ((Number) values[i]).longValue();
+            increments[i] = increment;
+        }
+        return new IndexZShifts(fromKeys, increments);
+    }
+
+    int count() {
+        return fromKeys.length;
+    }
+
+    /**
+     * @return sum of increments of shifts for widget with given ordering key
+     */
+    long getIncrement(final long orderKey) {
+        int low = 0;
+        int high = fromKeys.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (fromKeys[middle] <= orderKey) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low == 0 ? 0 : increments[low - 1];
+    }
+
+    int segments() {
+        return fromKeys.length + 1;
+    }
+
+    /**
+     * @return the first ordering key of segment, inclusive
+     */
+    long segmentFromKey(final int segment) {
+        return segment == 0 ? Long.MIN_VALUE : fromKeys[segment - 1];
+    }
+
+    /**
+     * @return the last ordering key of segment, inclusive
+     */
+    long segmentToKey(final int segment) {
+        return segment == fromKeys.length ? Long.MAX_VALUE : fromKeys[segment] - 1;
+    }
+
+    long segmentIncrement(final int segment) {
+        return segment == 0 ? 0 : increments[segment - 1];
+    }
+}
@@ -10,13 +10,38 @@ import java.util.UUID;
 
 @Component
 public class WidgetMapper implements RowMapper<Widget> {
+    /**
+     * Columns which are necessary for mapping.
+     * Queries select only them, so bounding box and geometry columns are not read.
+     * Z-index is counted from ordering columns and pending shifts of the same statement
+     */
+    static final String COLUMNS = "ID, COORDINATE_X, COORDINATE_Y, ORDER_KEY, Z_BASE, WIDTH, HEIGHT, LAST_MODIFICATION_DATE_TIME, " +
+                                  IndexZShifts.COLUMNS;
+
     @Override
     public Widget mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+        return mapRow(rs, IndexZShifts.read(rs));
+    }
+
+    /**
+     * @return mapper of rows of one statement, pending shifts are the same for all of them and they are read once
+     */
+    RowMapper<Widget> forStatement() {
+        final IndexZShifts[] shifts = new IndexZShifts[1];
+        return (rs, rowNum) -> {
+            if (shifts[0] == null) {
+                shifts[0] = IndexZShifts.read(rs);
+            }
+            return mapRow(rs, shifts[0]);
+        };
+    }
+
+    private static Widget mapRow(final ResultSet rs, final IndexZShifts shifts) throws SQLException {
         return new Widget(
                 UUID.fromString(rs.getString("ID")),
                 rs.getInt("COORDINATE_X"),
                 rs.getInt("COORDINATE_Y"),
-                rs.getInt("INDEX_Z"),
+                (int) (rs.getLong("Z_BASE") + shifts.getIncrement(rs.getLong("ORDER_KEY"))),
                 rs.getInt("WIDTH"),
                 rs.getInt("HEIGHT"),
                 rs.getTimestamp("LAST_MODIFICATION_DATE_TIME").toLocalDateTime()
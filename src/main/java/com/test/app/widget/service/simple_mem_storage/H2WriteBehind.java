@@ -0,0 +1,315 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.Widget;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tiered storage: all reads are served by memory storage, and its modifications are written into H2 asynchronously.
+ * <p>
+ * Modifications are coalesced per widget: only ids of modified widgets are kept, and the actual state is read
+ * while flushing. Shifts of Z-indexes are coalesced into the lowest shifted Z-index, all widgets from it are rewritten.
+ * Flush reads memory storage under read lock and writes it by JDBC batches in one transaction,
+ * so H2 always contains some consistent version of memory storage.
+ * <p>
+ * Memory storage writer waits while count of modified widgets exceeds the limit, and everything is flushed on stop.
+ * On start memory storage is loaded from H2 by parallel queries of Z-index ranges
+ */
+@Slf4j
+@Component
+public class H2WriteBehind implements WidgetChangeHandler {
+    private static final int NOT_SHIFTED = Integer.MAX_VALUE;
+    private static final long FULL_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Copy of memory storage, Z-index is actual one. Time keeps nanoseconds, so loaded widgets are equal to memory ones
+     */
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS TIERED_WIDGETS (" +
+                                               "    ID                          UUID      PRIMARY KEY, " +
+                                               "    COORDINATE_X                INT       NOT NULL, " +
+                                               "    COORDINATE_Y                INT       NOT NULL, " +
+                                               "    INDEX_Z                     INT       NOT NULL, " +
+                                               "    WIDTH                       INT       NOT NULL, " +
+                                               "    HEIGHT                      INT       NOT NULL, " +
+                                               "    LAST_MODIFICATION_DATE_TIME TIMESTAMP(9) NOT NULL" +
+                                               ")";
+    /**
+     * Not unique: Z-index of widget can be equal to not yet rewritten one of shifted widget inside flush
+     */
+    private static final String CREATE_INDEX_Z_INDEX = "CREATE INDEX IF NOT EXISTS I_tiered_widgets_ON_index_z ON TIERED_WIDGETS(INDEX_Z)";
+    private static final String MERGE = "MERGE INTO TIERED_WIDGETS (" +
+                                        "    ID, COORDINATE_X, COORDINATE_Y, INDEX_Z, WIDTH, HEIGHT, LAST_MODIFICATION_DATE_TIME" +
+                                        ") KEY (ID) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_BY_ID = "DELETE FROM TIERED_WIDGETS WHERE ID = ?";
+    private static final String LOAD_INDEX_Z_RANGE = "SELECT MIN(INDEX_Z), MAX(INDEX_Z) FROM TIERED_WIDGETS";
+    private static final String LOAD_BY_INDEX_Z_RANGE = "SELECT * FROM TIERED_WIDGETS " +
+                                                        "WHERE INDEX_Z BETWEEN ? AND ? " +
+                                                        "ORDER BY INDEX_Z";
+    private static final RowMapper<Widget> WIDGET_MAPPER = (rs, rowNum) -> new Widget(
+            UUID.fromString(rs.getString("ID")),
+            rs.getInt("COORDINATE_X"),
+            rs.getInt("COORDINATE_Y"),
+            rs.getInt("INDEX_Z"),
+            rs.getInt("WIDTH"),
+            rs.getInt("HEIGHT"),
+            rs.getTimestamp("LAST_MODIFICATION_DATE_TIME").toLocalDateTime()
+    );
+
+    private final ConfigProperties configProperties;
+    private final SimpleMemStorageRepository simpleMemStorageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WidgetMetrics widgetMetrics;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "widget-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Ids of widgets modified after the last flush, they are added under write lock of memory storage
+     * and taken under read lock
+     */
+    private volatile Set<UUID> dirtyIds = ConcurrentHashMap.newKeySet();
+    /**
+     * The lowest Z-index shifted after the last flush
+     */
+    private volatile int shiftedFromIndexZ = NOT_SHIFTED;
+    private volatile boolean running;
+
+    public H2WriteBehind(
+            final ConfigProperties configProperties,
+            final SimpleMemStorageRepository simpleMemStorageRepository,
+            final JdbcTemplate jdbcTemplate,
+            final PlatformTransactionManager transactionManager,
+            final WidgetMetrics widgetMetrics
+    ) {
+        this.configProperties = configProperties;
+        this.simpleMemStorageRepository = simpleMemStorageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.widgetMetrics = widgetMetrics;
+    }
+
+    @PostConstruct
+    public void start() throws InterruptedException {
+        if (!isEnabled()) {
+            return;
+        }
+        if (configProperties.getMemStorage().getPersistence().isEnabled()) {
+            throw new IllegalStateException("Error: tiered storage is kept by H2, it can't be used with persistence of memory storage");
+        }
+        // Scripts of data.sql are run in background after JPA bootstrap, so the table can't be created by them
+        jdbcTemplate.execute(CREATE_TABLE);
+        jdbcTemplate.execute(CREATE_INDEX_Z_INDEX);
+        final long startNanos = System.nanoTime();
+        final List<Widget> widgets = loadFromH2();
+        simpleMemStorageRepository.restore(widgets);
+        log.info(
+                "Tiered storage is loaded from H2: {} widgets for {} ms",
+                widgets.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        );
+
+        running = true;
+        simpleMemStorageRepository.attachWriteBehind(this);
+        widgetMetrics.registerWriteBehindGauge(this, H2WriteBehind::getPendingWidgets);
+        final long interval = configProperties.getTieredStorage().getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write all pending modifications, memory storage isn't modified after it
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        final boolean started = running;
+        running = false;
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        if (started) {
+            flush();
+        }
+    }
+
+    @Override
+    public void put(final Widget widget) {
+        dirtyIds.add(widget.getId());
+    }
+
+    @Override
+    public void remove(final UUID widgetId) {
+        dirtyIds.add(widgetId);
+    }
+
+    @Override
+    public void shiftAll(final int fromIndexZ, final int incrementValue) {
+        shiftedFromIndexZ = Math.min(shiftedFromIndexZ, fromIndexZ);
+    }
+
+    @Override
+    public void shiftRange(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+        shiftedFromIndexZ = Math.min(shiftedFromIndexZ, fromIndexZ);
+    }
+
+    /**
+     * Wait while count of modified widgets exceeds the limit, it's called by writer out of storage lock
+     */
+    void awaitCapacity() {
+        final int maxPendingWidgets = configProperties.getTieredStorage().getMaxPendingWidgets();
+        if (dirtyIds.size() < maxPendingWidgets || !running) {
+            return;
+        }
+        scheduler.execute(this::scheduledFlush);
+        while (running && dirtyIds.size() >= maxPendingWidgets) {
+            LockSupport.parkNanos(FULL_WAIT_NANOS);
+        }
+    }
+
+    int getPendingWidgets() {
+        return dirtyIds.size();
+    }
+
+    /**
+     * Write modifications made after the last flush into H2, they are returned into pending ones if writing fails
+     */
+    synchronized void flush() {
+        final Pending pending = simpleMemStorageRepository.readConsistently(this::takePending);
+        if (pending.upserted.isEmpty() && pending.deleted.isEmpty()) {
+            return;
+        }
+        final int batchSize = configProperties.getTieredStorage().getFlushBatchSize();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(MERGE, pending.upserted, batchSize, (ps, widget) -> {
+                    ps.setObject(1, widget.getId());
+                    ps.setInt(2, widget.getCoordinateX());
+                    ps.setInt(3, widget.getCoordinateY());
+                    ps.setInt(4, widget.getIndexZ());
+                    ps.setInt(5, widget.getWidth());
+                    ps.setInt(6, widget.getHeight());
+                    ps.setTimestamp(7, Timestamp.valueOf(widget.getLastModificationDateTime()));
+                });
+                jdbcTemplate.batchUpdate(DELETE_BY_ID, pending.deleted, batchSize, (ps, id) -> ps.setObject(1, id));
+            });
+        } catch (RuntimeException e) {
+            simpleMemStorageRepository.readConsistently(() -> {
+                dirtyIds.addAll(pending.ids);
+                shiftedFromIndexZ = Math.min(shiftedFromIndexZ, pending.shiftedFromIndexZ);
+                return null;
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * Load all widgets ordered by Z-index: Z-index range is split between threads, and parts are joined in order
+     */
+    List<Widget> loadFromH2() throws InterruptedException {
+        final long[] indexZRange = jdbcTemplate.queryForObject(
+                LOAD_INDEX_Z_RANGE,
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)}
+        );
+        if (indexZRange == null) {
+            return new ArrayList<>();
+        }
+        final int threads = Math.max(1, configProperties.getTieredStorage().getLoadThreads());
+        final long step = (indexZRange[1] - indexZRange[0]) / threads + 1;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "widget-tiered-load-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<List<Widget>>> parts = new ArrayList<>(threads);
+            for (long from = indexZRange[0]; from <= indexZRange[1]; from += step) {
+                final long partFrom = from;
+                final long partTo = Math.min(from + step - 1, indexZRange[1]);
+                parts.add(executor.submit(() -> jdbcTemplate.query(LOAD_BY_INDEX_Z_RANGE, WIDGET_MAPPER, partFrom, partTo)));
+            }
+            final List<Widget> widgets = new ArrayList<>();
+            for (final Future<List<Widget>> part : parts) {
+                widgets.addAll(part.get());
+            }
+            return widgets;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error: can't load tiered storage from H2", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Take pending modifications and actual state of modified widgets, it's called under read lock of memory storage
+     */
+    private Pending takePending() {
+        final Pending pending = new Pending(dirtyIds, shiftedFromIndexZ);
+        dirtyIds = ConcurrentHashMap.newKeySet();
+        shiftedFromIndexZ = NOT_SHIFTED;
+
+        final Map<UUID, Widget> upserted = new LinkedHashMap<>();
+        if (pending.shiftedFromIndexZ != NOT_SHIFTED) {
+            final List<Widget> shifted = pending.shiftedFromIndexZ == Integer.MIN_VALUE
+                                         ? simpleMemStorageRepository.loadAllSortedByIndexZ()
+                                         : simpleMemStorageRepository.loadPagingAfterIndexZ(pending.shiftedFromIndexZ - 1, Integer.MAX_VALUE);
+            shifted.forEach(widget -> upserted.put(widget.getId(), widget));
+        }
+        for (final UUID id : pending.ids) {
+            final Optional<Widget> widget = simpleMemStorageRepository.findById(id);
+            if (widget.isPresent()) {
+                upserted.put(id, widget.get());
+            } else {
+                pending.deleted.add(id);
+            }
+        }
+        pending.upserted.addAll(upserted.values());
+        return pending;
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Modifications are kept, so the next attempt writes them
+            log.error("Can't write modifications of tiered storage into H2", e);
+        }
+    }
+
+    private boolean isEnabled() {
+        return configProperties.getTieredStorage().isEnabled()
+               && !configProperties.getH2storage().isEnabled()
+               && !configProperties.getColumnarStorage().isEnabled();
+    }
+
+    private static final class Pending {
+        private final Set<UUID> ids;
+        private final int shiftedFromIndexZ;
+        private final List<Widget> upserted = new ArrayList<>();
+        private final List<UUID> deleted = new ArrayList<>();
+
+        private Pending(final Set<UUID> ids, final int shiftedFromIndexZ) {
+            this.ids = ids;
+            this.shiftedFromIndexZ = shiftedFromIndexZ;
+        }
+    }
+}
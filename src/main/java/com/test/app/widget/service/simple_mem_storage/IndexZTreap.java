@@ -0,0 +1,534 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Z-index order of widgets: treap by Z-index with lazy offset tags and subtree sizes.
+ * <p>
+ * Shifting of all Z-indexes bigger or equals some value is O(log n): tree is split by this value,
+ * and offset is put on the root of right part as lazy tag. Tag is pushed down to children only
+ * when modification goes through the node, so actual Z-index of node is its value plus tags of all ancestors.
+ * <p>
+ * Tree is guarded by read/write lock: readers don't push tags down, they accumulate them while descending
+ * <p>
+ * Z-order is shared by simple memory storage and columnar storage
+ */
+public class IndexZTreap {
+    private final Map<UUID, Node> nodesByWidgetId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root;
+
+    /**
+     * Insert widget into Z-order or move existed widget on new Z-index.
+     * Z-index must not be occupied by another widget
+     */
+    public void put(final UUID widgetId, final int indexZ) {
+        lock.writeLock().lock();
+        try {
+            removeNode(widgetId);
+            final Node node = new Node(widgetId, indexZ);
+            nodesByWidgetId.put(widgetId, node);
+            final Node[] parts = split(root, indexZ);
+            root = merge(merge(parts[0], node), parts[1]);
+            root.parent = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Build empty tree from entries in ascending Z-index order by O(n) pass:
+     * right spine of built tree is kept into stack, and each next node is put on it by priority
+     *
+     * @param entries key: Z-index, value: widgetId
+     */
+    public void loadAscending(final List<Map.Entry<Integer, UUID>> entries) {
+        lock.writeLock().lock();
+        try {
+            if (root != null) {
+                throw new IllegalStateException("Z-order can be bulk loaded only when it's empty");
+            }
+            final Deque<Node> rightSpine = new ArrayDeque<>();
+            for (final Map.Entry<Integer, UUID> entry : entries) {
+                final Node node = new Node(entry.getValue(), entry.getKey());
+                nodesByWidgetId.put(entry.getValue(), node);
+                Node lastPopped = null;
+                while (!rightSpine.isEmpty() && rightSpine.peek().priority < node.priority) {
+                    lastPopped = rightSpine.pop();
+                }
+                node.left = lastPopped;
+                if (!rightSpine.isEmpty()) {
+                    rightSpine.peek().right = node;
+                }
+                rightSpine.push(node);
+            }
+            root = rightSpine.peekLast();
+            if (root != null) {
+                pullAll(root);
+                root.parent = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(final UUID widgetId) {
+        lock.writeLock().lock();
+        try {
+            removeNode(widgetId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add offset to all Z-indexes bigger or equals given one
+     *
+     * @param indexZ         lowest Z-index for shifting
+     * @param incrementValue offset, must be positive for keeping order of Z-indexes
+     * @return number of shifted widgets
+     */
+    public int incrementAllBiggerOrEquals(final int indexZ, final int incrementValue) {
+        if (incrementValue <= 0) {
+            throw new IllegalArgumentException("Error: Z-index increment value must be positive");
+        }
+        lock.writeLock().lock();
+        try {
+            final Node[] parts = split(root, indexZ);
+            final int shifted = size(parts[1]);
+            apply(parts[1], incrementValue);
+            root = merge(parts[0], parts[1]);
+            if (root != null) {
+                root.parent = null;
+            }
+            return shifted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add offset to Z-indexes from given range.
+     * Shifted range must not jump over other Z-indexes, for keeping order of tree
+     *
+     * @param fromIndexZ     lowest Z-index for shifting
+     * @param toIndexZ       highest Z-index for shifting, inclusive
+     * @param incrementValue offset, must be positive
+     * @return number of shifted widgets
+     */
+    public int incrementRange(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+        if (incrementValue <= 0) {
+            throw new IllegalArgumentException("Error: Z-index increment value must be positive");
+        }
+        lock.writeLock().lock();
+        try {
+            final Node[] lowerAndRest = split(root, fromIndexZ);
+            final Node[] rangeAndUpper = split(lowerAndRest[1], toIndexZ + 1);
+            final int shifted = size(rangeAndUpper[0]);
+            apply(rangeAndUpper[0], incrementValue);
+            root = merge(lowerAndRest[0], merge(rangeAndUpper[0], rangeAndUpper[1]));
+            if (root != null) {
+                root.parent = null;
+            }
+            return shifted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return actual Z-index of widget or Null if widget is absent
+     */
+    public Integer indexZOf(final UUID widgetId) {
+        lock.readLock().lock();
+        try {
+            final Node node = nodesByWidgetId.get(widgetId);
+            if (node == null) {
+                return null;
+            }
+            int indexZ = node.indexZ;
+            for (Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+                indexZ += ancestor.lazy;
+            }
+            return indexZ;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return id of widget with given Z-index or Null if Z-index is free
+     */
+    public UUID findByIndexZ(final int indexZ) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int offset = 0;
+            while (node != null) {
+                final int nodeIndexZ = node.indexZ + offset;
+                if (nodeIndexZ == indexZ) {
+                    return node.widgetId;
+                }
+                offset += node.lazy;
+                node = indexZ < nodeIndexZ ? node.left : node.right;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return id of widget with the biggest Z-index lower than given one, or Null if there is no such widget
+     */
+    public UUID findLower(final int indexZ) {
+        lock.readLock().lock();
+        try {
+            UUID result = null;
+            Node node = root;
+            int offset = 0;
+            while (node != null) {
+                final int nodeIndexZ = node.indexZ + offset;
+                offset += node.lazy;
+                if (nodeIndexZ < indexZ) {
+                    result = node.widgetId;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return id of widget with the lowest Z-index bigger than given one, or Null if there is no such widget
+     */
+    public UUID findHigher(final int indexZ) {
+        lock.readLock().lock();
+        try {
+            UUID result = null;
+            Node node = root;
+            int offset = 0;
+            while (node != null) {
+                final int nodeIndexZ = node.indexZ + offset;
+                offset += node.lazy;
+                if (nodeIndexZ > indexZ) {
+                    result = node.widgetId;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return count of widgets with Z-index lower than given one, it's position of Z-index into Z-order
+     */
+    public int countLower(final int indexZ) {
+        lock.readLock().lock();
+        try {
+            int result = 0;
+            Node node = root;
+            int offset = 0;
+            while (node != null) {
+                final int nodeIndexZ = node.indexZ + offset;
+                offset += node.lazy;
+                if (nodeIndexZ < indexZ) {
+                    result += size(node.left) + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return max Z-index or Null if there are no widgets
+     */
+    public Integer maxIndexZ() {
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return null;
+            }
+            Node node = root;
+            int offset = 0;
+            while (node.right != null) {
+                offset += node.lazy;
+                node = node.right;
+            }
+            return node.indexZ + offset;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return min Z-index or Null if there are no widgets
+     */
+    public Integer minIndexZ() {
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return null;
+            }
+            Node node = root;
+            int offset = 0;
+            while (node.left != null) {
+                offset += node.lazy;
+                node = node.left;
+            }
+            return node.indexZ + offset;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load widgets in ascending Z-index order, starting from position (zero based) into Z-order
+     *
+     * @return entries where key: Z-index, value: widgetId
+     */
+    public List<Map.Entry<Integer, UUID>> loadAscendingFromPosition(final int position, final int limit) {
+        lock.readLock().lock();
+        try {
+            final Deque<Frame> path = new ArrayDeque<>();
+            Node node = root;
+            int offset = 0;
+            int rest = position;
+            while (node != null) {
+                final int leftSize = size(node.left);
+                if (rest < leftSize) {
+                    path.push(new Frame(node, offset));
+                    offset += node.lazy;
+                    node = node.left;
+                } else if (rest == leftSize) {
+                    path.push(new Frame(node, offset));
+                    break;
+                } else {
+                    rest -= leftSize + 1;
+                    offset += node.lazy;
+                    node = node.right;
+                }
+            }
+            return collectAscending(path, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load widgets in ascending Z-index order, starting from first Z-index bigger than given one.
+     * Cost is O(log n + limit) regardless of how deep is the start
+     *
+     * @return entries where key: Z-index, value: widgetId
+     */
+    public List<Map.Entry<Integer, UUID>> loadAscendingAfterIndexZ(final int indexZ, final int limit) {
+        lock.readLock().lock();
+        try {
+            final Deque<Frame> path = new ArrayDeque<>();
+            Node node = root;
+            int offset = 0;
+            while (node != null) {
+                if (node.indexZ + offset > indexZ) {
+                    path.push(new Frame(node, offset));
+                    offset += node.lazy;
+                    node = node.left;
+                } else {
+                    offset += node.lazy;
+                    node = node.right;
+                }
+            }
+            return collectAscending(path, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit in-order nodes starting from path top, where path contains nodes whose right subtree isn't visited yet
+     */
+    private List<Map.Entry<Integer, UUID>> collectAscending(final Deque<Frame> path, final int limit) {
+        final List<Map.Entry<Integer, UUID>> result = new ArrayList<>(Math.min(limit, nodesByWidgetId.size()));
+        while (!path.isEmpty() && result.size() < limit) {
+            final Frame frame = path.pop();
+            result.add(new AbstractMap.SimpleImmutableEntry<>(frame.node.indexZ + frame.offset, frame.node.widgetId));
+            int offset = frame.offset + frame.node.lazy;
+            for (Node node = frame.node.right; node != null; node = node.left) {
+                path.push(new Frame(node, offset));
+                offset += node.lazy;
+            }
+        }
+        return result;
+    }
+
+    private void removeNode(final UUID widgetId) {
+        final Node node = nodesByWidgetId.remove(widgetId);
+        if (node == null) {
+            return;
+        }
+        int indexZ = node.indexZ;
+        for (Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+            indexZ += ancestor.lazy;
+        }
+        final Node[] lowerAndRest = split(root, indexZ);
+        final Node[] removedAndUpper = split(lowerAndRest[1], indexZ + 1);
+        root = merge(lowerAndRest[0], removedAndUpper[1]);
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * Split tree into two: Z-indexes lower than given, and bigger or equals
+     */
+    private static Node[] split(final Node node, final int indexZ) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        push(node);
+        if (node.indexZ < indexZ) {
+            final Node[] parts = split(node.right, indexZ);
+            node.right = parts[0];
+            pull(node);
+            parts[0] = node;
+            return parts;
+        } else {
+            final Node[] parts = split(node.left, indexZ);
+            node.left = parts[1];
+            pull(node);
+            parts[1] = node;
+            return parts;
+        }
+    }
+
+    /**
+     * Merge two trees, where all Z-indexes of first one are lower than Z-indexes of second one
+     */
+    private static Node merge(final Node lower, final Node upper) {
+        if (lower == null) {
+            return upper;
+        }
+        if (upper == null) {
+            return lower;
+        }
+        if (lower.priority > upper.priority) {
+            push(lower);
+            lower.right = merge(lower.right, upper);
+            pull(lower);
+            return lower;
+        } else {
+            push(upper);
+            upper.left = merge(lower, upper.left);
+            pull(upper);
+            return upper;
+        }
+    }
+
+    private static void apply(final Node node, final int offset) {
+        if (node != null) {
+            node.indexZ += offset;
+            node.lazy += offset;
+        }
+    }
+
+    private static void push(final Node node) {
+        if (node.lazy != 0) {
+            apply(node.left, node.lazy);
+            apply(node.right, node.lazy);
+            node.lazy = 0;
+        }
+    }
+
+    private static void pull(final Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    /**
+     * Recalculate sizes and parents of all subtree nodes, depth of treap is O(log n)
+     */
+    private static void pullAll(final Node node) {
+        if (node.left != null) {
+            pullAll(node.left);
+        }
+        if (node.right != null) {
+            pullAll(node.right);
+        }
+        pull(node);
+    }
+
+    private static int size(final Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node {
+        private final UUID widgetId;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        /**
+         * Z-index without tags of ancestors
+         */
+        private int indexZ;
+        /**
+         * Offset which is not applied to children yet
+         */
+        private int lazy;
+        private int size = 1;
+        private Node left;
+        private Node right;
+        private Node parent;
+
+        Node(final UUID widgetId, final int indexZ) {
+            this.widgetId = widgetId;
+            this.indexZ = indexZ;
+        }
+    }
+
+    private static class Frame {
+        private final Node node;
+        /**
+         * Sum of ancestors tags
+         */
+        private final int offset;
+
+        Frame(final Node node, final int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.Widget;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durability of memory storage: recovery on start, periodic snapshots and log cleaning.
+ * <p>
+ * Recovery loads the newest valid snapshot and replays log segments after it.
+ * Snapshot is taken after switching of log segment, so all segments before the switch
+ * contain only modifications which are in snapshot. The previous snapshot and its segments are kept
+ * until the next snapshot is written and verified, so recovery can fall back on them if the newest one is corrupted
+ */
+@Slf4j
+@AllArgsConstructor
+@Component
+public class MemStoragePersistence {
+    private final ConfigProperties configProperties;
+    private final SimpleMemStorageRepository simpleMemStorageRepository;
+    private final WidgetWriteAheadLog writeAheadLog;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "widget-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong lastSnapshotVersion = new AtomicLong(-1);
+    /**
+     * The first log segment after the last snapshot, or the first segment of log if there is no snapshot yet
+     */
+    private final AtomicLong lastSnapshotFirstSegment = new AtomicLong();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        final Path directory = getDirectory();
+        Files.createDirectories(directory);
+
+        final long startNanos = System.nanoTime();
+        long version = 0;
+        long firstSegment = 0;
+        for (final Path snapshot : WidgetSnapshotFile.listSnapshots(directory)) {
+            final WidgetSnapshotFile.Content content = WidgetSnapshotFile.read(snapshot);
+            if (content != null) {
+                simpleMemStorageRepository.restore(content.getWidgetsOrderedByIndexZ());
+                version = content.getVersion();
+                firstSegment = content.getFirstSegment();
+                lastSnapshotVersion.set(version);
+                lastSnapshotFirstSegment.set(firstSegment);
+                break;
+            }
+            log.warn("Snapshot {} is corrupted, it's skipped", snapshot);
+        }
+        final WidgetChangeHandler recoveryHandler = simpleMemStorageRepository.getRecoveryHandler();
+        final List<Long> segments = WidgetWriteAheadLog.listSegments(directory);
+        for (final long segment : segments) {
+            if (segment >= firstSegment) {
+                version = WidgetWriteAheadLog.replay(WidgetWriteAheadLog.segmentPath(directory, segment), version, recoveryHandler);
+            }
+        }
+        simpleMemStorageRepository.restoreVersion(version);
+        // New segment is always started, so not fsync-ed tail of previous one is never appended
+        final long nextSegment = segments.isEmpty() ? firstSegment : Math.max(segments.get(segments.size() - 1) + 1, firstSegment);
+        writeAheadLog.start(directory, nextSegment);
+        log.info(
+                "Memory storage is recovered from {}: {} widgets, version {}, {} ms",
+                directory,
+                simpleMemStorageRepository.count(),
+                version,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        );
+
+        final long interval = configProperties.getMemStorage().getPersistence().getSnapshotInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::scheduledCheckpoint, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take the last snapshot, so the next start doesn't replay log
+     */
+    @PreDestroy
+    public void stop() throws IOException {
+        scheduler.shutdownNow();
+        if (!isEnabled()) {
+            return;
+        }
+        checkpoint();
+        writeAheadLog.close();
+    }
+
+    /**
+     * Write snapshot of actual version if storage was modified after the last one, and remove files which are older
+     * than the previous snapshot. Nothing is removed if written snapshot isn't valid
+     */
+    synchronized void checkpoint() throws IOException {
+        if (simpleMemStorageRepository.getVersion() == lastSnapshotVersion.get()) {
+            return;
+        }
+        final Path directory = getDirectory();
+        final long firstSegment = writeAheadLog.rotate();
+        final Map.Entry<Long, List<Widget>> widgets = simpleMemStorageRepository.loadAllWithVersion();
+        final Path snapshot = WidgetSnapshotFile.write(directory, widgets.getKey(), firstSegment, widgets.getValue());
+        if (!WidgetSnapshotFile.isValid(snapshot)) {
+            throw new IOException(String.format("Written snapshot %s is corrupted", snapshot));
+        }
+        final Path previousSnapshot = WidgetSnapshotFile.snapshotPath(directory, lastSnapshotVersion.get());
+        final long previousFirstSegment = lastSnapshotFirstSegment.get();
+        lastSnapshotVersion.set(widgets.getKey());
+        lastSnapshotFirstSegment.set(firstSegment);
+
+        for (final Path olderSnapshot : WidgetSnapshotFile.listSnapshots(directory)) {
+            if (!olderSnapshot.equals(snapshot) && !olderSnapshot.equals(previousSnapshot)) {
+                Files.deleteIfExists(olderSnapshot);
+            }
+        }
+        for (final long segment : WidgetWriteAheadLog.listSegments(directory)) {
+            if (segment < previousFirstSegment) {
+                Files.deleteIfExists(WidgetWriteAheadLog.segmentPath(directory, segment));
+            }
+        }
+    }
+
+    private void scheduledCheckpoint() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            // Log is still written, so the next attempt can be done later
+            log.error("Can't take snapshot of memory storage", e);
+        }
+    }
+
+    private boolean isEnabled() {
+        return configProperties.getMemStorage().getPersistence().isEnabled();
+    }
+
+    private Path getDirectory() {
+        return Paths.get(configProperties.getMemStorage().getPersistence().getDirectory());
+    }
+}
@@ -0,0 +1,313 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Immutable R-tree, bulk loaded by STR (sort-tile-recursive) packing.
+ * Used by snapshots: it's built once for all widgets of snapshot and then read without any locking.
+ * <p>
+ * Tree is stored into flat arrays by levels: node i of level covers nodes [i * NODE_CAPACITY, (i + 1) * NODE_CAPACITY)
+ * of lower level, and nodes of the lowest level cover widgets in the same way.
+ * Every node keeps the smallest and the biggest Z-indexes of widgets it covers, for searching widgets by Z-order
+ */
+class PackedRTree {
+    private static final int NODE_CAPACITY = 16;
+
+    /**
+     * Widgets in STR order
+     */
+    private final Widget[] widgets;
+    /**
+     * Bounds of widgets: minX, minY, maxX, maxY for each widget
+     */
+    private final int[] widgetsBounds;
+    /**
+     * Bounds of nodes by levels, from leaves (index 0) to root
+     */
+    private final int[][] levelsBounds;
+    /**
+     * The biggest Z-index of widgets covered by nodes, by the same levels as bounds
+     */
+    private final int[][] levelsMaxIndexZ;
+    /**
+     * The smallest Z-index of widgets covered by nodes, by the same levels as bounds
+     */
+    private final int[][] levelsMinIndexZ;
+
+    PackedRTree(final List<Widget> widgets) {
+        this.widgets = sortTileRecursive(widgets);
+        this.widgetsBounds = new int[this.widgets.length * 4];
+        for (int i = 0; i < this.widgets.length; i++) {
+            widgetsBounds[i * 4] = WidgetBounds.minX(this.widgets[i]);
+            widgetsBounds[i * 4 + 1] = WidgetBounds.minY(this.widgets[i]);
+            widgetsBounds[i * 4 + 2] = WidgetBounds.maxX(this.widgets[i]);
+            widgetsBounds[i * 4 + 3] = WidgetBounds.maxY(this.widgets[i]);
+        }
+
+        final List<int[]> levels = new ArrayList<>();
+        final List<int[]> levelsMax = new ArrayList<>();
+        final List<int[]> levelsMin = new ArrayList<>();
+        int[] lowerBounds = widgetsBounds;
+        int[] lowerMaxIndexZ = Arrays.stream(this.widgets).mapToInt(Widget::getIndexZ).toArray();
+        int[] lowerMinIndexZ = lowerMaxIndexZ;
+        while (lowerBounds.length > 4 || levels.isEmpty() && lowerBounds.length > 0) {
+            lowerBounds = packLevel(lowerBounds);
+            lowerMaxIndexZ = packIndexZ(lowerMaxIndexZ, Integer.MIN_VALUE, Math::max);
+            lowerMinIndexZ = packIndexZ(lowerMinIndexZ, Integer.MAX_VALUE, Math::min);
+            levels.add(lowerBounds);
+            levelsMax.add(lowerMaxIndexZ);
+            levelsMin.add(lowerMinIndexZ);
+        }
+        this.levelsBounds = levels.toArray(new int[0][]);
+        this.levelsMaxIndexZ = levelsMax.toArray(new int[0][]);
+        this.levelsMinIndexZ = levelsMin.toArray(new int[0][]);
+    }
+
+    /**
+     * Find widgets whose bounds are fully inside selected area
+     */
+    List<Widget> searchContained(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        final List<Widget> result = new ArrayList<>();
+        if (levelsBounds.length > 0) {
+            searchContained(levelsBounds.length - 1, 0, leftX, leftY, rightX, rightY, result);
+        }
+        return result;
+    }
+
+    private void searchContained(
+            final int level,
+            final int node,
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final List<Widget> result
+    ) {
+        final int[] bounds = levelsBounds[level];
+        if (bounds[node * 4] > rightX || bounds[node * 4 + 2] < leftX ||
+            bounds[node * 4 + 1] > rightY || bounds[node * 4 + 3] < leftY) {
+            return;
+        }
+        final int childrenStart = node * NODE_CAPACITY;
+        if (level == 0) {
+            final int childrenEnd = Math.min(childrenStart + NODE_CAPACITY, widgets.length);
+            for (int i = childrenStart; i < childrenEnd; i++) {
+                if (widgetsBounds[i * 4] >= leftX && widgetsBounds[i * 4 + 2] <= rightX &&
+                    widgetsBounds[i * 4 + 1] >= leftY && widgetsBounds[i * 4 + 3] <= rightY) {
+                    result.add(widgets[i]);
+                }
+            }
+        } else {
+            final int childrenEnd = Math.min(childrenStart + NODE_CAPACITY, levelsBounds[level - 1].length / 4);
+            for (int child = childrenStart; child < childrenEnd; child++) {
+                searchContained(level - 1, child, leftX, leftY, rightX, rightY, result);
+            }
+        }
+    }
+
+    /**
+     * Find widgets whose bounds contain point, the highest Z-index first.
+     * Search stops after limit widgets without visiting lower ones
+     */
+    List<Widget> searchTopContaining(final int x, final int y, final int limit) {
+        return searchOrdered(
+                (bounds, index) -> contains(bounds, index, x, y),
+                (bounds, index) -> contains(bounds, index, x, y),
+                IndexZDirection.DESCENDING,
+                null,
+                limit
+        );
+    }
+
+    /**
+     * Find widgets whose bounds are fully inside selected area by Z-order, only the first limit widgets after cursor.
+     * Search stops after limit widgets without visiting the next ones
+     */
+    List<Widget> searchContainedOrdered(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return searchOrdered(
+                (bounds, index) -> bounds[index * 4] <= rightX && bounds[index * 4 + 2] >= leftX &&
+                                   bounds[index * 4 + 1] <= rightY && bounds[index * 4 + 3] >= leftY,
+                (bounds, index) -> bounds[index * 4] >= leftX && bounds[index * 4 + 2] <= rightX &&
+                                   bounds[index * 4 + 1] >= leftY && bounds[index * 4 + 3] <= rightY,
+                direction,
+                afterIndexZ,
+                limit
+        );
+    }
+
+    /**
+     * Best-first search: nodes are visited by the first Z-index their widgets can have after cursor,
+     * so widgets are found by Z-order and search stops after limit widgets
+     */
+    private List<Widget> searchOrdered(
+            final BoundsFilter nodeFilter,
+            final BoundsFilter widgetFilter,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        final List<Widget> result = new ArrayList<>(Math.min(limit, NODE_CAPACITY));
+        final boolean descending = direction == IndexZDirection.DESCENDING;
+        // The first Z-index after cursor, it's long for cursor on bound of int range
+        final long fromIndexZ = afterIndexZ == null
+                                ? (descending ? Long.MAX_VALUE : Long.MIN_VALUE)
+                                : (descending ? afterIndexZ - 1L : afterIndexZ + 1L);
+        if (levelsBounds.length == 0) {
+            return result;
+        }
+        // Candidates are nodes of levels and widgets, widgets are at level -1
+        final PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+                NODE_CAPACITY,
+                descending
+                ? (first, second) -> Long.compare(second.firstIndexZ, first.firstIndexZ)
+                : (first, second) -> Long.compare(first.firstIndexZ, second.firstIndexZ)
+        );
+        final int rootLevel = levelsBounds.length - 1;
+        addCandidate(rootLevel, 0, levelsBounds[rootLevel], nodeFilter, descending, fromIndexZ, candidates);
+        while (!candidates.isEmpty() && result.size() < limit) {
+            final Candidate candidate = candidates.poll();
+            if (candidate.level < 0) {
+                result.add(widgets[candidate.index]);
+                continue;
+            }
+            final int childrenStart = candidate.index * NODE_CAPACITY;
+            final int childLevel = candidate.level - 1;
+            final int[] childrenBounds = childLevel < 0 ? widgetsBounds : levelsBounds[childLevel];
+            final BoundsFilter childFilter = childLevel < 0 ? widgetFilter : nodeFilter;
+            final int childrenEnd = Math.min(childrenStart + NODE_CAPACITY, childrenBounds.length / 4);
+            for (int child = childrenStart; child < childrenEnd; child++) {
+                addCandidate(childLevel, child, childrenBounds, childFilter, descending, fromIndexZ, candidates);
+            }
+        }
+        return result;
+    }
+
+    private void addCandidate(
+            final int level,
+            final int index,
+            final int[] bounds,
+            final BoundsFilter filter,
+            final boolean descending,
+            final long fromIndexZ,
+            final PriorityQueue<Candidate> candidates
+    ) {
+        final int minIndexZ = level < 0 ? widgets[index].getIndexZ() : levelsMinIndexZ[level][index];
+        final int maxIndexZ = level < 0 ? widgets[index].getIndexZ() : levelsMaxIndexZ[level][index];
+        if ((descending ? minIndexZ <= fromIndexZ : maxIndexZ >= fromIndexZ) && filter.test(bounds, index)) {
+            candidates.add(new Candidate(
+                    level,
+                    index,
+                    descending ? Math.min(maxIndexZ, fromIndexZ) : Math.max(minIndexZ, fromIndexZ)
+            ));
+        }
+    }
+
+    private static boolean contains(final int[] bounds, final int index, final int x, final int y) {
+        return bounds[index * 4] <= x && bounds[index * 4 + 2] >= x &&
+               bounds[index * 4 + 1] <= y && bounds[index * 4 + 3] >= y;
+    }
+
+    /**
+     * Build the biggest or the smallest Z-indexes of upper level nodes,
+     * each node covers NODE_CAPACITY sequential lower entries
+     */
+    private static int[] packIndexZ(final int[] lowerIndexZ, final int identity, final IntBinaryOperator operator) {
+        final int count = (lowerIndexZ.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int[] indexZ = new int[count];
+        for (int node = 0; node < count; node++) {
+            indexZ[node] = identity;
+            final int end = Math.min((node + 1) * NODE_CAPACITY, lowerIndexZ.length);
+            for (int i = node * NODE_CAPACITY; i < end; i++) {
+                indexZ[node] = operator.applyAsInt(indexZ[node], lowerIndexZ[i]);
+            }
+        }
+        return indexZ;
+    }
+
+    /**
+     * Build bounds of upper level nodes, each node covers NODE_CAPACITY sequential lower entries
+     */
+    private static int[] packLevel(final int[] lowerBounds) {
+        final int lowerCount = lowerBounds.length / 4;
+        final int count = (lowerCount + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int[] bounds = new int[count * 4];
+        for (int node = 0; node < count; node++) {
+            bounds[node * 4] = Integer.MAX_VALUE;
+            bounds[node * 4 + 1] = Integer.MAX_VALUE;
+            bounds[node * 4 + 2] = Integer.MIN_VALUE;
+            bounds[node * 4 + 3] = Integer.MIN_VALUE;
+            final int end = Math.min((node + 1) * NODE_CAPACITY, lowerCount);
+            for (int i = node * NODE_CAPACITY; i < end; i++) {
+                bounds[node * 4] = Math.min(bounds[node * 4], lowerBounds[i * 4]);
+                bounds[node * 4 + 1] = Math.min(bounds[node * 4 + 1], lowerBounds[i * 4 + 1]);
+                bounds[node * 4 + 2] = Math.max(bounds[node * 4 + 2], lowerBounds[i * 4 + 2]);
+                bounds[node * 4 + 3] = Math.max(bounds[node * 4 + 3], lowerBounds[i * 4 + 3]);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Sort widgets into vertical slices by X, and each slice by Y,
+     * so each sequential group of NODE_CAPACITY widgets is a compact tile.
+     * It's also used for bulk loading of {@link WidgetRTree}, its node capacity is the same
+     */
+    static Widget[] sortTileRecursive(final List<Widget> widgets) {
+        final Widget[] result = widgets.toArray(new Widget[0]);
+        Arrays.sort(result, Comparator.comparingInt(Widget::getCoordinateX));
+        final int leavesCount = (result.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int slicesCount = (int) Math.ceil(Math.sqrt(leavesCount));
+        final int sliceSize = Math.max(slicesCount * NODE_CAPACITY, NODE_CAPACITY);
+        for (int sliceStart = 0; sliceStart < result.length; sliceStart += sliceSize) {
+            Arrays.sort(
+                    result,
+                    sliceStart,
+                    Math.min(sliceStart + sliceSize, result.length),
+                    Comparator.comparingInt(Widget::getCoordinateY)
+            );
+        }
+        return result;
+    }
+
+    private interface BoundsFilter {
+        boolean test(int[] bounds, int index);
+    }
+
+    private static class Candidate {
+        private final int level;
+        private final int index;
+        /**
+         * The first Z-index after cursor which node can cover, or Z-index of widget
+         */
+        private final long firstIndexZ;
+
+        Candidate(final int level, final int index, final long firstIndexZ) {
+            this.level = level;
+            this.index = index;
+            this.firstIndexZ = firstIndexZ;
+        }
+    }
+}
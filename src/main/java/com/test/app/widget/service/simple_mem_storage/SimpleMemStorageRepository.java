@@ -1,85 +1,367 @@
 package com.test.app.widget.service.simple_mem_storage;
 
+import com.test.app.widget.service.IndexZBatchPlanner;
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.IndexZShift;
 import com.test.app.widget.service.Widget;
-import lombok.AllArgsConstructor;
+import com.test.app.widget.service.WidgetBounds;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @Component
 public class SimpleMemStorageRepository {
+    private static final int ITERATION_CHUNK_SIZE = 1000;
+    /**
+     * Count of Z-order neighbours on each side of widget whose R-tree keys are spread first when keys are exhausted
+     */
+    private static final int RTREE_RESPACING_WINDOW = 16;
 
+    /**
+     * Widgets by id. Z-index of stored widget isn't actual after shifting,
+     * actual value is kept by {@link #indexZTreap} and set into widget copy on loading
+     */
     private final Map<UUID, Widget> storage = new ConcurrentHashMap<>();
     /**
-     * Structure for control Z-Index order where:
-     * key: Z-Index
-     * value: widgetId
+     * Structure for control Z-Index order
+     */
+    private final IndexZTreap indexZTreap = new IndexZTreap();
+    /**
+     * Spatial index of widgets bounds for area queries
+     */
+    private final WidgetRTree widgetRTree = new WidgetRTree();
+    /**
+     * Modifications are exclusive, consistent reads and building of snapshot are shared.
+     * Usual reads don't use this lock, they are going through structures directly
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Last built snapshot, it's actual while its version is equal to storage version
+     */
+    private final AtomicReference<WidgetSnapshot> snapshot = new AtomicReference<>(WidgetSnapshot.EMPTY);
+    /**
+     * Snapshot is built by one reader at once, it's the only publisher of snapshot
+     */
+    private final Object snapshotBuilding = new Object();
+    /**
+     * Number of storage modification, it's changed under write lock only
+     */
+    private final AtomicLong version = new AtomicLong();
+    /**
+     * Actions of current modification which are run after it's committed, they are added under write lock only
+     */
+    private final List<Runnable> committedActions = new ArrayList<>();
+    /**
+     * Log of modifications, it's no-op while persistence is disabled
+     */
+    private final WidgetWriteAheadLog writeAheadLog;
+    /**
+     * Write-behind into H2, it's attached on start of tiered storage only
+     */
+    private volatile H2WriteBehind writeBehind;
+    /**
+     * Every elementary modification goes into log and into write-behind
      */
-    private final SortedMap<Integer, UUID> widgetIdOrderedByIndexZMap = new ConcurrentSkipListMap<>(Collections.reverseOrder());
+    private final WidgetChangeHandler changes = new WidgetChangeHandler() {
+        @Override
+        public void put(final Widget widget) {
+            writeAheadLog.put(widget);
+            if (writeBehind != null) {
+                writeBehind.put(widget);
+            }
+        }
 
-    Widget create(final Widget newWidget) {
-        if (findByIndexZValue(newWidget.getIndexZ()).isPresent()) {
-            // Z-indexes was not recounted before update
-            throw new RuntimeException(String.format(
-                    "Can't create new widget id=%s with duplicate Z-index value=%s",
-                    newWidget.getId(),
-                    newWidget.getIndexZ()
-            ));
+        @Override
+        public void remove(final UUID widgetId) {
+            writeAheadLog.remove(widgetId);
+            if (writeBehind != null) {
+                writeBehind.remove(widgetId);
+            }
         }
-        setWidgetLastModificationTimeAsNow(newWidget);
-        storage.put(newWidget.getId(), newWidget);
-        widgetIdOrderedByIndexZMap.put(newWidget.getIndexZ(), newWidget.getId());
-        return newWidget;
-    }
 
-    Widget update(final Widget newWidget) {
-        final Widget oldWidget = loadById(newWidget.getId());
+        @Override
+        public void shiftAll(final int fromIndexZ, final int incrementValue) {
+            writeAheadLog.shiftAll(fromIndexZ, incrementValue);
+            if (writeBehind != null) {
+                writeBehind.shiftAll(fromIndexZ, incrementValue);
+            }
+        }
 
-        if (oldWidget.getIndexZ().equals(newWidget.getIndexZ())) {
-            /*
-            This widget Z-index was not updated
-            Update only storage
-            */
-            setWidgetLastModificationTimeAsNow(newWidget);
-            storage.put(newWidget.getId(), newWidget);
-            return newWidget;
-        } else {
+        @Override
+        public void shiftRange(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+            writeAheadLog.shiftRange(fromIndexZ, toIndexZ, incrementValue);
+            if (writeBehind != null) {
+                writeBehind.shiftRange(fromIndexZ, toIndexZ, incrementValue);
+            }
+        }
+    };
+
+    Widget create(final Widget newWidget) {
+        return write(() -> {
             if (findByIndexZValue(newWidget.getIndexZ()).isPresent()) {
                 // Z-indexes was not recounted before update
                 throw new RuntimeException(String.format(
-                        "Can't update widget id=%s with duplicate Z-index value=%s",
+                        "Can't create new widget id=%s with duplicate Z-index value=%s",
                         newWidget.getId(),
                         newWidget.getIndexZ()
                 ));
             }
-
-            widgetIdOrderedByIndexZMap.remove(oldWidget.getIndexZ());
-            widgetIdOrderedByIndexZMap.put(newWidget.getIndexZ(), newWidget.getId());
             setWidgetLastModificationTimeAsNow(newWidget);
             storage.put(newWidget.getId(), newWidget);
-        }
+            indexZTreap.put(newWidget.getId(), newWidget.getIndexZ());
+            putIntoRTree(newWidget);
+            changes.put(newWidget);
+            return newWidget;
+        });
+    }
+
+    Widget update(final Widget newWidget) {
+        return write(() -> {
+            final Widget oldWidget = loadById(newWidget.getId());
 
-        return newWidget;
+            if (oldWidget.getIndexZ().equals(newWidget.getIndexZ())) {
+                /*
+                This widget Z-index was not updated
+                Update only storage
+                */
+                setWidgetLastModificationTimeAsNow(newWidget);
+                storage.put(newWidget.getId(), newWidget);
+                widgetRTree.put(newWidget);
+                changes.put(newWidget);
+                return newWidget;
+            } else {
+                if (findByIndexZValue(newWidget.getIndexZ()).isPresent()) {
+                    // Z-indexes was not recounted before update
+                    throw new RuntimeException(String.format(
+                            "Can't update widget id=%s with duplicate Z-index value=%s",
+                            newWidget.getId(),
+                            newWidget.getIndexZ()
+                    ));
+                }
+
+                indexZTreap.put(newWidget.getId(), newWidget.getIndexZ());
+                setWidgetLastModificationTimeAsNow(newWidget);
+                storage.put(newWidget.getId(), newWidget);
+                putIntoRTree(newWidget);
+                changes.put(newWidget);
+            }
+
+            return newWidget;
+        });
     }
 
     UUID removeById(final @NonNull UUID id) {
-        widgetIdOrderedByIndexZMap.remove(storage.get(id).getIndexZ());
-        return storage.remove(id).getId();
+        return write(() -> {
+            indexZTreap.remove(id);
+            widgetRTree.remove(id);
+            final UUID removedId = storage.remove(id).getId();
+            changes.remove(removedId);
+            return removedId;
+        });
+    }
+
+    /**
+     * Increment Z-index of all widgets with Z-index bigger or equals given one
+     *
+     * @return number of shifted widgets
+     */
+    int incrementAllWidgetsZIndexesBiggerOrEqualsThis(final int indexZ, final int incrementValue) {
+        return write(() -> {
+            final int shifted = indexZTreap.incrementAllBiggerOrEquals(indexZ, incrementValue);
+            changes.shiftAll(indexZ, incrementValue);
+            return shifted;
+        });
+    }
+
+    /**
+     * Apply batch of modifications as one storage modification.
+     * Z-indexes of created and updated widgets are resolved by one pass over Z-order,
+     * see {@link IndexZBatchPlanner}
+     *
+     * @param created widgets for creating, Z-index can be Null
+     * @param updated widgets for updating, Z-index can be Null
+     * @param deleted ids of widgets for removing
+     * @return number of shifted widgets
+     */
+    int applyBatch(
+            final List<Widget> created,
+            final List<Widget> updated,
+            final List<UUID> deleted
+    ) {
+        return write(() -> {
+            // Check before any modification, for keeping batch atomic
+            updated.forEach(widget -> loadById(widget.getId()));
+            deleted.forEach(this::loadById);
+
+            deleted.forEach(id -> {
+                indexZTreap.remove(id);
+                widgetRTree.remove(id);
+                storage.remove(id);
+                changes.remove(id);
+            });
+            // Updated widgets are logged by their puts only, replay takes them out of Z-order by itself
+            updated.forEach(widget -> indexZTreap.remove(widget.getId()));
+
+            final List<Widget> placed = new ArrayList<>(updated);
+            placed.addAll(created);
+            int shifted = 0;
+            for (final IndexZShift shift : IndexZBatchPlanner.plan(placed, this::loadPagingAfterIndexZ, getMaxZIndexValue())) {
+                shifted += indexZTreap.incrementRange(shift.getFromIndexZ(), shift.getToIndexZ(), shift.getIncrementValue());
+                changes.shiftRange(shift.getFromIndexZ(), shift.getToIndexZ(), shift.getIncrementValue());
+            }
+            placed.forEach(widget -> {
+                setWidgetLastModificationTimeAsNow(widget);
+                storage.put(widget.getId(), widget);
+                indexZTreap.put(widget.getId(), widget.getIndexZ());
+                putIntoRTree(widget);
+                changes.put(widget);
+            });
+            return shifted;
+        });
+    }
+
+    /**
+     * Get snapshot of actual version. Writes don't build snapshots, so the first read after writes builds it
+     * under read lock, and the next reads share it until the next write. Readers coming while it's built wait for it
+     * instead of building it again, snapshot built meanwhile isn't older than version they came for
+     */
+    WidgetSnapshot getSnapshot() {
+        final WidgetSnapshot built = snapshot.get();
+        final long requestedVersion = version.get();
+        if (built.getVersion() == requestedVersion) {
+            return built;
+        }
+        synchronized (snapshotBuilding) {
+            final WidgetSnapshot builtMeanwhile = snapshot.get();
+            if (builtMeanwhile.getVersion() >= requestedVersion) {
+                return builtMeanwhile;
+            }
+            final WidgetSnapshot actual = readConsistently(() -> new WidgetSnapshot(version.get(), loadAllSortedByIndexZ()));
+            snapshot.set(actual);
+            return actual;
+        }
+    }
+
+    /**
+     * Attach write-behind after bulk loading, so loaded widgets aren't written back
+     */
+    void attachWriteBehind(final H2WriteBehind attached) {
+        lock.writeLock().lock();
+        try {
+            writeBehind = attached;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read under read lock, so reading can't see a half of modification
+     */
+    <T> T readConsistently(final Supplier<T> reading) {
+        lock.readLock().lock();
+        try {
+            return reading.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * All widgets in Z-index order with version they belong to, they are read under read lock
+     *
+     * @return entry where key: version, value: widgets
+     */
+    Map.Entry<Long, List<Widget>> loadAllWithVersion() {
+        lock.readLock().lock();
+        try {
+            return new AbstractMap.SimpleImmutableEntry<>(version.get(), loadAllSortedByIndexZ());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    void incrementAndUpdateZIndexById(final UUID widgetId, final int incrementNumber) {
-        final int oldZIndexValue = storage.get(widgetId).getIndexZ();
-        storage.get(widgetId).setIndexZ(oldZIndexValue + incrementNumber);
-        widgetIdOrderedByIndexZMap.remove(oldZIndexValue);
-        widgetIdOrderedByIndexZMap.put(oldZIndexValue + incrementNumber, widgetId);
+    /**
+     * Bulk loading of empty storage from snapshot, Z-order and R-tree are built at once instead of inserting
+     */
+    void restore(final List<Widget> widgetsOrderedByIndexZ) {
+        lock.writeLock().lock();
+        try {
+            final List<Map.Entry<Integer, UUID>> indexZEntries = new ArrayList<>(widgetsOrderedByIndexZ.size());
+            for (final Widget widget : widgetsOrderedByIndexZ) {
+                storage.put(widget.getId(), widget);
+                indexZEntries.add(new AbstractMap.SimpleImmutableEntry<>(widget.getIndexZ(), widget.getId()));
+            }
+            indexZTreap.loadAscending(indexZEntries);
+            widgetRTree.load(widgetsOrderedByIndexZ);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Handler which applies replayed modifications to storage structures without logging them again.
+     * It's used by recovery, before storage is available for requests
+     */
+    WidgetChangeHandler getRecoveryHandler() {
+        return new WidgetChangeHandler() {
+            @Override
+            public void put(final Widget widget) {
+                storage.put(widget.getId(), widget);
+                indexZTreap.put(widget.getId(), widget.getIndexZ());
+                putIntoRTree(widget);
+            }
+
+            @Override
+            public void remove(final UUID widgetId) {
+                storage.remove(widgetId);
+                indexZTreap.remove(widgetId);
+                widgetRTree.remove(widgetId);
+            }
+
+            @Override
+            public void shiftAll(final int fromIndexZ, final int incrementValue) {
+                indexZTreap.incrementAllBiggerOrEquals(fromIndexZ, incrementValue);
+            }
+
+            @Override
+            public void shiftRange(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+                indexZTreap.incrementRange(fromIndexZ, toIndexZ, incrementValue);
+            }
+
+            @Override
+            public void beforeReplayedPut(final UUID widgetId) {
+                indexZTreap.remove(widgetId);
+            }
+        };
+    }
+
+    /**
+     * Set version of recovered storage, so versions of new log frames are continuing recovered ones
+     */
+    void restoreVersion(final long recoveredVersion) {
+        lock.writeLock().lock();
+        try {
+            version.set(recoveredVersion);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @NonNull Widget loadById(final @NonNull UUID id) {
@@ -87,11 +369,8 @@ public class SimpleMemStorageRepository {
     }
 
     Optional<Widget> findById(final @NonNull UUID id) {
-        return Optional.of(storage.getOrDefault(id, null));
-    }
-
-    Widget loadByIndexZValue(final int widgetIndexZ) {
-        return loadById(widgetIdOrderedByIndexZMap.get(widgetIndexZ));
+        return Optional.ofNullable(storage.get(id))
+                       .map(this::withActualIndexZ);
     }
 
     List<Widget> loadPaging(final int page, final int size) {
@@ -99,21 +378,37 @@ public class SimpleMemStorageRepository {
             throw new IllegalArgumentException("Error: page value can't be < 0");
         }
         final int startPaging = Math.max(page - 1, 0);
-        return loadAllSortedByIndexZ().stream()
-                                      .skip(startPaging)
-                                      .limit(size)
-                                      .collect(Collectors.toList());
+        return toWidgets(indexZTreap.loadAscendingFromPosition(startPaging, size));
+    }
+
+    /**
+     * Keyset paging: widgets with Z-index bigger than given one, read directly from Z-order
+     */
+    List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        return toWidgets(indexZTreap.loadAscendingAfterIndexZ(afterIndexZ, size));
     }
 
     List<Widget> loadAllSortedByIndexZ() {
-        return storage.values()
-                      .stream()
-                      .sorted(Comparator.comparing(Widget::getIndexZ))
-                      .collect(Collectors.toList());
+        return toWidgets(indexZTreap.loadAscendingFromPosition(0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Visit all widgets in Z-index order. Z-order is read by chunks, and its lock isn't held
+     * while consumer works, so concurrent modifications can be seen partially
+     */
+    void forEachSortedByIndexZ(final Consumer<Widget> consumer) {
+        List<Map.Entry<Integer, UUID>> chunk = indexZTreap.loadAscendingFromPosition(0, ITERATION_CHUNK_SIZE);
+        while (!chunk.isEmpty()) {
+            toWidgets(chunk).forEach(consumer);
+            if (chunk.size() < ITERATION_CHUNK_SIZE) {
+                return;
+            }
+            chunk = indexZTreap.loadAscendingAfterIndexZ(chunk.get(chunk.size() - 1).getKey(), ITERATION_CHUNK_SIZE);
+        }
     }
 
     Optional<Widget> findByIndexZValue(final int widgetIndexZ) {
-        final UUID widgetId = widgetIdOrderedByIndexZMap.get(widgetIndexZ);
+        final UUID widgetId = indexZTreap.findByIndexZ(widgetIndexZ);
         return widgetId != null ? findById(widgetId) : Optional.empty();
     }
 
@@ -123,32 +418,214 @@ public class SimpleMemStorageRepository {
      * @return max Z-index value into storage or 0 if storage is empty
      */
     int getMaxZIndexValue() {
-        return storage.isEmpty() ? 0 : widgetIdOrderedByIndexZMap.firstKey();
+        final Integer maxIndexZ = indexZTreap.maxIndexZ();
+        return maxIndexZ == null ? 0 : maxIndexZ;
+    }
+
+    int count() {
+        return indexZTreap.size();
     }
 
-    List<Integer> loadAllZIndexesByDescOrder() {
-        return new ArrayList<>(widgetIdOrderedByIndexZMap.keySet());
+    /**
+     * Difference between max and min Z-index, or 0 if storage is empty
+     */
+    int getIndexZSpan() {
+        final Integer minIndexZ = indexZTreap.minIndexZ();
+        final Integer maxIndexZ = indexZTreap.maxIndexZ();
+        return minIndexZ == null || maxIndexZ == null ? 0 : maxIndexZ - minIndexZ;
     }
 
+    /**
+     * Load widgets which are fully inside selected area.
+     * Candidates are taken from R-tree, and each candidate is checked again by actual storage value,
+     * because widget can be changed by concurrent writer between index search and storage read
+     */
     List<Widget> loadBySelectedArea(
             final int leftX,
             final int leftY,
             final int rightX,
             final int rightY
     ) {
-        return storage.values()
-                      .stream()
-                      .filter(w -> (w.getCoordinateX() + (w.getWidth() / 2)) <= rightX)
-                      .filter(w -> (w.getCoordinateX() - (w.getWidth() / 2)) >= leftX)
-                      .filter(w -> (w.getCoordinateX() + (w.getHeight() / 2)) <= rightY)
-                      .filter(w -> (w.getCoordinateX() - (w.getHeight() / 2)) >= leftY)
-                      .collect(Collectors.toList());
+        return widgetRTree.searchContained(leftX, leftY, rightX, rightY)
+                          .stream()
+                          .map(storage::get)
+                          .filter(Objects::nonNull)
+                          .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                          .map(this::withActualIndexZ)
+                          .filter(Objects::nonNull)
+                          .collect(Collectors.toList());
+    }
+
+    /**
+     * Load widgets which are fully inside selected area by Z-order, only the first limit widgets after cursor.
+     * Cursor is translated into its Z-order neighbour, R-tree search starts from it and stops after limit candidates.
+     * Each candidate is checked again by actual storage value and Z-index, so concurrent modification
+     * can only make page shorter
+     */
+    List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        UUID fromId = null;
+        if (afterIndexZ != null) {
+            fromId = direction == IndexZDirection.ASCENDING
+                     ? indexZTreap.findHigher(afterIndexZ)
+                     : indexZTreap.findLower(afterIndexZ);
+            if (fromId == null) {
+                return Collections.emptyList();
+            }
+        }
+        return widgetRTree.searchContainedOrdered(leftX, leftY, rightX, rightY, direction, fromId, limit)
+                          .stream()
+                          .map(storage::get)
+                          .filter(Objects::nonNull)
+                          .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                          .map(this::withActualIndexZ)
+                          .filter(Objects::nonNull)
+                          .filter(w -> direction.isAfter(w.getIndexZ(), afterIndexZ))
+                          .sorted(direction.comparator())
+                          .collect(Collectors.toList());
+    }
+
+    /**
+     * Load widgets whose bounds contain point, the highest Z-index first.
+     * Candidates are taken from R-tree by Z-order, and each candidate is checked again by actual storage value,
+     * because widget can be changed by concurrent writer between index search and storage read
+     */
+    List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return widgetRTree.searchTopContaining(x, y, limit)
+                          .stream()
+                          .map(storage::get)
+                          .filter(Objects::nonNull)
+                          .filter(w -> WidgetBounds.contains(w, x, y))
+                          .map(this::withActualIndexZ)
+                          .filter(Objects::nonNull)
+                          .sorted(Comparator.comparing(Widget::getIndexZ).reversed())
+                          .collect(Collectors.toList());
+    }
+
+    /**
+     * Run action after current modification is committed and storage version is changed, by the same thread.
+     * Action is run at once out of modification
+     */
+    void afterCommit(final Runnable action) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            committedActions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Make modifications as one storage modification: they are made under one write lock acquisition,
+     * and they are committed into log as one frame, which is made durable by one fsync
+     */
+    void writeBatch(final Runnable modifications) {
+        write(() -> {
+            modifications.run();
+            return null;
+        });
+    }
+
+    private <T> T write(final Supplier<T> modification) {
+        if (lock.isWriteLockedByCurrentThread()) {
+            // Part of outer modification, it's committed by outer one
+            return modification.get();
+        }
+        final T result;
+        final long logSequence;
+        final List<Runnable> actions;
+        // Failed log makes storage read-only, so memory, readers and events don't get modifications which aren't durable
+        writeAheadLog.checkWritable();
+        lock.writeLock().lock();
+        try {
+            result = modification.get();
+        } finally {
+            // Operations done before failure are committed too, so log is always equal to storage
+            logSequence = writeAheadLog.commit(version.incrementAndGet());
+            actions = committedActions.isEmpty() ? Collections.emptyList() : new ArrayList<>(committedActions);
+            committedActions.clear();
+            lock.writeLock().unlock();
+        }
+        actions.forEach(Runnable::run);
+        // Waiting for fsync out of lock, so concurrent modifications are made durable by one fsync
+        writeAheadLog.awaitDurable(logSequence);
+        if (writeBehind != null) {
+            // Writer is stopped while write-behind is full, so H2 can't fall behind without a bound
+            writeBehind.awaitCapacity();
+        }
+        return result;
+    }
+
+    /**
+     * Put widget into R-tree between its Z-order neighbours, widget must be already put into Z-order
+     */
+    private void putIntoRTree(final Widget widget) {
+        final UUID lowerId = indexZTreap.findLower(widget.getIndexZ());
+        final UUID higherId = indexZTreap.findHigher(widget.getIndexZ());
+        if (!widgetRTree.put(widget, lowerId, higherId)) {
+            // Keys are spread again only around widget, region is extended while it has no room for enough gap
+            final int position = indexZTreap.countLower(widget.getIndexZ());
+            int window = RTREE_RESPACING_WINDOW;
+            while (true) {
+                final int from = Math.max(0, position - window);
+                final int size = position - from + window + 1;
+                final List<UUID> region = indexZTreap.loadAscendingFromPosition(from, size)
+                                                     .stream()
+                                                     .map(Map.Entry::getValue)
+                                                     .collect(Collectors.toList());
+                if (widgetRTree.respace(region, from == 0, region.size() < size)) {
+                    break;
+                }
+                window *= 4;
+            }
+            widgetRTree.put(widget, lowerId, higherId);
+        }
+    }
+
+    /**
+     * Map Z-order entries into widgets, widgets removed concurrently are skipped
+     */
+    private List<Widget> toWidgets(final List<Map.Entry<Integer, UUID>> indexZEntries) {
+        final List<Widget> result = new ArrayList<>(indexZEntries.size());
+        for (final Map.Entry<Integer, UUID> indexZEntry : indexZEntries) {
+            final Widget widget = storage.get(indexZEntry.getValue());
+            if (widget != null) {
+                result.add(copyWithIndexZ(widget, indexZEntry.getKey()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy of stored widget with actual Z-index, or Null if widget was removed from Z-order concurrently
+     */
+    private Widget withActualIndexZ(final Widget widget) {
+        final Integer indexZ = indexZTreap.indexZOf(widget.getId());
+        return indexZ == null ? null : copyWithIndexZ(widget, indexZ);
+    }
+
+    private Widget copyWithIndexZ(final Widget widget, final int indexZ) {
+        return new Widget(
+                widget.getId(),
+                widget.getCoordinateX(),
+                widget.getCoordinateY(),
+                indexZ,
+                widget.getWidth(),
+                widget.getHeight(),
+                widget.getLastModificationDateTime()
+        );
     }
 
     /**
      * Set last modification Date/Time as now in UTC format
      */
     private void setWidgetLastModificationTimeAsNow(final Widget widget) {
-        widget.setLastModificationDateTime(OffsetDateTime.now(ZoneOffset.UTC).toLocalDateTime());
+        widget.setLastModificationDateTime(OffsetDateTime.now(Widget.MODIFICATION_TIME_ZONE).toLocalDateTime());
     }
 }
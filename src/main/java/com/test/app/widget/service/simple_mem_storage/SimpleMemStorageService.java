@@ -1,20 +1,41 @@
 package com.test.app.widget.service.simple_mem_storage;
 
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
 import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.SnapshotReadVersion;
 import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
+import com.test.app.widget.service.WidgetStorage;
+import com.test.app.widget.service.WidgetVersions;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
-public class SimpleMemStorageService {
+public class SimpleMemStorageService implements WidgetStorage {
     private final SimpleMemStorageRepository simpleMemStorageRepository;
+    private final WidgetWriteSequencer widgetWriteSequencer;
+    private final ConfigProperties configProperties;
+    private final WidgetMetrics widgetMetrics;
+    private final WidgetVersions widgetVersions;
 
+    /**
+     * Z-index recount and creating are one mutation of single writer, so concurrent writes can't get the same Z-index.
+     * Versions are changed after storage is committed, so version is never newer than snapshot of storage
+     */
     public Widget create(final InputWidget widget) {
         final Widget widgetForCreating = new Widget(
                 widget.getCoordinateX(),
@@ -23,62 +44,212 @@ public class SimpleMemStorageService {
                 widget.getWidth(),
                 widget.getHeight()
         );
-        recountIndexZ(widgetForCreating);
-
-        return simpleMemStorageRepository.create(
-                new Widget(
-                        widgetForCreating.getCoordinateX(),
-                        widgetForCreating.getCoordinateY(),
-                        widgetForCreating.getIndexZ(),
-                        widgetForCreating.getWidth(),
-                        widgetForCreating.getHeight()
-                ));
+        return widgetWriteSequencer.execute(() -> {
+            final int shifted = recountIndexZ(widgetForCreating);
+            widgetMetrics.recordShiftedWidgets(getBackend(), shifted);
+            final Widget created = simpleMemStorageRepository.create(widgetForCreating);
+            simpleMemStorageRepository.afterCommit(() -> widgetVersions.created(created, shifted > 0));
+            return created;
+        });
     }
 
     public Widget update(final Widget widget) {
-        recountIndexZ(widget);
-        return simpleMemStorageRepository.update(widget);
+        return widgetWriteSequencer.execute(() -> {
+            final Widget previous = loadPrevious(widget.getId());
+            final int shifted = recountIndexZ(widget);
+            widgetMetrics.recordShiftedWidgets(getBackend(), shifted);
+            final Widget updated = simpleMemStorageRepository.update(widget);
+            simpleMemStorageRepository.afterCommit(() -> widgetVersions.updated(previous, updated, shifted > 0));
+            return updated;
+        });
     }
 
     public UUID deleteById(final @NonNull UUID id) {
-        return simpleMemStorageRepository.removeById(id);
+        return widgetWriteSequencer.execute(() -> {
+            final Widget previous = loadPrevious(id);
+            final UUID removedId = simpleMemStorageRepository.removeById(id);
+            simpleMemStorageRepository.afterCommit(() -> widgetVersions.removed(removedId, previous));
+            return removedId;
+        });
+    }
+
+    public WidgetBatchResult applyBatch(
+            final List<InputWidget> create,
+            final List<Widget> update,
+            final List<UUID> delete
+    ) {
+        final List<Widget> created = create.stream()
+                                           .map(widget -> new Widget(
+                                                   widget.getCoordinateX(),
+                                                   widget.getCoordinateY(),
+                                                   widget.getIndexZ(),
+                                                   widget.getWidth(),
+                                                   widget.getHeight()
+                                           ))
+                                           .collect(Collectors.toList());
+        // Versions are changed by the same mutation, so they follow writer order as versions of single writes
+        return widgetWriteSequencer.execute(() -> {
+            final List<Widget> previous = new ArrayList<>();
+            update.forEach(widget -> previous.add(loadPrevious(widget.getId())));
+            delete.forEach(id -> previous.add(loadPrevious(id)));
+            previous.removeIf(Objects::isNull);
+            final int shifted = simpleMemStorageRepository.applyBatch(created, update, delete);
+            widgetMetrics.recordShiftedWidgets(getBackend(), shifted);
+            final WidgetBatchResult result = new WidgetBatchResult(created, update, delete);
+            simpleMemStorageRepository.afterCommit(() -> widgetVersions.modified(result, previous, shifted > 0));
+            return result;
+        });
     }
 
     public Widget loadById(final @NonNull UUID id) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadById(id);
+        }
         return simpleMemStorageRepository.loadById(id);
     }
 
+    public List<Widget> loadByIds(final Collection<UUID> ids) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadByIds(ids);
+        }
+        return ids.stream()
+                  .map(simpleMemStorageRepository::findById)
+                  .filter(Optional::isPresent)
+                  .map(Optional::get)
+                  .collect(Collectors.toList());
+    }
+
     public List<Widget> loadAllOrderedByIndexZ() {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadAllSortedByIndexZ();
+        }
         return simpleMemStorageRepository.loadAllSortedByIndexZ();
     }
 
+    public void forEachOrderedByIndexZ(final Consumer<Widget> consumer) {
+        if (isSnapshotReadsEnabled()) {
+            getSnapshot().loadAllSortedByIndexZ().forEach(consumer);
+            return;
+        }
+        simpleMemStorageRepository.forEachSortedByIndexZ(consumer);
+    }
+
     public List<Widget> loadPaging(final int page, final int size) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadPaging(page, size);
+        }
         return simpleMemStorageRepository.loadPaging(page, size);
     }
 
+    public List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadPagingAfterIndexZ(afterIndexZ, size);
+        }
+        return simpleMemStorageRepository.loadPagingAfterIndexZ(afterIndexZ, size);
+    }
+
     public List<Widget> loadBySelectedArea(
             final int leftX,
             final int leftY,
             final int rightX,
             final int rightY
     ) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadBySelectedArea(leftX, leftY, rightX, rightY);
+        }
         return simpleMemStorageRepository.loadBySelectedArea(leftX, leftY, rightX, rightY);
     }
 
+    public List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadBySelectedAreaOrderedByIndexZ(
+                    leftX,
+                    leftY,
+                    rightX,
+                    rightY,
+                    direction,
+                    afterIndexZ,
+                    limit
+            );
+        }
+        return simpleMemStorageRepository.loadBySelectedAreaOrderedByIndexZ(
+                leftX,
+                leftY,
+                rightX,
+                rightY,
+                direction,
+                afterIndexZ,
+                limit
+        );
+    }
+
+    public List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        if (isSnapshotReadsEnabled()) {
+            return getSnapshot().loadTopAtPoint(x, y, limit);
+        }
+        return simpleMemStorageRepository.loadTopAtPoint(x, y, limit);
+    }
+
+    public int count() {
+        return simpleMemStorageRepository.count();
+    }
+
+    public int getIndexZSpan() {
+        return simpleMemStorageRepository.getIndexZSpan();
+    }
+
+    /**
+     * Metrics of tiered storage are tagged as tiered ones, like its operations
+     */
+    private String getBackend() {
+        return configProperties.getTieredStorage().isEnabled() ? WidgetMetrics.BACKEND_TIERED : WidgetMetrics.BACKEND_MEM;
+    }
+
+    private boolean isSnapshotReadsEnabled() {
+        return configProperties.getMemStorage().isSnapshotReads();
+    }
+
+    /**
+     * Get consistent snapshot for reading and keep its version for response
+     */
+    private WidgetSnapshot getSnapshot() {
+        final WidgetSnapshot snapshot = simpleMemStorageRepository.getSnapshot();
+        SnapshotReadVersion.set(snapshot.getVersion());
+        return snapshot;
+    }
+
+    /**
+     * Widget before modification for events, it isn't loaded while nobody is listening
+     */
+    @Nullable
+    private Widget loadPrevious(final UUID id) {
+        return widgetVersions.isListened() ? simpleMemStorageRepository.findById(id).orElse(null) : null;
+    }
+
     /**
      * Recount all widgets Z-index values if it's necessary
      *
      * @param widget widget whose Z-index must be checked, for recounting other widget Z-indexes
      *               if widget#indexZ is Null, it will be update for existed maxIndexZValue+1
      *               for making this widget like foreground
+     * @return number of shifted widgets
      */
-    private void recountIndexZ(final Widget widget) {
+    private int recountIndexZ(final Widget widget) {
         if (widget.getIndexZ() == null) {
             /*
             Z-index is Null, it means it's foreground widget
             */
             final int foregroundZIndex = simpleMemStorageRepository.getMaxZIndexValue() + 1;
             widget.setIndexZ(foregroundZIndex);
+            return 0;
         } else {
             final Optional<Widget> optWidget = simpleMemStorageRepository.findByIndexZValue(widget.getIndexZ());
             /**
@@ -87,35 +258,10 @@ public class SimpleMemStorageService {
              if it's not Z-index of this{@link widget}
              */
             if (optWidget.isPresent() && !optWidget.get().getId().equals(widget.getId())) {
-
-                // Getting Z-indexes into desc order
-                final List<Integer> indexesZCurrentDescOrder = simpleMemStorageRepository.loadAllZIndexesByDescOrder();
-
-                for (final int iterIndexZ : indexesZCurrentDescOrder) {
-                    /*
-                    If was founded widget with same indexZ, replace it on indexZ+1 position
-                     */
-                    if (iterIndexZ == widget.getIndexZ()) {
-                        final Widget indexZUpdatedWidget = simpleMemStorageRepository.loadByIndexZValue(iterIndexZ);
-                        //update indexZ value
-                        incrementAndUpdateZIndexById(indexZUpdatedWidget.getId(), 1);
-                        break;
-                    }
-
-                    /**
-                     Replace each widget with indexZ bigger then new indexZ{@link widgetIndexZ}
-                     */
-                    final Widget indexZUpdatedWidget = simpleMemStorageRepository.loadByIndexZValue(iterIndexZ);
-                    //update indexZ value
-                    incrementAndUpdateZIndexById(indexZUpdatedWidget.getId(), 1);
-                }
+                // Shift of all upper widgets is a single O(log n) operation on Z-order
+                return simpleMemStorageRepository.incrementAllWidgetsZIndexesBiggerOrEqualsThis(widget.getIndexZ(), 1);
             }
+            return 0;
         }
     }
-
-    private void incrementAndUpdateZIndexById(final UUID widgetId, final int incrementValue) {
-        simpleMemStorageRepository.incrementAndUpdateZIndexById(widgetId, incrementValue);
-    }
-
 }
-
@@ -0,0 +1,30 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.Widget;
+
+import java.util.UUID;
+
+/**
+ * Elementary modifications of memory storage. Every storage modification is a sequence of them,
+ * so they are written into {@link WidgetWriteAheadLog} and replayed on recovery
+ */
+interface WidgetChangeHandler {
+
+    /**
+     * Insert widget or replace existed one, Z-index of widget is actual
+     */
+    void put(Widget widget);
+
+    void remove(UUID widgetId);
+
+    void shiftAll(int fromIndexZ, int incrementValue);
+
+    void shiftRange(int fromIndexZ, int toIndexZ, int incrementValue);
+
+    /**
+     * Called for every widget put by replayed modification before its operations are replayed.
+     * Shifts of modification were made while widgets placed by it were out of Z-order, so they leave Z-order first
+     */
+    default void beforeReplayedPut(UUID widgetId) {
+    }
+}
@@ -0,0 +1,697 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory R-tree (Guttman, quadratic split) over widget bounding boxes.
+ * Used for answering area queries without scanning every widget into storage.
+ * <p>
+ * Widget bounds are calculated by {@link WidgetBounds}
+ * <p>
+ * Every widget has ordering key which follows Z-order, and every branch keeps the smallest and the biggest keys
+ * of its subtree, so widgets under point or inside area are found from the highest or the lowest one. Z-indexes aren't used as keys, because they are shifted
+ * lazily by {@link IndexZTreap}, but shifting never changes Z-order of widgets, so keys stay actual.
+ * New key is taken between keys of Z-order neighbours, keys of region around them are spread again when there is no free key
+ * <p>
+ * Tree is guarded by read/write lock: searches are running in parallel, modifications are exclusive
+ */
+class WidgetRTree {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = MAX_ENTRIES * 2 / 5;
+    private static final long ORDER_KEY_GAP = 1L << 32;
+    /**
+     * Spread region leaves room for at least 24 inserts at the same place before the next spreading
+     */
+    private static final long MIN_RESPACED_GAP = ORDER_KEY_GAP >>> 8;
+
+    /**
+     * Leaf entries by widget id, for removing without searching into tree
+     */
+    private final Map<UUID, Entry> leafEntries = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node(true);
+
+    /**
+     * Insert widget bounds into tree or replace existed bounds of this widget keeping its ordering key,
+     * new widget is put above all widgets
+     */
+    void put(final Widget widget) {
+        lock.writeLock().lock();
+        try {
+            final Long existedKey = orderKeyOf(widget.getId());
+            final Long orderKey = existedKey != null
+                                  ? existedKey
+                                  : orderKeyBetween(root.entries.isEmpty() ? null : maxOrderKey(root), null);
+            if (orderKey == null) {
+                throw new IllegalStateException("Error: ordering keys of R-tree are exhausted");
+            }
+            removeEntry(widget.getId());
+            insertLeaf(widget, orderKey);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Insert widget bounds into tree or replace existed bounds of this widget
+     *
+     * @param lowerId  Z-order neighbour of widget below it, or Null if widget is the lowest
+     * @param higherId Z-order neighbour of widget above it, or Null if widget is the highest
+     * @return false if there is no free ordering key between neighbours, widget is removed from tree then
+     * and it must be put again after {@link #respace}
+     */
+    boolean put(final Widget widget, final UUID lowerId, final UUID higherId) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(widget.getId());
+            final Long orderKey = orderKeyBetween(orderKeyOf(lowerId), orderKeyOf(higherId));
+            if (orderKey == null) {
+                return false;
+            }
+            insertLeaf(widget, orderKey);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Spread ordering keys of Z-order region evenly between keys of its bounds, like renormalization of H2 Z-order,
+     * so exhausted keys are fixed without visiting all widgets. Widgets absent into tree keep their slots free
+     *
+     * @param idsOrderedByIndexZ region of Z-order with its bounds: the nearest widgets out of region, they aren't moved
+     * @param lowest             region starts from the lowest widget, so it has no lower bound
+     * @param highest            region ends with the highest widget, so it has no upper bound
+     * @return false if keys of region can't be spread by enough gap, bigger region must be spread then
+     */
+    boolean respace(final List<UUID> idsOrderedByIndexZ, final boolean lowest, final boolean highest) {
+        lock.writeLock().lock();
+        try {
+            final int from = lowest ? 0 : 1;
+            final int to = highest ? idsOrderedByIndexZ.size() : idsOrderedByIndexZ.size() - 1;
+            final Long fromBound = lowest ? Long.valueOf(Long.MIN_VALUE) : orderKeyOf(idsOrderedByIndexZ.get(0));
+            final Long toBound = highest ? Long.valueOf(Long.MAX_VALUE) : orderKeyOf(idsOrderedByIndexZ.get(to));
+            if (fromBound == null || toBound == null || to <= from) {
+                return false;
+            }
+            final long gap = Long.divideUnsigned(toBound - fromBound, to - from + 1);
+            if (gap < MIN_RESPACED_GAP && !(lowest && highest)) {
+                return false;
+            }
+            if (gap == 0) {
+                throw new IllegalStateException("Error: ordering keys of R-tree are exhausted");
+            }
+            final Set<Node> changedNodes = new HashSet<>();
+            for (int i = from; i < to; i++) {
+                final Entry entry = leafEntries.get(idsOrderedByIndexZ.get(i));
+                if (entry != null) {
+                    entry.minOrderKey = fromBound + gap * (i - from + 1);
+                    entry.maxOrderKey = entry.minOrderKey;
+                    changedNodes.add(entry.owner);
+                }
+            }
+            // All leaves have the same depth, so keys of branches are recalculated level by level up to root
+            Set<Node> nodes = changedNodes;
+            while (!nodes.isEmpty()) {
+                final Set<Node> parents = new HashSet<>();
+                for (final Node node : nodes) {
+                    if (node.parent != null) {
+                        node.parent.entryOf(node).recalculate();
+                        parents.add(node.parent);
+                    }
+                }
+                nodes = parents;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk loading of empty tree: leaves are packed from widgets in STR order, and upper levels are packed
+     * from lower ones. It's much faster than inserting of widgets one by one
+     */
+    void load(final List<Widget> widgetsOrderedByIndexZ) {
+        lock.writeLock().lock();
+        try {
+            if (!leafEntries.isEmpty()) {
+                throw new IllegalStateException("R-tree can be bulk loaded only when it's empty");
+            }
+            final Map<UUID, Long> orderKeys = new HashMap<>(widgetsOrderedByIndexZ.size() * 2);
+            long orderKey = firstOrderKey(widgetsOrderedByIndexZ.size());
+            for (final Widget widget : widgetsOrderedByIndexZ) {
+                orderKeys.put(widget.getId(), orderKey);
+                orderKey += ORDER_KEY_GAP;
+            }
+            List<Node> level = new ArrayList<>();
+            Node node = null;
+            for (final Widget widget : PackedRTree.sortTileRecursive(widgetsOrderedByIndexZ)) {
+                if (node == null || node.entries.size() == MAX_ENTRIES) {
+                    node = new Node(true);
+                    level.add(node);
+                }
+                final Entry entry = new Entry(
+                        WidgetBounds.minX(widget),
+                        WidgetBounds.minY(widget),
+                        WidgetBounds.maxX(widget),
+                        WidgetBounds.maxY(widget)
+                );
+                entry.widgetId = widget.getId();
+                entry.minOrderKey = orderKeys.get(widget.getId());
+                entry.maxOrderKey = entry.minOrderKey;
+                leafEntries.put(widget.getId(), entry);
+                node.add(entry);
+            }
+            while (level.size() > 1) {
+                final List<Node> upperLevel = new ArrayList<>((level.size() + MAX_ENTRIES - 1) / MAX_ENTRIES);
+                Node upper = null;
+                for (final Node child : level) {
+                    if (upper == null || upper.entries.size() == MAX_ENTRIES) {
+                        upper = new Node(false);
+                        upperLevel.add(upper);
+                    }
+                    upper.add(Entry.of(child));
+                }
+                level = upperLevel;
+            }
+            if (!level.isEmpty()) {
+                root = level.get(0);
+                root.parent = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(final UUID widgetId) {
+        lock.writeLock().lock();
+        try {
+            removeEntry(widgetId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return leafEntries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find widgets whose bounds are fully inside selected area
+     *
+     * @return ids of candidate widgets
+     */
+    List<UUID> searchContained(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        final List<UUID> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            final Deque<Node> nodesForVisit = new ArrayDeque<>();
+            nodesForVisit.push(root);
+            while (!nodesForVisit.isEmpty()) {
+                final Node node = nodesForVisit.pop();
+                for (final Entry entry : node.entries) {
+                    if (node.leaf) {
+                        if (entry.isInside(leftX, leftY, rightX, rightY)) {
+                            result.add(entry.widgetId);
+                        }
+                    } else if (entry.intersects(leftX, leftY, rightX, rightY)) {
+                        nodesForVisit.push(entry.child);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Find widgets whose bounds contain point, from the highest one by Z-order.
+     * Search stops after limit widgets without visiting lower ones
+     *
+     * @return ids of candidate widgets, the highest one first
+     */
+    List<UUID> searchTopContaining(final int x, final int y, final int limit) {
+        lock.readLock().lock();
+        try {
+            return searchOrdered(
+                    entry -> entry.contains(x, y),
+                    entry -> entry.contains(x, y),
+                    IndexZDirection.DESCENDING,
+                    Long.MAX_VALUE,
+                    limit
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find widgets whose bounds are fully inside selected area by Z-order.
+     * Search stops after limit widgets without visiting the next ones
+     *
+     * @param fromId widget where search starts from, it's included; search starts from the first widget
+     *               by Z-order if it's Null, or if widget was removed concurrently
+     * @return ids of candidate widgets by Z-order
+     */
+    List<UUID> searchContainedOrdered(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final UUID fromId,
+            final int limit
+    ) {
+        lock.readLock().lock();
+        try {
+            final Long fromKey = orderKeyOf(fromId);
+            return searchOrdered(
+                    entry -> entry.intersects(leftX, leftY, rightX, rightY),
+                    entry -> entry.isInside(leftX, leftY, rightX, rightY),
+                    direction,
+                    fromKey != null ? fromKey : direction == IndexZDirection.ASCENDING ? Long.MIN_VALUE : Long.MAX_VALUE,
+                    limit
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best-first search: entries are visited by the first ordering key their subtree can have after fromKey,
+     * so widgets are found by Z-order and search stops after limit widgets. Lock must be held by caller
+     *
+     * @param fromKey the first ordering key of search, it's included
+     */
+    private List<UUID> searchOrdered(
+            final Predicate<Entry> branchFilter,
+            final Predicate<Entry> leafFilter,
+            final IndexZDirection direction,
+            final long fromKey,
+            final int limit
+    ) {
+        final boolean descending = direction == IndexZDirection.DESCENDING;
+        final List<UUID> result = new ArrayList<>(Math.min(limit, MAX_ENTRIES));
+        final PriorityQueue<Entry> entriesForVisit = new PriorityQueue<>(
+                MAX_ENTRIES,
+                descending
+                ? (first, second) -> Long.compare(Math.min(second.maxOrderKey, fromKey), Math.min(first.maxOrderKey, fromKey))
+                : (first, second) -> Long.compare(Math.max(first.minOrderKey, fromKey), Math.max(second.minOrderKey, fromKey))
+        );
+        Node node = root;
+        while (node != null) {
+            for (final Entry entry : node.entries) {
+                final boolean afterFrom = descending ? entry.minOrderKey <= fromKey : entry.maxOrderKey >= fromKey;
+                if (afterFrom && (node.leaf ? leafFilter : branchFilter).test(entry)) {
+                    entriesForVisit.add(entry);
+                }
+            }
+            node = null;
+            while (node == null && !entriesForVisit.isEmpty() && result.size() < limit) {
+                final Entry entry = entriesForVisit.poll();
+                if (entry.child == null) {
+                    result.add(entry.widgetId);
+                } else {
+                    node = entry.child;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Long orderKeyOf(final UUID widgetId) {
+        if (widgetId == null) {
+            return null;
+        }
+        final Entry entry = leafEntries.get(widgetId);
+        return entry == null ? null : entry.maxOrderKey;
+    }
+
+    /**
+     * @return Null if there is no free key between neighbours
+     */
+    private static Long orderKeyBetween(final Long lowerKey, final Long higherKey) {
+        if (lowerKey == null && higherKey == null) {
+            return 0L;
+        }
+        if (higherKey == null) {
+            return lowerKey > Long.MAX_VALUE - ORDER_KEY_GAP ? null : lowerKey + ORDER_KEY_GAP;
+        }
+        if (lowerKey == null) {
+            return higherKey < Long.MIN_VALUE + ORDER_KEY_GAP ? null : higherKey - ORDER_KEY_GAP;
+        }
+        // Difference can be bigger than Long.MAX_VALUE, so it's unsigned
+        final long difference = higherKey - lowerKey;
+        return Long.compareUnsigned(difference, 2) < 0 ? null : lowerKey + (difference >>> 1);
+    }
+
+    /**
+     * Keys of count widgets are placed symmetrically around zero
+     */
+    private static long firstOrderKey(final int count) {
+        return -(count / 2) * ORDER_KEY_GAP;
+    }
+
+    private static long maxOrderKey(final Node node) {
+        long maxOrderKey = Long.MIN_VALUE;
+        for (final Entry entry : node.entries) {
+            maxOrderKey = Math.max(maxOrderKey, entry.maxOrderKey);
+        }
+        return maxOrderKey;
+    }
+
+    private static void recalculateOrderKeys(final Node node) {
+        for (final Entry entry : node.entries) {
+            if (entry.child != null) {
+                recalculateOrderKeys(entry.child);
+                entry.recalculate();
+            }
+        }
+    }
+
+    private void insertLeaf(final Widget widget, final long orderKey) {
+        final Entry entry = new Entry(
+                WidgetBounds.minX(widget),
+                WidgetBounds.minY(widget),
+                WidgetBounds.maxX(widget),
+                WidgetBounds.maxY(widget)
+        );
+        entry.widgetId = widget.getId();
+        entry.minOrderKey = orderKey;
+        entry.maxOrderKey = orderKey;
+        leafEntries.put(widget.getId(), entry);
+        insert(entry);
+    }
+
+    private void removeEntry(final UUID widgetId) {
+        final Entry entry = leafEntries.remove(widgetId);
+        if (entry == null) {
+            return;
+        }
+        final Node leaf = entry.owner;
+        leaf.entries.remove(entry);
+        condenseTree(leaf);
+    }
+
+    private void insert(final Entry leafEntry) {
+        Node node = root;
+        while (!node.leaf) {
+            node = chooseSubtree(node, leafEntry).child;
+        }
+        node.add(leafEntry);
+
+        Node splitNode = node.entries.size() > MAX_ENTRIES ? split(node) : null;
+        while (node != root) {
+            final Node parent = node.parent;
+            parent.entryOf(node).recalculate();
+            if (splitNode != null) {
+                parent.add(Entry.of(splitNode));
+                splitNode = parent.entries.size() > MAX_ENTRIES ? split(parent) : null;
+            }
+            node = parent;
+        }
+        if (splitNode != null) {
+            // Root was split, tree grows up
+            final Node newRoot = new Node(false);
+            newRoot.add(Entry.of(root));
+            newRoot.add(Entry.of(splitNode));
+            root = newRoot;
+        }
+    }
+
+    /**
+     * Choose entry which needs least enlargement to include new entry, ties are resolved by smallest area
+     */
+    private Entry chooseSubtree(final Node node, final Entry newEntry) {
+        Entry best = null;
+        long bestEnlargement = Long.MAX_VALUE;
+        long bestArea = Long.MAX_VALUE;
+        for (final Entry entry : node.entries) {
+            final long area = entry.area();
+            final long enlargement = entry.unionArea(newEntry) - area;
+            if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                best = entry;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Quadratic split: overflowed node keeps first group, second group is moved into returned sibling
+     */
+    private Node split(final Node node) {
+        final List<Entry> entries = new ArrayList<>(node.entries);
+        node.entries.clear();
+        final Node sibling = new Node(node.leaf);
+
+        // Pick seeds: pair of entries which wastes most area being together
+        int seedOne = 0;
+        int seedTwo = 1;
+        long worstWaste = Long.MIN_VALUE;
+        for (int i = 0; i < entries.size(); i++) {
+            for (int j = i + 1; j < entries.size(); j++) {
+                final long waste = entries.get(i).unionArea(entries.get(j))
+                                   - entries.get(i).area()
+                                   - entries.get(j).area();
+                if (waste > worstWaste) {
+                    worstWaste = waste;
+                    seedOne = i;
+                    seedTwo = j;
+                }
+            }
+        }
+        final Entry groupOne = Entry.copyBounds(entries.get(seedOne));
+        final Entry groupTwo = Entry.copyBounds(entries.get(seedTwo));
+        node.add(entries.get(seedOne));
+        sibling.add(entries.get(seedTwo));
+        entries.remove(seedTwo);
+        entries.remove(seedOne);
+
+        while (!entries.isEmpty()) {
+            // One of groups must take all remaining entries for having minimal fill
+            if (node.entries.size() + entries.size() == MIN_ENTRIES) {
+                entries.forEach(node::add);
+                break;
+            }
+            if (sibling.entries.size() + entries.size() == MIN_ENTRIES) {
+                entries.forEach(sibling::add);
+                break;
+            }
+            // Pick next: entry with greatest preference for one group
+            int nextIndex = 0;
+            long maxDifference = Long.MIN_VALUE;
+            for (int i = 0; i < entries.size(); i++) {
+                final long difference = Math.abs(
+                        (groupOne.unionArea(entries.get(i)) - groupOne.area()) -
+                        (groupTwo.unionArea(entries.get(i)) - groupTwo.area())
+                );
+                if (difference > maxDifference) {
+                    maxDifference = difference;
+                    nextIndex = i;
+                }
+            }
+            final Entry next = entries.remove(nextIndex);
+            final long enlargementOne = groupOne.unionArea(next) - groupOne.area();
+            final long enlargementTwo = groupTwo.unionArea(next) - groupTwo.area();
+            final boolean toGroupOne = enlargementOne != enlargementTwo
+                                       ? enlargementOne < enlargementTwo
+                                       : node.entries.size() <= sibling.entries.size();
+            if (toGroupOne) {
+                node.add(next);
+                groupOne.include(next);
+            } else {
+                sibling.add(next);
+                groupTwo.include(next);
+            }
+        }
+        return sibling;
+    }
+
+    /**
+     * Go from leaf to root, removing underflowed nodes and reinserting their widgets
+     */
+    private void condenseTree(final Node leaf) {
+        final List<Entry> orphans = new ArrayList<>();
+        Node node = leaf;
+        while (node != root) {
+            final Node parent = node.parent;
+            final Entry parentEntry = parent.entryOf(node);
+            if (node.entries.size() < MIN_ENTRIES) {
+                parent.entries.remove(parentEntry);
+                collectLeafEntries(node, orphans);
+            } else {
+                parentEntry.recalculate();
+            }
+            node = parent;
+        }
+        if (!root.leaf && root.entries.size() == 1) {
+            root = root.entries.get(0).child;
+            root.parent = null;
+        } else if (!root.leaf && root.entries.isEmpty()) {
+            root = new Node(true);
+        }
+        orphans.forEach(this::insert);
+    }
+
+    private void collectLeafEntries(final Node node, final List<Entry> result) {
+        if (node.leaf) {
+            result.addAll(node.entries);
+        } else {
+            node.entries.forEach(entry -> collectLeafEntries(entry.child, result));
+        }
+    }
+
+    private static class Node {
+        private final boolean leaf;
+        private final List<Entry> entries = new ArrayList<>(MAX_ENTRIES + 1);
+        private Node parent;
+
+        Node(final boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(final Entry entry) {
+            entries.add(entry);
+            entry.owner = this;
+            if (entry.child != null) {
+                entry.child.parent = this;
+            }
+        }
+
+        Entry entryOf(final Node child) {
+            for (final Entry entry : entries) {
+                if (entry.child == child) {
+                    return entry;
+                }
+            }
+            throw new IllegalStateException("R-tree node is not linked with parent");
+        }
+    }
+
+    private static class Entry {
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+        /**
+         * Ordering key of widget for leaf entries, the smallest key of subtree for branch entries
+         */
+        private long minOrderKey;
+        /**
+         * Ordering key of widget for leaf entries, the biggest key of subtree for branch entries
+         */
+        private long maxOrderKey;
+        /**
+         * Child node for branch entries
+         */
+        private Node child;
+        /**
+         * Widget id for leaf entries
+         */
+        private UUID widgetId;
+        /**
+         * Node which contains this entry
+         */
+        private Node owner;
+
+        Entry(final int minX, final int minY, final int maxX, final int maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        static Entry of(final Node child) {
+            final Entry entry = new Entry(0, 0, 0, 0);
+            entry.child = child;
+            entry.recalculate();
+            return entry;
+        }
+
+        static Entry copyBounds(final Entry entry) {
+            final Entry copy = new Entry(entry.minX, entry.minY, entry.maxX, entry.maxY);
+            copy.minOrderKey = entry.minOrderKey;
+            copy.maxOrderKey = entry.maxOrderKey;
+            return copy;
+        }
+
+        /**
+         * Recalculate bounds of branch entry as minimal bounding rectangle of child entries
+         */
+        void recalculate() {
+            final List<Entry> childEntries = child.entries;
+            if (childEntries.isEmpty()) {
+                return;
+            }
+            final Entry first = childEntries.get(0);
+            minX = first.minX;
+            minY = first.minY;
+            maxX = first.maxX;
+            maxY = first.maxY;
+            minOrderKey = first.minOrderKey;
+            maxOrderKey = first.maxOrderKey;
+            childEntries.forEach(this::include);
+        }
+
+        void include(final Entry other) {
+            minX = Math.min(minX, other.minX);
+            minY = Math.min(minY, other.minY);
+            maxX = Math.max(maxX, other.maxX);
+            maxY = Math.max(maxY, other.maxY);
+            minOrderKey = Math.min(minOrderKey, other.minOrderKey);
+            maxOrderKey = Math.max(maxOrderKey, other.maxOrderKey);
+        }
+
+        long area() {
+            return ((long) maxX - minX) * ((long) maxY - minY);
+        }
+
+        long unionArea(final Entry other) {
+            return ((long) Math.max(maxX, other.maxX) - Math.min(minX, other.minX)) *
+                   ((long) Math.max(maxY, other.maxY) - Math.min(minY, other.minY));
+        }
+
+        boolean intersects(final int leftX, final int leftY, final int rightX, final int rightY) {
+            return minX <= rightX && maxX >= leftX && minY <= rightY && maxY >= leftY;
+        }
+
+        boolean contains(final int x, final int y) {
+            return minX <= x && maxX >= x && minY <= y && maxY >= y;
+        }
+
+        boolean isInside(final int leftX, final int leftY, final int rightX, final int rightY) {
+            return minX >= leftX && maxX <= rightX && minY >= leftY && maxY <= rightY;
+        }
+    }
+}
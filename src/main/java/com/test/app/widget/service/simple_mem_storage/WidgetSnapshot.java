@@ -0,0 +1,115 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import lombok.Getter;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable consistent view of memory storage at some version.
+ * All reads from snapshot are lock-free, widgets into snapshot have actual Z-indexes of this version
+ */
+class WidgetSnapshot {
+    static final WidgetSnapshot EMPTY = new WidgetSnapshot(-1, Collections.emptyList());
+
+    @Getter
+    private final long version;
+    private final List<Widget> widgetsOrderedByIndexZ;
+    private final int[] indexesZ;
+    private final Map<UUID, Widget> widgetsById;
+    private final PackedRTree rTree;
+
+    WidgetSnapshot(final long version, final List<Widget> widgetsOrderedByIndexZ) {
+        this.version = version;
+        this.widgetsOrderedByIndexZ = Collections.unmodifiableList(widgetsOrderedByIndexZ);
+        this.indexesZ = widgetsOrderedByIndexZ.stream().mapToInt(Widget::getIndexZ).toArray();
+        this.widgetsById = new HashMap<>(widgetsOrderedByIndexZ.size() * 2);
+        widgetsOrderedByIndexZ.forEach(widget -> widgetsById.put(widget.getId(), widget));
+        this.rTree = new PackedRTree(widgetsOrderedByIndexZ);
+    }
+
+    Widget loadById(final UUID id) {
+        final Widget widget = widgetsById.get(id);
+        if (widget == null) {
+            throw new RuntimeException(String.format("Widget id=%s is not found", id));
+        }
+        return widget;
+    }
+
+    /**
+     * Widgets which aren't into snapshot are skipped
+     */
+    List<Widget> loadByIds(final Collection<UUID> ids) {
+        final List<Widget> result = new ArrayList<>(ids.size());
+        for (final UUID id : ids) {
+            final Widget widget = widgetsById.get(id);
+            if (widget != null) {
+                result.add(widget);
+            }
+        }
+        return result;
+    }
+
+    List<Widget> loadAllSortedByIndexZ() {
+        return widgetsOrderedByIndexZ;
+    }
+
+    List<Widget> loadPaging(final int page, final int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Error: page value can't be < 0");
+        }
+        final int startPaging = Math.min(Math.max(page - 1, 0), widgetsOrderedByIndexZ.size());
+        return widgetsOrderedByIndexZ.subList(
+                startPaging,
+                (int) Math.min((long) startPaging + size, widgetsOrderedByIndexZ.size())
+        );
+    }
+
+    List<Widget> loadPagingAfterIndexZ(final int afterIndexZ, final int size) {
+        // Binary search of the first Z-index bigger than cursor
+        int low = 0;
+        int high = indexesZ.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (indexesZ[middle] <= afterIndexZ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return widgetsOrderedByIndexZ.subList(low, (int) Math.min((long) low + size, indexesZ.length));
+    }
+
+    List<Widget> loadBySelectedArea(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY
+    ) {
+        return rTree.searchContained(leftX, leftY, rightX, rightY);
+    }
+
+    List<Widget> loadBySelectedAreaOrderedByIndexZ(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final IndexZDirection direction,
+            @Nullable final Integer afterIndexZ,
+            final int limit
+    ) {
+        return rTree.searchContainedOrdered(leftX, leftY, rightX, rightY, direction, afterIndexZ, limit);
+    }
+
+    List<Widget> loadTopAtPoint(final int x, final int y, final int limit) {
+        return rTree.searchTopContaining(x, y, limit);
+    }
+}
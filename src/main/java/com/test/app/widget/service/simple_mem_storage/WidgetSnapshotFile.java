@@ -0,0 +1,190 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.Widget;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of memory storage, written and read through memory-mapped file.
+ * <p>
+ * Header: [magic][format][storage version][first log segment][widgets count][CRC32 of widgets],
+ * then fixed size records of widgets in ascending Z-index order.
+ * Log segments starting from "first log segment" contain all modifications after this snapshot
+ */
+final class WidgetSnapshotFile {
+    private static final int MAGIC = 0x57444753;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2 + Integer.BYTES * 2;
+    /**
+     * id, coordinates, Z-index, sizes, last modification seconds and nanos
+     */
+    private static final int RECORD_SIZE = Long.BYTES * 2 + Integer.BYTES * 5 + Long.BYTES + Integer.BYTES;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private WidgetSnapshotFile() {
+    }
+
+    /**
+     * Write snapshot into temporary file and move it on place, so snapshot file is either complete or absent.
+     * Directory is fsync-ed after moving, so the moved file survives crash
+     *
+     * @return path of written snapshot
+     */
+    static Path write(
+            final Path directory,
+            final long version,
+            final long firstSegment,
+            final List<Widget> widgetsOrderedByIndexZ
+    ) throws IOException {
+        final Path path = snapshotPath(directory, version);
+        final Path temporary = directory.resolve(path.getFileName() + ".tmp");
+        final long size = HEADER_SIZE + (long) RECORD_SIZE * widgetsOrderedByIndexZ.size();
+        try (final FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        )) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.position(HEADER_SIZE);
+            for (final Widget widget : widgetsOrderedByIndexZ) {
+                buffer.putLong(widget.getId().getMostSignificantBits());
+                buffer.putLong(widget.getId().getLeastSignificantBits());
+                buffer.putInt(widget.getCoordinateX());
+                buffer.putInt(widget.getCoordinateY());
+                buffer.putInt(widget.getIndexZ());
+                buffer.putInt(widget.getWidth());
+                buffer.putInt(widget.getHeight());
+                buffer.putLong(widget.getLastModificationDateTime().toEpochSecond(ZoneOffset.UTC));
+                buffer.putInt(widget.getLastModificationDateTime().getNano());
+            }
+            buffer.position(0);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT);
+            buffer.putLong(version);
+            buffer.putLong(firstSegment);
+            buffer.putInt(widgetsOrderedByIndexZ.size());
+            buffer.putInt(checksum(buffer));
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (final FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+        return path;
+    }
+
+    /**
+     * Check header and checksum of snapshot without loading its widgets
+     */
+    static boolean isValid(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            return checkHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), channel.size());
+        }
+    }
+
+    /**
+     * Read snapshot
+     *
+     * @return content of snapshot or Null if snapshot file is corrupted
+     */
+    static Content read(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!checkHeader(buffer, channel.size())) {
+                return null;
+            }
+            buffer.position(Integer.BYTES * 2);
+            final long version = buffer.getLong();
+            final long firstSegment = buffer.getLong();
+            final int count = buffer.getInt();
+            buffer.position(HEADER_SIZE);
+            final List<Widget> widgets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                widgets.add(new Widget(
+                        new UUID(buffer.getLong(), buffer.getLong()),
+                        buffer.getInt(),
+                        buffer.getInt(),
+                        buffer.getInt(),
+                        buffer.getInt(),
+                        buffer.getInt(),
+                        LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC)
+                ));
+            }
+            return new Content(version, firstSegment, widgets);
+        }
+    }
+
+    /**
+     * @return snapshots paths, the newest is first
+     */
+    static List<Path> listSnapshots(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+    }
+
+    static Path snapshotPath(final Path directory, final long version) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, version, SUFFIX));
+    }
+
+    /**
+     * Magic, format, size by widgets count and checksum of widget records
+     */
+    private static boolean checkHeader(final MappedByteBuffer buffer, final long size) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT) {
+            return false;
+        }
+        final int count = buffer.getInt(Integer.BYTES * 2 + Long.BYTES * 2);
+        final int crcValue = buffer.getInt(Integer.BYTES * 3 + Long.BYTES * 2);
+        return size == HEADER_SIZE + (long) RECORD_SIZE * count && checksum(buffer) == crcValue;
+    }
+
+    /**
+     * CRC32 of widget records
+     */
+    private static int checksum(final MappedByteBuffer buffer) {
+        final ByteBuffer records = buffer.duplicate();
+        records.position(HEADER_SIZE);
+        final CRC32 crc = new CRC32();
+        crc.update(records);
+        return (int) crc.getValue();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Content {
+        private final long version;
+        private final long firstSegment;
+        private final List<Widget> widgetsOrderedByIndexZ;
+    }
+}
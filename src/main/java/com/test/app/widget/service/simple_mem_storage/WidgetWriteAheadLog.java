@@ -0,0 +1,426 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.Widget;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of memory storage modifications.
+ * <p>
+ * Operations of one storage modification are collected under storage write lock and committed as one frame:
+ * [payload length][storage version][payload][CRC32 of version and payload]. Frames are written and fsync-ed
+ * by flusher thread, and writer waits for fsync out of storage lock, so all frames committed while previous
+ * fsync was running are made durable by the next single fsync (group commit).
+ * <p>
+ * Log is split into numbered segments, segment is switched by {@link #rotate()} before taking snapshot,
+ * so segments older than the snapshot can be removed.
+ * Log does nothing until it's started, memory storage without persistence uses it as no-op
+ */
+@Component
+public class WidgetWriteAheadLog implements WidgetChangeHandler {
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte SHIFT_ALL = 3;
+    private static final byte SHIFT_RANGE = 4;
+    /**
+     * Lengths of operations without operation byte
+     */
+    private static final int PUT_LENGTH = 2 * Long.BYTES + 5 * Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int REMOVE_LENGTH = 2 * Long.BYTES;
+    private static final int SHIFT_ALL_LENGTH = 2 * Integer.BYTES;
+    private static final int SHIFT_RANGE_LENGTH = 3 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * Bigger length can be read only from corrupted frame
+     */
+    private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Operations of current modification, it's used under storage write lock only
+     */
+    private final ByteArrayOutputStream transaction = new ByteArrayOutputStream();
+    private final DataOutputStream transactionOutput = new DataOutputStream(transaction);
+    /**
+     * Guards committed frames and sequences
+     */
+    private final Object monitor = new Object();
+    /**
+     * Guards segment channel
+     */
+    private final Object channelLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean running;
+
+    private volatile boolean started;
+    private Path directory;
+    private long segment;
+    private FileChannel channel;
+    private Thread flusher;
+
+    /**
+     * Start writing into new segment with given number
+     */
+    void start(final Path directory, final long segment) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        synchronized (monitor) {
+            running = true;
+        }
+        flusher = new Thread(this::flushLoop, "widget-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        started = true;
+    }
+
+    /**
+     * Stop flusher after writing of all committed frames
+     */
+    void close() throws IOException {
+        if (!started) {
+            return;
+        }
+        started = false;
+        synchronized (monitor) {
+            running = false;
+            monitor.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (channelLock) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public void put(final Widget widget) {
+        if (!started) {
+            return;
+        }
+        try {
+            transactionOutput.writeByte(PUT);
+            transactionOutput.writeLong(widget.getId().getMostSignificantBits());
+            transactionOutput.writeLong(widget.getId().getLeastSignificantBits());
+            transactionOutput.writeInt(widget.getCoordinateX());
+            transactionOutput.writeInt(widget.getCoordinateY());
+            transactionOutput.writeInt(widget.getIndexZ());
+            transactionOutput.writeInt(widget.getWidth());
+            transactionOutput.writeInt(widget.getHeight());
+            transactionOutput.writeLong(widget.getLastModificationDateTime().toEpochSecond(ZoneOffset.UTC));
+            transactionOutput.writeInt(widget.getLastModificationDateTime().getNano());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void remove(final UUID widgetId) {
+        if (!started) {
+            return;
+        }
+        try {
+            transactionOutput.writeByte(REMOVE);
+            transactionOutput.writeLong(widgetId.getMostSignificantBits());
+            transactionOutput.writeLong(widgetId.getLeastSignificantBits());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void shiftAll(final int fromIndexZ, final int incrementValue) {
+        if (!started) {
+            return;
+        }
+        try {
+            transactionOutput.writeByte(SHIFT_ALL);
+            transactionOutput.writeInt(fromIndexZ);
+            transactionOutput.writeInt(incrementValue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void shiftRange(final int fromIndexZ, final int toIndexZ, final int incrementValue) {
+        if (!started) {
+            return;
+        }
+        try {
+            transactionOutput.writeByte(SHIFT_RANGE);
+            transactionOutput.writeInt(fromIndexZ);
+            transactionOutput.writeInt(toIndexZ);
+            transactionOutput.writeInt(incrementValue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Commit operations of current modification as one frame. It must be called under storage write lock
+     *
+     * @param version storage version after modification
+     * @return sequence for {@link #awaitDurable(long)}
+     */
+    long commit(final long version) {
+        final byte[] payload = transaction.toByteArray();
+        transaction.reset();
+        synchronized (monitor) {
+            if (!started || payload.length == 0) {
+                return appendedSequence;
+            }
+            final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + payload.length + Integer.BYTES);
+            frame.putInt(payload.length);
+            frame.putLong(version);
+            frame.put(payload);
+            final CRC32 crc = new CRC32();
+            crc.update(frame.array(), Integer.BYTES, Long.BYTES + payload.length);
+            frame.putInt((int) crc.getValue());
+            pending.write(frame.array(), 0, frame.capacity());
+            appendedSequence++;
+            monitor.notifyAll();
+            return appendedSequence;
+        }
+    }
+
+    /**
+     * Modification isn't applied after failure of log, so storage is read-only since then and never differs from log
+     * by more than modifications which were waiting for the failed fsync
+     */
+    void checkWritable() {
+        synchronized (monitor) {
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log is failed, storage is read-only", failure);
+            }
+        }
+    }
+
+    /**
+     * Wait until frame with given sequence and all previous frames are fsync-ed
+     */
+    void awaitDurable(final long sequence) {
+        synchronized (monitor) {
+            while (durableSequence < sequence && failure == null) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for write-ahead log", e);
+                }
+            }
+            if (durableSequence < sequence) {
+                throw new UncheckedIOException("Write-ahead log is failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Switch writing into the next segment. Frames committed before this call are in previous segments
+     *
+     * @return number of new segment
+     */
+    long rotate() throws IOException {
+        final long sequence;
+        synchronized (monitor) {
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+        synchronized (channelLock) {
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    /**
+     * Replay frames of segment whose version is bigger than given one. Reading is stopped by the first
+     * incomplete or corrupted frame, it's the tail which was not fsync-ed before crash
+     *
+     * @return version of the last replayed frame, or given version if there are no such frames
+     */
+    static long replay(final Path segmentPath, final long afterVersion, final WidgetChangeHandler handler) throws IOException {
+        long lastVersion = afterVersion;
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath)))) {
+            while (true) {
+                final byte[] frame;
+                final int crcValue;
+                try {
+                    final int length = input.readInt();
+                    if (length < 0 || length > MAX_FRAME_LENGTH) {
+                        return lastVersion;
+                    }
+                    frame = new byte[Long.BYTES + length];
+                    input.readFully(frame);
+                    crcValue = input.readInt();
+                } catch (EOFException e) {
+                    return lastVersion;
+                }
+                final CRC32 crc = new CRC32();
+                crc.update(frame);
+                if ((int) crc.getValue() != crcValue) {
+                    return lastVersion;
+                }
+                final ByteBuffer buffer = ByteBuffer.wrap(frame);
+                final long version = buffer.getLong();
+                if (version > lastVersion) {
+                    replayOperations(buffer, handler);
+                    lastVersion = version;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return numbers of existed segments in ascending order
+     */
+    static List<Long> listSegments(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
+    static Path segmentPath(final Path directory, final long segment) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static void replayOperations(final ByteBuffer buffer, final WidgetChangeHandler handler) {
+        final int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            final byte operation = buffer.get();
+            if (operation == PUT) {
+                handler.beforeReplayedPut(new UUID(buffer.getLong(), buffer.getLong()));
+                buffer.position(buffer.position() + PUT_LENGTH - REMOVE_LENGTH);
+            } else {
+                buffer.position(buffer.position() + getOperationLength(operation));
+            }
+        }
+        buffer.position(start);
+        while (buffer.hasRemaining()) {
+            final byte operation = buffer.get();
+            switch (operation) {
+                case PUT:
+                    handler.put(new Widget(
+                            new UUID(buffer.getLong(), buffer.getLong()),
+                            buffer.getInt(),
+                            buffer.getInt(),
+                            buffer.getInt(),
+                            buffer.getInt(),
+                            buffer.getInt(),
+                            LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC)
+                    ));
+                    break;
+                case REMOVE:
+                    handler.remove(new UUID(buffer.getLong(), buffer.getLong()));
+                    break;
+                case SHIFT_ALL:
+                    handler.shiftAll(buffer.getInt(), buffer.getInt());
+                    break;
+                case SHIFT_RANGE:
+                    handler.shiftRange(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                    break;
+                default:
+                    throw new IllegalStateException(String.format("Unknown write-ahead log operation %s", operation));
+            }
+        }
+    }
+
+    private static int getOperationLength(final byte operation) {
+        switch (operation) {
+            case PUT:
+                return PUT_LENGTH;
+            case REMOVE:
+                return REMOVE_LENGTH;
+            case SHIFT_ALL:
+                return SHIFT_ALL_LENGTH;
+            case SHIFT_RANGE:
+                return SHIFT_RANGE_LENGTH;
+            default:
+                throw new IllegalStateException(String.format("Unknown write-ahead log operation %s", operation));
+        }
+    }
+
+    private FileChannel openSegment(final long segment) throws IOException {
+        return FileChannel.open(
+                segmentPath(directory, segment),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+        );
+    }
+
+    /**
+     * Take all committed frames, write them by one write and one fsync, and wake up their writers
+     */
+    private void flushLoop() {
+        while (true) {
+            final ByteArrayOutputStream frames;
+            final long sequence;
+            synchronized (monitor) {
+                while (pending.size() == 0 && running) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                frames = pending;
+                pending = new ByteArrayOutputStream();
+                sequence = appendedSequence;
+            }
+            try {
+                synchronized (channelLock) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (monitor) {
+                    failure = e;
+                    monitor.notifyAll();
+                }
+                return;
+            }
+            synchronized (monitor) {
+                durableSequence = sequence;
+                monitor.notifyAll();
+            }
+        }
+    }
+}
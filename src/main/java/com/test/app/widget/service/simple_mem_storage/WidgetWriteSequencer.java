@@ -0,0 +1,222 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Single writer of memory storage: all mutations are serialized by ring buffer and made by one thread.
+ * <p>
+ * Producers claim sequence of ring slot by one atomic increment, put mutation into slot and publish it
+ * by sequence of slot. Writer drains all published mutations at once and makes them as one storage modification,
+ * so the whole batch takes the storage lock and fsync of log once. The more writers are waiting, the bigger batches are.
+ * Producer waits while ring is full, so memory of waiting mutations is bounded.
+ * <p>
+ * Stopped writer closes claiming by swapping the last drained sequence for closed one, so every claimed slot is made
+ * before writer exits, and producers which come later are failed.
+ * <p>
+ * Reads don't go through the sequencer, they stay lock-free
+ */
+@Slf4j
+@Component
+// Dependent bean is destroyed first: sequencer drains published mutations, and then write-behind flushes them
+@DependsOn("h2WriteBehind")
+public class WidgetWriteSequencer {
+    private static final long FULL_RING_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /**
+     * Claimed sequence after writer is stopped, nothing can be claimed since then
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final SimpleMemStorageRepository simpleMemStorageRepository;
+    private final int mask;
+    private final int maxBatchSize;
+    private final Mutation<?>[] slots;
+    /**
+     * Sequence published into slot with the same index, slot is readable by writer when it's equal to awaited sequence
+     */
+    private final AtomicLongArray publishedSequences;
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+    /**
+     * The last sequence taken by writer, slots up to it are free for producers
+     */
+    private volatile long drainedSequence = -1;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public WidgetWriteSequencer(
+            final SimpleMemStorageRepository simpleMemStorageRepository,
+            final ConfigProperties configProperties
+    ) {
+        final ConfigProperties.StorageMem config = configProperties.getMemStorage();
+        if (Integer.bitCount(config.getWriteBufferSize()) != 1) {
+            throw new IllegalArgumentException("Error: write buffer size of memory storage must be a power of two");
+        }
+        this.simpleMemStorageRepository = simpleMemStorageRepository;
+        this.mask = config.getWriteBufferSize() - 1;
+        this.maxBatchSize = Math.max(1, config.getMaxWriteBatch());
+        this.slots = new Mutation<?>[config.getWriteBufferSize()];
+        this.publishedSequences = new AtomicLongArray(config.getWriteBufferSize());
+        for (int i = 0; i < config.getWriteBufferSize(); i++) {
+            publishedSequences.set(i, -1);
+        }
+        this.writer = new Thread(this::writeLoop, "widget-mem-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Stop writer after making of all published mutations
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    /**
+     * @return future which is completed when mutation is made and durable
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<T> mutation) {
+        final Mutation<T> published = new Mutation<>(mutation);
+        if (Thread.currentThread() == writer) {
+            // Writer can't wait for itself, mutation submitted by mutation is made at once as a part of it
+            published.complete(published.make());
+            return published.future;
+        }
+        final long sequence = claim();
+        if (sequence == CLOSED) {
+            published.future.completeExceptionally(new IllegalStateException("Error: memory storage is stopped"));
+            return published.future;
+        }
+        while (sequence - slots.length > drainedSequence) {
+            LockSupport.parkNanos(FULL_RING_WAIT_NANOS);
+        }
+        final int index = (int) (sequence & mask);
+        slots[index] = published;
+        publishedSequences.set(index, sequence);
+        LockSupport.unpark(writer);
+        return published.future;
+    }
+
+    /**
+     * Make mutation and wait for it, failure of mutation is thrown as it is
+     */
+    public <T> T execute(final Supplier<T> mutation) {
+        try {
+            return submit(mutation).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return claimed sequence, or closed one if writer is stopped
+     */
+    private long claim() {
+        while (running) {
+            final long claimed = claimedSequence.get();
+            if (claimed == CLOSED) {
+                break;
+            }
+            if (claimedSequence.compareAndSet(claimed, claimed + 1)) {
+                return claimed + 1;
+            }
+        }
+        return CLOSED;
+    }
+
+    private void writeLoop() {
+        long next = 0;
+        while (true) {
+            long available = next - 1;
+            while (available + 1 - next < maxBatchSize && publishedSequences.get((int) ((available + 1) & mask)) == available + 1) {
+                available++;
+            }
+            if (available < next) {
+                // Closing fails if a slot is claimed meanwhile, then writer waits for its publishing
+                if (!running && claimedSequence.compareAndSet(next - 1, CLOSED)) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            final List<Mutation<?>> batch = new ArrayList<>((int) (available - next + 1));
+            for (long sequence = next; sequence <= available; sequence++) {
+                final int index = (int) (sequence & mask);
+                batch.add(slots[index]);
+                slots[index] = null;
+            }
+            drainedSequence = available;
+            next = available + 1;
+            makeBatch(batch);
+        }
+    }
+
+    /**
+     * Make batch as one storage modification, futures are completed after it's durable
+     */
+    private void makeBatch(final List<Mutation<?>> batch) {
+        final List<Object> results = new ArrayList<>(batch.size());
+        try {
+            simpleMemStorageRepository.writeBatch(() -> batch.forEach(mutation -> results.add(mutation.make())));
+        } catch (RuntimeException | Error e) {
+            log.error("Batch of {} memory storage mutations is failed", batch.size(), e);
+            batch.forEach(mutation -> mutation.future.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i));
+        }
+    }
+
+    private static final class Mutation<T> {
+        private final Supplier<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private Throwable failure;
+
+        private Mutation(final Supplier<T> call) {
+            this.call = call;
+        }
+
+        /**
+         * @return result of mutation, or Null if it's failed
+         */
+        private T make() {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                failure = e;
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(final Object result) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete((T) result);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.test.app.widget.subscriptions;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Uniform grid over the plane: subscription is registered into cells covered by its viewport,
+ * so widget is checked only against subscriptions from cells of its bounds.
+ * Viewports covering too many cells are kept aside and checked for every widget,
+ * and widgets covering too many cells are checked against all subscriptions
+ */
+class SubscriptionGrid {
+    private final int cellSize;
+    private final int maxCells;
+    private final Set<ViewportSubscription> all = ConcurrentHashMap.newKeySet();
+    private final Set<ViewportSubscription> wide = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<ViewportSubscription>> cells = new ConcurrentHashMap<>();
+
+    SubscriptionGrid(final int cellSize, final int maxCells) {
+        this.cellSize = cellSize;
+        this.maxCells = maxCells;
+    }
+
+    void add(final ViewportSubscription subscription) {
+        all.add(subscription);
+        if (isWide(subscription.getLeftX(), subscription.getLeftY(), subscription.getRightX(), subscription.getRightY())) {
+            wide.add(subscription);
+            return;
+        }
+        forEachCell(
+                subscription.getLeftX(),
+                subscription.getLeftY(),
+                subscription.getRightX(),
+                subscription.getRightY(),
+                // Cell set is modified into compute, so it can't be dropped by concurrent removing meanwhile
+                key -> cells.compute(key, (cellKey, cell) -> {
+                    final Set<ViewportSubscription> result = cell == null ? ConcurrentHashMap.newKeySet() : cell;
+                    result.add(subscription);
+                    return result;
+                })
+        );
+    }
+
+    /**
+     * @return false if subscription was already removed
+     */
+    boolean remove(final ViewportSubscription subscription) {
+        if (!all.remove(subscription)) {
+            return false;
+        }
+        if (wide.remove(subscription)) {
+            return true;
+        }
+        forEachCell(
+                subscription.getLeftX(),
+                subscription.getLeftY(),
+                subscription.getRightX(),
+                subscription.getRightY(),
+                key -> cells.computeIfPresent(key, (cellKey, cell) -> {
+                    cell.remove(subscription);
+                    return cell.isEmpty() ? null : cell;
+                })
+        );
+        return true;
+    }
+
+    /**
+     * Add subscriptions whose viewports intersect bounds into result
+     */
+    void collect(final int minX, final int minY, final int maxX, final int maxY, final Set<ViewportSubscription> result) {
+        if (isWide(minX, minY, maxX, maxY)) {
+            all.stream()
+               .filter(subscription -> subscription.intersects(minX, minY, maxX, maxY))
+               .forEach(result::add);
+            return;
+        }
+        wide.stream()
+            .filter(subscription -> subscription.intersects(minX, minY, maxX, maxY))
+            .forEach(result::add);
+        forEachCell(minX, minY, maxX, maxY, key -> {
+            final Set<ViewportSubscription> cell = cells.get(key);
+            if (cell != null) {
+                cell.stream()
+                    .filter(subscription -> subscription.intersects(minX, minY, maxX, maxY))
+                    .forEach(result::add);
+            }
+        });
+    }
+
+    Set<ViewportSubscription> getAll() {
+        return all;
+    }
+
+    private boolean isWide(final int minX, final int minY, final int maxX, final int maxY) {
+        final long columns = Math.floorDiv(maxX, cellSize) - (long) Math.floorDiv(minX, cellSize) + 1;
+        final long rows = Math.floorDiv(maxY, cellSize) - (long) Math.floorDiv(minY, cellSize) + 1;
+        return columns * rows > maxCells;
+    }
+
+    private void forEachCell(final int minX, final int minY, final int maxX, final int maxY, final LongConsumer consumer) {
+        for (int column = Math.floorDiv(minX, cellSize); column <= Math.floorDiv(maxX, cellSize); column++) {
+            for (int row = Math.floorDiv(minY, cellSize); row <= Math.floorDiv(maxY, cellSize); row++) {
+                consumer.accept(((long) column << 32) | (row & 0xFFFFFFFFL));
+            }
+        }
+    }
+}
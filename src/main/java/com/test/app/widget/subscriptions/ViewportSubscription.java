@@ -0,0 +1,172 @@
+package com.test.app.widget.subscriptions;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.WidgetEvent;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subscription of one client to events of widgets intersecting its viewport.
+ * Events are buffered and sent by sender threads, so slow client delays neither modifications nor other clients.
+ * When buffer is full, buffered events are dropped and client is told to resync its viewport
+ */
+public class ViewportSubscription {
+    private static final long NO_RESYNC = -1;
+    /**
+     * Buffering key of Z-index shifts, they aren't related to widgets
+     */
+    private static final Object SHIFT_KEY = new Object();
+
+    @Getter
+    private final int leftX;
+    @Getter
+    private final int leftY;
+    @Getter
+    private final int rightX;
+    @Getter
+    private final int rightY;
+    private final Sink sink;
+    private final ConfigProperties.Subscriptions.OverflowPolicy overflowPolicy;
+    private final int bufferSize;
+    private final WidgetMetrics widgetMetrics;
+    /**
+     * Events by widget id for coalescing, or by arrival number
+     */
+    private final Map<Object, WidgetEvent> buffer = new LinkedHashMap<>();
+    private long arrivals;
+    private long resyncVersion = NO_RESYNC;
+    /**
+     * Buffer is drained by one sender at once
+     */
+    private boolean draining;
+    private boolean closed;
+
+    ViewportSubscription(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final Sink sink,
+            final ConfigProperties.Subscriptions config,
+            final WidgetMetrics widgetMetrics
+    ) {
+        this.leftX = leftX;
+        this.leftY = leftY;
+        this.rightX = rightX;
+        this.rightY = rightY;
+        this.sink = sink;
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.bufferSize = config.getBufferSize();
+        this.widgetMetrics = widgetMetrics;
+    }
+
+    boolean intersects(final int minX, final int minY, final int maxX, final int maxY) {
+        return minX <= rightX && maxX >= leftX && minY <= rightY && maxY >= leftY;
+    }
+
+    /**
+     * @return true if buffer must be drained by sender, false if it's already draining
+     */
+    synchronized boolean offer(final WidgetEvent event) {
+        if (closed) {
+            return false;
+        }
+        if (overflowPolicy == ConfigProperties.Subscriptions.OverflowPolicy.COALESCE) {
+            final Object key = event.getId() == null ? SHIFT_KEY : event.getId();
+            // Coalesced event is moved to the end, so it's still sent after events which were before it
+            final WidgetEvent buffered = buffer.remove(key);
+            buffer.put(key, buffered == null ? event : coalesce(buffered, event));
+        } else {
+            buffer.put(arrivals++, event);
+        }
+        if (buffer.size() > bufferSize) {
+            buffer.clear();
+            resyncVersion = event.getVersion();
+            widgetMetrics.recordSubscriptionOverflow();
+        }
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    /**
+     * Send buffered events, new events are sent by the next call, so one busy client can't hold sender
+     *
+     * @return true if new events were buffered meanwhile and buffer must be drained again
+     * @throws IOException if client is disconnected
+     */
+    boolean drain() throws IOException {
+        final List<WidgetEvent> events;
+        final long resync;
+        synchronized (this) {
+            events = new ArrayList<>(buffer.values());
+            buffer.clear();
+            resync = resyncVersion;
+            resyncVersion = NO_RESYNC;
+        }
+        if (resync != NO_RESYNC) {
+            sink.resync(resync);
+        }
+        for (final WidgetEvent event : events) {
+            sink.send(event);
+        }
+        synchronized (this) {
+            if (closed || (buffer.isEmpty() && resyncVersion == NO_RESYNC)) {
+                draining = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            buffer.clear();
+        }
+        sink.close();
+    }
+
+    /**
+     * Created widget stays created for client which hasn't got it yet, the lowest shifted Z-index is kept
+     */
+    private static WidgetEvent coalesce(final WidgetEvent buffered, final WidgetEvent event) {
+        if (event.getType() == WidgetEvent.Type.SHIFTED) {
+            return new WidgetEvent(
+                    WidgetEvent.Type.SHIFTED,
+                    event.getVersion(),
+                    null,
+                    null,
+                    null,
+                    Math.min(buffered.getShiftedFromIndexZ(), event.getShiftedFromIndexZ())
+            );
+        }
+        if (buffered.getType() == WidgetEvent.Type.CREATED && event.getType() == WidgetEvent.Type.UPDATED) {
+            return new WidgetEvent(WidgetEvent.Type.CREATED, event.getVersion(), event.getId(), event.getWidget(), null, null);
+        }
+        return event;
+    }
+
+    /**
+     * Connection of client, it's used by one sender at once
+     */
+    public interface Sink {
+
+        void send(WidgetEvent event) throws IOException;
+
+        /**
+         * Events up to version were dropped, client must load its viewport again
+         */
+        void resync(long version) throws IOException;
+
+        void close();
+    }
+}
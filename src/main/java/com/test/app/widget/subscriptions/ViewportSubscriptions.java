@@ -0,0 +1,182 @@
+package com.test.app.widget.subscriptions;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import com.test.app.widget.service.WidgetEvent;
+import com.test.app.widget.service.WidgetEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fan-out of committed widget events into viewport subscriptions by grid index of viewports.
+ * Event of widget is sent to subscriptions intersecting bounds of widget before or after modification.
+ * Z-index shifts and events of widgets with unknown bounds are sent to all subscriptions.
+ * <p>
+ * Count of subscriptions is bounded by slots reserved before adding into grid,
+ * so concurrent subscribing can't exceed max subscriptions
+ */
+@Slf4j
+@Component
+public class ViewportSubscriptions implements WidgetEventListener {
+    private final ConfigProperties.Subscriptions config;
+    private final WidgetMetrics widgetMetrics;
+    private final SubscriptionGrid grid;
+    private final ExecutorService senders;
+    /**
+     * Reserved slots of subscriptions, slot is released by unsubscribing
+     */
+    private final AtomicInteger subscriptionsCount = new AtomicInteger();
+
+    public ViewportSubscriptions(final ConfigProperties configProperties, final WidgetMetrics widgetMetrics) {
+        this.config = configProperties.getSubscriptions();
+        this.widgetMetrics = widgetMetrics;
+        this.grid = new SubscriptionGrid(config.getCellSize(), config.getMaxCells());
+        final AtomicInteger threadNumber = new AtomicInteger();
+        // Every subscription has one sending task at most, so queue is bounded by count of subscriptions
+        this.senders = Executors.newFixedThreadPool(config.getSenderThreads(), runnable -> {
+            final Thread thread = new Thread(runnable, "widget-subscription-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void registerGauge() {
+        widgetMetrics.registerSubscriptionsGauge(this, subscriptions -> subscriptions.subscriptionsCount.get());
+    }
+
+    /**
+     * @return Null if there are too many subscriptions
+     */
+    @Nullable
+    public ViewportSubscription subscribe(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final ViewportSubscription.Sink sink
+    ) {
+        if (leftX > rightX || leftY > rightY) {
+            throw new IllegalArgumentException("Error: left corner of viewport must be lower than right one");
+        }
+        if (!reserveSlot()) {
+            return null;
+        }
+        try {
+            final ViewportSubscription subscription = new ViewportSubscription(
+                    leftX,
+                    leftY,
+                    rightX,
+                    rightY,
+                    sink,
+                    config,
+                    widgetMetrics
+            );
+            grid.add(subscription);
+            return subscription;
+        } catch (RuntimeException e) {
+            subscriptionsCount.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public void unsubscribe(final ViewportSubscription subscription) {
+        if (grid.remove(subscription)) {
+            subscriptionsCount.decrementAndGet();
+            subscription.close();
+        }
+    }
+
+    @Override
+    public boolean isListening() {
+        return !grid.getAll().isEmpty();
+    }
+
+    @Override
+    public void modified(final List<WidgetEvent> events) {
+        for (final WidgetEvent event : events) {
+            final Set<ViewportSubscription> targets = new HashSet<>();
+            final boolean boundsKnown = event.getType() == WidgetEvent.Type.CREATED ||
+                                        (event.getType() != WidgetEvent.Type.SHIFTED && event.getPrevious() != null);
+            if (boundsKnown) {
+                collect(event.getWidget(), targets);
+                collect(event.getPrevious(), targets);
+            } else {
+                targets.addAll(grid.getAll());
+            }
+            targets.forEach(subscription -> {
+                if (subscription.offer(event)) {
+                    send(subscription);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        grid.getAll().forEach(this::unsubscribe);
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            final int count = subscriptionsCount.get();
+            if (count >= config.getMaxSubscriptions()) {
+                return false;
+            }
+            if (subscriptionsCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Schedule sending of buffered events. Senders are stopped by shutdown, then subscription is closed,
+     * so rejection doesn't get into writer which committed the events
+     */
+    private void send(final ViewportSubscription subscription) {
+        try {
+            senders.execute(() -> drain(subscription));
+        } catch (RejectedExecutionException e) {
+            log.debug("Senders are stopped, subscription is closed", e);
+            unsubscribe(subscription);
+        }
+    }
+
+    private void collect(@Nullable final Widget widget, final Set<ViewportSubscription> targets) {
+        if (widget != null) {
+            grid.collect(
+                    WidgetBounds.minX(widget),
+                    WidgetBounds.minY(widget),
+                    WidgetBounds.maxX(widget),
+                    WidgetBounds.maxY(widget),
+                    targets
+            );
+        }
+    }
+
+    private void drain(final ViewportSubscription subscription) {
+        try {
+            if (subscription.drain()) {
+                send(subscription);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Subscriber is disconnected", e);
+            unsubscribe(subscription);
+        }
+    }
+}
@@ -1,12 +1,43 @@
 CREATE TABLE WIDGETS (
-    ID                          UUID PRIMARY KEY,
+    ID                          UUID      PRIMARY KEY,
     COORDINATE_X                INT       NOT NULL,
     COORDINATE_Y                INT       NOT NULL,
-    INDEX_Z                     INT       NOT NULL,
+    ORDER_KEY                   BIGINT    NOT NULL,
+    Z_BASE                      BIGINT    NOT NULL,
     WIDTH                       INT       NOT NULL,
     HEIGHT                      INT       NOT NULL,
-    LAST_MODIFICATION_DATE_TIME TIMESTAMP NOT NULL DEFAULT (now() AT TIME ZONE 'UTC')
+    MIN_X                       INT       NOT NULL,
+    MAX_X                       INT       NOT NULL,
+    MIN_Y                       INT       NOT NULL,
+    MAX_Y                       INT       NOT NULL,
+    BOUNDS                      GEOMETRY  NOT NULL,
+    -- Nanoseconds of Java time are kept, so loaded widgets are equal to created ones
+    LAST_MODIFICATION_DATE_TIME TIMESTAMP(9) NOT NULL DEFAULT (now() AT TIME ZONE 'UTC')
 );
 
-CREATE UNIQUE INDEX UI_rectangular_widgets_ON_index_z ON WIDGETS(INDEX_Z);
+CREATE UNIQUE INDEX UI_rectangular_widgets_ON_order_key ON WIDGETS(ORDER_KEY);
+-- H2 doesn't scan index backward, so the last widgets are found by descending one
+CREATE INDEX I_rectangular_widgets_ON_order_key_desc ON WIDGETS(ORDER_KEY DESC);
+CREATE INDEX I_rectangular_widgets_ON_z_base ON WIDGETS(Z_BASE);
+CREATE SPATIAL INDEX SI_rectangular_widgets_ON_bounds ON WIDGETS(BOUNDS);
 
+-- Z-index of widget is Z_BASE plus increments of all pending shifts with FROM_KEY <= ORDER_KEY of widget
+CREATE TABLE Z_SHIFTS (
+    ID                          BIGINT    AUTO_INCREMENT PRIMARY KEY,
+    FROM_KEY                    BIGINT    NOT NULL,
+    INCREMENT_VALUE             INT       NOT NULL
+);
+
+CREATE INDEX I_z_shifts_ON_from_key ON Z_SHIFTS(FROM_KEY);
+
+-- Widget changes evicted from in-memory change log, widget id is absent for Z-index shift.
+-- Versions are counted from zero on every start, so they are kept by epoch of start
+CREATE TABLE WIDGET_CHANGES (
+    EPOCH                       BIGINT    NOT NULL,
+    VERSION                     BIGINT    NOT NULL,
+    WIDGET_ID                   UUID,
+    REMOVED                     BOOLEAN   NOT NULL,
+    SHIFTED_FROM_Z              INT
+);
+
+CREATE INDEX I_widget_changes_ON_epoch_version ON WIDGET_CHANGES(EPOCH, VERSION);
@@ -0,0 +1,10 @@
+package com.test.app.widget;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Same scenarios as {@link WidgetApplicationTests}, but for columnar storage
+ */
+@SpringBootTest(properties = "widget.config.columnarStorage.enabled=true")
+class ColumnarWidgetApplicationTests extends WidgetApplicationTests {
+}
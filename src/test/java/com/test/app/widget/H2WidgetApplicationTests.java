@@ -0,0 +1,13 @@
+package com.test.app.widget;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Same scenarios as {@link WidgetApplicationTests}, but for H2 storage
+ */
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:h2WidgetApplicationTests"
+})
+class H2WidgetApplicationTests extends WidgetApplicationTests {
+}
@@ -0,0 +1,36 @@
+package com.test.app.widget;
+
+import com.test.app.widget.rest.SnapshotVersionHeader;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Same scenarios as {@link WidgetApplicationTests}, but memory storage reads are served by snapshots
+ */
+@SpringBootTest(properties = "widget.config.memStorage.snapshotReads=true")
+@AutoConfigureMockMvc
+class SnapshotWidgetApplicationTests extends WidgetApplicationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void snapshotVersionHeaderTest() throws Exception {
+        mockMvc.perform(get("/widget/getPaging"))
+               .andExpect(status().isOk())
+               .andExpect(header().exists(SnapshotVersionHeader.NAME));
+        // Streamed response is written without header, its version isn't exposed by the next response
+        mockMvc.perform(get("/widget/getAll").param("stream", "true"))
+               .andExpect(status().isOk());
+        mockMvc.perform(get("/widget"))
+               .andExpect(status().isOk())
+               .andExpect(header().doesNotExist(SnapshotVersionHeader.NAME));
+    }
+}
@@ -1,8 +1,10 @@
 package com.test.app.widget;
 
 import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputBatch;
 import com.test.app.widget.rest.inputs.InputWidget;
 import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBatchResult;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +13,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 class WidgetApplicationTests {
@@ -149,6 +152,52 @@ class WidgetApplicationTests {
 
     }
 
+    @Test
+    public void batchTest() {
+        final Widget widgetA = controller.create(getRandomInputWidget(100_000));
+        final Widget widgetB = controller.create(getRandomInputWidget(100_001));
+        final Widget widgetC = controller.create(getRandomInputWidget(100_002));
+        final Widget widgetD = controller.create(getRandomInputWidget(100_005));
+        final Widget widgetForUpdate = new Widget(
+                widgetC.getId(),
+                widgetC.getCoordinateX() + 1,
+                widgetC.getCoordinateY(),
+                100_003,
+                widgetC.getWidth(),
+                widgetC.getHeight(),
+                widgetC.getLastModificationDateTime()
+        );
+
+        // Two widgets are requested on Z-index of widget B, and one more goes into foreground
+        final WidgetBatchResult result = controller.batch(new InputBatch(
+                Arrays.asList(getRandomInputWidget(100_001), getRandomInputWidget(100_001), getRandomInputWidget(null)),
+                Collections.singletonList(widgetForUpdate),
+                Collections.singletonList(widgetD.getId())
+        ));
+
+        assertThat(result.getDeleted()).containsExactly(widgetD.getId());
+        assertThat(controller.getAll().stream().anyMatch(widget -> widget.getId().equals(widgetD.getId()))).isFalse();
+        assertThat(controller.getById(widgetA.getId()).getIndexZ()).isEqualTo(100_000);
+        assertThat(result.getCreated().get(0).getIndexZ()).isEqualTo(100_001);
+        assertThat(result.getCreated().get(1).getIndexZ()).isEqualTo(100_002);
+        assertThat(controller.getById(widgetC.getId()).getIndexZ()).isEqualTo(100_003);
+        assertThat(controller.getById(widgetC.getId()).getCoordinateX()).isEqualTo(widgetC.getCoordinateX() + 1);
+        assertThat(controller.getById(widgetB.getId()).getIndexZ()).isEqualTo(100_004);
+
+        final List<Widget> allWidgets = controller.getAll();
+        final Widget foregroundWidget = result.getCreated().get(2);
+        assertThat(allWidgets.get(allWidgets.size() - 1).getId()).isEqualTo(foregroundWidget.getId());
+        assertThat(allWidgets.stream().map(Widget::getIndexZ).distinct().count()).isEqualTo(allWidgets.size());
+
+        final Set<UUID> testWidgetIdsForRemoving = new HashSet<>(Arrays.asList(
+                widgetA.getId(),
+                widgetB.getId(),
+                widgetC.getId()
+        ));
+        result.getCreated().forEach(widget -> testWidgetIdsForRemoving.add(widget.getId()));
+        removeWidgetsByIds(testWidgetIdsForRemoving);
+    }
+
     @Test
     public void defaultPagingQueryTest() {
         final Set<UUID> testWidgetIdsForRemoving = new HashSet<>();
@@ -176,6 +225,37 @@ class WidgetApplicationTests {
         removeWidgetsByIds(testWidgetIdsForRemoving);
     }
 
+    @Test
+    public void pagingAfterIndexZQueryTest() {
+        final Set<UUID> testWidgetIdsForRemoving = new HashSet<>();
+        //Create 30 different widgets
+        getRandomInputWidgetsWithUniqueZIndexes(30)
+                .forEach(widgetInout ->
+                        testWidgetIdsForRemoving.add(controller.create(widgetInout).getId())
+                );
+
+        final List<Widget> allWidgets = controller.getAll();
+        final List<Widget> pagedWidgets = new ArrayList<>();
+        int cursor = allWidgets.get(0).getIndexZ() - 1;
+        List<Widget> page = controller.getPagingAfterIndexZ(cursor, 7);
+        while (!page.isEmpty()) {
+            assertThat(page.size() <= 7).isTrue();
+            assertThat(page.get(0).getIndexZ() > cursor).isTrue();
+            pagedWidgets.addAll(page);
+            cursor = page.get(page.size() - 1).getIndexZ();
+            page = controller.getPagingAfterIndexZ(cursor, 7);
+        }
+
+        assertThat(pagedWidgets.stream().map(Widget::getId).collect(Collectors.toList()))
+                .isEqualTo(allWidgets.stream().map(Widget::getId).collect(Collectors.toList()));
+        // Negative size isn't unlimited one
+        assertThatThrownBy(() -> controller.getPagingAfterIndexZ(Integer.MIN_VALUE, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> controller.getPagingAfterIndexZ(Integer.MIN_VALUE, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        removeWidgetsByIds(testWidgetIdsForRemoving);
+    }
+
     @Test
     public void getBySelectedAreaTest() {
         final Widget widget1 = controller.create(
@@ -191,7 +271,7 @@ class WidgetApplicationTests {
                 new InputWidget(50, 100, 4, 110, 100)
         );
 
-        final List<Widget> filteredWidgets = controller.getBySelectedArea(0, 0, 100, 150);
+        final List<Widget> filteredWidgets = controller.getBySelectedArea(0, 0, 100, 150, null, null, null);
         assertThat(filteredWidgets.stream().anyMatch(widget -> widget.getId().equals(widget1.getId()))).isTrue();
         assertThat(filteredWidgets.stream().anyMatch(widget -> widget.getId().equals(widget2.getId()))).isTrue();
         assertThat(filteredWidgets.stream().anyMatch(widget -> widget.getId().equals(widget3.getId()))).isFalse();
@@ -199,6 +279,88 @@ class WidgetApplicationTests {
         removeWidgetsByIds(new HashSet<>(Arrays.asList(widget1.getId(), widget2.getId(), widget3.getId())));
     }
 
+    @Test
+    public void hitTestTest() {
+        // Far from widgets of other tests
+        final Widget lower = controller.create(new InputWidget(100_000, 100_000, null, 100, 100));
+        final Widget upper = controller.create(new InputWidget(100_010, 100_010, null, 100, 100));
+        final Widget aside = controller.create(new InputWidget(100_200, 100_200, null, 100, 100));
+        // It takes Z-index of lower widget, so lower and upper widgets are shifted above it
+        final Widget middle = controller.create(new InputWidget(100_000, 100_000, lower.getIndexZ(), 100, 100));
+
+        assertThat(toIds(controller.hitTest(100_000, 100_000, null))).containsExactly(upper.getId());
+        final List<Widget> hits = controller.hitTest(100_000, 100_000, 10);
+        assertThat(toIds(hits)).containsExactly(upper.getId(), lower.getId(), middle.getId());
+        assertThat(hits).isSortedAccordingTo(Comparator.comparing(Widget::getIndexZ).reversed());
+        // Border of widget is inside it
+        assertThat(toIds(controller.hitTest(99_950, 100_000, 10))).containsExactly(lower.getId(), middle.getId());
+        assertThat(controller.hitTest(100_500, 100_500, 10)).isEmpty();
+
+        // Lower widget is moved to foreground
+        final Widget actualLower = controller.getById(lower.getId());
+        controller.update(new Widget(
+                lower.getId(),
+                actualLower.getCoordinateX(),
+                actualLower.getCoordinateY(),
+                controller.getById(upper.getId()).getIndexZ() + 1,
+                actualLower.getWidth(),
+                actualLower.getHeight(),
+                actualLower.getLastModificationDateTime()
+        ));
+        assertThat(toIds(controller.hitTest(100_000, 100_000, 2))).containsExactly(lower.getId(), upper.getId());
+
+        removeWidgetsByIds(new HashSet<>(Arrays.asList(lower.getId(), upper.getId(), aside.getId(), middle.getId())));
+        assertThat(controller.hitTest(100_000, 100_000, 10)).isEmpty();
+    }
+
+    @Test
+    public void getBySelectedAreaOrderedByIndexZTest() {
+        // Far from widgets of other tests
+        final List<Widget> inside = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            inside.add(controller.create(new InputWidget(200_000 + i * 10, 200_000, null, 100, 100)));
+        }
+        final Widget outside = controller.create(new InputWidget(200_500, 200_500, null, 100, 100));
+        // It takes Z-index of the lowest widget, so widgets inside area are shifted above it
+        inside.add(controller.create(new InputWidget(200_000, 200_010, inside.get(0).getIndexZ(), 100, 100)));
+        final List<UUID> descending = Arrays.asList(
+                inside.get(4).getId(),
+                inside.get(3).getId(),
+                inside.get(2).getId(),
+                inside.get(1).getId(),
+                inside.get(0).getId(),
+                inside.get(5).getId()
+        );
+
+        final List<Widget> first = controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, null, null, 4);
+        assertThat(toIds(first)).containsExactlyElementsOf(descending.subList(0, 4));
+        assertThat(first).isSortedAccordingTo(Comparator.comparing(Widget::getIndexZ).reversed());
+        final Integer cursor = first.get(first.size() - 1).getIndexZ();
+        assertThat(toIds(controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z_desc", cursor, 4)))
+                .containsExactlyElementsOf(descending.subList(4, 6));
+
+        final List<UUID> ascending = new ArrayList<>(descending);
+        Collections.reverse(ascending);
+        assertThat(toIds(controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z_asc", null, null)))
+                .containsExactlyElementsOf(ascending);
+        assertThat(toIds(controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z_asc", cursor, 10)))
+                .containsExactlyElementsOf(ascending.subList(3, 6));
+        assertThat(controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z_desc", Integer.MIN_VALUE, 10))
+                .isEmpty();
+        assertThatThrownBy(() -> controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z", null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        final Set<UUID> ids = new HashSet<>(descending);
+        ids.add(outside.getId());
+        removeWidgetsByIds(ids);
+        assertThat(controller.getBySelectedArea(199_900, 199_900, 200_200, 200_200, "z_asc", null, 10)).isEmpty();
+    }
+
+    private static List<UUID> toIds(final List<Widget> widgets) {
+        return widgets.stream().map(Widget::getId).collect(Collectors.toList());
+    }
 
     private InputWidget getRandomInputWidget(final Integer indexZ) {
         final Random rand = new Random();
@@ -0,0 +1,191 @@
+package com.test.app.widget.bulkhead;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.service.SnapshotReadVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkheadTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void operationIsRejectedWhenQueueIsFullTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "scans",
+                new ConfigProperties.BulkheadConfig(1, 1, Duration.ofSeconds(30)),
+                new WidgetMetrics(meterRegistry)
+        );
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final DeferredResult<String> running = bulkhead.submit(() -> {
+            started.countDown();
+            await(release);
+            return "running";
+        });
+        started.await();
+        final DeferredResult<String> waiting = bulkhead.submit(() -> "waiting");
+        final DeferredResult<String> rejected = bulkhead.submit(() -> "rejected");
+
+        assertThat(rejected.hasResult()).isTrue();
+        assertThat(((ResponseEntity<?>) rejected.getResult()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(meterRegistry.get("widget.bulkhead.rejections")
+                                .tag("bulkhead", "scans")
+                                .tag("reason", Bulkhead.REJECTED_BY_FULL_QUEUE)
+                                .counter()
+                                .count()).isEqualTo(1);
+
+        release.countDown();
+        for (int i = 0; i < 100 && !waiting.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(running.getResult()).isEqualTo("running");
+        assertThat(waiting.getResult()).isEqualTo("waiting");
+        bulkhead.stop();
+    }
+
+    @Test
+    public void operationErrorIsResultTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "points",
+                new ConfigProperties.BulkheadConfig(1, 0, Duration.ofSeconds(30)),
+                new WidgetMetrics(meterRegistry)
+        );
+
+        final DeferredResult<String> failed = bulkhead.submit(() -> {
+            throw new IllegalArgumentException("Error: wrong widget");
+        });
+        for (int i = 0; i < 100 && !failed.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(failed.getResult()).isInstanceOf(IllegalArgumentException.class);
+        bulkhead.stop();
+    }
+
+    @Test
+    public void streamingIsDoneByWritingTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "scans",
+                new ConfigProperties.BulkheadConfig(1, 0, Duration.ofMillis(10)),
+                new WidgetMetrics(meterRegistry)
+        );
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Response is committed by writing, so it can't be replaced by HTTP 503 on timeout
+        final DeferredResult<Void> streamed = bulkhead.submitStreaming(completed -> {
+            await(release);
+            assertThat(completed.getAsBoolean()).isFalse();
+        });
+        // Writing lasts longer than timeout of bulkhead
+        Thread.sleep(50);
+        assertThat(streamed.hasResult()).isFalse();
+        release.countDown();
+        for (int i = 0; i < 100 && !streamed.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(streamed.hasResult()).isTrue();
+        assertThat(streamed.getResult()).isNull();
+        bulkhead.stop();
+    }
+
+    @Test
+    public void onlyWaitingOperationIsRejectedByTimeoutTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "points",
+                new ConfigProperties.BulkheadConfig(1, 1, Duration.ofMillis(20)),
+                new WidgetMetrics(meterRegistry)
+        );
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final DeferredResult<String> running = bulkhead.submit(() -> {
+            started.countDown();
+            await(release);
+            return "committed";
+        });
+        started.await();
+        final DeferredResult<String> waiting = bulkhead.submit(() -> "waiting");
+        for (int i = 0; i < 100 && !waiting.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        // Running operation may be already committed, so it's answered by its own result
+        assertThat(((ResponseEntity<?>) waiting.getResult()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(running.hasResult()).isFalse();
+        release.countDown();
+        for (int i = 0; i < 100 && !running.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(running.getResult()).isEqualTo("committed");
+        assertThat(meterRegistry.get("widget.bulkhead.rejections")
+                                .tag("bulkhead", "points")
+                                .tag("reason", Bulkhead.REJECTED_BY_TIMEOUT)
+                                .counter()
+                                .count()).isEqualTo(1);
+        bulkhead.stop();
+    }
+
+    @Test
+    public void streamingErrorIsResultTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "scans",
+                new ConfigProperties.BulkheadConfig(1, 0, Duration.ofSeconds(30)),
+                new WidgetMetrics(meterRegistry)
+        );
+
+        final DeferredResult<Void> failed = bulkhead.submitStreaming(completed -> {
+            throw new StackOverflowError();
+        });
+        for (int i = 0; i < 100 && !failed.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(failed.getResult()).isInstanceOf(StackOverflowError.class);
+        bulkhead.stop();
+    }
+
+    @Test
+    public void snapshotVersionOfFailedReadIsForgottenTest() throws InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(
+                "points",
+                new ConfigProperties.BulkheadConfig(1, 1, Duration.ofSeconds(30)),
+                new WidgetMetrics(meterRegistry)
+        );
+
+        final DeferredResult<String> failed = bulkhead.submit(() -> {
+            SnapshotReadVersion.set(5);
+            throw new RuntimeException("Widget is not found");
+        });
+        // The same single thread of bulkhead
+        final DeferredResult<Long> next = bulkhead.submit(SnapshotReadVersion::take);
+        for (int i = 0; i < 100 && !next.hasResult(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(failed.getResult()).isInstanceOf(RuntimeException.class);
+        assertThat(next.hasResult()).isTrue();
+        assertThat(next.getResult()).isNull();
+        bulkhead.stop();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
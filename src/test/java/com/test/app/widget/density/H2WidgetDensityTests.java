@@ -0,0 +1,19 @@
+package com.test.app.widget.density;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Same scenarios as {@link WidgetDensityTests}, but for H2 storage
+ */
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.density.enabled=true",
+        "widget.config.density.tileSize=16",
+        "widget.config.density.levels=6",
+        "widget.config.density.maxTiles=4096",
+        "widget.config.density.maxSpreadTiles=4",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2WidgetDensityTests"
+})
+class H2WidgetDensityTests extends WidgetDensityTests {
+}
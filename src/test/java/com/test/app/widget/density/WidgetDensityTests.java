@@ -0,0 +1,146 @@
+package com.test.app.widget.density;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.controllers.WidgetDensityController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "widget.config.density.enabled=true",
+        "widget.config.density.tileSize=16",
+        "widget.config.density.levels=6",
+        "widget.config.density.maxTiles=4096",
+        "widget.config.density.maxSpreadTiles=4",
+        "widget.config.rateLimiting.enabled=false"
+})
+class WidgetDensityTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private WidgetDensityController densityController;
+    @Autowired
+    private WidgetService widgetService;
+
+    @AfterEach
+    public void clean() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void densityIsEqualToFullScanTest() {
+        final Random rand = new Random(17);
+        final List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            widgets.add(controller.create(new InputWidget(
+                    rand.nextInt(1000) - 500,
+                    rand.nextInt(1000) - 500,
+                    null,
+                    1 + rand.nextInt(40),
+                    1 + rand.nextInt(40)
+            )));
+        }
+        for (int i = 0; i < 100; i++) {
+            final Widget widget = widgets.get(rand.nextInt(widgets.size()));
+            controller.update(new Widget(
+                    widget.getId(),
+                    rand.nextInt(1000) - 500,
+                    rand.nextInt(1000) - 500,
+                    controller.getById(widget.getId()).getIndexZ(),
+                    widget.getWidth(),
+                    widget.getHeight(),
+                    null
+            ));
+        }
+        for (int i = 0; i < 50; i++) {
+            controller.deleteById(widgets.remove(rand.nextInt(widgets.size())).getId());
+        }
+        assertDensity(controller.getAll());
+
+        // Counters are built again from storage in the same way
+        widgetService.afterSingletonsInstantiated();
+        assertDensity(controller.getAll());
+    }
+
+    @Test
+    public void wrongRequestsTest() {
+        // The biggest tiles are taken for bigger requested size
+        assertThat(densityController.getDensity(0, 0, 1000, 1000, 10_000).getTileSize()).isEqualTo(16 << 5);
+        assertThat(densityController.getDensity(0, 0, 1000, 1000, 10_000).getTiles()).isEmpty();
+        assertThatThrownBy(() -> densityController.getDensity(0, 0, 2000, 2000, 16))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> densityController.getDensity(100, 0, 0, 100, 16))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> densityController.getDensity(0, 0, 100, 100, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertDensity(final List<Widget> widgets) {
+        for (final int tileSize : new int[]{16, 20, 100, 512}) {
+            final WidgetHeatmap heatmap = densityController.getDensity(-300, -400, 450, 350, tileSize);
+            assertThat(heatmap.getTileSize()).isGreaterThanOrEqualTo(tileSize).isLessThan(Math.max(tileSize * 2, 32));
+
+            final int size = heatmap.getTileSize();
+            // Count and area in quarters by tiles
+            final Map<List<Integer>, long[]> expected = new HashMap<>();
+            for (final Widget widget : widgets) {
+                final int centerX = Math.floorDiv(widget.getCoordinateX(), size) * size;
+                final int centerY = Math.floorDiv(widget.getCoordinateY(), size) * size;
+                expected.computeIfAbsent(listOf(centerX, centerY), key -> new long[2])[0]++;
+                final double minX = widget.getCoordinateX() - widget.getWidth() / 2.0;
+                final double maxX = widget.getCoordinateX() + widget.getWidth() / 2.0;
+                final double minY = widget.getCoordinateY() - widget.getHeight() / 2.0;
+                final double maxY = widget.getCoordinateY() + widget.getHeight() / 2.0;
+                final List<List<Integer>> covered = new ArrayList<>();
+                for (int leftY = (int) Math.floor(minY / size) * size; leftY < maxY; leftY += size) {
+                    for (int leftX = (int) Math.floor(minX / size) * size; leftX < maxX; leftX += size) {
+                        covered.add(listOf(leftX, leftY));
+                    }
+                }
+                if (covered.size() > 4) {
+                    // Too big widgets cover only their center tile
+                    expected.get(listOf(centerX, centerY))[1] += 4L * widget.getWidth() * widget.getHeight();
+                    continue;
+                }
+                for (final List<Integer> tile : covered) {
+                    final double width = Math.min(maxX, tile.get(0) + size) - Math.max(minX, tile.get(0));
+                    final double height = Math.min(maxY, tile.get(1) + size) - Math.max(minY, tile.get(1));
+                    expected.computeIfAbsent(tile, key -> new long[2])[1] += Math.round(4 * width * height);
+                }
+            }
+            expected.keySet().removeIf(tile -> tile.get(0) + size <= -300 || tile.get(0) > 450 ||
+                                               tile.get(1) + size <= -400 || tile.get(1) > 350);
+            assertThat(heatmap.getTiles()).hasSize(expected.size());
+            assertThat(heatmap.getTiles()).isSortedAccordingTo((first, second) -> first.getLeftY() != second.getLeftY()
+                                                                                 ? Integer.compare(first.getLeftY(), second.getLeftY())
+                                                                                 : Integer.compare(first.getLeftX(), second.getLeftX()));
+            for (final WidgetTile tile : heatmap.getTiles()) {
+                final long[] counters = expected.get(listOf(tile.getLeftX(), tile.getLeftY()));
+                assertThat(counters).isNotNull();
+                assertThat(tile.getCount()).isEqualTo(counters[0]);
+                assertThat(tile.getCoverage()).isEqualTo(Math.min(1, counters[1] / (4.0 * size * size)));
+            }
+        }
+    }
+
+    private static List<Integer> listOf(final int x, final int y) {
+        final List<Integer> result = new ArrayList<>(2);
+        result.add(x);
+        result.add(y);
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package com.test.app.widget.metrics;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "widget.config.rateLimiting.limit=2")
+@AutoConfigureMockMvc
+class WidgetMetricsTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void serviceMetricsTest() {
+        final Widget first = controller.create(new InputWidget(50, 50, 1_000, 10, 10));
+        final Widget second = controller.create(new InputWidget(60, 60, 1_001, 10, 10));
+        // Both widgets above are shifted
+        final Widget third = controller.create(new InputWidget(70, 70, 1_000, 10, 10));
+        final List<Widget> area = controller.getBySelectedArea(0, 0, 100, 100, null, null, null);
+
+        assertThat(meterRegistry.get("widget.service.operation")
+                                .tag("operation", "create")
+                                .tag("backend", "mem")
+                                .timer()
+                                .count()).isGreaterThanOrEqualTo(3);
+        assertThat(meterRegistry.get("widget.indexz.shifted").tag("backend", "mem").summary().max())
+                .isGreaterThanOrEqualTo(2);
+        assertThat(meterRegistry.get("widget.query.result.size").tag("query", "area").summary().max())
+                .isEqualTo(area.size());
+        assertThat(meterRegistry.get("widget.count").tag("backend", "mem").gauge().value())
+                .isEqualTo(controller.getAll().size());
+        assertThat(meterRegistry.get("widget.indexz.span").tag("backend", "mem").gauge().value())
+                .isGreaterThanOrEqualTo(2);
+
+        Arrays.asList(first, second, third).forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void rateLimitRejectionsAndPrometheusTest() throws Exception {
+        final double rejectedBefore = meterRegistry.get("widget.rate.limit.rejections").counter().count();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/widget/getPaging"));
+        }
+        assertThat(meterRegistry.get("widget.rate.limit.rejections").counter().count())
+                .isGreaterThan(rejectedBefore);
+
+        mockMvc.perform(get("/actuator/prometheus"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("widget_service_operation_seconds_bucket")));
+    }
+}
@@ -0,0 +1,78 @@
+package com.test.app.widget.rate_limiting;
+
+import com.test.app.widget.configs.ConfigProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private final AtomicLong nanoClock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    @Test
+    public void limitIsRefilledByTimeTest() {
+        final RateLimiter rateLimiter = new RateLimiter(getConfig(ConfigProperties.RateLimiting.ClientKey.GLOBAL), nanoClock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isZero();
+        }
+        final long waitNanos = rateLimiter.tryAcquire("client", "/widget/getById");
+        assertThat(waitNanos).isPositive();
+        assertThat(RateLimiter.toRetryAfterSeconds(waitNanos)).isEqualTo(6);
+
+        nanoClock.addAndGet(waitNanos);
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isZero();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isPositive();
+    }
+
+    @Test
+    public void endpointWeightTest() {
+        final ConfigProperties.RateLimiting config = getConfig(ConfigProperties.RateLimiting.ClientKey.GLOBAL);
+        config.getEndpointWeights().put("/widget/getAll", 4);
+        final RateLimiter rateLimiter = new RateLimiter(config, nanoClock::get);
+
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getAll")).isZero();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getAll")).isZero();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getAll")).isPositive();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isZero();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isZero();
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getById")).isPositive();
+    }
+
+    @Test
+    public void endpointWeightIsCappedByLimitTest() {
+        final ConfigProperties.RateLimiting config = getConfig(ConfigProperties.RateLimiting.ClientKey.GLOBAL);
+        config.getEndpointWeights().put("/widget/getAll", 25);
+        final RateLimiter rateLimiter = new RateLimiter(config, nanoClock::get);
+
+        // Heavier request takes the whole bucket instead of waiting forever
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getAll")).isZero();
+        final long waitNanos = rateLimiter.tryAcquire("client", "/widget/getAll");
+        assertThat(waitNanos).isPositive();
+        nanoClock.addAndGet(waitNanos);
+        assertThat(rateLimiter.tryAcquire("client", "/widget/getAll")).isZero();
+    }
+
+    @Test
+    public void bucketPerClientTest() {
+        final RateLimiter rateLimiter = new RateLimiter(getConfig(ConfigProperties.RateLimiting.ClientKey.HEADER), nanoClock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryAcquire("first", "/widget/getById")).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire("first", "/widget/getById")).isPositive();
+        assertThat(rateLimiter.tryAcquire("second", "/widget/getById")).isZero();
+    }
+
+    private ConfigProperties.RateLimiting getConfig(final ConfigProperties.RateLimiting.ClientKey clientKey) {
+        final ConfigProperties.RateLimiting config = new ConfigProperties.RateLimiting();
+        config.setLimit(10);
+        config.setPeriod(Duration.ofMinutes(1));
+        config.setClientKey(clientKey);
+        return config;
+    }
+}
@@ -0,0 +1,42 @@
+package com.test.app.widget.rate_limiting;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "widget.config.rateLimiting.limit=3",
+        "widget.config.rateLimiting.clientKey=HEADER"
+})
+@AutoConfigureMockMvc
+class RateLimitingFilterTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void tooManyRequestsTest() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/widget/getPaging").header("X-Client-Id", "first"))
+                   .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/widget/getPaging").header("X-Client-Id", "first"))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+               .andExpect(content().contentType("text/plain;charset=UTF-8"));
+        // Path with the same prefix isn't widget API
+        mockMvc.perform(get("/widgetfoo").header("X-Client-Id", "first"))
+               .andExpect(status().isNotFound());
+        // Other client has own bucket
+        mockMvc.perform(get("/widget/getPaging").header("X-Client-Id", "second"))
+               .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,77 @@
+package com.test.app.widget.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "widget.config.async.enabled=true",
+        "widget.config.rateLimiting.enabled=false"
+})
+@AutoConfigureMockMvc
+class AsyncWidgetControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    public void asyncRequestsTest() throws Exception {
+        assertThat(applicationContext.getBeansOfType(WidgetController.class)).isEmpty();
+
+        final Widget created = objectMapper.readValue(
+                performAsync(post("/widget/create")
+                                     .contentType(MediaType.APPLICATION_JSON)
+                                     .content(objectMapper.writeValueAsString(new InputWidget(10, 20, 7, 30, 40)))),
+                Widget.class
+        );
+        assertThat(created.getIndexZ()).isEqualTo(7);
+
+        final Widget loaded = objectMapper.readValue(
+                performAsync(get("/widget/getById").param("id", created.getId().toString())),
+                Widget.class
+        );
+        assertThat(loaded.getCoordinateX()).isEqualTo(10);
+
+        final String all = performAsync(get("/widget/getAll"));
+        assertThat(all).contains(created.getId().toString());
+        assertThat(performAsync(get("/widget/getAll").param("stream", "true"))).isEqualTo(all);
+
+        performAsync(delete("/widget/deleteById").param("id", created.getId().toString()));
+        assertThat(performAsync(get("/widget/getAll"))).isEqualTo("[]");
+    }
+
+    private String performAsync(final RequestBuilder request) throws Exception {
+        final MvcResult started = mockMvc.perform(request)
+                                         .andExpect(request().asyncStarted())
+                                         .andReturn();
+        // Streamed responses have no timeout, so waiting of their result isn't limited by request
+        started.getAsyncResult(TimeUnit.SECONDS.toMillis(5));
+        return mockMvc.perform(asyncDispatch(started))
+                      .andExpect(status().isOk())
+                      .andReturn().getResponse().getContentAsString();
+    }
+}
@@ -0,0 +1,14 @@
+package com.test.app.widget.rest;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Same scenarios as {@link WidgetBoardCacheTests}, but for H2 storage
+ */
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2WidgetBoardCacheTests"
+})
+class H2WidgetBoardCacheTests extends WidgetBoardCacheTests {
+}
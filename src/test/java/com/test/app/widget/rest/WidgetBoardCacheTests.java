@@ -0,0 +1,82 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "widget.config.rateLimiting.enabled=false")
+@AutoConfigureMockMvc
+class WidgetBoardCacheTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private WidgetBoardCache boardCache;
+
+    @AfterEach
+    public void removeWidgets() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void boardCacheTest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            controller.create(new InputWidget(i, i, 0, 10, 10));
+        }
+
+        final MockHttpServletResponse loaded = perform(get("/widget/getAll"));
+        assertThat(loaded.getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+        final WidgetBoardCache.Board board = boardCache.peek();
+        assertThat(board).isNotNull();
+        assertThat(board.getWidgets()).usingFieldByFieldElementComparator().isEqualTo(controller.getAll());
+        // Response is the same as response of handler
+        assertThat(loaded.getContentAsString()).isEqualTo(perform(get("/widget/getAll").param("stream", "true")).getContentAsString());
+
+        // Repeated reading is served by the same board
+        assertThat(perform(get("/widget/getAll")).getContentAsByteArray()).isEqualTo(loaded.getContentAsByteArray());
+        assertThat(boardCache.peek()).isSameAs(board);
+
+        final MockHttpServletResponse gzipped = perform(get("/widget/getAll").header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip"));
+        assertThat(gzipped.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipped.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))))
+                .isEqualTo(loaded.getContentAsByteArray());
+        assertThat(perform(get("/widget/getAll").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                           .getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+
+        final MockHttpServletResponse columns = perform(get("/widget/getAll")
+                                                                .accept(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS));
+        assertThat(columns.getContentType()).isEqualTo(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS_VALUE);
+        assertThat(columns.getContentAsByteArray()).hasSize(4 + 10 * 44);
+        assertThat(boardCache.peek()).isSameAs(board);
+
+        // Modification makes board stale, it's loaded again by the next reading
+        controller.create(new InputWidget(100, 100, 0, 10, 10));
+        assertThat(boardCache.peek()).isNull();
+        final MockHttpServletResponse modified = perform(get("/widget/getAll"));
+        assertThat(modified.getContentAsString()).isNotEqualTo(loaded.getContentAsString());
+        assertThat(boardCache.peek().getWidgets()).usingFieldByFieldElementComparator().isEqualTo(controller.getAll());
+    }
+
+    private MockHttpServletResponse perform(final RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+}
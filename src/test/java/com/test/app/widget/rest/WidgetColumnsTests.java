@@ -0,0 +1,117 @@
+package com.test.app.widget.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "widget.config.rateLimiting.enabled=false")
+@AutoConfigureMockMvc
+class WidgetColumnsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private WidgetColumnsHttpMessageConverter converter;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    public void removeWidgets() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void columnsTest() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            controller.create(new InputWidget(i * 10, -i, null, 10 + i, 20 + i));
+        }
+
+        final MockHttpServletResponse binary = perform(get("/widget/getAll")
+                                                               .accept(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS));
+        assertThat(binary.getContentType()).isEqualTo(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS_VALUE);
+        // Count, then 44 bytes per widget
+        assertThat(binary.getContentAsByteArray()).hasSize(4 + 10 * 44);
+        assertThat(binary.getContentLength()).isEqualTo(4 + 10 * 44);
+
+        // JSON is still default
+        final MockHttpServletResponse json = perform(get("/widget/getAll"));
+        assertThat(json.getContentType()).startsWith(MediaType.APPLICATION_JSON_VALUE);
+        final List<Widget> expected = objectMapper.readValue(
+                json.getContentAsByteArray(),
+                new TypeReference<List<Widget>>() {
+                }
+        );
+
+        final List<Widget> decoded = converter.read(
+                ResolvableType.forClassWithGenerics(List.class, Widget.class).getType(),
+                null,
+                inputMessage(binary.getContentAsByteArray())
+        );
+        assertThat(decoded).hasSize(10);
+        for (int i = 0; i < decoded.size(); i++) {
+            assertThat(decoded.get(i)).isEqualToIgnoringGivenFields(expected.get(i), "lastModificationDateTime");
+            assertThat(decoded.get(i).getLastModificationDateTime())
+                    .isEqualTo(expected.get(i).getLastModificationDateTime().truncatedTo(ChronoUnit.MILLIS));
+        }
+    }
+
+    @Test
+    public void areaColumnsTest() throws Exception {
+        controller.create(new InputWidget(10, 10, null, 10, 10));
+        controller.create(new InputWidget(1000, 1000, null, 10, 10));
+
+        final MockHttpServletResponse binary = perform(get("/widget/getBySelectedArea")
+                                                               .param("leftX", "0")
+                                                               .param("leftY", "0")
+                                                               .param("rightX", "100")
+                                                               .param("rightY", "100")
+                                                               .accept(WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS));
+        assertThat(binary.getContentAsByteArray()).hasSize(4 + 44);
+    }
+
+    @Test
+    public void countBeyondContentIsNotReadTest() {
+        final Type type = ResolvableType.forClassWithGenerics(List.class, Widget.class).getType();
+        assertThat(converter.canRead(type, null, WidgetColumnsHttpMessageConverter.APPLICATION_WIDGET_COLUMNS)).isFalse();
+
+        // Only count of widgets is sent
+        final byte[] body = ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array();
+        assertThatThrownBy(() -> converter.read(type, null, inputMessage(body)))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    private static MockHttpInputMessage inputMessage(final byte[] body) {
+        final MockHttpInputMessage message = new MockHttpInputMessage(body);
+        message.getHeaders().setContentLength(body.length);
+        return message;
+    }
+
+    private MockHttpServletResponse perform(final RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+}
@@ -0,0 +1,88 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "widget.config.rateLimiting.enabled=false")
+@AutoConfigureMockMvc
+class WidgetETagTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private WidgetService widgetService;
+
+    @AfterEach
+    public void removeWidgets() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void storageETagTest() throws Exception {
+        controller.create(new InputWidget(10, 10, 5, 10, 10));
+
+        final MvcResult loaded = perform(get("/widget/getAll"));
+        final String eTag = loaded.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(loaded.getResponse().getStatus()).isEqualTo(200);
+        assertThat(eTag).isNotNull();
+
+        final MvcResult notModified = perform(get("/widget/getAll").header(HttpHeaders.IF_NONE_MATCH, eTag));
+        assertThat(notModified.getResponse().getStatus()).isEqualTo(304);
+        assertThat(notModified.getResponse().getContentAsString()).isEmpty();
+        assertThat(perform(get("/widget/getPaging").param("page", "1").param("size", "10")
+                                                     .header(HttpHeaders.IF_NONE_MATCH, eTag)).getResponse().getStatus())
+                .isEqualTo(304);
+
+        controller.create(new InputWidget(10, 10, null, 10, 10));
+
+        final MvcResult modified = perform(get("/widget/getAll").header(HttpHeaders.IF_NONE_MATCH, eTag));
+        assertThat(modified.getResponse().getStatus()).isEqualTo(200);
+        assertThat(modified.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void widgetETagTest() throws Exception {
+        final Widget widget = controller.create(new InputWidget(10, 10, 5, 10, 10));
+        final String eTag = perform(get("/widget/getById").param("id", widget.getId().toString()))
+                .getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Foreground widget doesn't change other widgets
+        controller.create(new InputWidget(10, 10, null, 10, 10));
+        assertThat(perform(getById(widget, eTag)).getResponse().getStatus()).isEqualTo(304);
+
+        // Colliding widget shifts Z-index of widget
+        controller.create(new InputWidget(10, 10, 5, 10, 10));
+        final MvcResult shifted = perform(getById(widget, eTag));
+        assertThat(shifted.getResponse().getStatus()).isEqualTo(200);
+        assertThat(shifted.getResponse().getContentAsString()).contains("\"indexZ\":6");
+
+        final long versionBeforeRemoving = widgetService.getVersions().getWidgetVersion(widget.getId());
+        controller.deleteById(widget.getId());
+        assertThat(widgetService.getVersions().getWidgetVersion(widget.getId())).isGreaterThan(versionBeforeRemoving);
+    }
+
+    private RequestBuilder getById(final Widget widget, final String eTag) {
+        return get("/widget/getById").param("id", widget.getId().toString())
+                                     .header(HttpHeaders.IF_NONE_MATCH, eTag);
+    }
+
+    private MvcResult perform(final RequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andReturn();
+    }
+}
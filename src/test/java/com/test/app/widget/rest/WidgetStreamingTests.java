@@ -0,0 +1,74 @@
+package com.test.app.widget.rest;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class WidgetStreamingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private WidgetController controller;
+
+    private final List<Widget> createdWidgets = new ArrayList<>();
+
+    @BeforeEach
+    public void createWidgets() {
+        // More widgets than one chunk of storage iteration
+        for (int i = 0; i < 1200; i++) {
+            createdWidgets.add(controller.create(new InputWidget(i, i * 2, null, 10, 20)));
+        }
+    }
+
+    @AfterEach
+    public void removeWidgets() {
+        createdWidgets.forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void streamingJsonArrayIsEqualToUsualResponseTest() throws Exception {
+        final String usual = mockMvc.perform(get("/widget/getAll"))
+                                    .andExpect(status().isOk())
+                                    .andReturn().getResponse().getContentAsString();
+        final String streamed = mockMvc.perform(get("/widget/getAll").param("stream", "true"))
+                                       .andExpect(status().isOk())
+                                       .andReturn().getResponse().getContentAsString();
+
+        assertThat(streamed).isEqualTo(usual);
+    }
+
+    @Test
+    public void ndjsonTest() throws Exception {
+        final String streamed = mockMvc.perform(get("/widget/getAll").accept(WidgetStreamWriter.APPLICATION_NDJSON_VALUE))
+                                       .andExpect(status().isOk())
+                                       .andReturn().getResponse().getContentAsString();
+        final String[] lines = streamed.split("\n");
+        final List<Widget> allWidgets = controller.getAll();
+
+        assertThat(streamed).endsWith("\n");
+        assertThat(lines).hasSize(allWidgets.size());
+        for (int i = 0; i < lines.length; i++) {
+            assertThat(lines[i]).startsWith("{").contains(allWidgets.get(i).getId().toString());
+        }
+        mockMvc.perform(get("/widget/getAll").accept(MediaType.APPLICATION_JSON))
+               .andExpect(status().isOk());
+    }
+}
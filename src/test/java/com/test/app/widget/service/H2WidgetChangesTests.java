@@ -0,0 +1,21 @@
+package com.test.app.widget.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Same scenarios as {@link WidgetChangesTests}, but for H2 storage with archive of change log
+ */
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.changeLog.maxChanges=8",
+        "widget.config.changeLog.maxShiftedWidgets=4",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2WidgetChangesTests"
+})
+class H2WidgetChangesTests extends WidgetChangesTests {
+
+    @Override
+    protected boolean isChangeLogArchived() {
+        return true;
+    }
+}
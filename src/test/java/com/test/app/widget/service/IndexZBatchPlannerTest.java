@@ -0,0 +1,183 @@
+package com.test.app.widget.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexZBatchPlannerTest {
+
+    @Test
+    public void sameResultAsSequentialCreatingTest() {
+        // Stored widgets on 5 and 6, batch widgets are requested on 5 and 6
+        final TreeMap<Integer, Widget> stored = new TreeMap<>();
+        final Widget stored5 = putWidget(stored, 5);
+        final Widget stored6 = putWidget(stored, 6);
+        final Widget first = new Widget(0, 0, 5, 1, 1);
+        final Widget second = new Widget(0, 0, 6, 1, 1);
+
+        final List<IndexZShift> shifts = IndexZBatchPlanner.plan(Arrays.asList(first, second), loader(stored), 6);
+        final Map<UUID, Integer> result = applyShifts(stored, shifts);
+
+        assertThat(first.getIndexZ()).isEqualTo(5);
+        assertThat(second.getIndexZ()).isEqualTo(6);
+        assertThat(result.get(stored5.getId())).isEqualTo(7);
+        assertThat(result.get(stored6.getId())).isEqualTo(8);
+        assertThat(shifts).hasSize(1);
+    }
+
+    @Test
+    public void shiftsAllUpperWidgetsTest() {
+        // Stored widgets on 5, 6 and 8: the gap on 7 doesn't stop shifting, as for single creating
+        final TreeMap<Integer, Widget> stored = new TreeMap<>();
+        final Widget stored5 = putWidget(stored, 5);
+        final Widget stored6 = putWidget(stored, 6);
+        final Widget stored8 = putWidget(stored, 8);
+        final Widget created = new Widget(0, 0, 5, 1, 1);
+        final Widget foreground = new Widget(0, 0, null, 1, 1);
+
+        final List<IndexZShift> shifts = IndexZBatchPlanner.plan(Arrays.asList(created, foreground), loader(stored), 8);
+        final Map<UUID, Integer> result = applyShifts(stored, shifts);
+
+        assertThat(created.getIndexZ()).isEqualTo(5);
+        assertThat(result.get(stored5.getId())).isEqualTo(6);
+        assertThat(result.get(stored6.getId())).isEqualTo(7);
+        assertThat(result.get(stored8.getId())).isEqualTo(9);
+        assertThat(foreground.getIndexZ()).isEqualTo(10);
+        assertThat(shifts).hasSize(1);
+    }
+
+    @Test
+    public void sameResultAsSequentialShiftingTest() {
+        final Random rand = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            final TreeMap<Integer, Widget> stored = new TreeMap<>();
+            for (int i = 0; i < 300; i++) {
+                final int indexZ = rand.nextInt(600);
+                if (!stored.containsKey(indexZ)) {
+                    putWidget(stored, indexZ);
+                }
+            }
+            final List<Widget> batch = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(new Widget(0, 0, rand.nextInt(650), 1, 1));
+            }
+            // Sequential placing in planner order, every collision shifts all widgets from it
+            final List<Widget> ordered = new ArrayList<>(batch);
+            ordered.sort(Comparator.comparing(Widget::getIndexZ));
+            final TreeMap<Integer, UUID> expected = new TreeMap<>();
+            stored.forEach((indexZ, widget) -> expected.put(indexZ, widget.getId()));
+            final Map<UUID, Integer> expectedBatch = new HashMap<>();
+            int top = Integer.MIN_VALUE;
+            for (final Widget widget : ordered) {
+                final int indexZ = Math.max(widget.getIndexZ(), top + 1);
+                if (expected.containsKey(indexZ)) {
+                    final TreeMap<Integer, UUID> upper = new TreeMap<>(expected.tailMap(indexZ, true));
+                    expected.keySet().removeAll(upper.keySet());
+                    upper.forEach((z, id) -> expected.put(z + 1, id));
+                }
+                expectedBatch.put(widget.getId(), indexZ);
+                top = indexZ;
+            }
+
+            final List<IndexZShift> shifts = IndexZBatchPlanner.plan(batch, loader(stored), stored.lastKey());
+            final Map<UUID, Integer> result = applyShifts(stored, shifts);
+
+            expected.forEach((indexZ, id) -> assertThat(result.get(id)).isEqualTo(indexZ));
+            batch.forEach(widget -> assertThat(widget.getIndexZ()).isEqualTo(expectedBatch.get(widget.getId())));
+            assertThat(shifts.size()).isLessThanOrEqualTo(batch.size());
+        }
+    }
+
+    @Test
+    public void randomBatchesTest() {
+        final Random rand = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            final TreeMap<Integer, Widget> stored = new TreeMap<>();
+            for (int i = 0; i < 300; i++) {
+                final int indexZ = rand.nextInt(600);
+                if (!stored.containsKey(indexZ)) {
+                    putWidget(stored, indexZ);
+                }
+            }
+            final List<Widget> batch = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(new Widget(0, 0, rand.nextInt(10) == 0 ? null : rand.nextInt(650), 1, 1));
+            }
+            final List<Integer> requested = batch.stream().map(Widget::getIndexZ).collect(Collectors.toList());
+            final List<UUID> storedOrder = stored.values().stream().map(Widget::getId).collect(Collectors.toList());
+
+            final List<IndexZShift> shifts = IndexZBatchPlanner.plan(batch, loader(stored), stored.lastKey());
+            final Map<UUID, Integer> result = applyShifts(stored, shifts);
+
+            // Z-indexes are unique
+            final Set<Integer> allIndexes = new HashSet<>(result.values());
+            batch.forEach(widget -> assertThat(allIndexes.add(widget.getIndexZ())).isTrue());
+            // Order of stored widgets is kept, and they are never moved down
+            assertThat(storedOrder.stream().sorted(Comparator.comparing(result::get)).collect(Collectors.toList()))
+                    .isEqualTo(storedOrder);
+            stored.forEach((indexZ, widget) -> assertThat(result.get(widget.getId())).isGreaterThanOrEqualTo(indexZ));
+            // Not duplicated requests are kept, foreground widgets are over all
+            final Set<Integer> placedIndexes = new HashSet<>(result.values());
+            for (int i = 0; i < batch.size(); i++) {
+                if (requested.get(i) != null) {
+                    placedIndexes.add(batch.get(i).getIndexZ());
+                }
+            }
+            final int maxPlacedIndexZ = Collections.max(placedIndexes);
+            for (int i = 0; i < batch.size(); i++) {
+                if (requested.get(i) == null) {
+                    assertThat(batch.get(i).getIndexZ()).isGreaterThan(maxPlacedIndexZ);
+                } else if (isLonelyRequest(requested, requested.get(i))) {
+                    assertThat(batch.get(i).getIndexZ()).isEqualTo(requested.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Request can't be moved by other batch widgets, if there are no equal or close lower requests
+     */
+    private boolean isLonelyRequest(final List<Integer> requested, final int indexZ) {
+        return Collections.frequency(requested, indexZ) == 1 &&
+               requested.stream().noneMatch(z -> z != null && z < indexZ && z >= indexZ - requested.size());
+    }
+
+    private Widget putWidget(final TreeMap<Integer, Widget> stored, final int indexZ) {
+        final Widget widget = new Widget(0, 0, indexZ, 1, 1);
+        stored.put(indexZ, widget);
+        return widget;
+    }
+
+    private BiFunction<Integer, Integer, List<Widget>> loader(final TreeMap<Integer, Widget> stored) {
+        return (afterIndexZ, size) -> stored.tailMap(afterIndexZ, false)
+                                            .values()
+                                            .stream()
+                                            .limit(size)
+                                            .collect(Collectors.toList());
+    }
+
+    /**
+     * Apply shifts in given order, checking that shifted range never reaches other stored widgets
+     *
+     * @return final Z-indexes of stored widgets
+     */
+    private Map<UUID, Integer> applyShifts(final TreeMap<Integer, Widget> stored, final List<IndexZShift> shifts) {
+        final TreeMap<Integer, UUID> current = new TreeMap<>();
+        stored.forEach((indexZ, widget) -> current.put(indexZ, widget.getId()));
+        for (final IndexZShift shift : shifts) {
+            final SortedMap<Integer, UUID> range =
+                    new TreeMap<>(current.subMap(shift.getFromIndexZ(), true, shift.getToIndexZ(), true));
+            final Integer above = current.higherKey(shift.getToIndexZ());
+            assertThat(above == null || above > shift.getToIndexZ() + shift.getIncrementValue()).isTrue();
+            current.keySet().removeAll(range.keySet());
+            range.forEach((indexZ, id) -> current.put(indexZ + shift.getIncrementValue(), id));
+        }
+        final Map<UUID, Integer> result = new HashMap<>();
+        current.forEach((indexZ, id) -> result.put(id, indexZ));
+        return result;
+    }
+}
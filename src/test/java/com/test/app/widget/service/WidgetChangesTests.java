@@ -0,0 +1,101 @@
+package com.test.app.widget.service;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "widget.config.changeLog.maxChanges=8",
+        "widget.config.changeLog.maxShiftedWidgets=4",
+        "widget.config.rateLimiting.enabled=false"
+})
+class WidgetChangesTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private WidgetService widgetService;
+
+    @AfterEach
+    public void removeWidgets() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void changesTest() {
+        final Widget removed = controller.create(new InputWidget(10, 10, 5, 10, 10));
+        final Widget shifted = controller.create(new InputWidget(10, 10, 10, 10, 10));
+        final Widget upper = controller.create(new InputWidget(10, 10, 20, 10, 10));
+        controller.create(new InputWidget(10, 10, 1, 10, 10));
+        final WidgetChanges before = controller.getChanges(widgetService.getVersions().getVersion(), null);
+        assertThat(before.isResyncRequired()).isFalse();
+        assertThat(before.getChanged()).isEmpty();
+
+        final Widget colliding = controller.create(new InputWidget(10, 10, 10, 10, 10));
+        controller.deleteById(removed.getId());
+
+        final WidgetChanges changes = controller.getChanges(before.getVersion(), before.getEpoch());
+        assertThat(changes.isResyncRequired()).isFalse();
+        assertThat(changes.getVersion()).isGreaterThan(before.getVersion());
+        // Widgets shifted by colliding one are changed too
+        assertThat(changes.getChanged()).extracting(Widget::getId)
+                                        .containsExactly(colliding.getId(), shifted.getId(), upper.getId());
+        assertThat(changes.getChanged()).extracting(Widget::getIndexZ).containsExactly(10, 11, 21);
+        assertThat(changes.getDeleted()).containsExactly(removed.getId());
+
+        final WidgetChanges after = controller.getChanges(changes.getVersion(), changes.getEpoch());
+        assertThat(after.getChanged()).isEmpty();
+        assertThat(after.getDeleted()).isEmpty();
+    }
+
+    @Test
+    public void resyncTest() {
+        final long since = widgetService.getVersions().getVersion();
+        final long epoch = widgetService.getVersions().getEpoch();
+        for (int i = 0; i < 12; i++) {
+            controller.create(new InputWidget(10, 10, null, 10, 10));
+        }
+
+        // Changes after version are evicted from in-memory change log
+        final WidgetChanges changes = controller.getChanges(since, epoch);
+        assertThat(changes.isResyncRequired()).isEqualTo(!isChangeLogArchived());
+        assertThat(changes.getChanged()).hasSize(isChangeLogArchived() ? 12 : 0);
+
+        assertThat(controller.getChanges(since, epoch - 1).isResyncRequired()).isTrue();
+        assertThat(controller.getChanges(changes.getVersion() + 1, epoch).isResyncRequired()).isTrue();
+    }
+
+    @Test
+    public void resyncForManyShiftedWidgetsTest() {
+        for (int indexZ = 1; indexZ <= 3; indexZ++) {
+            controller.create(new InputWidget(10, 10, indexZ, 10, 10));
+        }
+        final long epoch = widgetService.getVersions().getEpoch();
+        final long since = widgetService.getVersions().getVersion();
+        controller.create(new InputWidget(10, 10, 1, 10, 10));
+
+        // Four widgets from the lowest shifted Z-index are still returned by change feed
+        final WidgetChanges changes = controller.getChanges(since, epoch);
+        assertThat(changes.isResyncRequired()).isFalse();
+        assertThat(changes.getChanged()).extracting(Widget::getIndexZ).containsExactly(1, 2, 3, 4);
+
+        // Five widgets from the lowest shifted Z-index are more than change feed returns
+        controller.create(new InputWidget(10, 10, 1, 10, 10));
+        final WidgetChanges resync = controller.getChanges(since, epoch);
+        assertThat(resync.isResyncRequired()).isTrue();
+        assertThat(resync.getChanged()).isEmpty();
+        assertThat(resync.getVersion()).isEqualTo(widgetService.getVersions().getVersion());
+    }
+
+    /**
+     * Changes evicted from memory are available from storage
+     */
+    protected boolean isChangeLogArchived() {
+        return false;
+    }
+}
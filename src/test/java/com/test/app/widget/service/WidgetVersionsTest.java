@@ -0,0 +1,209 @@
+package com.test.app.widget.service;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.h2_storage.H2ChangeArchive;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WidgetVersionsTest {
+
+    @Test
+    public void versionsOfRemovedWidgetsAreBoundedTest() {
+        final ConfigProperties config = new ConfigProperties();
+        config.setH2storage(new ConfigProperties.StorageH2());
+        config.getChangeLog().setMaxChanges(100);
+        final WidgetVersions versions = new WidgetVersions(
+                config,
+                new H2ChangeArchive(config, null, null),
+                Collections.emptyList()
+        );
+        final Widget kept = new Widget(0, 0, 1, 10, 10);
+        versions.created(kept, false);
+        final Widget removed = new Widget(0, 0, 2, 10, 10);
+        versions.created(removed, false);
+        final long versionBeforeRemoving = versions.getWidgetVersion(removed.getId());
+        versions.removed(removed.getId(), null);
+
+        for (int i = 0; i < 10_000; i++) {
+            final Widget widget = new Widget(0, 0, 3, 10, 10);
+            versions.created(widget, false);
+            versions.removed(widget.getId(), null);
+        }
+
+        // Versions of removed widgets are forgotten with their changes, live widgets keep their own version
+        assertThat(versions.getWidgetVersionsCount()).isLessThanOrEqualTo(101);
+        assertThat(versions.getWidgetVersion(kept.getId())).isEqualTo(1);
+        assertThat(versions.getWidgetVersion(removed.getId())).isGreaterThan(versionBeforeRemoving);
+    }
+
+    @Test
+    public void changeLogIsReadWhileEvictedChangesAreArchivedTest() throws Exception {
+        final ConfigProperties config = new ConfigProperties();
+        config.getChangeLog().setMaxChanges(8);
+        final CountDownLatch appending = new CountDownLatch(1);
+        final CountDownLatch appended = new CountDownLatch(1);
+        final List<WidgetChange> archive = new ArrayList<>();
+        final WidgetVersions versions = new WidgetVersions(
+                config,
+                new WidgetChangeArchive() {
+                    @Override
+                    public boolean isEnabled() {
+                        return true;
+                    }
+
+                    @Override
+                    public void append(final long epoch, final List<WidgetChange> changes) {
+                        appending.countDown();
+                        try {
+                            appended.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        synchronized (archive) {
+                            archive.addAll(changes);
+                        }
+                    }
+
+                    @Override
+                    public List<WidgetChange> loadAfter(final long epoch, final long version, final long upToVersion) {
+                        synchronized (archive) {
+                            return archive.stream()
+                                          .filter(change -> change.getVersion() > version)
+                                          .filter(change -> change.getVersion() <= upToVersion)
+                                          .collect(Collectors.toList());
+                        }
+                    }
+                },
+                Collections.emptyList()
+        );
+        for (int i = 0; i < 8; i++) {
+            versions.created(new Widget(0, 0, i, 10, 10), false);
+        }
+        final CompletableFuture<Void> evicting = CompletableFuture.runAsync(
+                () -> versions.created(new Widget(0, 0, 8, 10, 10), false)
+        );
+        assertThat(appending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Archive is written outside of lock of log, evicted changes are still read from memory meanwhile
+        final Map.Entry<Long, List<WidgetChange>> changes = versions.loadChangesAfter(0);
+        assertThat(changes.getKey()).isEqualTo(9);
+        assertThat(changes.getValue()).extracting(WidgetChange::getVersion)
+                                      .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+        appended.countDown();
+        evicting.get(5, TimeUnit.SECONDS);
+
+        assertThat(versions.loadChangesAfter(0).getValue()).extracting(WidgetChange::getVersion)
+                                                           .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L);
+    }
+
+    @Test
+    public void archiveIsReadOutsideOfChangeLogLockTest() throws Exception {
+        final ConfigProperties config = new ConfigProperties();
+        config.getChangeLog().setMaxChanges(4);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch read = new CountDownLatch(1);
+        final List<WidgetChange> archive = new ArrayList<>();
+        final WidgetVersions versions = new WidgetVersions(
+                config,
+                new WidgetChangeArchive() {
+                    @Override
+                    public boolean isEnabled() {
+                        return true;
+                    }
+
+                    @Override
+                    public synchronized void append(final long epoch, final List<WidgetChange> changes) {
+                        archive.addAll(changes);
+                    }
+
+                    @Override
+                    public List<WidgetChange> loadAfter(final long epoch, final long version, final long upToVersion) {
+                        reading.countDown();
+                        try {
+                            read.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        synchronized (this) {
+                            return archive.stream()
+                                          .filter(change -> change.getVersion() > version)
+                                          .filter(change -> change.getVersion() <= upToVersion)
+                                          .collect(Collectors.toList());
+                        }
+                    }
+                },
+                Collections.emptyList()
+        );
+        for (int i = 0; i < 5; i++) {
+            versions.created(new Widget(0, 0, i, 10, 10), false);
+        }
+        final CompletableFuture<Map.Entry<Long, List<WidgetChange>>> loading = CompletableFuture.supplyAsync(
+                () -> versions.loadChangesAfter(0)
+        );
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Modifications evict and archive changes meanwhile, feed is still made of the copied state of log
+        for (int i = 5; i < 12; i++) {
+            final Widget widget = new Widget(0, 0, i, 10, 10);
+            CompletableFuture.runAsync(() -> versions.created(widget, false)).get(1, TimeUnit.SECONDS);
+        }
+        read.countDown();
+
+        final Map.Entry<Long, List<WidgetChange>> changes = loading.get(5, TimeUnit.SECONDS);
+        assertThat(changes.getKey()).isEqualTo(5);
+        assertThat(changes.getValue()).extracting(WidgetChange::getVersion).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    public void eventsArePublishedInVersionOrderOutsideOfChangeLogLockTest() throws Exception {
+        final CountDownLatch receiving = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        final List<Long> publishedVersions = new ArrayList<>();
+        final ConfigProperties config = new ConfigProperties();
+        config.setH2storage(new ConfigProperties.StorageH2());
+        final WidgetVersions versions = new WidgetVersions(
+                config,
+                new H2ChangeArchive(config, null, null),
+                Collections.singletonList(new WidgetEventListener() {
+                    @Override
+                    public boolean isListening() {
+                        return true;
+                    }
+
+                    @Override
+                    public void modified(final List<WidgetEvent> events) {
+                        receiving.countDown();
+                        try {
+                            received.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        events.forEach(event -> publishedVersions.add(event.getVersion()));
+                    }
+                })
+        );
+        final CompletableFuture<Void> publishing = CompletableFuture.runAsync(
+                () -> versions.created(new Widget(0, 0, 1, 10, 10), false)
+        );
+        assertThat(receiving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Slow listener holds neither change log nor other modifications, their events are published after its ones
+        CompletableFuture.runAsync(() -> versions.created(new Widget(0, 0, 2, 10, 10), false))
+                         .get(1, TimeUnit.SECONDS);
+        assertThat(versions.loadChangesAfter(0).getKey()).isEqualTo(2);
+        received.countDown();
+        publishing.get(5, TimeUnit.SECONDS);
+
+        assertThat(publishedVersions).containsExactly(1L, 2L);
+    }
+}
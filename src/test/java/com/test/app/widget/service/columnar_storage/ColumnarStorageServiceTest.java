@@ -0,0 +1,152 @@
+package com.test.app.widget.service.columnar_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetEvent;
+import com.test.app.widget.service.WidgetEventListener;
+import com.test.app.widget.service.WidgetVersions;
+import com.test.app.widget.service.h2_storage.H2ChangeArchive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarStorageServiceTest {
+    private static final int THREADS = 8;
+    private static final int WRITES_PER_THREAD = 250;
+
+    private final ColumnarStorageRepository repository = new ColumnarStorageRepository();
+    /**
+     * Widgets rebuilt from events: created and updated widgets are put, previous widgets must be equal to put ones
+     */
+    private final Map<UUID, Widget> replayed = new HashMap<>();
+    private final List<String> replayErrors = new ArrayList<>();
+    private final ColumnarStorageService service = new ColumnarStorageService(
+            repository,
+            new WidgetMetrics(new SimpleMeterRegistry()),
+            new WidgetVersions(
+                    getConfig(),
+                    new H2ChangeArchive(getConfig(), null, null),
+                    Collections.singletonList(new ReplayingListener())
+            )
+    );
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCollidingCreatingTest() throws Exception {
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    service.create(new InputWidget(1, 1, 5, 10, 10));
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+
+        // Recount and creating are one modification, so colliding writes never get the same Z-index
+        final List<Widget> all = repository.loadAllSortedByIndexZ();
+        assertThat(all).hasSize(THREADS * WRITES_PER_THREAD);
+        assertThat(all.stream().map(Widget::getIndexZ).distinct().count()).isEqualTo(all.size());
+        assertThat(all.get(0).getIndexZ()).isEqualTo(5);
+    }
+
+    @Test
+    public void eventsFollowModificationsIntoTransactionsTest() throws Exception {
+        final List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            widgets.add(service.create(new InputWidget(0, 0, null, 10, 10)));
+        }
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            final Random rand = new Random(thread);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    final Widget widget = widgets.get(rand.nextInt(widgets.size()));
+                    // Caller transaction is completed after storage write, concurrent writers are running meanwhile
+                    TransactionSynchronizationManager.initSynchronization();
+                    try {
+                        service.update(new Widget(
+                                widget.getId(),
+                                rand.nextInt(1000),
+                                rand.nextInt(1000),
+                                widget.getIndexZ(),
+                                10,
+                                10,
+                                null
+                        ));
+                        Thread.yield();
+                        TransactionSynchronizationUtils.triggerAfterCommit();
+                    } finally {
+                        TransactionSynchronizationManager.clearSynchronization();
+                    }
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+
+        synchronized (replayed) {
+            assertThat(replayErrors).isEmpty();
+            for (final Widget widget : repository.loadAllSortedByIndexZ()) {
+                assertThat(replayed.get(widget.getId()).getCoordinateX()).isEqualTo(widget.getCoordinateX());
+                assertThat(replayed.get(widget.getId()).getCoordinateY()).isEqualTo(widget.getCoordinateY());
+            }
+        }
+    }
+
+    private class ReplayingListener implements WidgetEventListener {
+        @Override
+        public boolean isListening() {
+            return true;
+        }
+
+        @Override
+        public void modified(final List<WidgetEvent> events) {
+            synchronized (replayed) {
+                for (final WidgetEvent event : events) {
+                    if (event.getType() == WidgetEvent.Type.UPDATED) {
+                        final Widget put = replayed.get(event.getId());
+                        if (put.getCoordinateX() != event.getPrevious().getCoordinateX() ||
+                            put.getCoordinateY() != event.getPrevious().getCoordinateY()) {
+                            replayErrors.add("Previous widget isn't equal to replayed one at version " + event.getVersion());
+                        }
+                    }
+                    if (event.getWidget() != null) {
+                        replayed.put(event.getId(), event.getWidget());
+                    }
+                }
+            }
+        }
+    }
+
+    private static ConfigProperties getConfig() {
+        final ConfigProperties config = new ConfigProperties();
+        config.setH2storage(new ConfigProperties.StorageH2());
+        return config;
+    }
+}
@@ -0,0 +1,193 @@
+package com.test.app.widget.service.columnar_storage;
+
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WidgetColumnsTest {
+
+    @Test
+    public void searchContainedIsEqualToFullScanTest() {
+        final Random rand = new Random(42);
+        final WidgetColumns columns = new WidgetColumns();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+
+        for (int i = 0; i < 3000; i++) {
+            final Widget widget = getRandomWidget(rand, i);
+            widgets.put(widget.getId(), widget);
+            columns.put(widget);
+        }
+        // Move part of widgets and remove another part, removing moves last slots into holes
+        final List<UUID> ids = new ArrayList<>(widgets.keySet());
+        for (int i = 0; i < 1000; i++) {
+            final UUID id = ids.get(i);
+            final Widget old = widgets.get(id);
+            final Widget moved = new Widget(
+                    id,
+                    old.getCoordinateX() + rand.nextInt(50),
+                    old.getCoordinateY() - rand.nextInt(50),
+                    old.getIndexZ(),
+                    old.getWidth(),
+                    old.getHeight(),
+                    old.getLastModificationDateTime()
+            );
+            widgets.put(id, moved);
+            columns.put(moved);
+        }
+        for (int i = 1000; i < 2000; i++) {
+            widgets.remove(ids.get(i));
+            assertThat(columns.remove(ids.get(i))).isTrue();
+        }
+        assertThat(columns.remove(ids.get(1000))).isFalse();
+        assertThat(columns.size()).isEqualTo(widgets.size());
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+
+            final Set<UUID> expected = widgets.values()
+                                              .stream()
+                                              .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                                              .map(Widget::getId)
+                                              .collect(Collectors.toSet());
+            assertThat(Arrays.stream(columns.searchContained(leftX, leftY, rightX, rightY))
+                             .mapToObj(columns::idAt)
+                             .collect(Collectors.toSet())).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void materializedWidgetIsEqualToStoredTest() {
+        final Random rand = new Random(7);
+        final WidgetColumns columns = new WidgetColumns();
+        final List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final Widget widget = getRandomWidget(rand, 2 * i);
+            widgets.add(widget);
+            columns.put(widget);
+        }
+        // Shifted range fills gaps without jumping over other Z-indexes
+        assertThat(columns.incrementIndexZ(1000, 1998, 1)).isEqualTo(500);
+
+        for (int i = 0; i < widgets.size(); i++) {
+            final Widget widget = widgets.get(i);
+            final Widget materialized = columns.toWidget(columns.slotOf(widget.getId()));
+            assertThat(materialized).isEqualToIgnoringGivenFields(widget, "indexZ");
+            assertThat(materialized.getIndexZ()).isEqualTo(i >= 500 && i <= 999 ? 2 * i + 1 : 2 * i);
+            assertThat(columns.slotOfIndexZ(materialized.getIndexZ())).isEqualTo(columns.slotOf(widget.getId()));
+        }
+        assertThat(columns.slotOf(UUID.randomUUID())).isEqualTo(-1);
+        assertThat(columns.slotOfIndexZ(1000)).isEqualTo(-1);
+    }
+
+    @Test
+    public void indexZOrderIsEqualToSortedTest() {
+        final Random rand = new Random(11);
+        final WidgetColumns columns = new WidgetColumns();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+        final Set<Integer> usedIndexZ = new HashSet<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            final int action = rand.nextInt(3);
+            if (action == 0 && !widgets.isEmpty()) {
+                final UUID id = widgets.keySet().iterator().next();
+                usedIndexZ.remove(widgets.remove(id).getIndexZ());
+                assertThat(columns.remove(id)).isTrue();
+                continue;
+            }
+            final int indexZ = nextFreeIndexZ(rand, usedIndexZ);
+            if (action == 1 && !widgets.isEmpty()) {
+                // Widget is moved on new Z-index
+                final Widget old = widgets.values().iterator().next();
+                usedIndexZ.remove(old.getIndexZ());
+                final Widget moved = new Widget(
+                        old.getId(),
+                        old.getCoordinateX(),
+                        old.getCoordinateY(),
+                        indexZ,
+                        old.getWidth(),
+                        old.getHeight(),
+                        old.getLastModificationDateTime()
+                );
+                widgets.put(moved.getId(), moved);
+                columns.put(moved);
+                continue;
+            }
+            final Widget widget = getRandomWidget(rand, indexZ);
+            widgets.put(widget.getId(), widget);
+            columns.put(widget);
+        }
+
+        final List<UUID> expected = widgets.values()
+                                           .stream()
+                                           .sorted(Comparator.comparing(Widget::getIndexZ))
+                                           .map(Widget::getId)
+                                           .collect(Collectors.toList());
+        assertThat(columns.size()).isEqualTo(expected.size());
+        final List<UUID> ordered = new ArrayList<>();
+        for (int position = 0; position < columns.size(); position++) {
+            ordered.add(columns.idAt(columns.slotAtPosition(position)));
+        }
+        assertThat(ordered).isEqualTo(expected);
+        widgets.values().forEach(widget -> {
+            assertThat(columns.slotOfIndexZ(widget.getIndexZ())).isEqualTo(columns.slotOf(widget.getId()));
+            assertThat(columns.toWidget(columns.slotOf(widget.getId())).getIndexZ()).isEqualTo(widget.getIndexZ());
+        });
+    }
+
+    @Test
+    public void slotTableIsEqualToMapTest() {
+        final Random rand = new Random(3);
+        final WidgetSlotTable table = new WidgetSlotTable();
+        final Map<UUID, Integer> expected = new HashMap<>();
+        final List<UUID> ids = new ArrayList<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            if (rand.nextInt(3) == 0 && !ids.isEmpty()) {
+                // Removing shifts probes back, so following keys must be still found
+                final UUID id = ids.remove(rand.nextInt(ids.size()));
+                assertThat(table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits()))
+                        .isEqualTo(expected.remove(id));
+                assertThat(table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits()))
+                        .isEqualTo(WidgetSlotTable.ABSENT);
+                continue;
+            }
+            // Ids with the same half, they must not collide into one key
+            final UUID id = rand.nextBoolean() ? new UUID(rand.nextInt(8), rand.nextLong()) : UUID.randomUUID();
+            if (expected.put(id, i) == null) {
+                ids.add(id);
+            }
+            table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i);
+        }
+
+        assertThat(table.size()).isEqualTo(expected.size());
+        expected.forEach((id, slot) -> assertThat(table.get(id.getMostSignificantBits(), id.getLeastSignificantBits()))
+                .isEqualTo(slot));
+        assertThat(table.get(0, 0)).isEqualTo(WidgetSlotTable.ABSENT);
+    }
+
+    private int nextFreeIndexZ(final Random rand, final Set<Integer> usedIndexZ) {
+        int indexZ = rand.nextInt(100_000) - 50_000;
+        while (!usedIndexZ.add(indexZ)) {
+            indexZ = rand.nextInt(100_000) - 50_000;
+        }
+        return indexZ;
+    }
+
+    private Widget getRandomWidget(final Random rand, final int indexZ) {
+        return new Widget(
+                rand.nextInt(1500),
+                rand.nextInt(1500),
+                indexZ,
+                rand.nextInt(200),
+                rand.nextInt(200)
+        );
+    }
+}
@@ -0,0 +1,111 @@
+package com.test.app.widget.service.h2_storage;
+
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.h2storage.cache.enabled=false",
+        "widget.config.h2storage.indexZOrder.keyGap=1024",
+        "widget.config.h2storage.indexZOrder.maxPendingShifts=4",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2IndexZOrderTests"
+})
+class H2IndexZOrderTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void clean() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+        // Pending shifts of removed widgets would be applied in background during the next test
+        jdbcTemplate.update("DELETE FROM Z_SHIFTS");
+    }
+
+    @Test
+    public void collidingCreatingDoesNotRewriteUpperWidgetsTest() {
+        for (int i = 0; i < 3; i++) {
+            controller.create(new InputWidget(10, 10, i, 10, 10));
+        }
+        final List<Long> basesBefore = jdbcTemplate.queryForList("SELECT Z_BASE FROM WIDGETS ORDER BY ORDER_KEY", Long.class);
+        final double shiftedBefore = getShiftedSummary().totalAmount();
+
+        final Widget created = controller.create(new InputWidget(10, 10, 0, 10, 10));
+
+        assertThat(controller.getAll()).extracting(Widget::getIndexZ).containsExactly(0, 1, 2, 3);
+        assertThat(controller.getAll().get(0).getId()).isEqualTo(created.getId());
+        // Only new row is written, upper widgets are shifted by one pending shift
+        assertThat(jdbcTemplate.queryForList("SELECT Z_BASE FROM WIDGETS ORDER BY ORDER_KEY", Long.class))
+                .containsExactly(0L, basesBefore.get(0), basesBefore.get(1), basesBefore.get(2));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Z_SHIFTS", Integer.class)).isEqualTo(1);
+        // Lazily shifted widgets are counted anyway
+        assertThat(getShiftedSummary().totalAmount()).isEqualTo(shiftedBefore + 3);
+    }
+
+    @Test
+    public void renormalizationKeepsIndexesZTest() throws InterruptedException {
+        final Random rand = new Random(11);
+        // Expected Z-order: colliding widget and all upper ones are shifted by one
+        final List<UUID> expectedIds = new ArrayList<>();
+        final List<Integer> expectedIndexesZ = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Repeated Z-indexes exhaust gaps of the same region
+            final int indexZ = i % 3 == 0 ? 50 : rand.nextInt(200);
+            int position = 0;
+            while (position < expectedIndexesZ.size() && expectedIndexesZ.get(position) < indexZ) {
+                position++;
+            }
+            if (position < expectedIndexesZ.size() && expectedIndexesZ.get(position) == indexZ) {
+                for (int upper = position; upper < expectedIndexesZ.size(); upper++) {
+                    expectedIndexesZ.set(upper, expectedIndexesZ.get(upper) + 1);
+                }
+            }
+            expectedIds.add(position, controller.create(new InputWidget(10, 10, indexZ, 10, 10)).getId());
+            expectedIndexesZ.add(position, indexZ);
+        }
+
+        // Renormalization is done in background
+        for (int i = 0; i < 100 && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Z_SHIFTS", Integer.class) >= 4; i++) {
+            Thread.sleep(50);
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Z_SHIFTS", Integer.class)).isLessThan(4);
+
+        final List<Widget> all = controller.getAll();
+        assertThat(all).extracting(Widget::getId).containsExactlyElementsOf(expectedIds);
+        assertThat(all).extracting(Widget::getIndexZ).containsExactlyElementsOf(expectedIndexesZ);
+        assertThat(controller.getPagingAfterIndexZ(expectedIndexesZ.get(99), 10))
+                .extracting(Widget::getId)
+                .containsExactlyElementsOf(expectedIds.subList(100, 110));
+        assertThat(controller.getById(expectedIds.get(150)).getIndexZ()).isEqualTo(expectedIndexesZ.get(150));
+        assertThat(jdbcTemplate.queryForList("SELECT ORDER_KEY FROM WIDGETS ORDER BY ORDER_KEY", Long.class)
+                               .stream()
+                               .distinct()
+                               .collect(Collectors.toList())).hasSize(300);
+    }
+
+    private DistributionSummary getShiftedSummary() {
+        return meterRegistry.get("widget.indexz.shifted").tag("backend", WidgetMetrics.BACKEND_H2).summary();
+    }
+}
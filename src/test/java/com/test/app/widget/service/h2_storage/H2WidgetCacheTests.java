@@ -0,0 +1,106 @@
+package com.test.app.widget.service.h2_storage;
+
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2WidgetCacheTests"
+})
+class H2WidgetCacheTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void cachedWidgetsAreInvalidatedByModificationsTest() {
+        final Widget first = controller.create(new InputWidget(50, 50, 2_000, 10, 10));
+        final Widget second = controller.create(new InputWidget(60, 60, 2_001, 10, 10));
+        final double hitsBefore = getCount("widget.h2.byId", "hit");
+
+        assertThat(controller.getById(first.getId()).getIndexZ()).isEqualTo(2_000);
+        assertThat(controller.getById(first.getId()).getIndexZ()).isEqualTo(2_000);
+        assertThat(controller.getById(second.getId()).getIndexZ()).isEqualTo(2_001);
+        assertThat(getCount("widget.h2.byId", "hit")).isEqualTo(hitsBefore + 1);
+
+        // Both cached widgets are shifted by creating
+        final Widget third = controller.create(new InputWidget(70, 70, 2_000, 10, 10));
+        assertThat(controller.getById(first.getId()).getIndexZ()).isEqualTo(2_001);
+        assertThat(controller.getById(second.getId()).getIndexZ()).isEqualTo(2_002);
+
+        controller.update(new Widget(
+                first.getId(),
+                55,
+                55,
+                2_001,
+                10,
+                10,
+                first.getLastModificationDateTime()
+        ));
+        assertThat(controller.getById(first.getId()).getCoordinateX()).isEqualTo(55);
+
+        controller.deleteById(second.getId());
+        assertThatThrownBy(() -> controller.getById(second.getId())).isInstanceOf(RuntimeException.class);
+
+        controller.deleteById(first.getId());
+        controller.deleteById(third.getId());
+    }
+
+    @Test
+    public void cachedPagesAreInvalidatedByModificationsTest() {
+        final Widget first = controller.create(new InputWidget(10, 10, 5_000, 10, 10));
+        final double hitsBefore = getCount("widget.h2.pages", "hit");
+
+        assertThat(getIndexesZ(controller.getPagingAfterIndexZ(4_999, 10))).containsExactly(5_000);
+        assertThat(getIndexesZ(controller.getPagingAfterIndexZ(4_999, 10))).containsExactly(5_000);
+        assertThat(getCount("widget.h2.pages", "hit")).isEqualTo(hitsBefore + 1);
+
+        final Widget second = controller.create(new InputWidget(20, 20, 5_000, 10, 10));
+        assertThat(getIndexesZ(controller.getPagingAfterIndexZ(4_999, 10))).containsExactly(5_000, 5_001);
+        assertThat(controller.getAll()).extracting(Widget::getId).contains(first.getId(), second.getId());
+
+        Arrays.asList(first, second).forEach(widget -> controller.deleteById(widget.getId()));
+        assertThat(controller.getPagingAfterIndexZ(4_999, 10)).isEmpty();
+    }
+
+    @Test
+    public void widgetsOutOfShiftedRangeStayCachedTest() {
+        final Widget lower = controller.create(new InputWidget(50, 50, 3_000, 10, 10));
+        final Widget upper = controller.create(new InputWidget(60, 60, 3_001, 10, 10));
+        controller.getById(lower.getId());
+        controller.getById(upper.getId());
+
+        final Widget shifting = controller.create(new InputWidget(70, 70, 3_001, 10, 10));
+        final double hitsBefore = getCount("widget.h2.byId", "hit");
+        assertThat(controller.getById(lower.getId()).getIndexZ()).isEqualTo(3_000);
+        assertThat(getCount("widget.h2.byId", "hit")).isEqualTo(hitsBefore + 1);
+        // Shifted widget is reloaded after checking by shift log
+        assertThat(controller.getById(upper.getId()).getIndexZ()).isEqualTo(3_002);
+        assertThat(controller.getById(upper.getId()).getIndexZ()).isEqualTo(3_002);
+
+        Arrays.asList(lower, upper, shifting).forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    private double getCount(final String cache, final String result) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result).functionCounter().count();
+    }
+
+    private List<Integer> getIndexesZ(final List<Widget> widgets) {
+        return widgets.stream().map(Widget::getIndexZ).collect(Collectors.toList());
+    }
+}
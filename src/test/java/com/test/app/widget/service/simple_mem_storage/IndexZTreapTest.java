@@ -0,0 +1,138 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexZTreapTest {
+
+    @Test
+    public void operationsAreEqualToSortedMapTest() {
+        final Random rand = new Random(42);
+        final IndexZTreap treap = new IndexZTreap();
+        // key: Z-index, value: widgetId
+        final TreeMap<Integer, UUID> expected = new TreeMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            final int operation = rand.nextInt(10);
+            if (operation < 5 || expected.isEmpty()) {
+                final int indexZ = rand.nextInt(2000);
+                if (!expected.containsKey(indexZ)) {
+                    final UUID id = UUID.randomUUID();
+                    expected.put(indexZ, id);
+                    treap.put(id, indexZ);
+                }
+            } else if (operation < 7) {
+                final UUID id = randomValue(expected, rand);
+                expected.values().remove(id);
+                treap.remove(id);
+            } else if (operation < 8) {
+                // Move widget on free Z-index
+                final UUID id = randomValue(expected, rand);
+                final int indexZ = rand.nextInt(2000);
+                if (!expected.containsKey(indexZ)) {
+                    expected.values().remove(id);
+                    expected.put(indexZ, id);
+                    treap.put(id, indexZ);
+                }
+            } else if (operation < 9) {
+                // Shift range into the gap above it
+                final int fromIndexZ = rand.nextInt(2000);
+                final Integer above = expected.higherKey(fromIndexZ + 10);
+                final int toIndexZ = fromIndexZ + 10;
+                final int increment = above == null ? 5 : above - toIndexZ;
+                if (increment > 1) {
+                    final SortedMap<Integer, UUID> shifted = new TreeMap<>(expected.subMap(fromIndexZ, true, toIndexZ, true));
+                    expected.keySet().removeAll(shifted.keySet());
+                    shifted.forEach((indexZ, id) -> expected.put(indexZ + increment - 1, id));
+
+                    assertThat(treap.incrementRange(fromIndexZ, toIndexZ, increment - 1)).isEqualTo(shifted.size());
+                }
+            } else {
+                final int fromIndexZ = rand.nextInt(2000);
+                final SortedMap<Integer, UUID> shifted = new TreeMap<>(expected.tailMap(fromIndexZ));
+                expected.keySet().removeAll(shifted.keySet());
+                shifted.forEach((indexZ, id) -> expected.put(indexZ + 3, id));
+
+                assertThat(treap.incrementAllBiggerOrEquals(fromIndexZ, 3)).isEqualTo(shifted.size());
+            }
+        }
+
+        assertThat(treap.size()).isEqualTo(expected.size());
+        assertThat(treap.maxIndexZ()).isEqualTo(expected.lastKey());
+        expected.forEach((indexZ, id) -> {
+            assertThat(treap.indexZOf(id)).isEqualTo(indexZ);
+            assertThat(treap.findByIndexZ(indexZ)).isEqualTo(id);
+        });
+        assertThat(toMap(treap.loadAscendingFromPosition(0, Integer.MAX_VALUE))).isEqualTo(expected);
+
+        final List<Map.Entry<Integer, UUID>> page = treap.loadAscendingFromPosition(100, 50);
+        assertThat(toMap(page)).isEqualTo(
+                expected.entrySet()
+                        .stream()
+                        .skip(100)
+                        .limit(50)
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+        );
+
+        final int cursor = expected.firstKey() + 500;
+        assertThat(toMap(treap.loadAscendingAfterIndexZ(cursor, 50))).isEqualTo(
+                expected.tailMap(cursor, false)
+                        .entrySet()
+                        .stream()
+                        .limit(50)
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+        );
+    }
+
+    @Test
+    public void loadAscendingIsEqualToPuttingTest() {
+        final Random rand = new Random(7);
+        final TreeMap<Integer, UUID> expected = new TreeMap<>();
+        for (int i = 0; i < 3000; i++) {
+            expected.put(rand.nextInt(100_000), UUID.randomUUID());
+        }
+        final IndexZTreap treap = new IndexZTreap();
+        treap.loadAscending(new ArrayList<>(expected.entrySet()));
+
+        assertThat(treap.size()).isEqualTo(expected.size());
+        assertThat(treap.minIndexZ()).isEqualTo(expected.firstKey());
+        assertThat(toMap(treap.loadAscendingFromPosition(0, Integer.MAX_VALUE))).isEqualTo(expected);
+
+        // Loaded tree is usual tree for following modifications
+        final Integer middle = new ArrayList<>(expected.keySet()).get(expected.size() / 2);
+        treap.remove(expected.remove(middle));
+        final SortedMap<Integer, UUID> shifted = new TreeMap<>(expected.tailMap(middle));
+        expected.keySet().removeAll(shifted.keySet());
+        shifted.forEach((indexZ, id) -> expected.put(indexZ + 2, id));
+        assertThat(treap.incrementAllBiggerOrEquals(middle, 2)).isEqualTo(shifted.size());
+        expected.forEach((indexZ, id) -> assertThat(treap.indexZOf(id)).isEqualTo(indexZ));
+        assertThat(toMap(treap.loadAscendingAfterIndexZ(middle, 100)))
+                .isEqualTo(expected.tailMap(middle, false)
+                                   .entrySet()
+                                   .stream()
+                                   .limit(100)
+                                   .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+
+    @Test
+    public void emptyTreapTest() {
+        final IndexZTreap treap = new IndexZTreap();
+        assertThat(treap.maxIndexZ()).isNull();
+        assertThat(treap.findByIndexZ(1)).isNull();
+        assertThat(treap.incrementAllBiggerOrEquals(1, 1)).isZero();
+        assertThat(treap.loadAscendingFromPosition(0, 10)).isEmpty();
+        assertThat(treap.loadAscendingAfterIndexZ(0, 10)).isEmpty();
+    }
+
+    private UUID randomValue(final Map<Integer, UUID> map, final Random rand) {
+        return new ArrayList<>(map.values()).get(rand.nextInt(map.size()));
+    }
+
+    private Map<Integer, UUID> toMap(final List<Map.Entry<Integer, UUID>> entries) {
+        return entries.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+}
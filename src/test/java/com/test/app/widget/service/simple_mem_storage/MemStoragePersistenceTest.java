@@ -0,0 +1,200 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.service.Widget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemStoragePersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void storageIsRecoveredFromSnapshotAndLogTest() throws IOException {
+        final Random rand = new Random(42);
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        final MemStoragePersistence persistence = new MemStoragePersistence(getConfig(), repository, writeAheadLog);
+        persistence.start();
+
+        final List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(repository.create(getRandomWidget(rand, i * 2)).getId());
+        }
+        persistence.checkpoint();
+
+        // Modifications after snapshot are recovered from log
+        repository.incrementAllWidgetsZIndexesBiggerOrEqualsThis(100, 1);
+        final Widget moved = repository.loadById(ids.get(0));
+        repository.update(new Widget(
+                moved.getId(),
+                moved.getCoordinateX() + 10,
+                moved.getCoordinateY(),
+                1001,
+                moved.getWidth(),
+                moved.getHeight(),
+                moved.getLastModificationDateTime()
+        ));
+        repository.removeById(ids.get(1));
+        repository.applyBatch(
+                Arrays.asList(getRandomWidget(rand, 4), getRandomWidget(rand, null)),
+                Collections.singletonList(repository.loadById(ids.get(10))),
+                Collections.singletonList(ids.get(2))
+        );
+        final List<Widget> expected = repository.loadAllSortedByIndexZ();
+        final long expectedVersion = repository.getVersion();
+        // Crash: the last snapshot isn't taken, all acknowledged modifications are into log
+        writeAheadLog.close();
+
+        final SimpleMemStorageRepository recovered = recover();
+        assertThat(recovered.getVersion()).isEqualTo(expectedVersion);
+        assertThat(recovered.loadAllSortedByIndexZ()).usingFieldByFieldElementComparator().isEqualTo(expected);
+        assertThat(recovered.loadBySelectedArea(0, 0, 500, 500))
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(repository.loadBySelectedArea(0, 0, 500, 500));
+    }
+
+    @Test
+    public void batchesOfMovedWidgetsAreRecoveredTest() throws IOException {
+        final Random rand = new Random(11);
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        new MemStoragePersistence(getConfig(), repository, writeAheadLog).start();
+        for (int i = 0; i < 100; i++) {
+            repository.create(getRandomWidget(rand, i));
+        }
+        // Updated widgets are moved onto occupied Z-indexes, so batches shift widgets around their old places
+        for (int i = 0; i < 20; i++) {
+            final List<Widget> widgets = repository.loadAllSortedByIndexZ();
+            final List<Widget> updated = new ArrayList<>();
+            final Set<Integer> indexesZ = new HashSet<>();
+            while (updated.size() < 3) {
+                final Widget widget = widgets.get(rand.nextInt(widgets.size()));
+                final int indexZ = widgets.get(rand.nextInt(widgets.size())).getIndexZ();
+                if (updated.stream().noneMatch(w -> w.getId().equals(widget.getId())) && indexesZ.add(indexZ)) {
+                    widget.setIndexZ(indexZ);
+                    updated.add(widget);
+                }
+            }
+            repository.applyBatch(Collections.singletonList(getRandomWidget(rand, null)), updated, Collections.emptyList());
+        }
+        final List<Widget> expected = repository.loadAllSortedByIndexZ();
+        writeAheadLog.close();
+
+        final SimpleMemStorageRepository recovered = recover();
+        assertThat(recovered.loadAllSortedByIndexZ()).usingFieldByFieldElementComparator().isEqualTo(expected);
+        assertThat(recovered.loadTopAtPoint(250, 250, 1000))
+                .usingFieldByFieldElementComparator()
+                .isEqualTo(repository.loadTopAtPoint(250, 250, 1000));
+    }
+
+    @Test
+    public void incompleteLogTailIsIgnoredTest() throws IOException {
+        final Random rand = new Random(7);
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        new MemStoragePersistence(getConfig(), repository, writeAheadLog).start();
+        for (int i = 0; i < 50; i++) {
+            repository.create(getRandomWidget(rand, i));
+        }
+        final List<Widget> expected = repository.loadAllSortedByIndexZ();
+        writeAheadLog.close();
+
+        // Frame which was being written while crash
+        final List<Long> segments = WidgetWriteAheadLog.listSegments(directory);
+        Files.write(
+                WidgetWriteAheadLog.segmentPath(directory, segments.get(segments.size() - 1)),
+                new byte[]{0, 0, 0, 40, 0, 0, 0, 0, 0, 0, 0, 99, 1, 2},
+                StandardOpenOption.APPEND
+        );
+
+        final SimpleMemStorageRepository recovered = recover();
+        assertThat(recovered.loadAllSortedByIndexZ()).usingFieldByFieldElementComparator().isEqualTo(expected);
+        // Recovered storage is logged into new segment
+        recovered.create(getRandomWidget(rand, 1000));
+        assertThat(WidgetWriteAheadLog.listSegments(directory)).hasSize(segments.size() + 1);
+    }
+
+    @Test
+    public void previousSnapshotIsKeptForCorruptedNewestOneTest() throws IOException {
+        final Random rand = new Random(5);
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        final MemStoragePersistence persistence = new MemStoragePersistence(getConfig(), repository, writeAheadLog);
+        persistence.start();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 20; i++) {
+                repository.create(getRandomWidget(rand, round * 100 + i));
+            }
+            persistence.checkpoint();
+        }
+        final List<Widget> expected = repository.loadAllSortedByIndexZ();
+        writeAheadLog.close();
+
+        final List<Path> snapshots = WidgetSnapshotFile.listSnapshots(directory);
+        assertThat(snapshots).hasSize(2);
+        // Torn newest snapshot, recovery falls back on the previous one and its log segments
+        Files.write(snapshots.get(0), new byte[]{1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+
+        final SimpleMemStorageRepository recovered = recover();
+        assertThat(recovered.loadAllSortedByIndexZ()).usingFieldByFieldElementComparator().isEqualTo(expected);
+    }
+
+    @Test
+    public void storageIsReadOnlyAfterFailureOfLogTest() throws Exception {
+        final Random rand = new Random(3);
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        new MemStoragePersistence(getConfig(), repository, writeAheadLog).start();
+        repository.create(getRandomWidget(rand, 1));
+        // Segment is closed behind flusher, so the next fsync fails
+        final Field channel = WidgetWriteAheadLog.class.getDeclaredField("channel");
+        channel.setAccessible(true);
+        ((FileChannel) channel.get(writeAheadLog)).close();
+        assertThatThrownBy(() -> repository.create(getRandomWidget(rand, 2))).isInstanceOf(UncheckedIOException.class);
+        final List<Widget> widgets = repository.loadAllSortedByIndexZ();
+        final long version = repository.getVersion();
+
+        assertThatThrownBy(() -> repository.create(getRandomWidget(rand, 3))).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> repository.removeById(widgets.get(0).getId())).isInstanceOf(UncheckedIOException.class);
+        assertThat(repository.getVersion()).isEqualTo(version);
+        assertThat(repository.loadAllSortedByIndexZ()).usingFieldByFieldElementComparator().isEqualTo(widgets);
+    }
+
+    private SimpleMemStorageRepository recover() throws IOException {
+        final WidgetWriteAheadLog writeAheadLog = new WidgetWriteAheadLog();
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(writeAheadLog);
+        new MemStoragePersistence(getConfig(), repository, writeAheadLog).start();
+        return repository;
+    }
+
+    private ConfigProperties getConfig() {
+        final ConfigProperties configProperties = new ConfigProperties();
+        configProperties.getMemStorage().getPersistence().setEnabled(true);
+        configProperties.getMemStorage().getPersistence().setDirectory(directory.toString());
+        return configProperties;
+    }
+
+    private Widget getRandomWidget(final Random rand, final Integer indexZ) {
+        return new Widget(
+                rand.nextInt(500),
+                rand.nextInt(500),
+                indexZ,
+                rand.nextInt(100),
+                rand.nextInt(100)
+        );
+    }
+}
@@ -0,0 +1,148 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.WidgetApplication;
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "widget.config.tieredStorage.enabled=true",
+        "widget.config.tieredStorage.maxPendingWidgets=8",
+        "widget.config.tieredStorage.flushBatchSize=3",
+        // Tests flush by themselves, except flushes requested by backpressure
+        "widget.config.tieredStorage.flushInterval=1h",
+        "widget.config.tieredStorage.loadThreads=4",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:tieredStorageTests"
+})
+class TieredStorageTests {
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private H2WriteBehind h2WriteBehind;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void clean() {
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+        h2WriteBehind.flush();
+    }
+
+    @Test
+    public void modificationsAreCoalescedPerWidgetTest() {
+        final Widget first = controller.create(new InputWidget(10, 10, 0, 10, 10));
+        final UUID secondId = controller.create(new InputWidget(10, 10, 1, 10, 10)).getId();
+        final Widget removed = controller.create(new InputWidget(10, 10, 2, 10, 10));
+        // Colliding creating shifts all widgets, shift is recorded with other tiered metrics
+        controller.create(new InputWidget(10, 10, 0, 10, 10));
+        assertThat(meterRegistry.get("widget.indexz.shifted").tag("backend", "tiered").summary().totalAmount())
+                .isGreaterThanOrEqualTo(3);
+        assertThat(meterRegistry.find("widget.indexz.shifted").tag("backend", "mem").summary()).isNull();
+        final int secondIndexZ = controller.getById(secondId).getIndexZ();
+        controller.update(new Widget(secondId, 50, 10, secondIndexZ, 10, 10, null));
+        controller.update(new Widget(secondId, 50, 50, secondIndexZ, 10, 10, null));
+        controller.deleteById(removed.getId());
+
+        // Seven modifications of four widgets
+        assertThat(h2WriteBehind.getPendingWidgets()).isEqualTo(4);
+        h2WriteBehind.flush();
+
+        assertThat(h2WriteBehind.getPendingWidgets()).isZero();
+        assertThat(loadRows()).usingFieldByFieldElementComparator().containsExactlyElementsOf(controller.getAll());
+        assertThat(controller.getById(first.getId()).getIndexZ()).isEqualTo(1);
+    }
+
+    @Test
+    public void writerWaitsForFlushWhenWriteBehindIsFullTest() {
+        for (int i = 0; i < 30; i++) {
+            controller.create(new InputWidget(i, i, null, 10, 10));
+            assertThat(h2WriteBehind.getPendingWidgets()).isLessThanOrEqualTo(8);
+        }
+        h2WriteBehind.flush();
+
+        assertThat(loadRows()).hasSize(30);
+    }
+
+    @Test
+    public void loadingFromH2KeepsIndexZOrderTest() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            controller.create(new InputWidget(i, i, i * 7, 10, 10));
+        }
+        h2WriteBehind.flush();
+
+        // Z-index range is split into four parts, they are loaded in parallel
+        assertThat(h2WriteBehind.loadFromH2()).usingFieldByFieldElementComparator().containsExactlyElementsOf(controller.getAll());
+    }
+
+    @Test
+    public void mutationsPublishedOnStopAreFlushedTest() throws Exception {
+        final String url = "jdbc:h2:mem:tieredStorageStopTests;DB_CLOSE_DELAY=-1";
+        final ConfigurableApplicationContext context = new SpringApplicationBuilder(WidgetApplication.class).run(
+                "--server.port=0",
+                "--widget.config.tieredStorage.enabled=true",
+                "--widget.config.tieredStorage.flushInterval=1h",
+                "--widget.config.rateLimiting.enabled=false",
+                "--spring.datasource.url=" + url
+        );
+        // Dependent bean is destroyed before its dependency, so sequencer is drained before the final flush
+        assertThat(context.getBeanFactory().getDependenciesForBean("widgetWriteSequencer")).contains("h2WriteBehind");
+        final WidgetWriteSequencer sequencer = context.getBean(WidgetWriteSequencer.class);
+        final SimpleMemStorageService service = context.getBean(SimpleMemStorageService.class);
+        // Writer is busy while the rest mutations are published, so they are pending on stop
+        sequencer.submit(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+            return service.create(new InputWidget(0, 0, null, 10, 10));
+        });
+        for (int i = 1; i < 100; i++) {
+            final int coordinate = i;
+            sequencer.submit(() -> service.create(new InputWidget(coordinate, coordinate, null, 10, 10)));
+        }
+        context.close();
+
+        try (final Connection connection = DriverManager.getConnection(url, "sa", "");
+             final Statement statement = connection.createStatement();
+             final ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM TIERED_WIDGETS")) {
+            rows.next();
+            assertThat(rows.getInt(1)).isEqualTo(100);
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    private List<Widget> loadRows() {
+        return jdbcTemplate.query(
+                "SELECT * FROM TIERED_WIDGETS ORDER BY INDEX_Z",
+                (rs, rowNum) -> new Widget(
+                        UUID.fromString(rs.getString("ID")),
+                        rs.getInt("COORDINATE_X"),
+                        rs.getInt("COORDINATE_Y"),
+                        rs.getInt("INDEX_Z"),
+                        rs.getInt("WIDTH"),
+                        rs.getInt("HEIGHT"),
+                        rs.getTimestamp("LAST_MODIFICATION_DATE_TIME").toLocalDateTime()
+                )
+        );
+    }
+}
@@ -0,0 +1,248 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WidgetRTreeTest {
+
+    @Test
+    public void searchContainedIsEqualToFullScanTest() {
+        final Random rand = new Random(42);
+        final WidgetRTree rTree = new WidgetRTree();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+
+        for (int i = 0; i < 3000; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+            rTree.put(widget);
+        }
+        // Move part of widgets and remove another part
+        final List<UUID> ids = new ArrayList<>(widgets.keySet());
+        for (int i = 0; i < 1000; i++) {
+            final UUID id = ids.get(i);
+            final Widget old = widgets.get(id);
+            final Widget moved = new Widget(
+                    id,
+                    old.getCoordinateX() + rand.nextInt(50),
+                    old.getCoordinateY() - rand.nextInt(50),
+                    old.getIndexZ(),
+                    old.getWidth(),
+                    old.getHeight(),
+                    old.getLastModificationDateTime()
+            );
+            widgets.put(id, moved);
+            rTree.put(moved);
+        }
+        for (int i = 1000; i < 2000; i++) {
+            widgets.remove(ids.get(i));
+            rTree.remove(ids.get(i));
+        }
+        assertThat(rTree.size()).isEqualTo(widgets.size());
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+
+            final Set<UUID> expected = widgets.values()
+                                              .stream()
+                                              .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                                              .map(Widget::getId)
+                                              .collect(Collectors.toSet());
+            assertThat(new HashSet<>(rTree.searchContained(leftX, leftY, rightX, rightY))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void bulkLoadedTreeIsEqualToFullScanTest() {
+        final Random rand = new Random(11);
+        final WidgetRTree rTree = new WidgetRTree();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+        }
+        rTree.load(new ArrayList<>(widgets.values()));
+
+        // Loaded tree is usual tree for following modifications
+        final List<UUID> ids = new ArrayList<>(widgets.keySet());
+        for (int i = 0; i < 1000; i++) {
+            widgets.remove(ids.get(i));
+            rTree.remove(ids.get(i));
+        }
+        for (int i = 0; i < 500; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+            rTree.put(widget);
+        }
+        assertThat(rTree.size()).isEqualTo(widgets.size());
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+
+            final Set<UUID> expected = widgets.values()
+                                              .stream()
+                                              .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                                              .map(Widget::getId)
+                                              .collect(Collectors.toSet());
+            assertThat(new HashSet<>(rTree.searchContained(leftX, leftY, rightX, rightY))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void removeAllWidgetsTest() {
+        final Random rand = new Random(7);
+        final WidgetRTree rTree = new WidgetRTree();
+        final List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.add(widget);
+            rTree.put(widget);
+        }
+        widgets.forEach(widget -> rTree.remove(widget.getId()));
+
+        assertThat(rTree.size()).isZero();
+        assertThat(rTree.searchContained(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE))
+                .isEmpty();
+    }
+
+    @Test
+    public void orderedSearchesFollowOrderTest() {
+        final Random rand = new Random(5);
+        final WidgetRTree rTree = new WidgetRTree();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+        // Reference Z-order, the lowest widget first
+        final List<UUID> order = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+            // Every fourth widget is put near the bottom, so ordering keys there are exhausted and spread again
+            final int position = i % 4 == 0 ? Math.min(order.size(), 1) : rand.nextInt(order.size() + 1);
+            order.add(position, widget.getId());
+            final UUID lowerId = position == 0 ? null : order.get(position - 1);
+            final UUID higherId = position == order.size() - 1 ? null : order.get(position + 1);
+            if (!rTree.put(widget, lowerId, higherId)) {
+                respace(rTree, order, position);
+                assertThat(rTree.put(widget, lowerId, higherId)).isTrue();
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            final UUID id = order.remove(rand.nextInt(order.size()));
+            widgets.remove(id);
+            rTree.remove(id);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final int x = rand.nextInt(1500);
+            final int y = rand.nextInt(1500);
+            final int limit = 1 + rand.nextInt(5);
+            final List<UUID> expected = new ArrayList<>();
+            for (int position = order.size() - 1; position >= 0 && expected.size() < limit; position--) {
+                if (WidgetBounds.contains(widgets.get(order.get(position)), x, y)) {
+                    expected.add(order.get(position));
+                }
+            }
+            assertThat(rTree.searchTopContaining(x, y, limit)).isEqualTo(expected);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+            final int limit = 1 + rand.nextInt(20);
+            final IndexZDirection direction = rand.nextBoolean() ? IndexZDirection.ASCENDING : IndexZDirection.DESCENDING;
+            final List<UUID> directed = new ArrayList<>(order);
+            if (direction == IndexZDirection.DESCENDING) {
+                Collections.reverse(directed);
+            }
+            final int from = rand.nextInt(directed.size());
+            final UUID fromId = i % 2 == 0 ? null : directed.get(from);
+            final List<UUID> expected = directed.subList(fromId == null ? 0 : from, directed.size())
+                                                .stream()
+                                                .filter(id -> WidgetBounds.isInside(widgets.get(id), leftX, leftY, rightX, rightY))
+                                                .limit(limit)
+                                                .collect(Collectors.toList());
+            assertThat(rTree.searchContainedOrdered(leftX, leftY, rightX, rightY, direction, fromId, limit))
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void exhaustedKeysAreSpreadLocallyTest() {
+        final Random rand = new Random(7);
+        final WidgetRTree rTree = new WidgetRTree();
+        final Map<UUID, Widget> widgets = new HashMap<>();
+        final List<UUID> order = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+            order.add(widget.getId());
+            rTree.put(widget);
+        }
+        // All widgets are put at the same place into the middle, so keys there are exhausted again and again
+        long respacedWidgets = 0;
+        for (int i = 0; i < 2000; i++) {
+            final Widget widget = getRandomWidget(rand);
+            widgets.put(widget.getId(), widget);
+            final int position = 2500;
+            order.add(position, widget.getId());
+            if (!rTree.put(widget, order.get(position - 1), order.get(position + 1))) {
+                respacedWidgets += respace(rTree, order, position);
+                assertThat(rTree.put(widget, order.get(position - 1), order.get(position + 1))).isTrue();
+            }
+        }
+        // Spreading all keys on every exhaustion would move millions of keys
+        assertThat(respacedWidgets).isLessThan(100_000);
+
+        for (int i = 0; i < 200; i++) {
+            final int x = rand.nextInt(1500);
+            final int y = rand.nextInt(1500);
+            final List<UUID> expected = new ArrayList<>();
+            for (int position = order.size() - 1; position >= 0 && expected.size() < 10; position--) {
+                if (WidgetBounds.contains(widgets.get(order.get(position)), x, y)) {
+                    expected.add(order.get(position));
+                }
+            }
+            assertThat(rTree.searchTopContaining(x, y, 10)).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * Spread keys around position like storage does: region is extended while keys can't be spread
+     *
+     * @return count of widgets into spread region
+     */
+    private static int respace(final WidgetRTree rTree, final List<UUID> order, final int position) {
+        int window = 16;
+        while (true) {
+            final int from = Math.max(0, position - window);
+            final int to = Math.min(order.size(), position + window + 1);
+            if (rTree.respace(order.subList(from, to), from == 0, to == order.size())) {
+                return to - from;
+            }
+            window *= 4;
+        }
+    }
+
+    private Widget getRandomWidget(final Random rand) {
+        return new Widget(
+                rand.nextInt(1500),
+                rand.nextInt(1500),
+                null,
+                rand.nextInt(200),
+                rand.nextInt(200)
+        );
+    }
+}
@@ -0,0 +1,133 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.service.IndexZDirection;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetBounds;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WidgetSnapshotTest {
+
+    @Test
+    public void queriesAreEqualToFullScanTest() {
+        final Random rand = new Random(42);
+        final List<Widget> widgets = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            widgets.add(new Widget(
+                    rand.nextInt(1500),
+                    rand.nextInt(1500),
+                    i * 2,
+                    rand.nextInt(200),
+                    rand.nextInt(200)
+            ));
+        }
+        final WidgetSnapshot snapshot = new WidgetSnapshot(7, widgets);
+
+        assertThat(snapshot.getVersion()).isEqualTo(7);
+        assertThat(snapshot.loadAllSortedByIndexZ()).isEqualTo(widgets);
+        assertThat(snapshot.loadById(widgets.get(100).getId())).isEqualTo(widgets.get(100));
+        // Paging starts from position (page - 1), same as for live storage
+        assertThat(snapshot.loadPaging(3, 50)).isEqualTo(widgets.subList(2, 52));
+        assertThat(snapshot.loadPagingAfterIndexZ(199, 50)).isEqualTo(widgets.subList(100, 150));
+        assertThat(snapshot.loadPagingAfterIndexZ(5998, 50)).isEmpty();
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+
+            final List<Widget> expected = widgets.stream()
+                                                 .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                                                 .collect(Collectors.toList());
+            assertThat(snapshot.loadBySelectedArea(leftX, leftY, rightX, rightY)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final int x = rand.nextInt(1500);
+            final int y = rand.nextInt(1500);
+            final int limit = 1 + rand.nextInt(5);
+
+            final List<Widget> expected = new ArrayList<>();
+            for (int position = widgets.size() - 1; position >= 0 && expected.size() < limit; position--) {
+                if (WidgetBounds.contains(widgets.get(position), x, y)) {
+                    expected.add(widgets.get(position));
+                }
+            }
+            assertThat(snapshot.loadTopAtPoint(x, y, limit)).isEqualTo(expected);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final int leftX = rand.nextInt(1000);
+            final int leftY = rand.nextInt(1000);
+            final int rightX = leftX + rand.nextInt(500);
+            final int rightY = leftY + rand.nextInt(500);
+            final int limit = 1 + rand.nextInt(20);
+            final IndexZDirection direction = rand.nextBoolean() ? IndexZDirection.ASCENDING : IndexZDirection.DESCENDING;
+            // Cursor is between Z-indexes of widgets or equal to one of them
+            final Integer afterIndexZ = i % 2 == 0 ? null : rand.nextInt(6000);
+
+            final List<Widget> expected = widgets.stream()
+                                                 .filter(w -> WidgetBounds.isInside(w, leftX, leftY, rightX, rightY))
+                                                 .filter(w -> direction.isAfter(w.getIndexZ(), afterIndexZ))
+                                                 .sorted(direction.comparator())
+                                                 .limit(limit)
+                                                 .collect(Collectors.toList());
+            assertThat(snapshot.loadBySelectedAreaOrderedByIndexZ(
+                    leftX,
+                    leftY,
+                    rightX,
+                    rightY,
+                    direction,
+                    afterIndexZ,
+                    limit
+            )).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void emptySnapshotTest() {
+        assertThat(WidgetSnapshot.EMPTY.loadAllSortedByIndexZ()).isEmpty();
+        assertThat(WidgetSnapshot.EMPTY.loadPaging(1, 10)).isEmpty();
+        assertThat(WidgetSnapshot.EMPTY.loadPagingAfterIndexZ(0, 10)).isEmpty();
+        assertThat(WidgetSnapshot.EMPTY.loadBySelectedArea(0, 0, 100, 100)).isEmpty();
+        assertThat(WidgetSnapshot.EMPTY.loadTopAtPoint(0, 0, 10)).isEmpty();
+        assertThat(WidgetSnapshot.EMPTY.loadBySelectedAreaOrderedByIndexZ(
+                0,
+                0,
+                100,
+                100,
+                IndexZDirection.DESCENDING,
+                null,
+                10
+        )).isEmpty();
+    }
+
+    @Test
+    public void snapshotIsBuiltByTheFirstReadAfterWritesTest() {
+        final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(new WidgetWriteAheadLog());
+        final Widget first = repository.create(new Widget(0, 0, 0, 10, 10));
+        for (int i = 1; i < 100; i++) {
+            repository.create(new Widget(i, i, i, 10, 10));
+        }
+        final WidgetSnapshot snapshot = repository.getSnapshot();
+        assertThat(snapshot.getVersion()).isEqualTo(repository.getVersion());
+        assertThat(snapshot.loadAllSortedByIndexZ()).hasSize(100);
+        // Reads share built snapshot until the next modification
+        assertThat(repository.getSnapshot()).isSameAs(snapshot);
+        assertThat(snapshot.loadByIds(Arrays.asList(first.getId(), UUID.randomUUID())))
+                .extracting(Widget::getId)
+                .containsExactly(first.getId());
+
+        repository.removeById(first.getId());
+        repository.removeById(repository.loadAllSortedByIndexZ().get(0).getId());
+        // Built snapshot is kept by reader, writes don't change it
+        assertThat(snapshot.loadAllSortedByIndexZ()).hasSize(100);
+        assertThat(repository.getSnapshot().getVersion()).isEqualTo(snapshot.getVersion() + 2);
+        assertThat(repository.getSnapshot().loadAllSortedByIndexZ()).hasSize(98);
+    }
+}
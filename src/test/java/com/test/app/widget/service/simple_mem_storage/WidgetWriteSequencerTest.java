@@ -0,0 +1,253 @@
+package com.test.app.widget.service.simple_mem_storage;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetEvent;
+import com.test.app.widget.service.WidgetEventListener;
+import com.test.app.widget.service.WidgetVersions;
+import com.test.app.widget.service.h2_storage.H2ChangeArchive;
+import com.test.app.widget.subscriptions.ViewportSubscriptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WidgetWriteSequencerTest {
+    private static final int THREADS = 8;
+    private static final int WRITES_PER_THREAD = 250;
+
+    private final SimpleMemStorageRepository repository = new SimpleMemStorageRepository(new WidgetWriteAheadLog());
+    // Small ring, so producers are waiting for free slots
+    private final WidgetWriteSequencer sequencer = new WidgetWriteSequencer(repository, getConfig());
+    private final SimpleMemStorageService service = new SimpleMemStorageService(
+            repository,
+            sequencer,
+            getConfig(),
+            new WidgetMetrics(new SimpleMeterRegistry()),
+            new WidgetVersions(
+                    getConfig(),
+                    new H2ChangeArchive(getConfig(), null, null),
+                    Collections.singletonList(
+                            new ViewportSubscriptions(getConfig(), new WidgetMetrics(new SimpleMeterRegistry()))
+                    )
+            )
+    );
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        sequencer.stop();
+    }
+
+    @Test
+    public void concurrentForegroundCreatingTest() throws Exception {
+        writeConcurrently(() -> service.create(new InputWidget(1, 1, null, 10, 10)));
+
+        final int count = THREADS * WRITES_PER_THREAD;
+        assertThat(repository.loadAllSortedByIndexZ())
+                .extracting(Widget::getIndexZ)
+                .containsExactlyElementsOf(IntStream.rangeClosed(1, count).boxed().collect(Collectors.toList()));
+        // Waiting writes are made by batches
+        assertThat(repository.getVersion()).isLessThanOrEqualTo(count);
+    }
+
+    @Test
+    public void concurrentCollidingCreatingTest() throws Exception {
+        final List<Widget> created = writeConcurrently(() -> service.create(new InputWidget(1, 1, 5, 10, 10)));
+
+        final List<Widget> all = repository.loadAllSortedByIndexZ();
+        assertThat(all).hasSize(THREADS * WRITES_PER_THREAD);
+        assertThat(all.stream().map(Widget::getIndexZ).distinct().count()).isEqualTo(all.size());
+        // The last created widget is on Z-index 5, all previous ones are shifted up
+        assertThat(all.get(0).getIndexZ()).isEqualTo(5);
+        assertThat(all).extracting(Widget::getId).containsExactlyInAnyOrderElementsOf(
+                created.stream().map(Widget::getId).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void failedMutationDoesNotBreakOthersTest() {
+        assertThatThrownBy(() -> sequencer.execute(() -> {
+            throw new IllegalArgumentException("Error: wrong mutation");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(service.create(new InputWidget(1, 1, 3, 10, 10)).getIndexZ()).isEqualTo(3);
+        assertThat(sequencer.execute(() -> repository.getMaxZIndexValue())).isEqualTo(3);
+    }
+
+    @Test
+    public void versionsAreChangedAfterStorageCommitTest() {
+        final List<Long> storageVersions = new ArrayList<>();
+        final WidgetVersions versions = new WidgetVersions(
+                getConfig(),
+                new H2ChangeArchive(getConfig(), null, null),
+                Collections.singletonList(new WidgetEventListener() {
+                    @Override
+                    public boolean isListening() {
+                        return true;
+                    }
+
+                    @Override
+                    public void modified(final List<WidgetEvent> events) {
+                        storageVersions.add(repository.getVersion());
+                    }
+                })
+        );
+        final SimpleMemStorageService listenedService = new SimpleMemStorageService(
+                repository,
+                sequencer,
+                getConfig(),
+                new WidgetMetrics(new SimpleMeterRegistry()),
+                versions
+        );
+
+        final Widget created = listenedService.create(new InputWidget(1, 1, 1, 10, 10));
+        listenedService.deleteById(created.getId());
+
+        // Every modification is committed into storage before its version is published
+        assertThat(storageVersions).containsExactly(1L, 2L);
+        assertThat(versions.getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void eventsOfBatchesFollowWriterOrderTest() throws Exception {
+        // State of widgets made by events only
+        final Map<UUID, Integer> eventCoordinates = new ConcurrentHashMap<>();
+        final Set<String> eventThreads = ConcurrentHashMap.newKeySet();
+        final WidgetVersions versions = new WidgetVersions(
+                getConfig(),
+                new H2ChangeArchive(getConfig(), null, null),
+                Collections.singletonList(new WidgetEventListener() {
+                    @Override
+                    public boolean isListening() {
+                        return true;
+                    }
+
+                    @Override
+                    public void modified(final List<WidgetEvent> events) {
+                        eventThreads.add(Thread.currentThread().getName());
+                        events.forEach(event -> eventCoordinates.put(event.getWidget().getId(), event.getWidget().getCoordinateX()));
+                    }
+                })
+        );
+        final SimpleMemStorageService listenedService = new SimpleMemStorageService(
+                repository,
+                sequencer,
+                getConfig(),
+                new WidgetMetrics(new SimpleMeterRegistry()),
+                versions
+        );
+        final List<Widget> widgets = new ArrayList<>();
+        for (int indexZ = 1; indexZ <= 4; indexZ++) {
+            widgets.add(listenedService.create(new InputWidget(0, 0, indexZ, 10, 10)));
+        }
+
+        final AtomicInteger coordinates = new AtomicInteger();
+        writeConcurrently(() -> {
+            final Widget widget = widgets.get(coordinates.get() % widgets.size());
+            final Widget moved = new Widget(
+                    widget.getId(),
+                    coordinates.incrementAndGet(),
+                    0,
+                    widget.getIndexZ(),
+                    10,
+                    10,
+                    null
+            );
+            if (moved.getCoordinateX() % 2 == 0) {
+                return listenedService.update(moved);
+            }
+            listenedService.applyBatch(
+                    Collections.emptyList(),
+                    Collections.singletonList(moved),
+                    Collections.emptyList()
+            );
+            return moved;
+        });
+
+        // Events of batches and single writes are delivered by writer, in order of modifications
+        assertThat(eventThreads).containsExactly("widget-mem-writer");
+        for (final Widget stored : repository.loadAllSortedByIndexZ()) {
+            assertThat(eventCoordinates.get(stored.getId())).isEqualTo(stored.getCoordinateX());
+        }
+    }
+
+    @Test
+    public void mutationsSubmittedWhileStoppingAreCompletedTest() throws Exception {
+        final AtomicInteger indexesZ = new AtomicInteger();
+        final List<Future<List<CompletableFuture<Widget>>>> producers = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            producers.add(executor.submit(() -> {
+                final List<CompletableFuture<Widget>> submitted = new ArrayList<>();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    submitted.add(sequencer.submit(() -> repository.create(new Widget(1, 1, indexesZ.incrementAndGet(), 10, 10))));
+                }
+                return submitted;
+            }));
+        }
+        sequencer.stop();
+
+        // Every claimed slot is made before writer exits, later mutations are failed at once
+        int made = 0;
+        for (final Future<List<CompletableFuture<Widget>>> producer : producers) {
+            for (final CompletableFuture<Widget> future : producer.get(10, TimeUnit.SECONDS)) {
+                try {
+                    future.get(10, TimeUnit.SECONDS);
+                    made++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+                }
+            }
+        }
+        assertThat(repository.count()).isEqualTo(made);
+    }
+
+    private List<Widget> writeConcurrently(final Supplier<Widget> write) throws Exception {
+        final List<Future<List<Widget>>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                final List<Widget> written = new ArrayList<>();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    written.add(write.get());
+                }
+                return written;
+            }));
+        }
+        final List<Widget> written = new ArrayList<>();
+        for (final Future<List<Widget>> future : futures) {
+            written.addAll(future.get());
+        }
+        return written;
+    }
+
+    private static ConfigProperties getConfig() {
+        final ConfigProperties config = new ConfigProperties();
+        config.getMemStorage().setWriteBufferSize(8);
+        config.getMemStorage().setMaxWriteBatch(4);
+        config.setH2storage(new ConfigProperties.StorageH2());
+        return config;
+    }
+}
@@ -0,0 +1,29 @@
+package com.test.app.widget.subscriptions;
+
+import com.test.app.widget.service.WidgetEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same scenarios as {@link ViewportSubscriptionsTests}, but for H2 storage and subscribers without coalescing
+ */
+@SpringBootTest(properties = {
+        "widget.config.h2storage.enabled=true",
+        "widget.config.subscriptions.cellSize=100",
+        "widget.config.subscriptions.bufferSize=4",
+        "widget.config.subscriptions.overflowPolicy=DROP",
+        "widget.config.rateLimiting.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:h2ViewportSubscriptionsTests"
+})
+class H2ViewportSubscriptionsTests extends ViewportSubscriptionsTests {
+
+    /**
+     * Updates overflow buffer, so subscriber is told to resync
+     */
+    @Override
+    protected void assertSlowSubscriber(final RecordingSink slow) throws InterruptedException {
+        assertThat(slow.next().getType()).isEqualTo(WidgetEvent.Type.CREATED);
+        assertThat(slow.nextEvent()).isEqualTo(RESYNC);
+    }
+}
@@ -0,0 +1,227 @@
+package com.test.app.widget.subscriptions;
+
+import com.test.app.widget.configs.ConfigProperties;
+import com.test.app.widget.metrics.WidgetMetrics;
+import com.test.app.widget.rest.controllers.WidgetController;
+import com.test.app.widget.rest.inputs.InputWidget;
+import com.test.app.widget.service.Widget;
+import com.test.app.widget.service.WidgetEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "widget.config.subscriptions.cellSize=100",
+        "widget.config.subscriptions.bufferSize=4",
+        "widget.config.rateLimiting.enabled=false"
+})
+class ViewportSubscriptionsTests {
+    static final String RESYNC = "resync";
+
+    @Autowired
+    private WidgetController controller;
+    @Autowired
+    private ViewportSubscriptions viewportSubscriptions;
+
+    private final List<ViewportSubscription> subscriptions = new ArrayList<>();
+
+    @AfterEach
+    public void clean() {
+        subscriptions.forEach(viewportSubscriptions::unsubscribe);
+        controller.getAll().forEach(widget -> controller.deleteById(widget.getId()));
+    }
+
+    @Test
+    public void viewportEventsTest() throws InterruptedException {
+        final RecordingSink viewport = subscribe(0, 0, 200, 200, new CountDownLatch(0));
+        final RecordingSink wholePlane = subscribe(-1_000_000, -1_000_000, 1_000_000, 1_000_000, new CountDownLatch(0));
+
+        // Events are checked after every modification, so they aren't coalesced
+        controller.create(new InputWidget(1000, 1000, 1, 10, 10));
+        assertThat(wholePlane.next().getType()).isEqualTo(WidgetEvent.Type.CREATED);
+
+        final Widget widget = controller.create(new InputWidget(150, 150, 2, 20, 20));
+        assertThat(viewport.next()).extracting(WidgetEvent::getType, WidgetEvent::getId)
+                                   .containsExactly(WidgetEvent.Type.CREATED, widget.getId());
+        assertThat(wholePlane.next().getType()).isEqualTo(WidgetEvent.Type.CREATED);
+
+        // Widget is moved out of viewport, so viewport gets its update
+        controller.update(new Widget(widget.getId(), 1000, 150, 2, 20, 20, null));
+        assertThat(viewport.next().getType()).isEqualTo(WidgetEvent.Type.UPDATED);
+        assertThat(wholePlane.next().getType()).isEqualTo(WidgetEvent.Type.UPDATED);
+
+        controller.deleteById(widget.getId());
+        assertThat(wholePlane.next()).extracting(WidgetEvent::getType, WidgetEvent::getId)
+                                     .containsExactly(WidgetEvent.Type.DELETED, widget.getId());
+
+        // Colliding widget shifts Z-indexes for all subscribers
+        controller.create(new InputWidget(1000, 1000, 1, 10, 10));
+        assertThat(viewport.next()).extracting(WidgetEvent::getType, WidgetEvent::getShiftedFromIndexZ)
+                                   .containsExactly(WidgetEvent.Type.SHIFTED, 1);
+        assertThat(viewport.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void slowSubscriberTest() throws InterruptedException {
+        final CountDownLatch released = new CountDownLatch(1);
+        final RecordingSink slow = subscribe(0, 0, 200, 200, released);
+
+        final Widget widget = controller.create(new InputWidget(100, 100, 1, 10, 10));
+        // Sender is blocked by the first event, the next ones are buffered
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (slow.events.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            controller.update(new Widget(widget.getId(), 100, 100, 1, 10 + i, 10, null));
+        }
+        released.countDown();
+        assertSlowSubscriber(slow);
+    }
+
+    @Test
+    public void concurrentSubscribingIsBoundedTest() throws Exception {
+        final ConfigProperties configProperties = new ConfigProperties();
+        configProperties.getSubscriptions().setMaxSubscriptions(5);
+        final ViewportSubscriptions bounded = new ViewportSubscriptions(
+                configProperties,
+                new WidgetMetrics(new SimpleMeterRegistry())
+        );
+        final ExecutorService subscribers = Executors.newFixedThreadPool(8);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<ViewportSubscription>> attempts = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                attempts.add(subscribers.submit(() -> {
+                    start.await();
+                    return bounded.subscribe(0, 0, 100, 100, new RecordingSink(new CountDownLatch(0)));
+                }));
+            }
+            start.countDown();
+            final List<ViewportSubscription> subscribed = new ArrayList<>();
+            for (final Future<ViewportSubscription> attempt : attempts) {
+                final ViewportSubscription subscription = attempt.get(5, TimeUnit.SECONDS);
+                if (subscription != null) {
+                    subscribed.add(subscription);
+                }
+            }
+            assertThat(subscribed).hasSize(5);
+            assertThat(bounded.subscribe(0, 0, 100, 100, new RecordingSink(new CountDownLatch(0)))).isNull();
+
+            // Slot is released by unsubscribing
+            bounded.unsubscribe(subscribed.get(0));
+            bounded.unsubscribe(subscribed.get(0));
+            assertThat(bounded.subscribe(0, 0, 100, 100, new RecordingSink(new CountDownLatch(0)))).isNotNull();
+            assertThat(bounded.subscribe(0, 0, 100, 100, new RecordingSink(new CountDownLatch(0)))).isNull();
+        } finally {
+            subscribers.shutdownNow();
+            bounded.stop();
+        }
+    }
+
+    @Test
+    public void subscriptionIsClosedWhenSendersAreStoppedTest() {
+        final ViewportSubscriptions stopped = new ViewportSubscriptions(
+                new ConfigProperties(),
+                new WidgetMetrics(new SimpleMeterRegistry())
+        );
+        stopped.stop();
+        stopped.subscribe(0, 0, 100, 100, new RecordingSink(new CountDownLatch(0)));
+
+        // Rejected sending doesn't get into writer, subscription is closed instead
+        stopped.modified(Collections.singletonList(new WidgetEvent(
+                WidgetEvent.Type.CREATED,
+                1,
+                UUID.randomUUID(),
+                new Widget(50, 50, 1, 10, 10),
+                null,
+                null
+        )));
+        assertThat(stopped.isListening()).isFalse();
+    }
+
+    /**
+     * Updates of widget are coalesced into the last one
+     */
+    protected void assertSlowSubscriber(final RecordingSink slow) throws InterruptedException {
+        assertThat(slow.next().getType()).isEqualTo(WidgetEvent.Type.CREATED);
+        final WidgetEvent coalesced = slow.next();
+        assertThat(coalesced.getType()).isEqualTo(WidgetEvent.Type.UPDATED);
+        assertThat(coalesced.getWidget().getWidth()).isEqualTo(19);
+        assertThat(slow.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private RecordingSink subscribe(
+            final int leftX,
+            final int leftY,
+            final int rightX,
+            final int rightY,
+            final CountDownLatch released
+    ) {
+        final RecordingSink sink = new RecordingSink(released);
+        subscriptions.add(viewportSubscriptions.subscribe(leftX, leftY, rightX, rightY, sink));
+        return sink;
+    }
+
+    /**
+     * Sink which is blocked after the first event until it's released
+     */
+    static class RecordingSink implements ViewportSubscription.Sink {
+        final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch released;
+
+        RecordingSink(final CountDownLatch released) {
+            this.released = released;
+        }
+
+        WidgetEvent next() throws InterruptedException {
+            return (WidgetEvent) nextEvent();
+        }
+
+        Object nextEvent() throws InterruptedException {
+            return events.poll(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void send(final WidgetEvent event) {
+            final boolean first = events.isEmpty();
+            events.add(event);
+            if (first) {
+                await();
+            }
+        }
+
+        @Override
+        public void resync(final long version) {
+            events.add(RESYNC);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void await() {
+            try {
+                released.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}